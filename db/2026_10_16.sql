@@ -0,0 +1,75 @@
+-- 2026-10-16 数据库变更
+
+-- 为 sys_role 表添加是否保存对话音频字段，关闭后TTS音频只在内存中流转，不再落盘
+ALTER TABLE `xiaozhi`.`sys_role`
+ADD COLUMN `saveAudio` enum('1','0') DEFAULT '1' COMMENT '是否保存对话音频：1-保存，0-不保存' AFTER `vadSilenceMs`;
+
+-- 为 sys_role 表添加推测识别开关，开启后静音开始时即用中间识别结果请求模型，静音超时后若识别结果不变直接使用已生成的回复
+ALTER TABLE `xiaozhi`.`sys_role`
+ADD COLUMN `speculativeStt` enum('1','0') DEFAULT '0' COMMENT '是否开启推测识别：1-开启，0-关闭' AFTER `saveAudio`;
+
+-- 为 sys_message 表添加联合索引，历史对话加载按(deviceId, roleId, createTime)定位，管理台按(deviceId, state, createTime)游标分页
+ALTER TABLE `xiaozhi`.`sys_message`
+ADD INDEX `idx_device_role_time` (`deviceId`, `roleId`, `createTime`),
+ADD INDEX `idx_device_state_time` (`deviceId`, `state`, `createTime`);
+
+-- 统计汇总表，管理台列表的设备数、在线数、消息数改为读取汇总表，应用启动时若为空会根据明细数据自动生成
+-- xiaozhi.sys_device_stats definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_device_stats` (
+  `deviceId` varchar(30) NOT NULL COMMENT '设备ID',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '有效消息数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`deviceId`),
+  KEY `updateTime` (`updateTime`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='设备统计汇总表';
+
+-- xiaozhi.sys_user_stats definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_user_stats` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `totalDevice` int NOT NULL DEFAULT 0 COMMENT '设备数',
+  `aliveNumber` int NOT NULL DEFAULT 0 COMMENT '在线设备数',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '消息总数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`userId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户统计汇总表';
+
+-- xiaozhi.sys_user_stats_daily definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_user_stats_daily` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `statDate` date NOT NULL COMMENT '统计日期',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '当天消息数',
+  PRIMARY KEY (`userId`, `statDate`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户每日统计汇总表';
+
+-- xiaozhi.sys_role_stats definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_role_stats` (
+  `roleId` int unsigned NOT NULL COMMENT '角色ID',
+  `totalDevice` int NOT NULL DEFAULT 0 COMMENT '设备数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`roleId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='角色统计汇总表';
+
+-- 数据保留策略表，未配置的用户使用 retention.message.days / retention.audio.days 全局配置
+-- xiaozhi.sys_retention_policy definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_retention_policy` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `messageDays` int DEFAULT NULL COMMENT '消息保留天数，超过后移入按月归档表sys_message_archive_yyyyMM，0-永久保留，空-使用全局配置',
+  `audioDays` int DEFAULT NULL COMMENT '音频保留天数，超过后删除音频文件，0-永久保留，空-使用全局配置',
+  `createTime` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updateTime` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`userId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='数据保留策略表';
+
+-- 模型能力表，按API地址和模型名称缓存探测结果，所有会话共享
+-- xiaozhi.sys_model_capability definition
+CREATE TABLE IF NOT EXISTS `xiaozhi`.`sys_model_capability` (
+  `endpoint` varchar(255) NOT NULL COMMENT 'API地址',
+  `model` varchar(100) NOT NULL COMMENT '模型名称',
+  `functionCall` tinyint(1) DEFAULT NULL COMMENT '是否支持Function Call，空-未能探测',
+  `streamUsage` tinyint(1) DEFAULT NULL COMMENT '流式输出是否支持返回usage，空-未能探测',
+  `contextLength` int DEFAULT NULL COMMENT '上下文长度（token），空-接口未提供',
+  `probeTime` datetime DEFAULT NULL COMMENT '探测时间，超过 llm.capability.ttl-hours 后重新探测',
+  `createTime` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updateTime` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`endpoint`, `model`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='模型能力表';
@@ -91,9 +91,75 @@ CREATE TABLE `xiaozhi`.`sys_message` (
   `createTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '消息发送时间',
   PRIMARY KEY (`messageId`),
   KEY `deviceId` (`deviceId`),
-  KEY `sessionId` (`sessionId`)
+  KEY `sessionId` (`sessionId`),
+  KEY `idx_device_role_time` (`deviceId`, `roleId`, `createTime`),
+  KEY `idx_device_state_time` (`deviceId`, `state`, `createTime`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='人与AI对话消息表';
 
+-- xiaozhi.sys_device_stats definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_device_stats`;
+CREATE TABLE `xiaozhi`.`sys_device_stats` (
+  `deviceId` varchar(30) NOT NULL COMMENT '设备ID',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '有效消息数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`deviceId`),
+  KEY `updateTime` (`updateTime`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='设备统计汇总表';
+
+-- xiaozhi.sys_user_stats definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_user_stats`;
+CREATE TABLE `xiaozhi`.`sys_user_stats` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `totalDevice` int NOT NULL DEFAULT 0 COMMENT '设备数',
+  `aliveNumber` int NOT NULL DEFAULT 0 COMMENT '在线设备数',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '消息总数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`userId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户统计汇总表';
+
+-- xiaozhi.sys_user_stats_daily definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_user_stats_daily`;
+CREATE TABLE `xiaozhi`.`sys_user_stats_daily` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `statDate` date NOT NULL COMMENT '统计日期',
+  `totalMessage` bigint NOT NULL DEFAULT 0 COMMENT '当天消息数',
+  PRIMARY KEY (`userId`, `statDate`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户每日统计汇总表';
+
+-- xiaozhi.sys_role_stats definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_role_stats`;
+CREATE TABLE `xiaozhi`.`sys_role_stats` (
+  `roleId` int unsigned NOT NULL COMMENT '角色ID',
+  `totalDevice` int NOT NULL DEFAULT 0 COMMENT '设备数',
+  `updateTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`roleId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='角色统计汇总表';
+
+-- xiaozhi.sys_retention_policy definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_retention_policy`;
+CREATE TABLE `xiaozhi`.`sys_retention_policy` (
+  `userId` int NOT NULL COMMENT '用户ID',
+  `messageDays` int DEFAULT NULL COMMENT '消息保留天数，超过后移入按月归档表sys_message_archive_yyyyMM，0-永久保留，空-使用全局配置',
+  `audioDays` int DEFAULT NULL COMMENT '音频保留天数，超过后删除音频文件，0-永久保留，空-使用全局配置',
+  `createTime` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updateTime` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`userId`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='数据保留策略表';
+
+-- xiaozhi.sys_model_capability definition
+DROP TABLE IF EXISTS `xiaozhi`.`sys_model_capability`;
+CREATE TABLE `xiaozhi`.`sys_model_capability` (
+  `endpoint` varchar(255) NOT NULL COMMENT 'API地址',
+  `model` varchar(100) NOT NULL COMMENT '模型名称',
+  `functionCall` tinyint(1) DEFAULT NULL COMMENT '是否支持Function Call，空-未能探测',
+  `streamUsage` tinyint(1) DEFAULT NULL COMMENT '流式输出是否支持返回usage，空-未能探测',
+  `contextLength` int DEFAULT NULL COMMENT '上下文长度（token），空-接口未提供',
+  `probeTime` datetime DEFAULT NULL COMMENT '探测时间，超过 llm.capability.ttl-hours 后重新探测',
+  `createTime` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updateTime` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`endpoint`, `model`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='模型能力表';
+
 -- xiaozhi.sys_role definition
 DROP TABLE IF EXISTS `xiaozhi`.`sys_role`;
 CREATE TABLE `xiaozhi`.`sys_role` (
@@ -110,6 +176,8 @@ CREATE TABLE `xiaozhi`.`sys_role` (
   `vadSilenceTh` FLOAT DEFAULT 0.3 COMMENT '静音检测阈值',
   `vadEnergyTh` FLOAT DEFAULT 0.01 COMMENT '能量检测阈值',
   `vadSilenceMs` INT DEFAULT 1200 COMMENT '静音检测时间',
+  `saveAudio` enum('1','0') DEFAULT '1' COMMENT '是否保存对话音频：1-保存，0-不保存',
+  `speculativeStt` enum('1','0') DEFAULT '0' COMMENT '是否开启推测识别：1-开启，0-关闭',
   `voiceName` varchar(100) NOT NULL COMMENT '角色语音名称',
   `ttsPitch` FLOAT DEFAULT 1.0 COMMENT '语音音调',
   `ttsSpeed` FLOAT DEFAULT 1.0 COMMENT '语音语速',
@@ -83,12 +83,24 @@ public abstract class ChatSession {
      * 当前session是否支持function_call
      */
     protected boolean supportFunctionCall = true;
+    /**
+     * 音频处理管线上下文，设备绑定或角色配置变更时整体替换
+     */
+    protected volatile PipelineContext pipelineContext = PipelineContext.UNBOUND;
 
     /**
      * 最近一次对话的模型响应时间及TTS响应时间
      */
     public static final String ATTR_FIRST_MODEL_RESPONSE_TIME = "firstModelResponseTime";
     public static final String ATTR_FIRST_TTS_RESPONSE_TIME = "firstTtsResponseTime";
+    /**
+     * 最近一次对话从请求模型到发出首帧音频的时间（毫秒）
+     */
+    public static final String ATTR_FIRST_AUDIO_FRAME_TIME = "firstAudioFrameTime";
+    /**
+     * 是否已开始预热STT、TTS和大模型
+     */
+    public static final String ATTR_WARM_UP = "warmUp";
     /**
      * 会话属性存储
      */
@@ -127,7 +139,7 @@ public abstract class ChatSession {
     }
 
     /**
-     * 音频文件约定路径为：audio/{device-id}/{role-id}/{timestamp}-user.wav
+     * 音频文件约定路径为：audio/{device-id}/{role-id}/{timestamp}-user.ogg，内容为Ogg封装的Opus
      * {device-id}/{role-id}/{timestamp}-user 能确定唯一性，不会有并发的麻烦。
      * 除非多设备在嵌入式软件里强行修改mac地址（deviceId目前是基于mac地址的)
      *
@@ -144,7 +156,7 @@ public abstract class ChatSession {
         // 判断设备ID是否有不适合路径的特殊字符，它很可能是mac地址需要转换。
         String deviceId = device.getDeviceId().replace(":", "-");
         String roleId = device.getRoleId().toString();
-        String filename = "%s-%s.wav".formatted(datetime, who);
+        String filename = "%s-%s.ogg".formatted(datetime, who);
         Path path = Path.of(AudioUtils.AUDIO_PATH, deviceId, roleId, filename);
         return path;
     }
@@ -189,6 +201,30 @@ public abstract class ChatSession {
 
     public abstract void sendBinaryMessage(byte[] message);
 
+    /**
+     * 下行连接是否可写，待发送数据超过高水位后为false，降到低水位以下恢复
+     * 不支持发送队列的连接总是可写
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * 已交给连接但还没发送到网络的字节数
+     */
+    public long getOutboundBytes() {
+        return 0;
+    }
+
+    /**
+     * 丢弃发送队列中还没发出的音频帧，文本消息保留
+     *
+     * @return 丢弃的帧数
+     */
+    public int shedOutboundAudio() {
+        return 0;
+    }
+
     /**
      * 设置 Conversation，需要与当前活跃角色一致。
      * 当切换角色时，会释放当前 Conversation，并新建一个对应于新角色的Conversation。
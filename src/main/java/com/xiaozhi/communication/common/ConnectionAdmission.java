@@ -0,0 +1,224 @@
+package com.xiaozhi.communication.common;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 连接准入控制
+ * 服务重启后所有设备会同时重连，每个连接都要查询设备和角色、加载历史对话、更新设备状态。
+ * 连接的初始化任务在这里排队，同时执行的数量受限，避免数据库和下游服务被瞬时流量压垮。
+ * 已经开始发消息或音频的设备会被提到优先队列，先于仍在空闲的设备完成初始化。
+ *
+ * @author Joey
+ */
+@Service
+public class ConnectionAdmission {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionAdmission.class);
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    // 同时执行的初始化任务数
+    @Value("${admission.max-concurrent:32}")
+    private int maxConcurrent;
+
+    // 收到消息时等待初始化完成的最长时间（毫秒）
+    @Value("${admission.await-timeout-ms:10000}")
+    private long awaitTimeoutMs;
+
+    private final Object lock = new Object();
+    // 已发消息的设备
+    private final Deque<Ticket> urgent = new ArrayDeque<>();
+    // 仅建立了连接的设备
+    private final Deque<Ticket> normal = new ArrayDeque<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private int active = 0;
+
+    private Timer waitTimer;
+    private Timer urgentReadyTimer;
+    private Timer normalReadyTimer;
+
+    @PostConstruct
+    public void init() {
+        waitTimer = Timer.builder("xiaozhi.admission.wait")
+                .description("连接初始化任务排队时间")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        urgentReadyTimer = readyTimer("urgent");
+        normalReadyTimer = readyTimer("normal");
+        Gauge.builder("xiaozhi.admission.queue", this, a -> a.queued(true))
+                .tag("priority", "urgent")
+                .description("等待初始化的连接数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.admission.queue", this, a -> a.queued(false))
+                .tag("priority", "normal")
+                .description("等待初始化的连接数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.admission.active", this, a -> a.active())
+                .description("正在执行的连接初始化任务数")
+                .register(meterRegistry);
+    }
+
+    private Timer readyTimer(String priority) {
+        return Timer.builder("xiaozhi.session.ready")
+                .tag("priority", priority)
+                .description("从连接建立到会话初始化完成的时间")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交连接的初始化任务，在虚拟线程中执行
+     */
+    public void submit(String sessionId, Runnable task) {
+        Ticket ticket = new Ticket(sessionId, task);
+        Ticket previous = tickets.put(sessionId, ticket);
+        if (previous != null) {
+            cancel(previous);
+        }
+        synchronized (lock) {
+            normal.addLast(ticket);
+        }
+        dispatch();
+    }
+
+    /**
+     * 设备开始发消息或音频时提高初始化优先级
+     */
+    public void promote(String sessionId) {
+        Ticket ticket = tickets.get(sessionId);
+        if (ticket == null || ticket.urgent) {
+            return;
+        }
+        synchronized (lock) {
+            if (!ticket.urgent && normal.remove(ticket)) {
+                ticket.urgent = true;
+                urgent.addLast(ticket);
+            }
+        }
+    }
+
+    /**
+     * 提高优先级并等待初始化完成，没有排队中的任务时直接返回
+     *
+     * @return 初始化是否已完成
+     */
+    public boolean await(String sessionId) {
+        Ticket ticket = tickets.get(sessionId);
+        if (ticket == null) {
+            return true;
+        }
+        promote(sessionId);
+        try {
+            ticket.done.get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            logger.warn("等待会话初始化超时 - SessionId: {}, 排队: {}", sessionId, queued(true) + queued(false));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    /**
+     * 连接关闭时移除尚未执行的任务
+     */
+    public void cancel(String sessionId) {
+        Ticket ticket = tickets.remove(sessionId);
+        if (ticket != null) {
+            cancel(ticket);
+        }
+    }
+
+    private void cancel(Ticket ticket) {
+        synchronized (lock) {
+            if (!urgent.remove(ticket)) {
+                normal.remove(ticket);
+            }
+        }
+        ticket.done.complete(null);
+    }
+
+    private void dispatch() {
+        while (true) {
+            Ticket ticket;
+            synchronized (lock) {
+                if (active >= maxConcurrent) {
+                    return;
+                }
+                ticket = urgent.pollFirst();
+                if (ticket == null) {
+                    ticket = normal.pollFirst();
+                }
+                if (ticket == null) {
+                    return;
+                }
+                active++;
+            }
+            Ticket admitted = ticket;
+            Thread.ofVirtual().name("admission-" + admitted.sessionId).start(() -> run(admitted));
+        }
+    }
+
+    private void run(Ticket ticket) {
+        long start = System.nanoTime();
+        waitTimer.record(start - ticket.createNanos, TimeUnit.NANOSECONDS);
+        try {
+            ticket.task.run();
+            (ticket.urgent ? urgentReadyTimer : normalReadyTimer)
+                    .record(System.nanoTime() - ticket.createNanos, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            logger.error("会话初始化失败 - SessionId: {}", ticket.sessionId, e);
+        } finally {
+            tickets.remove(ticket.sessionId, ticket);
+            ticket.done.complete(null);
+            synchronized (lock) {
+                active--;
+            }
+            dispatch();
+        }
+    }
+
+    private int queued(boolean priority) {
+        synchronized (lock) {
+            return priority ? urgent.size() : normal.size();
+        }
+    }
+
+    private int active() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    private static final class Ticket {
+        final String sessionId;
+        final Runnable task;
+        final long createNanos = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile boolean urgent;
+
+        Ticket(String sessionId, Runnable task) {
+            this.sessionId = sessionId;
+            this.task = task;
+        }
+    }
+}
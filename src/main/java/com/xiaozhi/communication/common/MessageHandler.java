@@ -5,7 +5,6 @@ import com.xiaozhi.communication.server.websocket.WebSocketSession;
 import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
 import com.xiaozhi.dialogue.llm.memory.ConversationFactory;
-import com.xiaozhi.dialogue.llm.providers.OpenAiLlmService;
 import com.xiaozhi.dialogue.llm.tool.ToolsGlobalRegistry;
 import com.xiaozhi.dialogue.llm.tool.ToolsSessionHolder;
 import com.xiaozhi.dialogue.service.AudioService;
@@ -16,12 +15,17 @@ import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysModelCapability;
 import com.xiaozhi.entity.SysRole;
 import com.xiaozhi.enums.ListenState;
 import com.xiaozhi.event.ChatAbortEvent;
 import com.xiaozhi.service.SysConfigService;
 import com.xiaozhi.service.SysDeviceService;
+import com.xiaozhi.service.SysModelCapabilityService;
 import com.xiaozhi.service.SysRoleService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +42,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class MessageHandler {
@@ -58,6 +63,9 @@ public class MessageHandler {
     @Resource
     private SysConfigService configService;
 
+    @Resource
+    private SysModelCapabilityService capabilityService;
+
     @Resource
     private DialogueService dialogueService;
 
@@ -85,9 +93,24 @@ public class MessageHandler {
     @Resource
     private ApplicationContext applicationContext;
 
+    @Resource
+    private ConnectionAdmission admission;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     // 用于存储设备ID和验证码生成状态的映射
     private final Map<String, Boolean> captchaGenerationInProgress = new ConcurrentHashMap<>();
 
+    private Timer warmUpTimer;
+
+    @PostConstruct
+    public void init() {
+        warmUpTimer = Timer.builder("xiaozhi.session.warmup")
+                .description("首次发送音频后预热STT、TTS和大模型的耗时")
+                .register(meterRegistry);
+    }
+
     /**
      * 处理连接建立事件.
      *
@@ -95,16 +118,55 @@ public class MessageHandler {
      * @param deviceIdAuth
      */
     public void afterConnection(ChatSession chatSession, String deviceIdAuth) {
-        String deviceId = deviceIdAuth;
         String sessionId = chatSession.getSessionId();
         // 注册会话
         sessionManager.registerSession(sessionId, chatSession);
+        // 设备查询、历史对话加载等初始化工作排队执行，重连高峰时限制并发，先发消息的设备优先
+        admission.submit(sessionId, () -> bindDevice(chatSession, deviceIdAuth));
+    }
 
-        logger.info("开始查询设备信息 - DeviceId: {}", deviceId);
-        SysDevice device = Optional.ofNullable(deviceService.selectDeviceById(deviceId)).orElse(new SysDevice());
-        device.setDeviceId(deviceId);
-        device.setSessionId(sessionId);
-        sessionManager.registerDevice(sessionId, device);
+    /**
+     * 等待会话初始化完成，收到设备消息时调用，排队中的会话会被提前
+     *
+     * @return 初始化是否已完成
+     */
+    public boolean awaitReady(String sessionId) {
+        return admission.await(sessionId);
+    }
+
+    /**
+     * 初始化完成前收到音频时提高优先级，音频帧不等待直接丢弃
+     */
+    public void promote(String sessionId) {
+        admission.promote(sessionId);
+    }
+
+    /**
+     * 查询设备信息并初始化会话
+     */
+    private void bindDevice(ChatSession chatSession, String deviceId) {
+        String sessionId = chatSession.getSessionId();
+        if (!chatSession.isOpen()) {
+            return;
+        }
+        try {
+            logger.info("开始查询设备信息 - DeviceId: {}", deviceId);
+            SysDevice device = Optional.ofNullable(deviceService.selectDeviceById(deviceId)).orElse(new SysDevice());
+            device.setDeviceId(deviceId);
+            device.setSessionId(sessionId);
+            sessionManager.registerDevice(sessionId, device);
+            // 如果已绑定，则初始化其他内容
+            if (!ObjectUtils.isEmpty(device) && device.getRoleId() != null) {
+                initializeBoundDevice(chatSession, device);
+            }
+        } catch (Exception e) {
+            logger.error("设备初始化失败 - DeviceId: " + deviceId, e);
+            try {
+                sessionManager.closeSession(sessionId);
+            } catch (Exception ex) {
+                logger.error("关闭WebSocket连接失败", ex);
+            }
+        }
         // 如果设备未绑定，尝试自动绑定到默认智能体
 //        if (device.getRoleId() == null) {
 //            try {
@@ -127,10 +189,6 @@ public class MessageHandler {
 //                logger.error("设备自动绑定到默认智能体失败 - DeviceId: {}", deviceId, e);
 //            }
 //        }
-        // 如果已绑定，则初始化其他内容
-        if (!ObjectUtils.isEmpty(device) && device.getRoleId() != null) {
-            initializeBoundDevice(chatSession, device);
-        }
     }
 
     /**
@@ -140,10 +198,8 @@ public class MessageHandler {
      * @param device 设备信息
      */
     private void initializeBoundDevice(ChatSession chatSession, SysDevice device) {
-        String deviceId = device.getDeviceId();
         String sessionId = chatSession.getSessionId();
-        
-        //这里需要放在虚拟线程外
+
         ToolsSessionHolder toolsSessionHolder = new ToolsSessionHolder(chatSession.getSessionId(),
                 device, toolsGlobalRegistry);
         chatSession.setFunctionSessionHolder(toolsSessionHolder);
@@ -153,8 +209,28 @@ public class MessageHandler {
                 initConversation(device, role, sessionId);
         chatSession.setConversation(conversation);
 
-        //以上同步处理结束后，再启动虚拟线程进行设备初始化，确保chatSession中已设置的sysDevice信息
+        // STT、TTS和大模型的初始化推迟到设备第一次发送音频时
+        // 更新设备状态
+        deviceService.update(new SysDevice()
+                .setDeviceId(device.getDeviceId())
+                .setState(chatSession instanceof WebSocketSession ? SysDevice.DEVICE_STATE_ONLINE : SysDevice.DEVICE_STATE_STANDBY)
+                .setLastLogin(new Date().toString()));
+    }
+
+    /**
+     * 预热STT、TTS和大模型，在设备第一次发送音频时执行
+     * 重连高峰时大部分设备只是保持连接，不需要为它们提前创建服务和探测模型能力
+     *
+     * @param chatSession 聊天会话
+     */
+    private void warmUp(ChatSession chatSession) {
+        SysRole role = chatSession.getPipelineContext().getRole();
+        if (role == null || chatSession.getAttributes().putIfAbsent(ChatSession.ATTR_WARM_UP, Boolean.TRUE) != null) {
+            return;
+        }
+        String sessionId = chatSession.getSessionId();
         Thread.startVirtualThread(() -> {
+            long start = System.nanoTime();
             try {
                 if (role.getSttId() != null) {
                     SysConfig sttConfig = configService.selectConfigById(role.getSttId());
@@ -169,34 +245,17 @@ public class MessageHandler {
                     }
                 }
                 if (role.getModelId() != null) {
-                    ChatModel chatModel = chatModelFactory.takeChatModel(chatSession);// 提前初始化，加速后续使用
+                    ChatModel chatModel = chatModelFactory.takeChatModel(role);// 提前初始化，加速后续使用
                     if(chatModel instanceof OpenAiChatModel){
-                        Thread.startVirtualThread(()->{
-                            //如果是openApi类型的ai，异步校验当前模型是否支持function call
-                            // 根据配置ID查询配置
-                            SysConfig config = configService.selectConfigById(role.getModelId());
-                            String model = config.getConfigName();
-                            String endpoint = config.getApiUrl();
-                            String apiKey = config.getApiKey();
-                            OpenAiLlmService openAiLlmService = new OpenAiLlmService(endpoint, apiKey, model);
-                            chatSession.setSupportFunctionCall(openAiLlmService.testFunctionCall());
-                        });
+                        //如果是openApi类型的ai，从模型能力缓存读取是否支持function call，同一模型只探测一次
+                        SysConfig config = configService.selectConfigById(role.getModelId());
+                        SysModelCapability capability = capabilityService.get(config);
+                        chatSession.setSupportFunctionCall(Boolean.TRUE.equals(capability.getFunctionCall()));
                     }
                 }
-
-                // 更新设备状态
-                deviceService.update(new SysDevice()
-                        .setDeviceId(device.getDeviceId())
-                        .setState(chatSession instanceof WebSocketSession ? SysDevice.DEVICE_STATE_ONLINE : SysDevice.DEVICE_STATE_STANDBY)
-                        .setLastLogin(new Date().toString()));
-
+                warmUpTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             } catch (Exception e) {
-                logger.error("设备初始化失败 - DeviceId: " + deviceId, e);
-                try {
-                    sessionManager.closeSession(sessionId);
-                } catch (Exception ex) {
-                    logger.error("关闭WebSocket连接失败", ex);
-                }
+                logger.error("会话预热失败 - SessionId: {}", sessionId, e);
             }
         });
     }
@@ -207,6 +266,7 @@ public class MessageHandler {
      * @param sessionId
      */
     public void afterConnectionClosed(String sessionId) {
+        admission.cancel(sessionId);
         ChatSession chatSession = sessionManager.getSession(sessionId);
         if (chatSession == null || !chatSession.isOpen()) {
             return;
@@ -248,6 +308,9 @@ public class MessageHandler {
         if ((chatSession == null || !chatSession.isOpen()) && !vadService.isSessionInitialized(sessionId)) {
             return;
         }
+        if (chatSession != null) {
+            warmUp(chatSession);
+        }
         // 委托给DialogueService处理音频数据
         dialogueService.processAudioData(chatSession, opusData);
 
@@ -501,6 +564,9 @@ public class MessageHandler {
 
     public void handleMessage(Message msg, String sessionId) {
         var chatSession = sessionManager.getSession(sessionId);
+        if (chatSession != null) {
+            warmUp(chatSession);
+        }
         switch (msg) {
             case ListenMessage m -> handleListenMessage(chatSession, m);
             case IotMessage m -> handleIotMessage(chatSession, m);
@@ -0,0 +1,111 @@
+package com.xiaozhi.communication.common;
+
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysRole;
+
+/**
+ * 会话的音频处理管线上下文，设备绑定时构建一次，角色或配置变更时整体替换。
+ * 对象不可变，音频帧处理直接读取，不再逐帧查询角色和配置缓存。
+ */
+public final class PipelineContext {
+
+    // VAD默认参数，角色未配置时使用
+    public static final float DEFAULT_SPEECH_THRESHOLD = 0.4f;
+    public static final float DEFAULT_SILENCE_THRESHOLD = 0.3f;
+    public static final float DEFAULT_ENERGY_THRESHOLD = 0.001f;
+    public static final int DEFAULT_SILENCE_TIMEOUT_MS = 800;
+
+    /**
+     * 未绑定角色时的上下文
+     */
+    public static final PipelineContext UNBOUND = new PipelineContext(null, null, null);
+
+    private final SysRole role;
+    private final SysConfig sttConfig;
+    private final SysConfig ttsConfig;
+    private final float speechThreshold;
+    private final float silenceThreshold;
+    private final float energyThreshold;
+    private final int silenceTimeoutMs;
+    private final boolean speculativeStt;
+
+    public PipelineContext(SysRole role, SysConfig sttConfig, SysConfig ttsConfig) {
+        this.role = role;
+        this.sttConfig = sttConfig;
+        this.ttsConfig = ttsConfig;
+        if (role != null) {
+            this.speechThreshold = role.getVadSpeechTh() != null ? role.getVadSpeechTh() : DEFAULT_SPEECH_THRESHOLD;
+            this.silenceThreshold = role.getVadSilenceTh() != null ? role.getVadSilenceTh() : DEFAULT_SILENCE_THRESHOLD;
+            this.energyThreshold = role.getVadEnergyTh() != null ? role.getVadEnergyTh() : DEFAULT_ENERGY_THRESHOLD;
+            this.silenceTimeoutMs = role.getVadSilenceMs() != null ? role.getVadSilenceMs() : DEFAULT_SILENCE_TIMEOUT_MS;
+            this.speculativeStt = "1".equals(role.getSpeculativeStt());
+        } else {
+            this.speechThreshold = DEFAULT_SPEECH_THRESHOLD;
+            this.silenceThreshold = DEFAULT_SILENCE_THRESHOLD;
+            this.energyThreshold = DEFAULT_ENERGY_THRESHOLD;
+            this.silenceTimeoutMs = DEFAULT_SILENCE_TIMEOUT_MS;
+            this.speculativeStt = false;
+        }
+    }
+
+    /**
+     * 当前角色，未绑定时为null
+     */
+    public SysRole getRole() {
+        return role;
+    }
+
+    public Integer getRoleId() {
+        return role != null ? role.getRoleId() : null;
+    }
+
+    /**
+     * STT配置，为null时使用默认Vosk
+     */
+    public SysConfig getSttConfig() {
+        return sttConfig;
+    }
+
+    /**
+     * TTS配置，为null时使用默认Edge
+     */
+    public SysConfig getTtsConfig() {
+        return ttsConfig;
+    }
+
+    public float getSpeechThreshold() {
+        return speechThreshold;
+    }
+
+    public float getSilenceThreshold() {
+        return silenceThreshold;
+    }
+
+    public float getEnergyThreshold() {
+        return energyThreshold;
+    }
+
+    public int getSilenceTimeoutMs() {
+        return silenceTimeoutMs;
+    }
+
+    /**
+     * 是否在静音开始时用中间识别结果提前请求模型
+     */
+    public boolean isSpeculativeStt() {
+        return speculativeStt;
+    }
+
+    public boolean isBound() {
+        return role != null;
+    }
+
+    /**
+     * 是否引用了指定的STT或TTS配置
+     */
+    public boolean usesConfig(Integer configId) {
+        return configId != null
+                && ((sttConfig != null && configId.equals(sttConfig.getConfigId()))
+                        || (ttsConfig != null && configId.equals(ttsConfig.getConfigId())));
+    }
+}
@@ -10,6 +10,7 @@ import com.xiaozhi.enums.ListenMode;
 import com.xiaozhi.event.ChatSessionCloseEvent;
 import com.xiaozhi.service.SysDeviceService;
 import com.xiaozhi.event.ChatSessionOpenEvent;
+import com.xiaozhi.event.PipelineContextRefreshEvent;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
@@ -23,6 +24,8 @@ import reactor.core.publisher.Sinks;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -231,6 +234,8 @@ public class SessionManager {
         ChatSession chatSession = sessions.get(sessionId);
         if(chatSession != null){
             chatSession.setSysDevice(device);
+            // 同步构建管线上下文，之后的音频帧直接使用
+            applicationContext.publishEvent(new PipelineContextRefreshEvent(chatSession));
             updateLastActivity(sessionId); // 更新活动时间
             logger.debug("设备配置已注册 - SessionId: {}, DeviceId: {}", sessionId, device.getDeviceId());
         }
@@ -309,6 +314,15 @@ public class SessionManager {
     }
 
 
+    /**
+     * 获取所有会话
+     *
+     * @return 只读的会话集合
+     */
+    public Collection<ChatSession> getAllSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
     /**
      * 获取设备配置
      *
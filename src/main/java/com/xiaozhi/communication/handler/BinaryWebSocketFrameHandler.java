@@ -3,12 +3,11 @@ package com.xiaozhi.communication.handler;
 import cn.hutool.extra.spring.SpringUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaozhi.communication.common.PipelineContext;
 import com.xiaozhi.dialogue.service.AudioService;
 import com.xiaozhi.dialogue.service.MessageService;
 import com.xiaozhi.dialogue.service.VadService;
-import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
-import com.xiaozhi.service.SysConfigService;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -20,6 +19,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import static com.xiaozhi.communication.handler.WebSocketHandshakeCompleter.PIPELINE_CONTEXT;
 import static com.xiaozhi.communication.handler.WebSocketHandshakeCompleter.SESSION_ID;
 
 
@@ -38,12 +38,23 @@ public class BinaryWebSocketFrameHandler extends SimpleChannelInboundHandler<Bin
 
   private final MessageService messageService = SpringUtil.getBean(MessageService.class);
 
-  private final SysConfigService configService = SpringUtil.getBean(SysConfigService.class);
-
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  // 处理器每个连接一个实例，池化直接内存中的帧复制到这里，避免每帧分配新数组
+  private byte[] scratch = new byte[1024];
+
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, BinaryWebSocketFrame frame) {
+    // 在业务线程中执行，记录每帧的处理耗时
+    long start = System.nanoTime();
+    try {
+      handleFrame(ctx, frame);
+    } finally {
+      HandlerMetrics.record("binary", start);
+    }
+  }
+
+  private void handleFrame(ChannelHandlerContext ctx, BinaryWebSocketFrame frame) {
     String sessionId = ctx.channel().attr(SESSION_ID).get();
 
     // 检查会话是否处于监听状态，如果不是则忽略音频数据
@@ -57,28 +68,34 @@ public class BinaryWebSocketFrameHandler extends SimpleChannelInboundHandler<Bin
       return;
     }
 
-    // 获取设备配置
-    SysConfig sttConfig = null;
-    SysConfig ttsConfig = null;
-
-    if (device.getSttId() != null) {
-      sttConfig = configService.selectConfigById(device.getSttId());
+    // 设备配置在初始化时已解析到管线上下文中，不再逐帧查询
+    PipelineContext context = ctx.channel().attr(PIPELINE_CONTEXT).get();
+    if (context == null) {
+      context = PipelineContext.UNBOUND;
     }
 
-    if (device.getTtsId() != null) {
-      ttsConfig = configService.selectConfigById(device.getTtsId());
-    }
-
-    ByteBuf content = frame.content().retain();  // 显式 retain
+    // 帧由SimpleChannelInboundHandler在返回后释放，处理过程中不需要额外retain
+    ByteBuf content = frame.content();
     try {
-      byte[] opusData = new byte[content.readableBytes()];
-      content.readBytes(opusData);
+      int length = content.readableBytes();
+      byte[] opusData;
+      int offset;
+      if (content.hasArray()) {
+        // 堆内存直接使用底层数组
+        opusData = content.array();
+        offset = content.arrayOffset() + content.readerIndex();
+      } else {
+        if (scratch.length < length) {
+          scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        content.getBytes(content.readerIndex(), scratch, 0, length);
+        opusData = scratch;
+        offset = 0;
+      }
       // 处理音频数据
-      processAudioData(ctx, sessionId, device, sttConfig, ttsConfig, opusData);
+      processAudioData(ctx, sessionId, device, context, opusData, offset, length);
     } catch (Exception e) {
       logger.error("处理二进制消息失败", e);
-    }finally {
-      content.release();  // 确保释放
     }
   }
 
@@ -86,8 +103,8 @@ public class BinaryWebSocketFrameHandler extends SimpleChannelInboundHandler<Bin
    * 处理音频数据
    */
   private void processAudioData(ChannelHandlerContext ctx, String sessionId, SysDevice device,
-      SysConfig sttConfig, SysConfig ttsConfig, byte[] opusData) throws Exception {
-    VadService.VadResult result = vadService.processAudio(sessionId, opusData);
+      PipelineContext context, byte[] opusData, int offset, int length) throws Exception {
+    VadService.VadResult result = vadService.processAudio(sessionId, context, opusData, offset, length);
 
     if (result != null) {
       logger.info("检测到语音结束 - SessionId: {}, 音频大小: {} 字节", sessionId, result.getProcessedData().length);
@@ -0,0 +1,38 @@
+package com.xiaozhi.communication.handler;
+
+import cn.hutool.extra.spring.SpringUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty业务处理器耗时统计
+ * 按处理器和执行线程记录，每个业务执行器固定一个线程，线程名即对应的执行器
+ */
+final class HandlerMetrics {
+
+  private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+  private HandlerMetrics() {
+  }
+
+  /**
+   * 记录一次处理耗时
+   *
+   * @param handler    处理器名称
+   * @param startNanos 开始处理时的System.nanoTime()
+   */
+  static void record(String handler, long startNanos) {
+    String executor = Thread.currentThread().getName();
+    TIMERS.computeIfAbsent(handler + '|' + executor, k -> Timer.builder("xiaozhi.netty.handler.latency")
+            .tag("handler", handler)
+            .tag("executor", executor)
+            .description("Netty业务处理器处理一帧的耗时")
+            .publishPercentiles(0.5, 0.99)
+            .register(SpringUtil.getBean(MeterRegistry.class)))
+        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.xiaozhi.dialogue.service.AudioService;
 import com.xiaozhi.dialogue.service.MessageService;
+import com.xiaozhi.dialogue.service.PipelineContextService;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
 import com.xiaozhi.service.SysDeviceService;
@@ -43,6 +44,8 @@ public class TextWebSocketFrameHandler extends SimpleChannelInboundHandler<TextW
 
   private final MessageService messageService = SpringUtil.getBean(MessageService.class);
 
+  private final PipelineContextService pipelineContextService = SpringUtil.getBean(PipelineContextService.class);
+
     private final TextToSpeechService textToSpeechService = SpringUtil.getBean(TextToSpeechService.class);
 
   private final ObjectMapper objectMapper = new ObjectMapper();
@@ -79,6 +82,16 @@ public class TextWebSocketFrameHandler extends SimpleChannelInboundHandler<TextW
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
+    // 在业务线程中执行，记录每帧的处理耗时
+    long start = System.nanoTime();
+    try {
+      handleFrame(ctx, frame);
+    } finally {
+      HandlerMetrics.record("text", start);
+    }
+  }
+
+  private void handleFrame(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
     try {
       // 初始化设备信息
       initializeDeviceSession(ctx);
@@ -130,6 +143,8 @@ public class TextWebSocketFrameHandler extends SimpleChannelInboundHandler<TextW
     }
     DEVICES_CONFIG.put(sessionId, device);
     LISTENING_STATE.put(sessionId, false);
+    // 角色和STT/TTS配置只在这里查询一次，音频帧处理直接读取
+    ctx.channel().attr(WebSocketHandshakeCompleter.PIPELINE_CONTEXT).set(pipelineContextService.build(device));
 
     logger.info("WebSocket连接初始化 - SessionId: {}, DeviceId: {}", sessionId, deviceId);
   }
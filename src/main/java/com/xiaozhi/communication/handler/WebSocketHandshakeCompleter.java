@@ -1,5 +1,6 @@
 package com.xiaozhi.communication.handler;
 
+import com.xiaozhi.communication.common.PipelineContext;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -29,6 +30,8 @@ public class WebSocketHandshakeCompleter extends ChannelInboundHandlerAdapter {
     // 如果你采纳了之前的建议，把会话状态也放在这里
     public static final AttributeKey<Object> DEVICE_CONFIG = AttributeKey.valueOf("deviceConfig");
     public static final AttributeKey<Boolean> LISTENING_STATE = AttributeKey.valueOf("listeningState");
+    // 设备初始化时构建的管线上下文，音频帧处理直接读取
+    public static final AttributeKey<PipelineContext> PIPELINE_CONTEXT = AttributeKey.valueOf("pipelineContext");
 
 
     @Override
@@ -1,9 +1,16 @@
 package com.xiaozhi.communication.server.websocket;
 
 import com.xiaozhi.communication.handler.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
@@ -15,7 +22,11 @@ import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
@@ -26,6 +37,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
 
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -52,6 +64,32 @@ public class NettyWebSocketConfig {
     @Value("${netty.websocket.idleTimeout:300}")
     private int idleTimeout;
 
+    // Linux下优先使用epoll原生传输，减少NIO选择器的系统调用和对象分配
+    @Value("${netty.websocket.nativeTransport:true}")
+    private boolean nativeTransport;
+
+    // 写缓冲水位线：待发送数据超过高水位时通道变为不可写，降到低水位以下恢复可写
+    @Value("${netty.websocket.writeBufferLowWaterMark:32768}")
+    private int writeBufferLowWaterMark;
+
+    @Value("${netty.websocket.writeBufferHighWaterMark:65536}")
+    private int writeBufferHighWaterMark;
+
+    // 业务处理器执行线程数，每个连接固定分配到其中一个线程，同一连接的帧按顺序处理
+    @Value("${netty.websocket.businessThreads:16}")
+    private int businessThreads;
+
+    // 业务执行线程使用虚拟线程，数据库查询等阻塞操作不占用平台线程
+    @Value("${netty.websocket.businessVirtualThreads:false}")
+    private boolean businessVirtualThreads;
+
+    // 每个业务执行线程最多积压的任务数，超出后新到的帧被拒绝
+    @Value("${netty.websocket.businessMaxPendingTasks:2147483647}")
+    private int businessMaxPendingTasks;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Autowired
     private TextWebSocketFrameHandler textWebSocketFrameHandler;
 
@@ -78,17 +116,53 @@ public class NettyWebSocketConfig {
     public void start() throws Exception {
         logger.info("启动Netty WebSocket服务器，端口：{}，路径：{}", port, websocketPath);
 
-        bossGroup = new NioEventLoopGroup(bossThreads);
-        workerGroup = new NioEventLoopGroup(workerThreads);
-        businessGroup = new DefaultEventExecutorGroup(16);
+        boolean epoll = nativeTransport && Epoll.isAvailable();
+        Class<? extends ServerSocketChannel> channelClass;
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(bossThreads);
+            workerGroup = new EpollEventLoopGroup(workerThreads);
+            channelClass = EpollServerSocketChannel.class;
+        } else {
+            bossGroup = new NioEventLoopGroup(bossThreads);
+            workerGroup = new NioEventLoopGroup(workerThreads);
+            channelClass = NioServerSocketChannel.class;
+        }
+        // JSON解析、数据库查询和VAD推理放到业务线程，不阻塞共享同一I/O线程的其他连接
+        ThreadFactory businessThreadFactory = businessVirtualThreads
+                ? Thread.ofVirtual().name("netty-business-", 0).factory()
+                : new DefaultThreadFactory("netty-business", true);
+        businessGroup = new DefaultEventExecutorGroup(businessThreads, businessThreadFactory,
+                businessMaxPendingTasks, RejectedExecutionHandlers.reject());
+        registerPendingGauges("worker", workerGroup);
+        registerPendingGauges("business", businessGroup);
+        logger.info("Netty传输方式：{}，工作线程数：{}，业务线程数：{}（{}）", epoll ? "epoll" : "nio", workerThreads,
+                businessThreads, businessVirtualThreads ? "虚拟线程" : "平台线程");
+
+        // 池化直接内存，读写缓冲区在线程本地缓存中复用，不随每个音频帧分配
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        Gauge.builder("xiaozhi.netty.allocator.memory", allocator, a -> a.metric().usedDirectMemory())
+                .tag("type", "direct")
+                .baseUnit("bytes")
+                .description("Netty池化分配器占用的内存")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.netty.allocator.memory", allocator, a -> a.metric().usedHeapMemory())
+                .tag("type", "heap")
+                .baseUnit("bytes")
+                .description("Netty池化分配器占用的内存")
+                .register(meterRegistry);
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
             bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(channelClass)
                     .option(ChannelOption.SO_BACKLOG, 128)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .option(ChannelOption.ALLOCATOR, allocator)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
                     .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.ALLOCATOR, allocator)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                            new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark))
                     .handler(new LoggingHandler(LogLevel.INFO))
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
@@ -118,14 +192,15 @@ public class NettyWebSocketConfig {
                                             idleTimeout, TimeUnit.SECONDS))
                                     // 心跳处理
                                     .addLast(new WebSocketHeartbeatHandler())
+                                    // 以下处理器在业务线程中执行
                                     // WebSocket文本帧处理
-                                    .addLast(new TextWebSocketFrameHandler())
+                                    .addLast(businessGroup, new TextWebSocketFrameHandler())
                                     // WebSocket控制帧处理
-                                    .addLast(new WebSocketControlFrameHandler())
+                                    .addLast(businessGroup, new WebSocketControlFrameHandler())
                                     // WebSocket二进制帧处理
-                                    .addLast(new BinaryWebSocketFrameHandler())
+                                    .addLast(businessGroup, new BinaryWebSocketFrameHandler())
                                     // 异常处理（放在最后捕获所有未处理的异常）
-                                    .addLast(new WebSocketExceptionHandler());
+                                    .addLast(businessGroup, new WebSocketExceptionHandler());
                         }
                     });
 //                    .childHandler(new ChannelInitializer<SocketChannel>() {
@@ -179,5 +254,25 @@ public class NettyWebSocketConfig {
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
+        if (businessGroup != null) {
+            businessGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 注册每个执行线程的待处理任务数
+     */
+    private void registerPendingGauges(String type, EventExecutorGroup group) {
+        int index = 0;
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor singleThread) {
+                Gauge.builder("xiaozhi.netty.executor.pending", singleThread, SingleThreadEventExecutor::pendingTasks)
+                        .tag("type", type)
+                        .tag("executor", type + "-" + index)
+                        .description("Netty执行线程队列中待处理的任务数")
+                        .register(meterRegistry);
+            }
+            index++;
+        }
     }
 }
@@ -10,6 +10,7 @@ import com.xiaozhi.utils.JsonUtil;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -20,6 +21,7 @@ import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 import org.springframework.web.socket.WebSocketSession;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -43,6 +45,13 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
     @Resource
     private ApplicationContext applicationContext;
 
+    // 下行发送队列水位线（字节），积压超过高水位时暂停发送音频，降到低水位以下恢复
+    @Value("${websocket.outbound.low-water-mark:2048}")
+    private int outboundLowWaterMark;
+
+    @Value("${websocket.outbound.high-water-mark:8192}")
+    private int outboundHighWaterMark;
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         Map<String, String> headers = getHeadersFromSession(session);
@@ -75,7 +84,8 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
 //        }else{
 
         com.xiaozhi.communication.server.websocket.WebSocketSession xiaoZhiSession
-                = new com.xiaozhi.communication.server.websocket.WebSocketSession(session);
+                = new com.xiaozhi.communication.server.websocket.WebSocketSession(session, outboundLowWaterMark,
+                outboundHighWaterMark);
         messageHandler.afterConnection(xiaoZhiSession, deviceIdAuth);
         applicationContext.publishEvent(new ChatAudioOpenEvent(xiaoZhiSession));
         logger.info("WebSocket连接建立成功 - SessionId: {}, DeviceId: {}", session.getId(), deviceIdAuth);
@@ -84,6 +94,8 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
         String sessionId = session.getId();
+        // 重连高峰时会话可能还在排队初始化，先提高优先级并等待完成，避免把已绑定的设备当作未绑定处理
+        messageHandler.awaitReady(sessionId);
         SysDevice device = sessionManager.getDeviceConfig(sessionId);
         String payload = message.getPayload();
 
@@ -119,9 +131,23 @@ public class WebSocketHandler extends AbstractWebSocketHandler {
         String sessionId = session.getId();
         SysDevice device = sessionManager.getDeviceConfig(sessionId);
         if (device == null) {
+            messageHandler.promote(sessionId);
             return;
         }
-        messageHandler.handleBinaryMessage(sessionId, message.getPayload().array());
+        messageHandler.handleBinaryMessage(sessionId, toBytes(message.getPayload()));
+    }
+
+    /**
+     * 容器交给的缓冲区正好包裹整个数组时直接使用，否则只复制有效部分（直接内存或切片）
+     */
+    private static byte[] toBytes(ByteBuffer payload) {
+        if (payload.hasArray() && payload.arrayOffset() == 0 && payload.position() == 0
+                && payload.remaining() == payload.array().length) {
+            return payload.array();
+        }
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+        return data;
     }
 
     @Override
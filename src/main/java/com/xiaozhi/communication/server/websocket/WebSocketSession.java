@@ -5,8 +5,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class WebSocketSession extends ChatSession {
     private static final Logger logger = LoggerFactory.getLogger(WebSocketSession.class);
@@ -15,6 +21,18 @@ public class WebSocketSession extends ChatSession {
      */
     protected org.springframework.web.socket.WebSocketSession session;
 
+    /**
+     * 下行发送队列
+     * 消息先入队再由拿到发送锁的线程依次发出，网络慢时调用方不会阻塞在发送上，
+     * 积压的字节数决定连接是否可写，节拍器据此暂停音频。
+     */
+    private final Deque<WebSocketMessage<?>> outbound = new ArrayDeque<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong outboundBytes = new AtomicLong();
+    private volatile boolean writable = true;
+    private int lowWaterMark = Integer.MAX_VALUE;
+    private int highWaterMark = Integer.MAX_VALUE;
+
     public WebSocketSession(String sessionId) {
         super(sessionId);
     }
@@ -24,6 +42,17 @@ public class WebSocketSession extends ChatSession {
         this.session = session;
     }
 
+    /**
+     * @param lowWaterMark  积压降到该字节数以下恢复可写
+     * @param highWaterMark 积压超过该字节数变为不可写
+     */
+    public WebSocketSession(org.springframework.web.socket.WebSocketSession session, int lowWaterMark,
+                            int highWaterMark) {
+        this(session);
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = Math.max(highWaterMark, lowWaterMark);
+    }
+
     @Override
     public String getSessionId() {
         return session.getId();
@@ -56,19 +85,105 @@ public class WebSocketSession extends ChatSession {
 
     @Override
     public void sendTextMessage(String message) {
-        try {
-            session.sendMessage(new TextMessage(message));
-        } catch (IOException e) {
-            logger.error("发送Text消息失败, message: {}", message, e);
-        }
+        send(new TextMessage(message));
     }
 
     @Override
     public void sendBinaryMessage(byte[] message) {
-        try {
-            session.sendMessage(new BinaryMessage(message));
-        } catch (IOException e) {
-            logger.error("发送Binary消息失败", e);
+        send(new BinaryMessage(message));
+    }
+
+    @Override
+    public boolean isWritable() {
+        return writable;
+    }
+
+    @Override
+    public long getOutboundBytes() {
+        return outboundBytes.get();
+    }
+
+    @Override
+    public int shedOutboundAudio() {
+        int shed = 0;
+        long bytes = 0;
+        synchronized (outbound) {
+            Iterator<WebSocketMessage<?>> iterator = outbound.iterator();
+            while (iterator.hasNext()) {
+                WebSocketMessage<?> message = iterator.next();
+                if (message instanceof BinaryMessage) {
+                    iterator.remove();
+                    bytes += message.getPayloadLength();
+                    shed++;
+                }
+            }
+        }
+        if (shed > 0) {
+            addOutboundBytes(-bytes);
+        }
+        return shed;
+    }
+
+    private void send(WebSocketMessage<?> message) {
+        synchronized (outbound) {
+            outbound.add(message);
+        }
+        addOutboundBytes(message.getPayloadLength());
+        flush();
+    }
+
+    /**
+     * 由拿到发送锁的线程发出队列中的全部消息，其他线程入队后直接返回
+     */
+    private void flush() {
+        while (hasOutbound() && flushLock.tryLock()) {
+            try {
+                WebSocketMessage<?> message;
+                while ((message = pollOutbound()) != null) {
+                    try {
+                        session.sendMessage(message);
+                    } catch (IOException | IllegalStateException e) {
+                        if (message instanceof TextMessage text) {
+                            logger.error("发送Text消息失败, message: {}", text.getPayload(), e);
+                        } else {
+                            logger.error("发送Binary消息失败", e);
+                        }
+                    } finally {
+                        // 发送完成才从积压中扣除，阻塞中的消息也算在积压里
+                        addOutboundBytes(-message.getPayloadLength());
+                    }
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private boolean hasOutbound() {
+        synchronized (outbound) {
+            return !outbound.isEmpty();
+        }
+    }
+
+    private WebSocketMessage<?> pollOutbound() {
+        synchronized (outbound) {
+            return outbound.poll();
+        }
+    }
+
+    /**
+     * 更新积压字节数并按水位切换可写状态
+     * 计数和判断在同一个队列锁内完成，并发的入队和发送完成不会用过期的积压值覆盖可写状态；
+     * 队列锁只在内存操作时持有，不会像发送锁那样被阻塞中的发送占住
+     */
+    private void addOutboundBytes(long delta) {
+        synchronized (outbound) {
+            long bytes = outboundBytes.addAndGet(delta);
+            if (writable && bytes > highWaterMark) {
+                writable = false;
+            } else if (!writable && bytes <= lowWaterMark) {
+                writable = true;
+            }
         }
     }
 }
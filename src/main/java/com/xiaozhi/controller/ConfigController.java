@@ -6,10 +6,13 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.pagehelper.PageInfo;
 import com.xiaozhi.common.web.ResultMessage;
 import com.xiaozhi.common.web.PageFilter;
+import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
 import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysModelCapability;
 import com.xiaozhi.service.SysConfigService;
+import com.xiaozhi.service.SysModelCapabilityService;
 import com.xiaozhi.utils.CmsUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -49,6 +52,12 @@ public class ConfigController extends BaseController {
     @Resource
     private SttServiceFactory sttServiceFactory;
 
+    @Resource
+    private ChatModelFactory chatModelFactory;
+
+    @Resource
+    private SysModelCapabilityService capabilityService;
+
     /**
      * 配置查询
      * 
@@ -122,6 +131,52 @@ public class ConfigController extends BaseController {
         }
     }
 
+    /**
+     * 查询已探测的模型能力
+     *
+     * @return capabilityList
+     */
+    @GetMapping("/capability")
+    @ResponseBody
+    @Operation(summary = "查询模型能力", description = "返回各模型是否支持Function Call、stream usage及上下文长度")
+    public ResultMessage capability() {
+        try {
+            ResultMessage result = ResultMessage.success();
+            result.put("data", capabilityService.query());
+            return result;
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return ResultMessage.error();
+        }
+    }
+
+    /**
+     * 重新探测模型能力
+     *
+     * @param configId 模型配置ID
+     * @return capability
+     */
+    @PostMapping("/refreshCapability")
+    @ResponseBody
+    @Operation(summary = "重新探测模型能力", description = "立即重新探测配置对应模型的能力并返回结果")
+    public ResultMessage refreshCapability(Integer configId) {
+        try {
+            SysConfig config = configService.selectConfigById(configId);
+            if (config == null || !"llm".equals(config.getConfigType())) {
+                return ResultMessage.error("模型配置不存在");
+            }
+            SysModelCapability capability = capabilityService.refresh(config);
+            // stream usage可能发生变化，重新创建ChatModel
+            chatModelFactory.removeCache(config);
+            ResultMessage result = ResultMessage.success();
+            result.put("data", capability);
+            return result;
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return ResultMessage.error();
+        }
+    }
+
     @PostMapping("/getModels")
     @ResponseBody
     @Operation(summary = "获取模型列表", description = "返回模型列表")
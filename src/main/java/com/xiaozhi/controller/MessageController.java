@@ -12,9 +12,19 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -55,6 +65,69 @@ public class MessageController extends BaseController {
         }
     }
 
+    /**
+     * 游标分页查询对话
+     * 首页不传cursorId，之后传上一页返回的nextCursor，直到hasMore为false
+     *
+     * @param message
+     * @param limit
+     * @return
+     */
+    @GetMapping("/scroll")
+    @ResponseBody
+    @Operation(summary = "游标分页查询对话消息", description = "按时间倒序返回cursorId之前的消息，不统计总数，适合消息量大的设备")
+    public ResultMessage scroll(SysMessage message, @RequestParam(defaultValue = "10") Integer limit) {
+        try {
+            message.setUserId(CmsUtils.getUserId());
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            // 多取一条用于判断是否还有下一页
+            List<SysMessage> messageList = sysMessageService.queryByCursor(message, pageSize + 1);
+            boolean hasMore = messageList.size() > pageSize;
+            if (hasMore) {
+                messageList = messageList.subList(0, pageSize);
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("list", messageList);
+            result.put("hasMore", hasMore);
+            result.put("nextCursor", hasMore ? messageList.get(messageList.size() - 1).getMessageId() : null);
+            return ResultMessage.success(result);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return ResultMessage.error();
+        }
+    }
+
+    /**
+     * 播放消息音频
+     * 支持Range请求，浏览器可以边下边播和拖动进度
+     *
+     * @param messageId
+     * @return
+     */
+    @GetMapping("/audio/{messageId}")
+    @Operation(summary = "获取对话消息音频", description = "返回消息的音频文件，新消息为Ogg/Opus，早期消息为WAV，支持Range分段请求")
+    public ResponseEntity<org.springframework.core.io.Resource> audio(@PathVariable Integer messageId) {
+        SysMessage query = new SysMessage();
+        query.setMessageId(messageId);
+        query.setUserId(CmsUtils.getUserId());
+        List<SysMessage> messages = sysMessageService.query(query, null);
+        if (messages.isEmpty() || !StringUtils.hasText(messages.get(0).getAudioPath())) {
+            return ResponseEntity.notFound().build();
+        }
+        Path path = Path.of(messages.get(0).getAudioPath());
+        if (!Files.isRegularFile(path)) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType mediaType = path.getFileName().toString().endsWith(".ogg")
+                ? MediaType.parseMediaType("audio/ogg")
+                : MediaType.parseMediaType("audio/wav");
+        // 返回Resource时Spring会按Range请求头返回206分段内容
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                .body(new FileSystemResource(path));
+    }
+
     /**
      * 删除聊天记录
      * 
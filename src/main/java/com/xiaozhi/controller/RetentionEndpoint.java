@@ -0,0 +1,39 @@
+package com.xiaozhi.controller;
+
+import com.xiaozhi.service.SysRetentionService;
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 数据保留清理的actuator端点
+ * GET /actuator/retention 查看状态，POST /actuator/retention 立即执行一次（需在management.endpoints.web.exposure.include中开放）
+ *
+ * @author Joey
+ */
+@Component
+@Endpoint(id = "retention")
+public class RetentionEndpoint {
+
+    @Resource
+    private SysRetentionService retentionService;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return retentionService.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> run() {
+        // 在后台执行，已有清理在执行时不重复启动
+        boolean started = !Boolean.TRUE.equals(retentionService.status().get("running"));
+        if (started) {
+            Thread.ofVirtual().name("retention-manual").start(retentionService::runNow);
+        }
+        return Map.of("started", started);
+    }
+}
@@ -0,0 +1,30 @@
+package com.xiaozhi.dao;
+
+import com.xiaozhi.entity.SysModelCapability;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 模型能力 数据层
+ *
+ * @author Joey
+ *
+ */
+public interface ModelCapabilityMapper {
+
+    /**
+     * 查询全部已探测的模型能力
+     */
+    List<SysModelCapability> query();
+
+    /**
+     * 保存探测结果，已存在时覆盖
+     */
+    int upsert(SysModelCapability capability);
+
+    /**
+     * 删除模型能力
+     */
+    int delete(@Param("endpoint") String endpoint, @Param("model") String model);
+}
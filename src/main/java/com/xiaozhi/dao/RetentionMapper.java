@@ -0,0 +1,53 @@
+package com.xiaozhi.dao;
+
+import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.entity.SysRetentionPolicy;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 数据保留 数据层
+ *
+ * @author Joey
+ *
+ */
+public interface RetentionMapper {
+
+    /**
+     * 查询全部用户的保留策略，未配置的字段为空
+     */
+    List<SysRetentionPolicy> queryPolicies();
+
+    /**
+     * 查询用户的设备ID
+     */
+    List<String> selectDeviceIds(@Param("userId") Integer userId);
+
+    /**
+     * 查询需要归档的消息：早于before的消息和已删除的消息，before为空时只查询已删除的消息
+     */
+    List<SysMessage> selectExpired(@Param("userId") Integer userId, @Param("before") Date before,
+                                   @Param("afterId") Integer afterId, @Param("limit") int limit);
+
+    /**
+     * 查询设备已被删除的已删除消息
+     */
+    List<SysMessage> selectOrphaned(@Param("afterId") Integer afterId, @Param("limit") int limit);
+
+    /**
+     * 创建归档表，结构与sys_message相同
+     */
+    void createArchiveTable(@Param("suffix") String suffix);
+
+    /**
+     * 复制消息到归档表
+     */
+    int copyToArchive(@Param("suffix") String suffix, @Param("messageIds") List<Integer> messageIds);
+
+    /**
+     * 从消息表删除已归档的消息
+     */
+    int deleteMessages(@Param("messageIds") List<Integer> messageIds);
+}
@@ -0,0 +1,66 @@
+package com.xiaozhi.dao;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+
+/**
+ * 统计汇总 数据层
+ * 设备、用户、角色的计数保存在汇总表中，列表查询直接关联汇总表，不再逐行COUNT消息表
+ *
+ * @author Joey
+ *
+ */
+public interface StatsMapper {
+
+    /**
+     * 增加设备的有效消息数
+     */
+    int incrementDeviceMessages(@Param("deviceId") String deviceId, @Param("count") int count);
+
+    /**
+     * 增加设备所属用户的消息总数
+     */
+    int incrementUserMessages(@Param("deviceId") String deviceId, @Param("count") int count);
+
+    /**
+     * 增加设备所属用户当天的消息数
+     */
+    int incrementUserDailyMessages(@Param("deviceId") String deviceId, @Param("statDate") Date statDate,
+                                   @Param("count") int count);
+
+    /**
+     * 重新统计设备的有效消息数，deviceId和userId都为空时统计全部设备
+     */
+    int refreshDeviceMessages(@Param("deviceId") String deviceId, @Param("userId") Integer userId);
+
+    /**
+     * 重新统计最近有消息的设备的有效消息数
+     */
+    int refreshActiveDeviceMessages(@Param("since") Date since);
+
+    /**
+     * 重新统计用户的设备数和在线设备数，userId为空时统计全部用户
+     */
+    int refreshUserDevices(@Param("userId") Integer userId);
+
+    /**
+     * 重新统计角色的设备数，roleId为空时统计全部角色
+     */
+    int refreshRoleDevices(@Param("roleId") Integer roleId);
+
+    /**
+     * 按天重新统计用户的消息数，since为空时统计全部历史
+     */
+    int refreshUserDailyMessages(@Param("since") Date since);
+
+    /**
+     * 按每日汇总重新计算用户的消息总数
+     */
+    int refreshUserMessages();
+
+    /**
+     * 用户汇总记录数，为0说明汇总表尚未初始化
+     */
+    int countUserStats();
+}
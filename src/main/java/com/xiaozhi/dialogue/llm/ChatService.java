@@ -4,12 +4,13 @@ import com.xiaozhi.communication.common.ChatSession;
 import com.xiaozhi.dialogue.llm.api.StreamResponseListener;
 import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
 import com.xiaozhi.dialogue.llm.memory.ChatMemory;
+import com.xiaozhi.dialogue.llm.tool.SpeculativeToolCallback;
 import com.xiaozhi.dialogue.llm.tool.XiaoZhiToolCallingManager;
 import com.xiaozhi.dialogue.service.DialogueService;
+import com.xiaozhi.dialogue.tts.TtsLatencyTracker;
 import com.xiaozhi.communication.common.SessionManager;
 import com.xiaozhi.mcp.McpSessionManager;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
-import com.xiaozhi.utils.EmojiUtils;
 import org.springframework.context.ApplicationContext;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
@@ -34,11 +35,14 @@ import reactor.core.publisher.Flux;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import org.springframework.ai.tool.ToolCallback;
@@ -55,30 +59,19 @@ public class ChatService {
 
     public static final String TOOL_CONTEXT_SESSION_KEY = "session";
 
-    // 句子结束标点符号模式（中英文句号、感叹号、问号）
-    private static final Pattern SENTENCE_END_PATTERN = Pattern.compile("[。！？!?]");
-
-    // 逗号、分号等停顿标点
-    private static final Pattern PAUSE_PATTERN = Pattern.compile("[，、；,;]");
-
-    // 冒号和引号等特殊标点
-    private static final Pattern SPECIAL_PATTERN = Pattern.compile("[：:\"]");
-
-    // 换行符
-    private static final Pattern NEWLINE_PATTERN = Pattern.compile("[\n\r]");
-
-    // 数字模式（用于检测小数点是否在数字中）
-    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+\\.\\d+");
-
-    // 表情符号模式
-    private static final Pattern EMOJI_PATTERN = Pattern.compile("\\p{So}|\\p{Sk}|\\p{Sm}");
-
     // 最小句子长度（字符数）
     private static final int MIN_SENTENCE_LENGTH = 5;
 
     // 新句子判断的字符阈值
     private static final int NEW_SENTENCE_TOKEN_THRESHOLD = 8;
 
+    // 推测请求等待确认的最长时间（秒）
+    private static final int SPECULATION_CONFIRM_TIMEOUT_SECONDS = 90;
+
+    // 推测请求确认后保存消息的虚拟线程
+    private static final Executor SPECULATION_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("speculation-persist-", 0).factory());
+
 
     @Resource
     private ChatModelFactory chatModelFactory;
@@ -95,6 +88,9 @@ public class ChatService {
     @Resource
     private ApplicationContext applicationContext;
 
+    @Resource
+    private TtsLatencyTracker ttsLatencyTracker;
+
     /**
      * 从流式响应中提取工具名称
      * 
@@ -107,7 +103,8 @@ public class ChatService {
      * @return 提取到的工具名称，如果没有找到则返回空字符串
      */
     private String getToolName(ChatSession session, String message, boolean useFunctionCall,
-                              List<ChatResponse> chatResponses, String fullResponse, boolean hasToolCalls) {
+                              List<ChatResponse> chatResponses, String fullResponse, boolean hasToolCalls,
+                              Long conversationTimestamp, CompletableFuture<Boolean> confirmation) {
         StringBuilder toolName = new StringBuilder();
         
         // 在流式响应完成后，如果有工具调用但没有获取到工具名称，尝试从完整的响应中提取
@@ -147,7 +144,7 @@ public class ChatService {
                     conversation.add(userMessage, userTimeMillis);
                     List<Message> messages = session.getConversation().messages();
                     ChatOptions chatOptions = ToolCallingChatOptions.builder()
-                            .toolCallbacks(useFunctionCall && session.isSupportFunctionCall() ? session.getToolCallbacks() : new ArrayList<>())
+                            .toolCallbacks(toolCallbacks(session, useFunctionCall, confirmation))
                             .toolContext(TOOL_CONTEXT_SESSION_KEY, session)
                             .build();
                     Prompt prompt = new Prompt(messages, chatOptions);
@@ -204,7 +201,6 @@ public class ChatService {
         // 如果仍然没有获取到工具名称，尝试从XiaoZhiToolCallingManager的记录中获取
         if (toolName.length() == 0 && useFunctionCall) {
             // 获取对话时间戳
-            Long conversationTimestamp = session.getAssistantTimeMillis();
             if (conversationTimestamp == null) {
                 conversationTimestamp = System.currentTimeMillis();
             }
@@ -304,6 +300,17 @@ public class ChatService {
      */
     public Flux<ChatResponse> chatStream(ChatSession session, String message,
             boolean useFunctionCall) {
+        return chatStream(session, message, useFunctionCall, session.getAssistantTimeMillis(), null);
+    }
+
+    /**
+     * 处理用户查询（流式方式）
+     *
+     * @param conversationTimestamp Assistant消息的创建时间戳，推测请求确认前不写入session
+     * @param confirmation          推测请求的确认结果，普通请求传null；推测请求的工具在确认前不会执行
+     */
+    private Flux<ChatResponse> chatStream(ChatSession session, String message, boolean useFunctionCall,
+            Long conversationTimestamp, CompletableFuture<Boolean> confirmation) {
         if(useFunctionCall){
             //处理mcp自定义
             mcpSessionManager.customMcpHandler(session);
@@ -313,13 +320,12 @@ public class ChatService {
         ChatModel chatModel = chatModelFactory.takeChatModel(session);
 
         // 获取对话时间戳
-        Long conversationTimestamp = session.getAssistantTimeMillis();
         if (conversationTimestamp == null) {
             conversationTimestamp = System.currentTimeMillis();
         }
 
         ChatOptions chatOptions = ToolCallingChatOptions.builder()
-                .toolCallbacks(useFunctionCall && session.isSupportFunctionCall() ? session.getToolCallbacks() : new ArrayList<>())
+                .toolCallbacks(toolCallbacks(session, useFunctionCall, confirmation))
                 .toolContext(TOOL_CONTEXT_SESSION_KEY, session)
                 .toolContext("conversationTimestamp", conversationTimestamp)
                 .build();
@@ -335,95 +341,109 @@ public class ChatService {
         return chatModel.stream(prompt);
     }
 
+    /**
+     * 本次请求可用的工具，推测请求的工具包装为确认后才执行
+     */
+    private List<ToolCallback> toolCallbacks(ChatSession session, boolean useFunctionCall,
+            CompletableFuture<Boolean> confirmation) {
+        if (!useFunctionCall || !session.isSupportFunctionCall()) {
+            return new ArrayList<>();
+        }
+        if (confirmation == null) {
+            return session.getToolCallbacks();
+        }
+        return session.getToolCallbacks().stream()
+                .map(callback -> (ToolCallback) new SpeculativeToolCallback(callback, confirmation))
+                .collect(Collectors.toList());
+    }
+
     public void chatStreamBySentence(ChatSession session, String message, boolean useFunctionCall,
             TriConsumer<String, Boolean, Boolean> sentenceHandler) {
-        sentenceHandler.accept("你好啊", true, true);
-//        try {
-//            // 在对话开始时清除工具调用记录，确保每次对话都是干净的
-//            XiaoZhiToolCallingManager.clearRecentToolCall(session.getSessionId());
-//
-//            // 创建流式响应监听器
-//            StreamResponseListener streamListener = new TokenStreamResponseListener(session, message, sentenceHandler, useFunctionCall);
-//            final StringBuilder toolName = new StringBuilder(); // 当前句子的缓冲区
-//            final StringBuilder fullResponse = new StringBuilder(); // 完整响应的缓冲区
-//            final List<ChatResponse> chatResponses = new ArrayList<>(); // 收集所有的ChatResponse
-//            final AtomicBoolean hasToolCalls = new AtomicBoolean(false); // 标记是否有工具调用
-//
-//            AtomicReference<Usage> llmUsage = new AtomicReference<>();
-//            // 调用现有的流式方法
-//            chatStream(session, message, useFunctionCall)
-//                    .subscribe(
-//                            chatResponse -> {
-//                                // 收集所有的ChatResponse用于后续处理
-//                                chatResponses.add(chatResponse);
-//
-//                                String token = chatResponse.getResult() == null
-//                                        || chatResponse.getResult().getOutput() == null
-//                                        || chatResponse.getResult().getOutput().getText() == null ? ""
-//                                                : chatResponse.getResult().getOutput().getText();
-//                                if (!token.isEmpty()) {
-//                                    fullResponse.append(token);
-//                                    streamListener.onToken(token);
-//                                }
-//
-//                                // 检查是否有工具调用
-//                                if (useFunctionCall) {
-//                                    Generation generation = chatResponse.getResult();
-//                                    if (generation != null) {
-//                                        // 检查AssistantMessage是否有工具调用
-//                                        AssistantMessage assistantMessage = generation.getOutput();
-//                                        if (assistantMessage.hasToolCalls() || !CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-//                                            hasToolCalls.set(true);
-//                                            if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
-//                                                String toolCallName = assistantMessage.getToolCalls().get(0).name();
-//                                                if (StringUtils.hasText(toolCallName)) {
-//                                                    toolName.setLength(0);
-//                                                    toolName.append(toolCallName);
-//                                                }
-//                                            }
-//                                        }
-//                                    }
-//                                }
-//                                if(chatResponse.getMetadata().getUsage() != null && chatResponse.getMetadata().getUsage().getTotalTokens() > 0) {
-//                                    llmUsage.set(chatResponse.getMetadata().getUsage());
-//                                }
-//                            },
-//                            streamListener::onError,
-//                            () -> {
-//                                // 使用提取的方法获取工具名称
-//                                String extractedToolName = getToolName(session, message, useFunctionCall,
-//                                        chatResponses, fullResponse.toString(), hasToolCalls.get());
-//                                if (StringUtils.hasText(extractedToolName)) {
-//                                    toolName.setLength(0);
-//                                    toolName.append(extractedToolName);
-//                                }
-//
-//                                streamListener.onComplete(toolName.toString(), llmUsage.get());
-//                            });
-//        } catch (Exception e) {
-//            logger.error("处理LLM时出错: {}", e.getMessage(), e);
-//            // 发送错误信号
-//            sentenceHandler.accept("抱歉，我在处理您的请求时遇到了问题。", true, true);
-//        }
+        chatStreamBySentence(session, message, useFunctionCall, sentenceHandler, session.getAssistantTimeMillis(), null);
     }
 
-
     /**
-     * 判断文本是否包含实质性内容（不仅仅是空白字符或标点符号）
+     * 流式对话并按句回调
      *
-     * @param text 要检查的文本
-     * @return 是否包含实质性内容
+     * @param assistantTimeMillis Assistant消息的创建时间戳，推测请求确认前不写入session
+     * @param confirmation        推测请求的确认结果，普通请求传null；
+     *                            回复完成后等待确认再保存消息，确认为false时不保存
      */
-    private boolean containsSubstantialContent(String text) {
-        if (text == null || text.trim().length() < MIN_SENTENCE_LENGTH) {
-            return false;
-        }
+    public void chatStreamBySentence(ChatSession session, String message, boolean useFunctionCall,
+            TriConsumer<String, Boolean, Boolean> sentenceHandler, Long assistantTimeMillis,
+            CompletableFuture<Boolean> confirmation) {
+        try {
+            // 在对话开始时清除工具调用记录，确保每次对话都是干净的
+            XiaoZhiToolCallingManager.clearRecentToolCall(session.getSessionId());
+
+            // 创建流式响应监听器
+            StreamResponseListener streamListener = new TokenStreamResponseListener(session, message, sentenceHandler,
+                    useFunctionCall, assistantTimeMillis, confirmation);
+            final StringBuilder toolName = new StringBuilder(); // 当前句子的缓冲区
+            final StringBuilder fullResponse = new StringBuilder(); // 完整响应的缓冲区
+            final List<ChatResponse> chatResponses = new ArrayList<>(); // 收集所有的ChatResponse
+            final AtomicBoolean hasToolCalls = new AtomicBoolean(false); // 标记是否有工具调用
+
+            AtomicReference<Usage> llmUsage = new AtomicReference<>();
+            // 调用现有的流式方法
+            chatStream(session, message, useFunctionCall, assistantTimeMillis, confirmation)
+                    .subscribe(
+                            chatResponse -> {
+                                // 收集所有的ChatResponse用于后续处理
+                                chatResponses.add(chatResponse);
+
+                                String token = chatResponse.getResult() == null
+                                        || chatResponse.getResult().getOutput() == null
+                                        || chatResponse.getResult().getOutput().getText() == null ? ""
+                                                : chatResponse.getResult().getOutput().getText();
+                                if (!token.isEmpty()) {
+                                    fullResponse.append(token);
+                                    streamListener.onToken(token);
+                                }
+
+                                // 检查是否有工具调用
+                                if (useFunctionCall) {
+                                    Generation generation = chatResponse.getResult();
+                                    if (generation != null) {
+                                        // 检查AssistantMessage是否有工具调用
+                                        AssistantMessage assistantMessage = generation.getOutput();
+                                        if (assistantMessage.hasToolCalls() || !CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
+                                            hasToolCalls.set(true);
+                                            if (!CollectionUtils.isEmpty(assistantMessage.getToolCalls())) {
+                                                String toolCallName = assistantMessage.getToolCalls().get(0).name();
+                                                if (StringUtils.hasText(toolCallName)) {
+                                                    toolName.setLength(0);
+                                                    toolName.append(toolCallName);
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                                if(chatResponse.getMetadata().getUsage() != null && chatResponse.getMetadata().getUsage().getTotalTokens() > 0) {
+                                    llmUsage.set(chatResponse.getMetadata().getUsage());
+                                }
+                            },
+                            streamListener::onError,
+                            () -> {
+                                // 使用提取的方法获取工具名称
+                                String extractedToolName = getToolName(session, message, useFunctionCall,
+                                        chatResponses, fullResponse.toString(), hasToolCalls.get(),
+                                        assistantTimeMillis, confirmation);
+                                if (StringUtils.hasText(extractedToolName)) {
+                                    toolName.setLength(0);
+                                    toolName.append(extractedToolName);
+                                }
 
-        // 移除所有标点符号和空白字符后，检查是否还有内容
-        String stripped = text.replaceAll("[\\p{P}\\s]", "");
-        return stripped.length() >= 2; // 至少有两个非标点非空白字符
+                                streamListener.onComplete(toolName.toString(), llmUsage.get());
+                            });
+        } catch (Exception e) {
+            logger.error("处理LLM时出错: {}", e.getMessage(), e);
+            // 发送错误信号
+            sentenceHandler.accept("抱歉，我在处理您的请求时遇到了问题。", true, true);
+        }
     }
 
+
     /**
      * 三参数消费者接口
      */
@@ -433,22 +453,39 @@ public class ChatService {
 
     class TokenStreamResponseListener implements StreamResponseListener {
 
-        final StringBuilder currentSentence = new StringBuilder(); // 当前句子的缓冲区
-        final StringBuilder contextBuffer = new StringBuilder(); // 上下文缓冲区，用于检测数字中的小数点
+        final SentenceSegmenter segmenter = new SentenceSegmenter(MIN_SENTENCE_LENGTH); // 增量断句
         final AtomicInteger sentenceCount = new AtomicInteger(0); // 已发送句子的计数
         final StringBuilder fullResponse = new StringBuilder(); // 完整响应的缓冲区
         final AtomicBoolean finalSentenceSent = new AtomicBoolean(false); // 跟踪最后一个句子是否已发送
+        final Consumer<String> sentenceSink = this::onSentence;
         String message;// 用户消息内容
         ChatSession session;
         TriConsumer<String, Boolean, Boolean> sentenceHandler;
         boolean useFunctionCall;
+        Long assistantTimeMillis; // Assistant消息的创建时间戳
+        CompletableFuture<Boolean> confirmation; // 推测请求的确认结果，普通请求为null
+        final String ttsProvider; // 首句切分按该服务商的TTS延迟计算
+        final long firstChunkDeadline; // 首句最晚送出的时间，超过后在安全位置提前切分
+        final int firstChunkMaxChars; // 首句超过该字符数仍没有断句时提前切分
 
         public TokenStreamResponseListener(ChatSession session, String message,
                 TriConsumer<String, Boolean, Boolean> sentenceHandler, boolean useFunctionCall) {
+            this(session, message, sentenceHandler, useFunctionCall, session.getAssistantTimeMillis(), null);
+        }
+
+        public TokenStreamResponseListener(ChatSession session, String message,
+                TriConsumer<String, Boolean, Boolean> sentenceHandler, boolean useFunctionCall,
+                Long assistantTimeMillis, CompletableFuture<Boolean> confirmation) {
             this.message = message;
             this.session = session;
             this.sentenceHandler = sentenceHandler;
             this.useFunctionCall = useFunctionCall;
+            this.assistantTimeMillis = assistantTimeMillis;
+            this.confirmation = confirmation;
+            this.ttsProvider = TtsLatencyTracker.providerOf(session.getPipelineContext().getTtsConfig());
+            this.firstChunkDeadline = ttsLatencyTracker.firstChunkDeadline(ttsProvider,
+                    assistantTimeMillis != null ? assistantTimeMillis : System.currentTimeMillis());
+            this.firstChunkMaxChars = ttsLatencyTracker.firstChunkMaxChars();
         }
 
         @Override
@@ -458,88 +495,29 @@ public class ChatService {
             }
             // 将token添加到完整响应
             fullResponse.append(token);
-
-            // 逐字符处理token
-            for (int i = 0; i < token.length();) {
-                int codePoint = token.codePointAt(i);
-                String charStr = new String(Character.toChars(codePoint));
-
-                // 将字符添加到上下文缓冲区（保留最近的字符以检测数字模式）
-                contextBuffer.append(charStr);
-                if (contextBuffer.length() > 20) { // 保留足够的上下文
-                    contextBuffer.delete(0, contextBuffer.length() - 20);
-                }
-
-                // 将字符添加到当前句子缓冲区
-                currentSentence.append(charStr);
-
-                // 检查各种断句标记
-                boolean shouldSendSentence = false;
-                boolean isEndMark = SENTENCE_END_PATTERN.matcher(charStr).find();
-                boolean isPauseMark = PAUSE_PATTERN.matcher(charStr).find();
-                boolean isSpecialMark = SPECIAL_PATTERN.matcher(charStr).find();
-                boolean isNewline = NEWLINE_PATTERN.matcher(charStr).find();
-                boolean isEmoji = EmojiUtils.isEmoji(codePoint);
-
-                // 检查当前句子是否包含颜文字
-                boolean containsKaomoji = false;
-                if (currentSentence.length() >= 3) { // 颜文字至少需要3个字符
-                    containsKaomoji = EmojiUtils.containsKaomoji(currentSentence.toString());
-                }
-
-                // 如果当前字符是句号，检查它是否是数字中的小数点
-                if (isEndMark && charStr.equals(".")) {
-                    String context = contextBuffer.toString();
-                    Matcher numberMatcher = NUMBER_PATTERN.matcher(context);
-                    // 如果找到数字模式（如"0.271"），则不视为句子结束标点
-                    if (numberMatcher.find() && numberMatcher.end() >= context.length() - 3) {
-                        isEndMark = false;
-                    }
-                }
-
-                // 判断是否应该发送当前句子
-                if (isEndMark) {
-                    // 句子结束标点是强断句信号
-                    shouldSendSentence = true;
-                } else if (isNewline) {
-                    // 换行符也是强断句信号
-                    shouldSendSentence = true;
-                } else if ((isPauseMark || isSpecialMark || isEmoji || containsKaomoji)
-                        && currentSentence.length() >= MIN_SENTENCE_LENGTH) {
-                    // 停顿标点、特殊标点、表情符号或颜文字在句子足够长时可以断句
-                    shouldSendSentence = true;
-                }
-
-                // 如果应该发送句子，且当前句子长度满足要求
-                if (shouldSendSentence && currentSentence.length() >= MIN_SENTENCE_LENGTH) {
-                    String sentence = currentSentence.toString().trim();
-
-                    // 过滤颜文字
-                    sentence = EmojiUtils.filterKaomoji(sentence);
-
-                    if (containsSubstantialContent(sentence)) {
-                        boolean isFirst = sentenceCount.get() == 0;
-                        boolean isLast = false; // 只有在onComplete中才会有最后一个句子
-
-                        sentenceHandler.accept(sentence, isFirst, isLast);
-                        sentenceCount.incrementAndGet();
-
-                        // 清空当前句子缓冲区
-                        currentSentence.setLength(0);
-                    }
-                }
-
-                // 移动到下一个码点
-                i += Character.charCount(codePoint);
+            // 逐码点断句，满足条件时回调onSentence
+            segmenter.append(token, sentenceSink);
+            // 首句较长时不等断句标点，先把已有内容送去合成，缩短首帧音频时间
+            if (sentenceCount.get() == 0 && segmenter.length() > 0
+                    && (segmenter.length() >= firstChunkMaxChars || System.currentTimeMillis() >= firstChunkDeadline)
+                    && segmenter.splitPrefix(sentenceSink)) {
+                ttsLatencyTracker.recordFirstChunkSplit(ttsProvider);
             }
         }
 
+        private void onSentence(String sentence) {
+            boolean isFirst = sentenceCount.get() == 0;
+            boolean isLast = false; // 只有在onComplete中才会有最后一个句子
+            sentenceHandler.accept(sentence, isFirst, isLast);
+            sentenceCount.incrementAndGet();
+        }
+
         @Override
         public void onComplete(String toolName, Usage llmUsage) {
             // 检查该会话是否已完成处理
             // 处理当前缓冲区剩余的内容（如果有）
-            if (currentSentence.length() > 0 && !finalSentenceSent.get()) {
-                String sentence = currentSentence.toString().trim();
+            if (segmenter.length() > 0 && !finalSentenceSent.get()) {
+                String sentence = segmenter.flush();
                 boolean isFirst = sentenceCount.get() == 0;
                 boolean isLast = true; // 这是最后一个句子
 
@@ -555,7 +533,21 @@ public class ChatService {
                 finalSentenceSent.set(true);
             }
 
-            persistMessages(toolName, llmUsage);
+            if (confirmation == null) {
+                persistMessages(toolName, llmUsage);
+            } else {
+                // 推测请求可能先于识别结束完成，确认后再入库，被取消的推测请求不保存。
+                // onComplete通常运行在HTTP客户端的事件循环线程上，不能在这里等待确认，否则同一线程上的其他模型响应流都会停顿
+                confirmation.copy()
+                        .orTimeout(SPECULATION_CONFIRM_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .whenCompleteAsync((confirmed, e) -> {
+                            if (e != null) {
+                                logger.warn("等待推测请求确认超时，不保存消息");
+                            } else if (confirmed) {
+                                persistMessages(toolName, llmUsage);
+                            }
+                        }, SPECULATION_EXECUTOR);
+            }
 
             // 记录处理的句子数量
             logger.debug("总共处理了 {} 个句子", sentenceCount.get());
@@ -569,7 +561,6 @@ public class ChatService {
          * 具体的细节逻辑，由Conversation处理，ChatService不再负责消息持久化的职能。
          */
         void persistMessages(String toolName, Usage llmUsage) {
-            
             UserMessage userMessage = new UserMessage(message);
             Long userTimeMillis = session.getUserTimeMillis();
 
@@ -594,7 +585,6 @@ public class ChatService {
             }
             assistantMessage.getMetadata().put(ChatSession.ATTR_FIRST_TTS_RESPONSE_TIME, ttsResponseTime);
             
-            Long assistantTimeMillis = session.getAssistantTimeMillis();
             session.getConversation().add(assistantMessage, assistantTimeMillis);
         }
 
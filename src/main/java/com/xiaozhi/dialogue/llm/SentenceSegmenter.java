@@ -0,0 +1,342 @@
+package com.xiaozhi.dialogue.llm;
+
+import com.xiaozhi.utils.EmojiUtils;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 流式回复的增量断句器
+ * 按码点查表判断断句标点，颜文字和英文标点用增量状态机识别，不再对每个字符创建字符串、跑正则，
+ * 也不再每个字符重新扫描整句检测颜文字。只有输出句子时才会分配内存。
+ * 英文标点看下一个码点再决定：句点后面是空白才断句，e.g.、Mr.等缩写除外；其他英文标点后面是字母、数字或/时不断句。
+ * 小数、版本号、网址、域名、时间、千分位不会被切开。
+ * 非线程安全，每个流式回复使用一个实例。
+ */
+public final class SentenceSegmenter {
+
+    // 码点类别，按位组合
+    private static final byte END = 1;        // 句子结束标点：。！？!?
+    private static final byte PAUSE = 1 << 1; // 停顿标点：，、；,;
+    private static final byte SPECIAL = 1 << 2; // 特殊标点：：:"
+    private static final byte NEWLINE = 1 << 3; // 换行
+    private static final byte EMOJI = 1 << 4; // 基本多文种平面内的表情符号
+    private static final byte ASCII = 1 << 5; // 英文标点：.!?,;: 看下一个码点决定是否断句
+
+    private static final byte[] BMP_CLASS = new byte[0x10000];
+
+    static {
+        mark("。！？!?", END);
+        mark("，、；,;", PAUSE);
+        mark("：:\"", SPECIAL);
+        mark("\n\r", NEWLINE);
+        mark(".!?,;:", ASCII);
+        for (int c = 0; c < 0x10000; c++) {
+            if (EmojiUtils.isEmoji(c)) {
+                BMP_CLASS[c] |= EMOJI;
+            }
+        }
+    }
+
+    private static void mark(String chars, byte type) {
+        for (int i = 0; i < chars.length(); i++) {
+            BMP_CLASS[chars.charAt(i)] |= type;
+        }
+    }
+
+    // 句点后不断句的常见英文缩写，单个字母（e.g. U.S. 人名缩写）另外判断
+    private static final Set<String> ABBREVIATIONS = Set.of(
+            "Mr", "Mrs", "Ms", "Dr", "Prof", "Sr", "Jr", "St", "Mt", "vs", "No", "Inc", "Ltd", "Co", "Fig");
+
+    // 可以在其后停顿的句末语气词；的、地、得、着、过连接后面的中心语或补语（美丽的|花、慢慢地|走），不在其后切分
+    private static final String SAFE_TAIL = "了呢吧啊呀吗嘛";
+
+    private final int minLength;
+    private final StringBuilder sentence = new StringBuilder(64);
+
+    // 当前句子的码点数
+    private int position;
+    // 前两个码点
+    private int prev1 = -1;
+    private int prev2 = -1;
+    // 末尾的英文标点，等下一个码点确定是否断句，0表示没有
+    private int pendingPunct;
+
+    // 颜文字状态：当前句子是否已包含颜文字
+    private boolean kaomoji;
+    // 最近两个未闭合的圆括号、尖括号位置，-1表示没有
+    private int parenOpen = -1;
+    private int parenOpenBefore = -1;
+    private int angleOpen = -1;
+    private int angleOpenBefore = -1;
+    // 边框字符（\ ¯ *）之后连续的_或-数量，-1表示不在该模式中
+    private int edgeRun = -1;
+
+    public SentenceSegmenter(int minLength) {
+        this.minLength = minLength;
+    }
+
+    /**
+     * 追加一段token，满足断句条件时把句子交给sink
+     */
+    public void append(CharSequence token, Consumer<String> sink) {
+        for (int i = 0; i < token.length(); ) {
+            int codePoint = Character.codePointAt(token, i);
+            i += Character.charCount(codePoint);
+            if (pendingPunct != 0) {
+                if (breaksAfterPunct(pendingPunct, codePoint)) {
+                    tryEmit(true, sink);
+                }
+                pendingPunct = 0;
+            }
+            accept(codePoint, sink);
+        }
+    }
+
+    /**
+     * 取出剩余内容并重置，用于回复结束
+     *
+     * @return 去除首尾空白后的剩余内容，可能为空字符串
+     */
+    public String flush() {
+        String rest = sentence.toString().trim();
+        reset();
+        return rest;
+    }
+
+    /**
+     * 在最后一个安全的停顿位置切出前缀交给sink，剩余内容保留在缓冲区，用于首句提前送TTS
+     * 安全位置是括号外的空白或句末语气词之后；括号未闭合（可能是颜文字）或末尾是英文标点时不切分
+     *
+     * @return 是否切出了前缀
+     */
+    public boolean splitPrefix(Consumer<String> sink) {
+        if (pendingPunct != 0 || parenOpen >= 0 || angleOpen >= 0) {
+            return false;
+        }
+        // 从后向前找，跳过括号内的位置
+        int cut = -1;
+        int depth = 0;
+        for (int i = sentence.length(); i >= minLength; i--) {
+            char c = sentence.charAt(i - 1);
+            if (c == ')' || c == '）' || c == '>' || c == '＞') {
+                depth++;
+            } else if (c == '(' || c == '（' || c == '<' || c == '＜') {
+                depth = Math.max(0, depth - 1);
+            } else if (depth == 0 && (Character.isWhitespace(c) || SAFE_TAIL.indexOf(c) >= 0)) {
+                cut = i;
+                break;
+            }
+        }
+        if (cut < 0) {
+            return false;
+        }
+        String prefix = sentence.substring(0, cut).trim();
+        if (kaomoji) {
+            prefix = EmojiUtils.filterKaomoji(prefix);
+        }
+        if (!containsSubstantialContent(prefix, minLength)) {
+            return false;
+        }
+        String rest = sentence.substring(cut);
+        reset();
+        sink.accept(prefix);
+        append(rest, sink);
+        return true;
+    }
+
+    /**
+     * 当前缓冲的字符数
+     */
+    public int length() {
+        return sentence.length();
+    }
+
+    private void accept(int codePoint, Consumer<String> sink) {
+        sentence.appendCodePoint(codePoint);
+        int type = codePoint < 0x10000 ? BMP_CLASS[codePoint]
+                : EmojiUtils.isEmoji(codePoint) ? EMOJI : 0;
+        trackKaomoji(codePoint);
+        prev2 = prev1;
+        prev1 = codePoint;
+        position++;
+
+        if ((type & ASCII) != 0) {
+            pendingPunct = codePoint;
+            return;
+        }
+        boolean strong = (type & (END | NEWLINE)) != 0;
+        boolean weak = (type & (PAUSE | SPECIAL | EMOJI)) != 0 || kaomoji;
+        tryEmit(strong || (weak && sentence.length() >= minLength), sink);
+    }
+
+    /**
+     * 英文标点后接着该码点时是否断句
+     */
+    private boolean breaksAfterPunct(int punct, int next) {
+        if (punct == '.') {
+            return Character.isWhitespace(next) && !endsWithAbbreviation();
+        }
+        boolean token = (next < 0x80 && Character.isLetterOrDigit(next)) || next == '/';
+        return !token;
+    }
+
+    /**
+     * 末尾句点前的单词是否是缩写：单个字母（e.g. U.S. J.），或常见缩写（Mr. Dr.）
+     */
+    private boolean endsWithAbbreviation() {
+        int end = sentence.length() - 1;
+        int start = end;
+        while (start > 0 && Character.isLetter(sentence.charAt(start - 1))) {
+            start--;
+        }
+        int length = end - start;
+        return length == 1 || (length > 1 && ABBREVIATIONS.contains(sentence.substring(start, end)));
+    }
+
+    private void tryEmit(boolean shouldSend, Consumer<String> sink) {
+        if (!shouldSend || sentence.length() < minLength) {
+            return;
+        }
+        String text = sentence.toString().trim();
+        if (kaomoji) {
+            text = EmojiUtils.filterKaomoji(text);
+        }
+        if (containsSubstantialContent(text, minLength)) {
+            reset();
+            sink.accept(text);
+        }
+    }
+
+    /**
+     * 增量识别颜文字，与EmojiUtils中的KAOMOJI_PATTERN对应：
+     * (…) （…） <…> ＜…＞ 内1到10个字符，\_/ ¯-¯ *_* 类，\o/，:) :-) :D :( ;) ;-) =_ =/ =\_ =\/
+     */
+    private void trackKaomoji(int c) {
+        if (kaomoji) {
+            return;
+        }
+        int pos = position;
+        switch (c) {
+            case '(', '（' -> {
+                parenOpenBefore = parenOpen;
+                parenOpen = pos;
+            }
+            case ')', '）' -> {
+                if (matchesBracket(parenOpen, parenOpenBefore, pos)) {
+                    kaomoji = true;
+                }
+                parenOpen = -1;
+                parenOpenBefore = -1;
+            }
+            case '<', '＜' -> {
+                angleOpenBefore = angleOpen;
+                angleOpen = pos;
+            }
+            case '>', '＞' -> {
+                if (matchesBracket(angleOpen, angleOpenBefore, pos)) {
+                    kaomoji = true;
+                }
+                angleOpen = -1;
+                angleOpenBefore = -1;
+            }
+            default -> {
+            }
+        }
+        // \_/ ¯-¯ *_* 等
+        if (c == '\\' || c == '¯' || c == '*') {
+            if (edgeRun >= 1 && edgeRun <= 2) {
+                kaomoji = true;
+            }
+            edgeRun = 0;
+        } else if ((c == '_' || c == '-') && edgeRun >= 0) {
+            edgeRun = edgeRun < 2 ? edgeRun + 1 : -1;
+        } else {
+            edgeRun = -1;
+        }
+        // 短颜文字
+        int p1 = prev1;
+        int p2 = prev2;
+        if ((c == ')' || c == 'D' || c == '(') && (p1 == ':' || (p1 == '-' && p2 == ':'))) {
+            kaomoji = true;
+        } else if (c == ')' && (p1 == ';' || (p1 == '-' && p2 == ';'))) {
+            kaomoji = true;
+        } else if ((c == '_' || c == '/') && (p1 == '=' || (p1 == '\\' && p2 == '='))) {
+            kaomoji = true;
+        } else if (c == '/' && p1 == 'o' && p2 == '\\') {
+            kaomoji = true;
+        }
+    }
+
+    /**
+     * 闭合括号与最近的开括号之间有1到10个字符时匹配；紧挨着时退回到前一个开括号
+     */
+    private static boolean matchesBracket(int open, int openBefore, int close) {
+        if (open < 0) {
+            return false;
+        }
+        int distance = close - open - 1;
+        if (distance >= 1) {
+            return distance <= 10;
+        }
+        return openBefore >= 0 && close - openBefore - 1 <= 10;
+    }
+
+    private void reset() {
+        sentence.setLength(0);
+        position = 0;
+        prev1 = -1;
+        prev2 = -1;
+        pendingPunct = 0;
+        kaomoji = false;
+        parenOpen = -1;
+        parenOpenBefore = -1;
+        angleOpen = -1;
+        angleOpenBefore = -1;
+        edgeRun = -1;
+    }
+
+    /**
+     * 去除首尾空白后不短于minLength，且去除标点和空白后至少还有两个字符
+     * 过滤颜文字后首尾可能重新出现空白，需要再按trim的规则计算长度
+     */
+    static boolean containsSubstantialContent(String text, int minLength) {
+        if (text == null) {
+            return false;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start < minLength) {
+            return false;
+        }
+        int count = 0;
+        for (int i = 0; i < text.length() && count < 2; i++) {
+            char c = text.charAt(i);
+            if (!isPunctuation(c) && !isRegexSpace(c)) {
+                count++;
+            }
+        }
+        return count >= 2;
+    }
+
+    // 与正则\p{P}一致
+    private static boolean isPunctuation(char c) {
+        return switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    // 与正则\s一致
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -7,8 +7,10 @@ import com.xiaozhi.dialogue.llm.providers.OpenAiLlmService;
 import com.xiaozhi.dialogue.token.factory.TokenServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysModelCapability;
 import com.xiaozhi.entity.SysRole;
 import com.xiaozhi.service.SysConfigService;
+import com.xiaozhi.service.SysModelCapabilityService;
 import com.xiaozhi.service.SysRoleService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,7 @@ import org.springframework.ai.zhipuai.ZhiPuAiChatModel;
 import org.springframework.ai.zhipuai.ZhiPuAiChatOptions;
 import org.springframework.ai.zhipuai.api.ZhiPuAiApi;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.stereotype.Component;
@@ -38,10 +41,16 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ChatModel工厂
  * 根据配置的模型ID，创建对应的ChatModel
+ * ChatModel按"provider:configId:temperature:topP"缓存复用，同一endpoint共享一个HttpClient连接池，
+ * 避免每轮对话都重新建立TCP/TLS连接。
  */
 @Component
 public class ChatModelFactory {
@@ -53,12 +62,33 @@ public class ChatModelFactory {
     private ToolCallingManager toolCallingManager;
     @Autowired
     private TokenServiceFactory tokenService;
+    @Autowired
+    private SysModelCapabilityService capabilityService;
     private final Logger logger = LoggerFactory.getLogger(ChatModelFactory.class);
 
+    // 缓存的ChatModel数量上限，超出后淘汰最久未使用的
+    @Value("${llm.model.cache.size:64}")
+    private int modelCacheSize;
+
+    // 缓存已创建的ChatModel：键为"provider:configId:temperature:topP"格式，按访问顺序淘汰
+    private final Map<String, ChatModel> modelCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ChatModel> eldest) {
+                    return size() > modelCacheSize;
+                }
+            });
+
+    // 每个endpoint共享的HttpClient，复用其中的连接池
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+    // 已缓存模型的配置使用的endpoint，配置变更时据此释放不再使用的HttpClient
+    private final Map<Integer, String> configEndpoints = new ConcurrentHashMap<>();
+
     /**
-     * 根据配置ID创建ChatModel，首次调用时缓存，缓存key为配置ID。
+     * 根据角色配置获取ChatModel，首次调用时创建并缓存。
      * 
-     * @see SysConfigService#selectConfigById(Integer) 已经进行了Cacheable,所以此处没有必要缓存
+     * @see SysConfigService#selectConfigById(Integer) 配置本身已经进行了Cacheable
      * @param session 与网络链接绑定的聊天会话
      * @return
      */
@@ -108,12 +138,72 @@ public class ChatModelFactory {
         return createChatModel(config, role);
     }
     /**
-     * 创建ChatModel
+     * 获取ChatModel，优先从缓存中获取
+     * Coze的token会过期、Dify依赖全局智能体配置，这两类不缓存
      * 
      * @param config
      * @return
      */
     private ChatModel createChatModel(SysConfig config, SysRole role) {
+        String provider = config.getProvider().toLowerCase();
+        if ("coze".equals(provider) || "dify".equals(provider) || config.getConfigId() == null) {
+            return newChatModel(config, role);
+        }
+        String cacheKey = createCacheKey(provider, config.getConfigId(), role.getTemperature(), role.getTopP());
+        ChatModel chatModel = modelCache.get(cacheKey);
+        if (chatModel != null) {
+            return chatModel;
+        }
+        chatModel = newChatModel(config, role);
+        modelCache.put(cacheKey, chatModel);
+        configEndpoints.put(config.getConfigId(), String.valueOf(config.getApiUrl()));
+        return chatModel;
+    }
+
+    // 创建缓存键
+    private String createCacheKey(String provider, Integer configId, Double temperature, Double topP) {
+        return provider + ":" + configId + ":" + temperature + ":" + topP;
+    }
+
+    /**
+     * 配置变更后移除该配置对应的所有ChatModel，endpoint不再被其他配置使用时一并移除共享的HttpClient
+     */
+    public void removeCache(SysConfig config) {
+        if (config == null || config.getConfigId() == null) {
+            return;
+        }
+        String configId = String.valueOf(config.getConfigId());
+        synchronized (modelCache) {
+            modelCache.keySet().removeIf(key -> {
+                String[] parts = key.split(":");
+                return parts.length == 4 && parts[1].equals(configId);
+            });
+        }
+        String endpoint = configEndpoints.remove(config.getConfigId());
+        if (endpoint != null && !configEndpoints.containsValue(endpoint)) {
+            // 不主动关闭，仍在使用的ChatModel可以完成当前请求，之后没有引用时连接池随HttpClient一起回收
+            httpClients.remove(endpoint);
+        }
+    }
+
+    /**
+     * 获取endpoint共享的HttpClient
+     * LM Studio不支持Http/2，所以需要强制使用HTTP/1.1
+     */
+    private HttpClient getHttpClient(String endpoint) {
+        return httpClients.computeIfAbsent(String.valueOf(endpoint), k -> HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build());
+    }
+
+    /**
+     * 创建ChatModel
+     * 
+     * @param config
+     * @return
+     */
+    private ChatModel newChatModel(SysConfig config, SysRole role) {
         String provider = config.getProvider().toLowerCase();
         String model = config.getConfigName();
         String endpoint = config.getApiUrl();
@@ -145,7 +235,14 @@ public class ChatModelFactory {
     }
 
     private ChatModel newOllamaChatModel(String endpoint, String appId, String apiKey, String apiSecret, String model, Double temperature, Double topP) {
-        var ollamaApi = OllamaApi.builder().baseUrl(endpoint).build();
+        HttpClient httpClient = getHttpClient(endpoint);
+        var ollamaApi = OllamaApi.builder()
+                .baseUrl(endpoint)
+                .webClientBuilder(WebClient.builder()
+                        .clientConnector(new JdkClientHttpConnector(httpClient)))
+                .restClientBuilder(RestClient.builder()
+                        .requestFactory(new JdkClientHttpRequestFactory(httpClient)))
+                .build();
 
         var ollamaAiChatOptions = OllamaOptions.builder()
                 .model(model)
@@ -166,7 +263,7 @@ public class ChatModelFactory {
         MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
         headers.add("Content-Type", "application/json");
 
-        // LM Studio不支持Http/2，所以需要强制使用HTTP/1.1
+        HttpClient httpClient = getHttpClient(endpoint);
         var openAiApi = OpenAiApi.builder()
                 .apiKey(StringUtils.hasText(apiKey) ? new SimpleApiKey(apiKey) : new NoopApiKey())
                 .baseUrl(endpoint)
@@ -174,16 +271,10 @@ public class ChatModelFactory {
                 .headers(headers)
                 .webClientBuilder(WebClient.builder()
                         // Force HTTP/1.1 for streaming
-                        .clientConnector(new JdkClientHttpConnector(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
+                        .clientConnector(new JdkClientHttpConnector(httpClient)))
                 .restClientBuilder(RestClient.builder()
                         // Force HTTP/1.1 for non-streaming
-                        .requestFactory(new JdkClientHttpRequestFactory(HttpClient.newBuilder()
-                                .version(HttpClient.Version.HTTP_1_1)
-                                .connectTimeout(Duration.ofSeconds(30))
-                                .build())))
+                        .requestFactory(new JdkClientHttpRequestFactory(httpClient)))
                 .build();
         var openAiChatOptions = OpenAiChatOptions.builder()
                 .model(model)
@@ -192,7 +283,8 @@ public class ChatModelFactory {
                 // 注意：某些OpenAI兼容API（如豆包）可能不支持以下参数，如遇到400错误可尝试注释掉
                 // .maxCompletionTokens(200)
                 .maxTokens(2000)
-                .streamUsage(true)
+                // 已探测到不支持stream_options的兼容API不再携带该参数，未探测时保持开启
+                .streamUsage(!Boolean.FALSE.equals(streamUsage(endpoint, model)))
                 .build();
 
         var chatModel = OpenAiChatModel.builder()
@@ -204,8 +296,14 @@ public class ChatModelFactory {
         return chatModel;
     }
 
+    private Boolean streamUsage(String endpoint, String model) {
+        SysModelCapability capability = capabilityService.peek(endpoint, model);
+        return capability != null ? capability.getStreamUsage() : null;
+    }
+
     private ChatModel newZhipuChatModel(String endpoint, String appId, String apiKey, String apiSecret, String model, Double temperature, Double topP) {
-        var zhiPuAiApi = new ZhiPuAiApi(endpoint, apiKey);
+        var zhiPuAiApi = new ZhiPuAiApi(endpoint, apiKey, RestClient.builder()
+                .requestFactory(new JdkClientHttpRequestFactory(getHttpClient(endpoint))));
 
         var zhipuAiChatOptions = ZhiPuAiChatOptions.builder()
                 .model(model)
@@ -23,6 +23,7 @@ public interface ChatMemory {
     public static final String MESSAGE_TYPE_KEY = "SYS_MESSAGE_TYPE";
     public static final String TIME_MILLIS_KEY = "TIME_MILLIS";
     public static final String USAGE_KEY = "llm_usage";  // 用于存储LLM使用情况的键
+    public static final String AWAIT_AUDIO_KEY = "AWAIT_AUDIO";  // 消息是否会在稍后附加音频路径
     /**
      * 添加消息。
      * 支持批量，对于注重性能的实现是很有必要的。
@@ -71,6 +72,14 @@ public interface ChatMemory {
         return (Long) message.getMetadata().getOrDefault(TIME_MILLIS_KEY,System.currentTimeMillis());
     }
 
+    static void setAwaitAudio(Message message, boolean awaitAudio){
+        message.getMetadata().put(AWAIT_AUDIO_KEY, awaitAudio);
+    }
+
+    static boolean isAwaitAudio(Message message){
+        return Boolean.TRUE.equals(message.getMetadata().get(AWAIT_AUDIO_KEY));
+    }
+
     static Integer getFirstModelResponseTime(Message message){
         return (Integer)message.getMetadata().get(ChatSession.ATTR_FIRST_MODEL_RESPONSE_TIME);
     }
@@ -74,6 +74,22 @@ public class Conversation{
         messages.add(message);
     }
 
+    /**
+     * 撤销最近一轮以指定用户文本开始的消息（含其后的消息），用于取消推测请求。
+     * 只影响缓存的消息列表，推测请求在确认前不会入库。
+     *
+     * @return 是否找到并撤销
+     */
+    public boolean rollback(String userText) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage userMessage && Objects.equals(userMessage.getText(), userText)) {
+                messages.subList(i, messages.size()).clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 将数据库记录的SysMessag转换为spring-ai的Message。
      *
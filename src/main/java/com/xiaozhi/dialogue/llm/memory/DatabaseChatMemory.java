@@ -19,6 +19,7 @@ import java.util.stream.Collectors;
 /**
  * 基于数据库的聊天记忆实现
  * 全局单例类，负责Conversatin里消息的获取、保存、清理。
+ * 最近的历史窗口缓存在HistoryCache中，保存时同步更新，设备重连时优先从缓存读取。
  * 后续考虑：DatabaseChatMemory 是对 SysMessageService 的一层薄封装，未来或者有可能考虑合并这两者。
  */
 @Service
@@ -27,10 +28,14 @@ public class DatabaseChatMemory  implements ChatMemory {
 
 
     private final MessageMapper messageMapper;
+    private final MessageWriter messageWriter;
+    private final HistoryCache historyCache;
 
     @Autowired
-    public DatabaseChatMemory(MessageMapper messageMapper) {
+    public DatabaseChatMemory(MessageMapper messageMapper, MessageWriter messageWriter, HistoryCache historyCache) {
         this.messageMapper = messageMapper;
+        this.messageWriter = messageWriter;
+        this.historyCache = historyCache;
     }
 
     @Override
@@ -38,63 +43,54 @@ public class DatabaseChatMemory  implements ChatMemory {
         if (messages == null || messages.isEmpty()) {
             return ;
         }
-        // 异步虚拟线程处理持久化。
-        Thread.startVirtualThread(() -> {
+        // 交给写缓冲批量持久化，不阻塞对话
+        List<Message> messagesCopy;
+        synchronized (messages) {
+            messagesCopy = new ArrayList<>(messages);
+        }
+        for (Message msg : messagesCopy) {
+            if (msg == null) {
+                continue;
+            }
             try {
-                // 创建消息列表的副本，避免并发修改异常
-                // 使用synchronized确保线程安全
-                List<Message> messagesCopy;
-                synchronized (messages) {
-                    messagesCopy = new ArrayList<>(messages);
-                }
-                
-                List<SysMessage> messageList = messagesCopy.stream()
-                        .filter(msg -> msg != null) // 过滤掉null消息
-                        .map(msg -> {
-                            try {
-                                SysMessage message = new SysMessage();
-                                message.setDeviceId(deviceId);
-                                message.setSessionId(sessionId);
-                                message.setSender(msg.getMessageType().getValue());
-                                message.setMessage(msg.getText());
-                                message.setRoleId(roleId);
-                                String sysMessageType = ChatMemory.getSysMessageType(msg);
-                                message.setMessageType(sysMessageType);
-                                Long timeMillis = ChatMemory.getTimeMillis(msg);
-                                Instant instant = Instant.ofEpochMilli(timeMillis).truncatedTo(ChronoUnit.SECONDS);
-                                message.setCreateTime(Date.from(instant));
-
-                                return message;
-                            } catch (Exception msgException) {
-                                logger.warn("处理单个消息时出错，跳过该消息: {}", msgException.getMessage());
-                                return null;
-                            }
-                        })
-                        .filter(msg -> msg != null) // 过滤掉处理失败的消息
-                        .toList();
-                        
-                if (!messageList.isEmpty()) {
-                    messageMapper.saveAll(messageList);
-                }
-            } catch (Exception e) {
-                logger.error("保存消息时出错: {}", e.getMessage(), e);
+                SysMessage message = new SysMessage();
+                message.setDeviceId(deviceId);
+                message.setSessionId(sessionId);
+                message.setSender(msg.getMessageType().getValue());
+                message.setMessage(msg.getText());
+                message.setRoleId(roleId);
+                String sysMessageType = ChatMemory.getSysMessageType(msg);
+                message.setMessageType(sysMessageType);
+                Long timeMillis = ChatMemory.getTimeMillis(msg);
+                Instant instant = Instant.ofEpochMilli(timeMillis).truncatedTo(ChronoUnit.SECONDS);
+                message.setCreateTime(Date.from(instant));
+                messageWriter.enqueue(message, ChatMemory.isAwaitAudio(msg));
+            } catch (Exception msgException) {
+                logger.warn("处理单个消息时出错，跳过该消息: {}", msgException.getMessage());
             }
-        });
+        }
+        historyCache.append(deviceId, roleId, messagesCopy);
     }
 
     @Override
     public List<Message> find(String deviceId, int roleId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<Message> cached = historyCache.get(deviceId, roleId, limit);
+        if (cached != null) {
+            return cached;
+        }
         try {
             List<SysMessage> messages = messageMapper.find(deviceId, roleId, limit);
             messages = new ArrayList<>(messages);
             messages.sort(Comparator.comparing(Base::getCreateTime));
-            if (messages == null || messages.isEmpty()) {
-                return Collections.emptyList();
-            }
-            return messages.stream()
+            List<Message> history = messages.stream()
                     .filter(message -> MessageType.ASSISTANT.getValue().equals(message.getSender())
                             || MessageType.USER.getValue().equals(message.getSender()))
                     .map(DatabaseChatMemory::convert).collect(Collectors.toList());
+            historyCache.put(deviceId, roleId, limit, history);
+            return history;
 
         } catch (Exception e) {
             logger.error("获取历史消息时出错: {}", e.getMessage(), e);
@@ -0,0 +1,238 @@
+package com.xiaozhi.dialogue.llm.memory;
+
+import com.xiaozhi.entity.SysMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话历史缓存
+ * 按(设备, 角色)缓存最近的消息窗口，写入消息时同步追加，设备短时间内重连加载历史不再查询数据库。
+ * 按估算的内存占用淘汰最久未使用的窗口，超过有效期的窗口在读取时丢弃。
+ * 缓存的是消息内容的不可变副本，读取时生成新的Message，会话对消息元数据的修改不会影响缓存。
+ */
+@Component
+public class HistoryCache {
+
+    // 缓存总大小上限（字节，按字符数估算）
+    @Value("${chat.memory.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    // 窗口有效期（分钟）
+    @Value("${chat.memory.cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每条消息除文本外的估算开销
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int MESSAGE_OVERHEAD = 48;
+
+    private final LinkedHashMap<String, Window> windows = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes = 0;
+
+    private Counter hits;
+    private Counter misses;
+
+    private record Entry(MessageType type, String text, String sysMessageType) {
+        int bytes() {
+            return MESSAGE_OVERHEAD + (text != null ? text.length() * 2 : 0);
+        }
+    }
+
+    private static final class Window {
+        final int capacity;
+        final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        long loadTime = System.nanoTime();
+        long bytes = ENTRY_OVERHEAD;
+
+        Window(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("xiaozhi.chat.history.cache")
+                .tag("result", "hit")
+                .description("对话历史缓存命中次数")
+                .register(meterRegistry);
+        misses = Counter.builder("xiaozhi.chat.history.cache")
+                .tag("result", "miss")
+                .description("对话历史缓存未命中次数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.chat.history.cache.hit.ratio", this, HistoryCache::hitRatio)
+                .description("对话历史缓存命中率")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.chat.history.cache.bytes", this, HistoryCache::getBytes)
+                .baseUnit("bytes")
+                .description("对话历史缓存估算占用内存")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.chat.history.cache.entries", this, HistoryCache::getSize)
+                .description("缓存的对话历史窗口数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 读取最近limit条消息，窗口不存在、已过期或容量不足时返回null
+     */
+    public List<Message> get(String deviceId, int roleId, int limit) {
+        String key = key(deviceId, roleId);
+        List<Entry> snapshot;
+        synchronized (this) {
+            Window window = windows.get(key);
+            if (window != null && expired(window)) {
+                remove(key);
+                window = null;
+            }
+            if (window == null || window.capacity < limit) {
+                misses.increment();
+                return null;
+            }
+            snapshot = new ArrayList<>(window.entries);
+        }
+        hits.increment();
+        int from = Math.max(0, snapshot.size() - limit);
+        List<Message> messages = new ArrayList<>(snapshot.size() - from);
+        for (Entry entry : snapshot.subList(from, snapshot.size())) {
+            messages.add(toMessage(entry));
+        }
+        return messages;
+    }
+
+    /**
+     * 保存从数据库加载的窗口
+     *
+     * @param capacity 加载时的条数上限，窗口最多保留这么多条
+     */
+    public void put(String deviceId, int roleId, int capacity, List<Message> messages) {
+        Window window = new Window(capacity);
+        for (Message message : messages) {
+            append(window, message);
+        }
+        String key = key(deviceId, roleId);
+        synchronized (this) {
+            remove(key);
+            windows.put(key, window);
+            bytes += window.bytes;
+            evict();
+        }
+    }
+
+    /**
+     * 写入消息时追加到已缓存的窗口，没有缓存的窗口不创建（缺少更早的历史）
+     * 只缓存与数据库加载条件一致的普通用户和助手消息
+     */
+    public void append(String deviceId, int roleId, List<Message> messages) {
+        String key = key(deviceId, roleId);
+        synchronized (this) {
+            Window window = windows.get(key);
+            if (window == null) {
+                return;
+            }
+            bytes -= window.bytes;
+            for (Message message : messages) {
+                if (SysMessage.MESSAGE_TYPE_NORMAL.equals(ChatMemory.getSysMessageType(message))) {
+                    append(window, message);
+                }
+            }
+            bytes += window.bytes;
+            evict();
+        }
+    }
+
+    /**
+     * 移除设备的全部窗口，deviceId为空时清空缓存
+     */
+    public synchronized void invalidate(String deviceId) {
+        if (deviceId == null || deviceId.isEmpty()) {
+            windows.clear();
+            bytes = 0;
+            return;
+        }
+        String prefix = deviceId + ":";
+        Iterator<Map.Entry<String, Window>> it = windows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Window> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                bytes -= entry.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return windows.size();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total > 0 ? hits.count() / total : 0;
+    }
+
+    private static void append(Window window, Message message) {
+        MessageType type = message.getMessageType();
+        if (type != MessageType.USER && type != MessageType.ASSISTANT) {
+            return;
+        }
+        Entry entry = new Entry(type, message.getText(), ChatMemory.getSysMessageType(message));
+        window.entries.addLast(entry);
+        window.bytes += entry.bytes();
+        while (window.entries.size() > window.capacity) {
+            window.bytes -= window.entries.removeFirst().bytes();
+        }
+    }
+
+    private static Message toMessage(Entry entry) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(ChatMemory.MESSAGE_TYPE_KEY, entry.sysMessageType());
+        return entry.type() == MessageType.ASSISTANT
+                ? new AssistantMessage(entry.text(), metadata)
+                : UserMessage.builder().text(entry.text()).metadata(metadata).build();
+    }
+
+    private boolean expired(Window window) {
+        return System.nanoTime() - window.loadTime > TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    private void remove(String key) {
+        Window window = windows.remove(key);
+        if (window != null) {
+            bytes -= window.bytes;
+        }
+    }
+
+    private void evict() {
+        Iterator<Window> it = windows.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    private static String key(String deviceId, int roleId) {
+        return deviceId + ":" + roleId;
+    }
+}
@@ -12,12 +12,15 @@ import java.util.*;
 
 /**
  * 限定消息条数（消息窗口）的Conversation实现。根据不同的策略，可实现聊天会话的持久化、加载、清除等功能。
+ * 历史消息在第一次对话时才加载，连接后没有说话就断开的会话不会查询历史。
  */
 public class MessageWindowConversation extends Conversation {
     // 历史记录默认限制数量
     public static final int DEFAULT_HISTORY_LIMIT = 0;
     private final ChatMemory chatMemory;
     private final int maxMessages;
+    // 历史消息是否已加载
+    private boolean hydrated = false;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MessageWindowConversation.class);
 
 
@@ -25,9 +28,30 @@ public class MessageWindowConversation extends Conversation {
         super(device, role, sessionId);
         this.maxMessages = maxMessages;
         this.chatMemory = chatMemory;
-        logger.info("加载设备{}的普通消息(SysMessage.MESSAGE_TYPE_NORMAL)作为对话历史",device.getDeviceId());
-        List<Message> history = chatMemory.find(device.getDeviceId(), role.getRoleId(), maxMessages);
-        super.messages.addAll(history) ;
+    }
+
+    /**
+     * 第一次添加或读取消息时加载历史，放在已有消息之前
+     */
+    private synchronized void hydrate() {
+        if (hydrated) {
+            return;
+        }
+        hydrated = true;
+        if (maxMessages <= 0) {
+            return;
+        }
+        logger.info("加载设备{}的普通消息(SysMessage.MESSAGE_TYPE_NORMAL)作为对话历史", device().getDeviceId());
+        List<Message> history = chatMemory.find(device().getDeviceId(), role().getRoleId(), maxMessages);
+        super.messages.addAll(0, history);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            hydrated = true;
+        }
+        super.clear();
     }
 
     public static class Builder {
@@ -80,7 +104,7 @@ public class MessageWindowConversation extends Conversation {
      */
     @Override
     public void add(Message message, Long timeMillis) {
-
+        hydrate();
         if(message instanceof UserMessage userMsg){
             ChatMemory.setSysMessageType(userMsg, SysMessage.MESSAGE_TYPE_NORMAL);
             ChatMemory.setTimeMillis(userMsg, timeMillis);
@@ -113,6 +137,8 @@ public class MessageWindowConversation extends Conversation {
             String messageType = hasToolCalls ? SysMessage.MESSAGE_TYPE_FUNCTION_CALL : SysMessage.MESSAGE_TYPE_NORMAL;
             String deviceId = device().getDeviceId();
             int roleId = role().getRoleId();
+            // 角色保存对话音频时，消息在写缓冲中等待音频路径，随插入一起写入
+            boolean awaitAudio = !"0".equals(role().getSaveAudio());
 
             List<Message> toSave = new ArrayList<>();
 
@@ -122,6 +148,8 @@ public class MessageWindowConversation extends Conversation {
                 if (msg instanceof UserMessage userMessage) {
                     ChatMemory.setSysMessageType(userMessage, messageType);
                     ChatMemory.setTokens(userMessage, usage.getPromptTokens());
+                    // 只有本轮的用户消息会附加音频
+                    ChatMemory.setAwaitAudio(userMessage, awaitAudio && toSave.isEmpty());
                     toSave.add(userMessage);
                 }
             }
@@ -131,6 +159,7 @@ public class MessageWindowConversation extends Conversation {
                 ChatMemory.setSysMessageType(assistantMessage, messageType);
                 ChatMemory.setTimeMillis(assistantMessage, timeMillis);
                 ChatMemory.setTokens(assistantMessage, usage.getCompletionTokens());
+                ChatMemory.setAwaitAudio(assistantMessage, awaitAudio);
                 toSave.add(assistantMessage);
             }
             chatMemory.save(deviceId, roleId, sessionId(), toSave);
@@ -144,6 +173,7 @@ public class MessageWindowConversation extends Conversation {
 
     @Override
     public List<Message> messages() {
+        hydrate();
         String roleDesc = role().getRoleDesc();
         // 添加设备地址信息到系统提示词中
         String deviceLocation = device().getLocation();
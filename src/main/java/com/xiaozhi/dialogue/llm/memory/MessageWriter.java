@@ -0,0 +1,345 @@
+package com.xiaozhi.dialogue.llm.memory;
+
+import com.xiaozhi.dao.MessageMapper;
+import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.service.SysStatsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 消息写缓冲
+ * 对话消息先进入按设备划分的先进先出队列，由后台线程按数量或时间阈值合并为一条多行INSERT写入；
+ * 需要保存音频的消息会在队列中等待音频路径，路径随插入一起写入，不再单独UPDATE。
+ * 同一设备的消息严格按加入顺序写入，应用关闭时写完全部缓冲。
+ */
+@Component
+public class MessageWriter {
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriter.class);
+
+    // 关闭时等待写入线程退出的最长时间（秒）
+    private static final int STOP_TIMEOUT_SECONDS = 5;
+
+    // 单次INSERT的最大行数，缓冲中可写入的消息达到该数量时立即写入
+    @Value("${chat.memory.writer.batch-size:200}")
+    private int batchSize;
+
+    // 最长写入间隔（毫秒）
+    @Value("${chat.memory.writer.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    // 消息等待音频路径的最长时间（毫秒），超时后不带路径写入，路径晚到时再单独更新
+    @Value("${chat.memory.writer.audio-wait-ms:15000}")
+    private long audioWaitMs;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private SysStatsService statsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeup = lock.newCondition();
+
+    // 按设备划分的待写入队列，保持设备的首次加入顺序
+    private final Map<String, ArrayDeque<Pending>> queues = new LinkedHashMap<>();
+    // 等待音频路径的消息
+    private final Map<String, Pending> awaitingAudio = new HashMap<>();
+    // 先于消息到达的音频路径
+    private final Map<String, EarlyAudio> earlyAudio = new HashMap<>();
+    private int pendingCount = 0;
+
+    private volatile boolean running = true;
+    private Thread writerThread;
+
+    private Timer flushTimer;
+    private DistributionSummary batchRows;
+    private Counter audioAttached;
+    private Counter audioLate;
+    private Counter failedRows;
+
+    private static final class Pending {
+        final SysMessage message;
+        final String audioKey;
+        final long audioDeadline;
+        boolean waiting;
+
+        Pending(SysMessage message, String audioKey, boolean waiting, long audioDeadline) {
+            this.message = message;
+            this.audioKey = audioKey;
+            this.waiting = waiting;
+            this.audioDeadline = audioDeadline;
+        }
+    }
+
+    private record EarlyAudio(SysMessage message, long deadline) {
+    }
+
+    @PostConstruct
+    public void start() {
+        flushTimer = Timer.builder("xiaozhi.message.writer.flush")
+                .description("消息批量写入耗时")
+                .register(meterRegistry);
+        batchRows = DistributionSummary.builder("xiaozhi.message.writer.batch.rows")
+                .description("每次批量写入的消息行数")
+                .register(meterRegistry);
+        audioAttached = Counter.builder("xiaozhi.message.writer.audio")
+                .tag("result", "attached")
+                .description("音频路径写入方式，attached为随插入写入，late为插入后单独更新")
+                .register(meterRegistry);
+        audioLate = Counter.builder("xiaozhi.message.writer.audio")
+                .tag("result", "late")
+                .description("音频路径写入方式，attached为随插入写入，late为插入后单独更新")
+                .register(meterRegistry);
+        failedRows = Counter.builder("xiaozhi.message.writer.failed")
+                .description("写入失败丢弃的消息行数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.message.writer.pending", this, MessageWriter::getPendingCount)
+                .description("缓冲中待写入的消息数")
+                .register(meterRegistry);
+        writerThread = Thread.ofPlatform().daemon().name("message-writer").start(this::writeLoop);
+    }
+
+    /**
+     * 加入待写入的消息，同一设备的消息按加入顺序写入
+     *
+     * @param awaitAudio 消息是否需要等待音频路径
+     */
+    public void enqueue(SysMessage message, boolean awaitAudio) {
+        String key = audioKey(message.getDeviceId(), message.getRoleId(), message.getSender(),
+                message.getCreateTime().getTime());
+        lock.lock();
+        try {
+            EarlyAudio early = earlyAudio.remove(key);
+            if (early != null) {
+                message.setAudioPath(early.message().getAudioPath());
+                audioAttached.increment();
+            }
+            boolean waiting = awaitAudio && early == null;
+            Pending pending = new Pending(message, key, waiting,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(audioWaitMs));
+            if (waiting) {
+                awaitingAudio.put(key, pending);
+            }
+            queues.computeIfAbsent(message.getDeviceId(), k -> new ArrayDeque<>()).offer(pending);
+            if (++pendingCount >= batchSize) {
+                wakeup.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 附加消息的音频路径，消息以设备、角色、发送方和创建时间（秒）确定
+     * 消息还在缓冲中时随插入写入；已写入时单独更新；消息尚未到达时先保存，到达后附加。
+     */
+    public void attachAudio(String deviceId, Integer roleId, String sender, Long timeMillis, String audioPath) {
+        if (deviceId == null || roleId == null || timeMillis == null || audioPath == null) {
+            return;
+        }
+        String key = audioKey(deviceId, roleId, sender, timeMillis);
+        lock.lock();
+        try {
+            Pending pending = awaitingAudio.remove(key);
+            if (pending != null) {
+                pending.message.setAudioPath(audioPath);
+                pending.waiting = false;
+                audioAttached.increment();
+                wakeup.signal();
+                return;
+            }
+            // 消息可能尚未加入，也可能已经写入，等待一段时间后按已写入处理
+            SysMessage update = new SysMessage();
+            update.setDeviceId(deviceId);
+            update.setRoleId(roleId);
+            update.setSender(sender);
+            update.setCreateTime(truncate(timeMillis));
+            update.setAudioPath(audioPath);
+            earlyAudio.put(key, new EarlyAudio(update,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(audioWaitMs)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            List<SysMessage> batch;
+            List<SysMessage> lateUpdates;
+            lock.lock();
+            try {
+                // 关闭时在锁内设置标志后唤醒，这里在锁内检查，不会错过唤醒
+                if (running) {
+                    wakeup.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                batch = collect(false);
+                lateUpdates = collectLateAudio(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lock.unlock();
+            }
+            write(batch);
+            updateLateAudio(lateUpdates);
+        }
+    }
+
+    /**
+     * 从各设备队列头部取出可以写入的消息，遇到等待音频的消息时该设备后续消息也等待，保证顺序
+     */
+    private List<SysMessage> collect(boolean force) {
+        List<SysMessage> batch = new ArrayList<>();
+        long now = System.nanoTime();
+        Iterator<ArrayDeque<Pending>> it = queues.values().iterator();
+        while (it.hasNext()) {
+            ArrayDeque<Pending> queue = it.next();
+            Pending head;
+            while ((head = queue.peek()) != null) {
+                if (head.waiting && !force && now - head.audioDeadline < 0) {
+                    break;
+                }
+                queue.poll();
+                if (head.waiting) {
+                    awaitingAudio.remove(head.audioKey);
+                }
+                batch.add(head.message);
+                pendingCount--;
+            }
+            if (queue.isEmpty()) {
+                it.remove();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 取出等待超时的音频路径，对应消息已经写入，需要单独更新
+     */
+    private List<SysMessage> collectLateAudio(boolean force) {
+        if (earlyAudio.isEmpty()) {
+            return List.of();
+        }
+        List<SysMessage> updates = new ArrayList<>();
+        long now = System.nanoTime();
+        Iterator<EarlyAudio> it = earlyAudio.values().iterator();
+        while (it.hasNext()) {
+            EarlyAudio early = it.next();
+            if (force || now - early.deadline() >= 0) {
+                updates.add(early.message());
+                it.remove();
+            }
+        }
+        return updates;
+    }
+
+    private void write(List<SysMessage> batch) {
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<SysMessage> rows = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            long start = System.nanoTime();
+            try {
+                messageMapper.saveAll(rows);
+                batchRows.record(rows.size());
+                statsService.recordMessages(rows);
+            } catch (Exception e) {
+                failedRows.increment(rows.size());
+                logger.error("批量保存消息失败，丢弃{}条: {}", rows.size(), e.getMessage(), e);
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void updateLateAudio(List<SysMessage> updates) {
+        for (SysMessage update : updates) {
+            try {
+                messageMapper.updateMessageByAudioFile(update);
+                audioLate.increment();
+            } catch (Exception e) {
+                logger.error("更新消息音频路径失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private static String audioKey(String deviceId, Integer roleId, String sender, long timeMillis) {
+        return deviceId + ":" + roleId + ":" + sender + ":" + TimeUnit.MILLISECONDS.toSeconds(timeMillis);
+    }
+
+    private static Date truncate(long timeMillis) {
+        return Date.from(Instant.ofEpochMilli(timeMillis).truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    @PreDestroy
+    public void stop() {
+        // 先让写入线程写完当前批次后自行退出，中断可能打断正在执行的saveAll
+        lock.lock();
+        try {
+            running = false;
+            wakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+                if (writerThread.isAlive()) {
+                    // 写入长时间没有返回（如数据库无响应），最后才中断
+                    logger.warn("消息写入线程{}秒内未退出，中断写入", STOP_TIMEOUT_SECONDS);
+                    writerThread.interrupt();
+                    writerThread.join(TimeUnit.SECONDS.toMillis(1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写完全部缓冲，不再等待音频路径
+        List<SysMessage> batch;
+        List<SysMessage> lateUpdates;
+        lock.lock();
+        try {
+            batch = collect(true);
+            lateUpdates = collectLateAudio(true);
+        } finally {
+            lock.unlock();
+        }
+        write(batch);
+        updateLateAudio(lateUpdates);
+        logger.info("消息写缓冲已关闭，写入剩余消息{}条", batch.size());
+    }
+}
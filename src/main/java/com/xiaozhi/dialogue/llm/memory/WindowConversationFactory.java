@@ -3,6 +3,7 @@ package com.xiaozhi.dialogue.llm.memory;
 import com.xiaozhi.entity.SysDevice;
 import com.xiaozhi.entity.SysRole;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import static com.xiaozhi.dialogue.llm.memory.MessageWindowConversation.DEFAULT_HISTORY_LIMIT;
@@ -12,6 +13,10 @@ public class WindowConversationFactory implements ConversationFactory{
 
     private final ChatMemory chatMemory;
 
+    // 每次对话携带的历史消息条数，历史在第一次对话时才加载
+    @Value("${chat.memory.history-limit:" + DEFAULT_HISTORY_LIMIT + "}")
+    private int historyLimit;
+
     @Autowired
     public WindowConversationFactory(ChatMemory chatMemory) {
         this.chatMemory = chatMemory;
@@ -20,7 +25,7 @@ public class WindowConversationFactory implements ConversationFactory{
     @Override
     public Conversation initConversation(SysDevice device, SysRole role, String sessionId) {
         Conversation conversation = MessageWindowConversation.builder().chatMemory(chatMemory)
-                .maxMessages(DEFAULT_HISTORY_LIMIT)
+                .maxMessages(historyLimit)
                 .role(role)
                 .device(device)
                 .sessionId(sessionId)
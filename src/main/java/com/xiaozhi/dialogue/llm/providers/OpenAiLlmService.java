@@ -23,6 +23,14 @@ public class OpenAiLlmService {
             .writeTimeout(30, TimeUnit.SECONDS)
             .build();
 
+    // 能力探测使用较短的超时，与对话请求共享连接池
+    protected static final OkHttpClient probeClient = client.newBuilder()
+            .readTimeout(30, TimeUnit.SECONDS)
+            .build();
+    // 各类兼容服务在模型信息中返回上下文长度的字段
+    private static final List<String> CONTEXT_LENGTH_KEYS = List.of(
+            "context_length", "context_window", "max_model_len", "max_context_length", "max_input_tokens");
+
     protected static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
     protected final String endpoint;
@@ -265,6 +273,15 @@ public class OpenAiLlmService {
     }
 
     public boolean testFunctionCall(){
+        return Boolean.TRUE.equals(probeFunctionCall());
+    }
+
+    /**
+     * 探测模型是否支持Function Call
+     *
+     * @return 是否支持，网络错误或服务端错误等无法判断时返回null
+     */
+    public Boolean probeFunctionCall(){
         List<Map<String, Object>> formattedMessages = new ArrayList<>();
         // 添加提示词信息
         Map<String, Object> systemMsg = new HashMap<>();
@@ -300,9 +317,9 @@ public class OpenAiLlmService {
                     .addHeader("Authorization", "Bearer " + apiKey)
                     .build();
             // 发送请求
-            try (Response response = client.newCall(request).execute()) {
+            try (Response response = probeClient.newCall(request).execute()) {
                 if (!response.isSuccessful()) {
-                    return false;
+                    return rejected(response) ? false : null;
                 }
                 String responseBody = response.body().string();
 
@@ -315,11 +332,118 @@ public class OpenAiLlmService {
                         return message.containsKey("tool_calls");
                     }
                 }
+                return false;
             }
         }catch (Exception e){
             logger.error("调用{}模型检查是否支持FunctionCall发生错误", model, e);
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * 探测流式输出时是否支持通过stream_options.include_usage返回usage
+     * 部分OpenAI兼容API不认识该参数会直接返回400
+     *
+     * @return 是否支持，无法判断时返回null
+     */
+    public Boolean probeStreamUsage() {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("messages", List.of(Map.of("role", "user", "content", "你好")));
+        requestBody.put("max_tokens", 1);
+        requestBody.put("stream", true);
+        requestBody.put("stream_options", Map.of("include_usage", true));
+        try {
+            Request request = new Request.Builder()
+                    .url(endpoint + "/chat/completions")
+                    .post(RequestBody.create(objectMapper.writeValueAsString(requestBody), JSON))
+                    .addHeader("Authorization", "Bearer " + apiKey)
+                    .build();
+            try (Response response = probeClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    return rejected(response) ? false : null;
+                }
+                BufferedSource source = response.body().source();
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        break;
+                    }
+                    Map<String, Object> chunk = objectMapper.readValue(data, new TypeReference<>() {});
+                    if (chunk.get("usage") instanceof Map) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        } catch (Exception e) {
+            logger.warn("调用{}模型检查是否支持stream usage发生错误: {}", model, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 从模型列表接口读取上下文长度
+     * OpenAI官方接口不返回该字段，vLLM、OpenRouter、Together等兼容服务字段名各不相同
+     *
+     * @return 上下文长度，接口未提供时返回null
+     */
+    public Integer probeContextLength() {
+        try {
+            Map<String, Object> modelInfo = getJson(endpoint + "/models/" + model);
+            Integer length = contextLength(modelInfo);
+            if (length != null) {
+                return length;
+            }
+            Map<String, Object> models = getJson(endpoint + "/models");
+            if (models != null && models.get("data") instanceof List<?> data) {
+                for (Object item : data) {
+                    if (item instanceof Map<?, ?> info && model.equals(info.get("id"))) {
+                        return contextLength(info);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("读取{}模型上下文长度发生错误: {}", model, e.getMessage());
+        }
+        return null;
+    }
+
+    private Map<String, Object> getJson(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .get()
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .build();
+        try (Response response = probeClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                return null;
+            }
+            return objectMapper.readValue(response.body().string(), new TypeReference<>() {});
+        }
+    }
+
+    private static Integer contextLength(Map<?, ?> info) {
+        if (info == null) {
+            return null;
+        }
+        for (String key : CONTEXT_LENGTH_KEYS) {
+            if (info.get(key) instanceof Number length && length.intValue() > 0) {
+                return length.intValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 请求被服务端明确拒绝（参数不支持），而不是鉴权、限流或服务端故障
+     */
+    private static boolean rejected(Response response) {
+        return response.code() == 400 || response.code() == 404 || response.code() == 422;
     }
 
     public String getModel() {
@@ -0,0 +1,53 @@
+package com.xiaozhi.dialogue.llm.tool;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 推测请求使用的工具包装
+ * 推测请求基于中间识别结果，工具可能有副作用（切换角色、退出会话、播放音乐等），不能在确认前执行。
+ * 已确认时直接调用原工具；尚未确认时取消推测请求并抛出异常，识别结束后用最终文本重新发起带工具的请求。
+ */
+public class SpeculativeToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final CompletableFuture<Boolean> confirmation;
+
+    public SpeculativeToolCallback(ToolCallback delegate, CompletableFuture<Boolean> confirmation) {
+        this.delegate = delegate;
+        this.confirmation = confirmation;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        checkConfirmed();
+        return delegate.call(toolInput);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        checkConfirmed();
+        return delegate.call(toolInput, toolContext);
+    }
+
+    private void checkConfirmed() {
+        // 与确认竞争：取消成功或已被取消都不执行工具
+        if (confirmation.complete(false) || !confirmation.join()) {
+            throw new IllegalStateException("推测请求未确认，不执行工具: " + delegate.getToolDefinition().name());
+        }
+    }
+}
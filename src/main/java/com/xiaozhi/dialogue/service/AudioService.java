@@ -1,8 +1,11 @@
 package com.xiaozhi.dialogue.service;
 
 import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.PipelineContext;
 import com.xiaozhi.communication.common.SessionManager;
-import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.dialogue.tts.TtsLatencyTracker;
+import com.xiaozhi.dialogue.tts.TtsResult;
+import com.xiaozhi.dialogue.tts.TtsStream;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.utils.AudioUtils;
@@ -17,19 +20,17 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
 
 /**
  * 音频服务，负责处理音频的流式和非流式发送
@@ -54,30 +55,22 @@ public class AudioService {
     @Autowired
     private MessageService messageService;
 
-    // 使用虚拟线程池处理定时任务
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
-            Runtime.getRuntime().availableProcessors(),
-            Thread.ofVirtual().name("audio-scheduler-", 0).factory());
+    // 所有下行音频帧统一由节拍器按帧时长发送
+    @Autowired
+    private FramePacer framePacer;
+
+    @Autowired
+    private TtsLatencyTracker ttsLatencyTracker;
 
     // 存储每个会话最后一次发送帧的时间戳
     private final Map<String, AtomicLong> lastFrameSentTime = new ConcurrentHashMap<>();
 
     // 存储每个会话当前是否正在播放音频
     private final Map<String, AtomicBoolean> isPlaying = new ConcurrentHashMap<>();
-    
-
-    // 存储每个会话的调度任务
-    private final Map<String, ScheduledFuture<?>> scheduledTasks = new ConcurrentHashMap<>();
 
     // 存储每个会话的音频发送任务
     private final Map<String, CompletableFuture<?>> sendAudioTasks = new ConcurrentHashMap<>();
 
-    // 存储播放开始时间（纳秒）
-    private final Map<String, Long> playStartTimes = new ConcurrentHashMap<>();
-    
-    // 存储播放位置（毫秒）
-    private final Map<String, Long> playPositions = new ConcurrentHashMap<>();
-
     /**
      * 发送TTS开始消息
      */
@@ -118,9 +111,6 @@ public class AudioService {
             // 取消调度任务
             cancelScheduledTask(sessionId);
             
-            // 清理播放时间信息
-            cleanTimers(sessionId);
-            
             // 延迟500ms后发送stop消息，确保设备完成音频播放
             CompletableFuture<Void> sendTtsMessageFuture = CompletableFuture.runAsync(() -> {
                 messageService.sendTtsMessage(session, null, "stop");
@@ -173,7 +163,11 @@ public class AudioService {
 
         String sessionId = session.getSessionId();
         String audioPath = sentence.getAudioPath();
+        TtsResult audio = sentence.getAudio();
+        TtsStream audioStream = sentence.getAudioStream();
         String text = sentence.getText();
+        // 优先使用流式音频和内存中的合成结果，其次才是音频文件
+        boolean hasAudio = audioStream != null || (audio != null && !audio.isEmpty()) || audioPath != null;
 
         // 标记开始播放
         AtomicBoolean playingState = isPlaying.computeIfAbsent(sessionId, k -> new AtomicBoolean(true));
@@ -185,7 +179,7 @@ public class AudioService {
         
         logger.info("向设备发送音频消息（sendAudioMessage） - SessionId: {}, 文本: {}, 音频路径: {}", sessionId, text, audioPath);
 
-        if (audioPath == null) {
+        if (!hasAudio) {
             if (text != null && !text.isEmpty()) {
                 // 检查是否是纯表情符号（通过检查句子是否有moods但没有实际文本内容）
                 boolean isOnlyEmoji = sentence.getMoods() != null && !sentence.getMoods().isEmpty() && 
@@ -252,24 +246,35 @@ public class AudioService {
         // 发送句子表情
         CompletableFuture<Void> emotionFuture = sentenceStartFuture.thenRun(() -> sendSentenceEmotion(session, sentence, null));
 
-        // 处理音频文件
-        CompletableFuture<Void> composeFuture = emotionFuture.thenCompose(v -> CompletableFuture.supplyAsync(() -> {
-            String fullPath = audioPath;
-            File audioFile = new File(fullPath);
-            if (!audioFile.exists()) {
-                logger.warn("音频文件不存在: {}", fullPath);
-                return null;
-            }
+        // 流式音频边合成边编码发送
+        if (audioStream != null) {
+            return finishAudioMessage(session, isLast, finalPlayingState,
+                    emotionFuture.thenCompose(v -> sendStreamFrames(session, sentence, audioStream, finalPlayingState)));
+        }
 
-            List<byte[]> opusFrames;
+        // 处理音频数据
+        CompletableFuture<Void> playFuture = emotionFuture.thenCompose(v -> CompletableFuture.supplyAsync(() -> {
+            // 已编码的Opus帧直接发送
+            if (audio != null && audio.hasOpusFrames()) {
+                return audio.getOpusFrames();
+            }
 
             try {
-                byte[] audioData = AudioUtils.readAsPcm(fullPath);
+                byte[] audioData;
+                if (audio != null && audio.getPcmData() != null) {
+                    audioData = audio.getPcmData();
+                } else {
+                    File audioFile = new File(audioPath);
+                    if (!audioFile.exists()) {
+                        logger.warn("音频文件不存在: {}", audioPath);
+                        return null;
+                    }
+                    audioData = AudioUtils.readAsPcm(audioPath);
+                }
                 // 将PCM转换为Opus帧
-                opusFrames = opusProcessor.pcmToOpus(sessionId, audioData, false);
-                return opusFrames;
+                return opusProcessor.pcmToOpus(sessionId, audioData, false);
             } catch (Exception e) {
-                logger.error("处理音频文件失败: {}", fullPath, e);
+                logger.error("处理音频数据失败: {}", audioPath, e);
                 return null;
             }
         })).thenCompose(opusFrames -> {
@@ -288,97 +293,63 @@ public class AudioService {
             CompletableFuture<Void> sendFramesFuture = new CompletableFuture<>();
             
             try {
-                // 计算句子间需要等待的时间（如果有上一帧的话）
-                long initialDelay = 0;
-                AtomicLong lastSentTime = lastFrameSentTime.get(sessionId);
-                if (lastSentTime != null) {
-                    long timeSinceLastFrame = System.currentTimeMillis() - lastSentTime.get();
-                    if (timeSinceLastFrame < OPUS_FRAME_SEND_INTERVAL_MS) {
-                        // 计算需要延迟的时间以保持间隔
-                        initialDelay = OPUS_FRAME_SEND_INTERVAL_MS - timeSinceLastFrame;
+                FramePacer.Track track = new FramePacer.Track() {
+                    private int frameIndex = 0;
+
+                    @Override
+                    protected byte[] nextFrame() {
+                        if (!finalPlayingState.get() || frameIndex >= opusFrames.size() || !session.isOpen()) {
+                            // 完成非流式音频处理
+                            return null;
+                        }
+                        byte[] frame = opusFrames.get(frameIndex++);
+                        // 发送给设备的帧同时写入对话录音
+                        sentence.record(frame);
+                        return frame;
                     }
-                }
-                
-                // 初始化播放时间和位置（延迟后再设置，避免时间计算错误）
-                final long frameInitialDelay = initialDelay;
-                
-                // 创建帧发送任务，从第一帧开始通过调度器发送
-                final int[] frameIndex = {0};
-                
-                Runnable frameTask = new Runnable() {
+
                     @Override
-                    public void run() {
-                        try {
-                            if (!finalPlayingState.get() || frameIndex[0] >= opusFrames.size() || !session.isOpen()) {
-                                // 完成非流式音频处理
-                                endTask(sessionId, sendFramesFuture);
-                                return;
-                            }
-                            
-                            // 首帧发送时初始化播放时间和位置
-                            if (frameIndex[0] == 0) {
-                                playStartTimes.put(sessionId, System.nanoTime());
-                                playPositions.put(sessionId, 0L);
-                            }
-                            
-                            // 更新活跃时间
-                            sessionManager.updateLastActivity(sessionId);
-                            
-                            // 发送当前帧
-                            byte[] frame = opusFrames.get(frameIndex[0]++);
-                            sendOpusFrame(session, frame);
-                            
-                            // 更新最后发送帧的时间
-                            lastFrameSentTime.computeIfAbsent(sessionId, k -> new AtomicLong())
-                                .set(System.currentTimeMillis());
-                            
-                            // 更新播放位置
-                            Long position = playPositions.get(sessionId);
-                            if (position != null) {
-                                playPositions.put(sessionId, position + OPUS_FRAME_SEND_INTERVAL_MS);
-                            }
-                            
-                            // 计算下一帧的发送时间
-                            if (frameIndex[0] < opusFrames.size()) {
-                                scheduleNextFrame(sessionId, this);
-                            } else {
-                                // 所有帧已发送完成
-                                endTask(sessionId, sendFramesFuture);
-                            }
-                            
-                        } catch (Exception e) {
-                            // 发生错误，取消调度任务
-                            logger.error("非流式帧处理失败", e);
-                            endTask(sessionId, sendFramesFuture, e);
+                    protected void onFrameSent(int index) {
+                        if (index == 0) {
+                            recordFirstAudioFrame(session, sentence);
                         }
+                        // 更新最后发送帧的时间
+                        lastFrameSentTime.computeIfAbsent(sessionId, k -> new AtomicLong())
+                            .set(System.currentTimeMillis());
+                    }
+
+                    @Override
+                    protected void onFinish(Throwable error) {
+                        endTask(sendFramesFuture, error);
                     }
                 };
                 
-                // 启动帧发送调度，使用计算好的初始延迟
-                if (opusFrames.size() > 0) {
-                    ScheduledFuture<?> future = scheduler.schedule(frameTask, frameInitialDelay, TimeUnit.MILLISECONDS);
-                    scheduledTasks.put(sessionId, future);
-                } else {
-                    // 没有帧需要发送
-                    endTask(sessionId, sendFramesFuture);
-                }
+                // 启动帧发送，使用计算好的初始延迟与上一句保持帧间隔
+                framePacer.play(session, track, getInitialDelay(sessionId));
                 
             } catch (Exception e) {
                 logger.error("音频帧发送初始化失败", e);
-                endTask(sessionId, sendFramesFuture, e);
+                endTask(sendFramesFuture, e);
             }
             
             // 返回帧发送Future
             return sendFramesFuture;
-        }).whenComplete((result, error) -> {
+        });
+        return finishAudioMessage(session, isLast, finalPlayingState, playFuture);
+    }
+
+    /**
+     * 音频帧发送结束后的收尾：清理调度状态，最后一句发送停止消息
+     */
+    private CompletableFuture<Void> finishAudioMessage(
+            ChatSession session,
+            boolean isLast,
+            AtomicBoolean finalPlayingState,
+            CompletableFuture<Void> playFuture) {
+        String sessionId = session.getSessionId();
+        CompletableFuture<Void> composeFuture = playFuture.whenComplete((result, error) -> {
             // 无论成功还是失败，都标记播放结束
             finalPlayingState.set(false);
-            
-            // 取消调度任务
-            cancelScheduledTask(sessionId);
-            
-            // 清理播放时间信息
-            cleanTimers(sessionId);
         }).thenCompose(v -> {
             // 发送停止消息（只有在isLast为true时才发送）
             if (isLast) {
@@ -386,7 +357,12 @@ public class AudioService {
             }
             return CompletableFuture.completedFuture(null);
         }).exceptionally(error -> {
-            logger.error("发送音频消息失败", error);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                logger.info("音频播放被中止 - SessionId: {}", sessionId);
+            } else {
+                logger.error("发送音频消息失败", error);
+            }
             
             // 如果发生错误但仍然是结束消息，确保发送stop
             if (isLast) {
@@ -402,6 +378,113 @@ public class AudioService {
         return composeFuture;
     }
 
+    /**
+     * 流式发送音频帧
+     * 每次到期时取出已到达的PCM数据块增量编码为Opus；合成跟不上时由节拍器在下个节拍重试并重新对齐播放时钟
+     */
+    private CompletableFuture<Void> sendStreamFrames(
+            ChatSession session,
+            DialogueService.Sentence sentence,
+            TtsStream stream,
+            AtomicBoolean finalPlayingState) {
+        String sessionId = session.getSessionId();
+        CompletableFuture<Void> sendFramesFuture = new CompletableFuture<>();
+        finalPlayingState.set(true);
+        // 清除上一句可能残留的样本，避免拼到本句开头
+        opusProcessor.removeLeftoverState(sessionId);
+
+        FramePacer.Track track = new FramePacer.Track() {
+            // 已编码待发送的帧，只在发送线程中顺序访问
+            private final Deque<byte[]> pendingFrames = new ArrayDeque<>();
+
+            @Override
+            protected byte[] nextFrame() {
+                if (!finalPlayingState.get() || !session.isOpen()) {
+                    opusProcessor.removeLeftoverState(sessionId);
+                    return null;
+                }
+
+                // 取出已到达的PCM并增量编码
+                byte[] pcm;
+                while (pendingFrames.isEmpty() && (pcm = stream.poll()) != null) {
+                    pendingFrames.addAll(opusProcessor.pcmToOpus(sessionId, pcm, true));
+                }
+                if (pendingFrames.isEmpty() && stream.isDrained()) {
+                    // 合成结束，编码残留样本作为最后一帧
+                    pendingFrames.addAll(opusProcessor.flushLeftover(sessionId));
+                    if (pendingFrames.isEmpty()) {
+                        stream.completeEncoding();
+                        return null;
+                    }
+                }
+
+                // 合成速度跟不上播放，稍后再取
+                if (pendingFrames.isEmpty()) {
+                    return FramePacer.NOT_READY;
+                }
+                byte[] frame = pendingFrames.poll();
+                // 发送给设备的帧同时写入对话录音和缓存
+                sentence.record(frame);
+                stream.addOpusFrame(frame);
+                return frame;
+            }
+
+            @Override
+            protected void onFrameSent(int index) {
+                if (index == 0) {
+                    recordFirstAudioFrame(session, sentence);
+                }
+                // 更新最后发送帧的时间
+                lastFrameSentTime.computeIfAbsent(sessionId, k -> new AtomicLong())
+                    .set(System.currentTimeMillis());
+            }
+
+            @Override
+            protected void onFinish(Throwable error) {
+                endTask(sendFramesFuture, error);
+            }
+
+            @Override
+            protected void onAbort() {
+                opusProcessor.removeLeftoverState(sessionId);
+            }
+        };
+
+        framePacer.play(session, track, getInitialDelay(sessionId));
+        return sendFramesFuture;
+    }
+
+    /**
+     * 计算句子间需要等待的时间（如果有上一帧的话），保持帧间隔
+     */
+    private long getInitialDelay(String sessionId) {
+        AtomicLong lastSentTime = lastFrameSentTime.get(sessionId);
+        if (lastSentTime != null) {
+            long timeSinceLastFrame = System.currentTimeMillis() - lastSentTime.get();
+            if (timeSinceLastFrame < OPUS_FRAME_SEND_INTERVAL_MS) {
+                return OPUS_FRAME_SEND_INTERVAL_MS - timeSinceLastFrame;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 记录本轮对话从请求模型到发出首帧音频的耗时
+     */
+    private void recordFirstAudioFrame(ChatSession session, DialogueService.Sentence sentence) {
+        Long assistantTimeMillis = sentence.getAssistantTimeMillis();
+        if (!sentence.isFirst() || assistantTimeMillis == null) {
+            return;
+        }
+        int firstFrameTime = (int) (System.currentTimeMillis() - assistantTimeMillis);
+        session.setAttribute(ChatSession.ATTR_FIRST_AUDIO_FRAME_TIME, firstFrameTime);
+        PipelineContext context = session.getPipelineContext();
+        ttsLatencyTracker.recordTimeToFirstAudio(context.getRoleId(),
+                TtsLatencyTracker.providerOf(context.getTtsConfig()), firstFrameTime);
+        logger.info("首帧音频时间 - SessionId: {}, 耗时: {}秒, 流式: {}",
+                session.getSessionId(), df.format(firstFrameTime / 1000.0), sentence.getAudioStream() != null);
+    }
+
     /**
      * 发送Opus帧数据
      */
@@ -427,7 +510,6 @@ public class AudioService {
     public void cleanupSession(String sessionId) {
         lastFrameSentTime.remove(sessionId);
         isPlaying.remove(sessionId);
-        cleanTimers(sessionId);
         cancelScheduledTask(sessionId);
         opusProcessor.cleanup(sessionId);
         
@@ -440,22 +522,9 @@ public class AudioService {
     }
 
     /**
-     * 结束非流式任务
+     * 结束帧发送任务
      */
-    private void endTask(String sessionId, CompletableFuture<Void> future) {
-        endTask(sessionId, future, null);
-    }
-    
-    /**
-     * 结束非流式任务（带异常）
-     */
-    private void endTask(String sessionId, CompletableFuture<Void> future, Throwable error) {
-        // 取消调度任务
-        cancelScheduledTask(sessionId);
-        
-        // 清理播放时间信息
-        cleanTimers(sessionId);
-        
+    private void endTask(CompletableFuture<Void> future, Throwable error) {
         // 完成Future
         if (error != null) {
             future.completeExceptionally(error);
@@ -465,54 +534,9 @@ public class AudioService {
     }
 
     /**
-     * 清理计时器资源
-     */
-    private void cleanTimers(String sessionId) {
-        playStartTimes.remove(sessionId);
-        playPositions.remove(sessionId);
-    }
-    
-    /**
-     * 计算并调度下一帧的发送时间
-     */
-    private void scheduleNextFrame(String sessionId, Runnable frameTask) {
-        Long startTime = playStartTimes.get(sessionId);
-        Long position = playPositions.get(sessionId);
-        
-        if (startTime == null || position == null) {
-            // 如果没有时间信息，使用固定间隔
-            ScheduledFuture<?> future = scheduler.schedule(frameTask, OPUS_FRAME_SEND_INTERVAL_MS, TimeUnit.MILLISECONDS);
-            scheduledTasks.put(sessionId, future);
-            return;
-        }
-
-        // 计算预期发送时间（纳秒级精度）
-        long expectedTime = startTime + position * 1_000_000;
-        long currentTime = System.nanoTime();
-        long delayNanos = expectedTime - currentTime;
-        
-        ScheduledFuture<?> future;
-        if (delayNanos <= 0) {
-            // 如果当前时间已经超过预期时间，立即发送
-            future = scheduler.schedule(frameTask, 0, TimeUnit.NANOSECONDS);
-        } else {
-            // 延迟到精确时间点再发送
-            future = scheduler.schedule(frameTask, delayNanos, TimeUnit.NANOSECONDS);
-        }
-
-        scheduledTasks.put(sessionId, future);
-    }
-    
-    /**
-     * 取消调度任务
+     * 中止会话当前正在发送的音频（TTS、音乐、绘本）
      */
     public void cancelScheduledTask(String sessionId) {
-        ScheduledFuture<?> task = scheduledTasks.remove(sessionId);
-        if (task != null && !task.isDone()) {
-            task.cancel(false);
-        }
+        framePacer.abort(sessionId);
     }
-
-
-
-}
\ No newline at end of file
+}
@@ -1,25 +1,33 @@
 package com.xiaozhi.dialogue.service;
 
 import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.PipelineContext;
 import com.xiaozhi.communication.common.SessionManager;
 import com.xiaozhi.dialogue.llm.ChatService;
 import com.xiaozhi.dialogue.llm.memory.Conversation;
+import com.xiaozhi.dialogue.llm.memory.MessageWriter;
 import com.xiaozhi.dialogue.service.VadService.VadStatus;
 import com.xiaozhi.dialogue.stt.SttService;
 import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
+import com.xiaozhi.dialogue.tts.TtsCache;
+import com.xiaozhi.dialogue.tts.TtsLatencyTracker;
+import com.xiaozhi.dialogue.tts.TtsResult;
 import com.xiaozhi.dialogue.tts.TtsService;
+import com.xiaozhi.dialogue.tts.TtsStream;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.entity.SysDevice;
 import com.xiaozhi.entity.SysRole;
 import com.xiaozhi.event.ChatAbortEvent;
 import com.xiaozhi.event.ChatSessionCloseEvent;
-import com.xiaozhi.service.SysConfigService;
-import com.xiaozhi.service.SysMessageService;
-import com.xiaozhi.service.SysRoleService;
 import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.OggOpusWriter;
 import com.xiaozhi.utils.EmojiUtils;
 import com.xiaozhi.utils.EmojiUtils.EmoSentence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,16 +37,14 @@ import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
-import java.nio.file.Files;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 /**
@@ -49,7 +55,6 @@ import java.util.function.Consumer;
 public class DialogueService{
     private static final Logger logger = LoggerFactory.getLogger(DialogueService.class);
     private static final DecimalFormat df = new DecimalFormat("0.000");
-    private static final long TIMEOUT_MS = 5000;
     
     // 从配置文件读取TTS相关参数
     @Value("${tts.timeout.ms:10000}")
@@ -76,6 +81,9 @@ public class DialogueService{
     @Resource
     private TtsServiceFactory ttsFactory;
 
+    @Resource
+    private TtsCache ttsCache;
+
     @Resource
     private SttServiceFactory sttFactory;
 
@@ -95,24 +103,23 @@ public class DialogueService{
     private SessionManager sessionManager;
 
     @Resource
-    private SysMessageService sysMessageService;
-    
+    private MessageWriter messageWriter;
+
     @Resource
-    private SysConfigService configService;
-    
+    private MeterRegistry meterRegistry;
+
     @Resource
-    private SysRoleService roleService;
+    private TtsLatencyTracker ttsLatencyTracker;
 
     // 会话状态管理
     private final Map<String, AtomicInteger> seqCounters = new ConcurrentHashMap<>();
     private final Map<String, Long> sttStartTimes = new ConcurrentHashMap<>();
     private final Map<String, Long> llmStartTimes = new ConcurrentHashMap<>();
-    private final Map<String, CopyOnWriteArrayList<Sentence>> sentenceQueue = new ConcurrentHashMap<>();
+    private final Map<String, SentenceQueue> sentenceQueue = new ConcurrentHashMap<>();
     private final Map<String, AtomicBoolean> firstSentDone = new ConcurrentHashMap<>();
-    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
 
-    // 存储每个对话ID的所有模型回复音频路径
-    private final Map<Long, Map<Integer, String>> dialogueAudioPaths = new ConcurrentHashMap<>();
+    // 每个对话ID的模型回复录音，播放时把发送给设备的Opus帧直接写入Ogg文件，仅在角色需要保存对话音频时创建
+    private final Map<Long, OggOpusWriter> dialogueRecorders = new ConcurrentHashMap<>();
     // 存储每个对话ID的完整文本回复
     private final Map<Long, StringBuilder> dialogueResponses = new ConcurrentHashMap<>();
 
@@ -120,6 +127,44 @@ public class DialogueService{
     private final Map<String, Semaphore> sessionSemaphores = new ConcurrentHashMap<>();
     private final Map<String, PriorityBlockingQueue<TtsTask>> sessionTaskQueues = new ConcurrentHashMap<>();
 
+    // 推测识别：每个会话最新的中间识别结果和进行中的推测请求
+    private final Map<String, String> partialTexts = new ConcurrentHashMap<>();
+    private final Map<String, SpeculativeTurn> speculations = new ConcurrentHashMap<>();
+
+    private Counter speculationHits;
+    private Counter speculationMisses;
+    private Counter speculationCancels;
+    private Timer speculationSaved;
+
+    @PostConstruct
+    public void registerMetrics() {
+        speculationHits = Counter.builder("xiaozhi.stt.speculation")
+                .tag("result", "hit")
+                .description("推测请求次数，hit为最终识别结果与推测一致，miss为不一致，cancelled为用户继续说话")
+                .register(meterRegistry);
+        speculationMisses = Counter.builder("xiaozhi.stt.speculation")
+                .tag("result", "miss")
+                .description("推测请求次数，hit为最终识别结果与推测一致，miss为不一致，cancelled为用户继续说话")
+                .register(meterRegistry);
+        speculationCancels = Counter.builder("xiaozhi.stt.speculation")
+                .tag("result", "cancelled")
+                .description("推测请求次数，hit为最终识别结果与推测一致，miss为不一致，cancelled为用户继续说话")
+                .register(meterRegistry);
+        speculationSaved = Timer.builder("xiaozhi.stt.speculation.saved")
+                .description("推测命中时模型请求比等待静音超时提前的时间")
+                .publishPercentiles(0.5, 0.9)
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.stt.speculation.hit.ratio", this, DialogueService::getSpeculationHitRatio)
+                .description("推测请求命中率")
+                .register(meterRegistry);
+    }
+
+    public double getSpeculationHitRatio() {
+        double hits = speculationHits.count();
+        double total = hits + speculationMisses.count() + speculationCancels.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
     @org.springframework.context.event.EventListener
     public void onApplicationEvent(ChatSessionCloseEvent event) {
         ChatSession chatSession = event.getSession();
@@ -127,7 +172,8 @@ public class DialogueService{
             // clean up dialogue audio paths and responses
             Long assistantTimeMillis = chatSession.getAssistantTimeMillis();
             if (assistantTimeMillis!=null ) {
-                dialogueAudioPaths.remove(assistantTimeMillis);
+                // 保存已经播放出去的部分
+                finishDialogueAudio(chatSession, assistantTimeMillis);
                 dialogueResponses.remove(assistantTimeMillis);
             }
             cleanupSession(chatSession.getSessionId());
@@ -149,12 +195,18 @@ public class DialogueService{
         private final String text;
         private boolean isFirst;
         private boolean isLast;
-        private boolean ready = false;
+        private volatile boolean ready = false;
+        // 音频就绪（包括失败后标记为空音频）时完成
+        private final CompletableFuture<Sentence> readyFuture = new CompletableFuture<>();
+        // 是否已在等待该句就绪，同一句只等待一次
+        private final AtomicBoolean awaited = new AtomicBoolean(false);
         private String audioPath = null;
-        private long timestamp = System.currentTimeMillis();
+        private TtsResult audio = null;
+        private TtsStream audioStream = null;
         private double modelResponseTime = 0.0; // 模型响应时间（秒）
         private double ttsGenerationTime = 0.0; // TTS生成时间（秒）
         private Long assistantTimeMillis = null; // 对话ID
+        private OggOpusWriter recorder = null; // 对话录音，不需要保存音频时为空
         private List<String> moods;
         // TODO 看看是否真的需要这么多个构造方法。
         public Sentence(String text) {
@@ -173,17 +225,34 @@ public class DialogueService{
             this.isLast = isLast;
         }
 
-        public void setAudio(String path) {
-            this.audioPath = path;
+        public void setAudio(TtsResult audio) {
+            this.audio = audio;
+            this.ready = true;
+            readyFuture.complete(this);
+        }
+
+        /**
+         * 设置流式音频，收到首个数据块即可开始播放
+         */
+        public void setAudioStream(TtsStream audioStream) {
+            this.audioStream = audioStream;
             this.ready = true;
+            readyFuture.complete(this);
         }
 
         public boolean isReady() {
             return ready;
         }
 
-        public boolean isTimeout() {
-            return System.currentTimeMillis() - timestamp > TIMEOUT_MS;
+        /**
+         * 等待音频就绪，超时后按失败处理，标记为空音频
+         * 每个句子只注册一次，重复调用返回null
+         */
+        CompletableFuture<Sentence> awaitReady(long timeoutMs) {
+            if (!awaited.compareAndSet(false, true)) {
+                return null;
+            }
+            return readyFuture.copy().orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
         }
 
         public int getSeq() {
@@ -206,6 +275,14 @@ public class DialogueService{
             return audioPath;
         }
 
+        public TtsResult getAudio() {
+            return audio;
+        }
+
+        public TtsStream getAudioStream() {
+            return audioStream;
+        }
+
         public void setModelResponseTime(double time) {
             this.modelResponseTime = time;
         }
@@ -230,6 +307,25 @@ public class DialogueService{
             return assistantTimeMillis;
         }
 
+        public void setRecorder(OggOpusWriter recorder) {
+            this.recorder = recorder;
+        }
+
+        /**
+         * 记录一帧已发送给设备的Opus音频，在发送线程中调用
+         */
+        public void record(byte[] frame) {
+            if (recorder == null) {
+                return;
+            }
+            try {
+                recorder.write(frame);
+            } catch (Exception e) {
+                logger.warn("写入对话录音失败: {}, {}", recorder.getPath(), e.getMessage());
+                recorder = null;
+            }
+        }
+
         public List<String> getMoods() {
             return moods;
         }
@@ -321,10 +417,12 @@ public class DialogueService{
             if (device == null || ObjectUtils.isEmpty(device.getRoleId())) {
                 return;
             }
-            SysRole role = roleService.selectRoleById(device.getRoleId());
-            // 获取STT和TTS配置
-            SysConfig sttConfig = role.getSttId() != null ? configService.selectConfigById(role.getSttId())
-                    : null;
+            // 角色和STT配置在设备绑定时已解析到管线上下文中
+            PipelineContext context = session.getPipelineContext();
+            if (!context.isBound()) {
+                return;
+            }
+            SysConfig sttConfig = context.getSttConfig();
 
             // 处理VAD
             VadService.VadResult vadResult = vadService.processAudio(sessionId, opusData);
@@ -340,6 +438,8 @@ public class DialogueService{
                 case SPEECH_START:
                     // 检测到语音开始
                     sttStartTimes.put(sessionId, System.currentTimeMillis());
+                    cancelSpeculation(session, speculationCancels);
+                    partialTexts.remove(sessionId);
                     if(isDialog(sessionId)){
                         //检测到vad，触发当前语音打断事件
                         applicationContext.publishEvent(new ChatAbortEvent(session, "检测到vad"));
@@ -356,6 +456,24 @@ public class DialogueService{
                     }
                     break;
 
+                case SPEECH_PAUSE:
+                    // 静音开始，继续发送数据，同时用中间识别结果提前请求模型
+                    if (sessionManager.isStreaming(sessionId)) {
+                        sessionManager.sendAudioData(sessionId, vadResult.getProcessedData());
+                        if (context.isSpeculativeStt()) {
+                            startSpeculation(session);
+                        }
+                    }
+                    break;
+
+                case SPEECH_RESUME:
+                    // 用户继续说话，取消推测请求
+                    cancelSpeculation(session, speculationCancels);
+                    if (sessionManager.isStreaming(sessionId)) {
+                        sessionManager.sendAudioData(sessionId, vadResult.getProcessedData());
+                    }
+                    break;
+
                 case SPEECH_END:
                     // 语音结束，完成流式识别
                     if (sessionManager.isStreaming(sessionId)) {
@@ -386,7 +504,10 @@ public class DialogueService{
             try {
                 // 如果正在播放，先中断音频
                 if (audioService.isPlaying(sessionId)) {
-                    sentenceQueue.get(sessionId).clear();
+                    SentenceQueue queue = sentenceQueue.get(sessionId);
+                    if (queue != null) {
+                        queue.clear();
+                    }
                     audioService.sendStop(session);
                 }
 
@@ -415,35 +536,37 @@ public class DialogueService{
 
                 final String finalText;
                 if (sessionManager.getAudioStream(sessionId) != null) {
-                    finalText = sttService.streamRecognition(sessionManager.getAudioStream(sessionId));
+                    if (session.getPipelineContext().isSpeculativeStt()) {
+                        // 记录中间结果，静音开始时用于推测请求
+                        finalText = sttService.streamRecognition(sessionManager.getAudioStream(sessionId),
+                                text -> partialTexts.put(sessionId, text));
+                    } else {
+                        finalText = sttService.streamRecognition(sessionManager.getAudioStream(sessionId));
+                    }
+                    partialTexts.remove(sessionId);
                     if (!StringUtils.hasText(finalText)) {
+                        cancelSpeculation(session, speculationMisses);
                         return;
                     }
                 } else {
                     return;
                 }
 
+                // 推测请求与最终结果一致时直接使用已生成的回复
+                SpeculativeTurn turn = speculations.remove(sessionId);
+                if (turn != null) {
+                    if (turn.matches(finalText)) {
+                        confirmSpeculation(session, turn, finalText);
+                        return;
+                    }
+                    discardSpeculation(session, turn, speculationMisses);
+                }
+
                 llmStartTimes.put(sessionId, System.currentTimeMillis());
 
                 CompletableFuture.runAsync(() -> messageService.sendSttMessage(session, finalText))
                         .thenRun(() -> audioService.sendStart(session))
-                        .thenRun(() -> {
-                            // 设置LLM生成消息的时间戳作为Assistant消息的创建时间戳，也用于约定保存音频文件的路径。一定要在LLM前设置时间戳。
-                            final Long assistantTimeMillis =  System.currentTimeMillis();
-                            session.setAssistantTimeMillis(assistantTimeMillis);
-                            // 初始化当前对话的音频路径映射和文本响应
-                            dialogueAudioPaths.put(assistantTimeMillis, new ConcurrentHashMap<>());
-                            dialogueResponses.put(assistantTimeMillis, new StringBuilder());
-                            // 使用句子切分处理响应
-                            chatService.chatStreamBySentence(session, finalText, true,
-                                    (sentence, isFirst, isLast) -> {
-                                        handleSentence(
-                                                session,
-                                                sentence,
-                                                isFirst,
-                                                isLast);
-                                    });
-                        })
+                        .thenRun(() -> chatBySentence(session, finalText))
                         .exceptionally(e -> {
                             logger.error("处理对话失败: {}", e.getMessage(), e);
                             return null;
@@ -455,36 +578,141 @@ public class DialogueService{
     }
 
     /**
-     * 保存用户音频数据
+     * 用最终识别文本请求模型，回复按句交给TTS和播放流程
      */
-    private void saveUserAudio(ChatSession session) {
-        try {
-            // 获取当前语音活动的PCM数据
-            List<byte[]> pcmFrames = vadService.getPcmData(session.getSessionId());
-
-            if (pcmFrames != null && !pcmFrames.isEmpty()) {
-                // 计算总大小并合并PCM帧
-                int totalSize = pcmFrames.stream().mapToInt(frame -> frame.length).sum();
-                byte[] fullPcmData = new byte[totalSize];
-                int offset = 0;
-
-                for (byte[] frame : pcmFrames) {
-                    System.arraycopy(frame, 0, fullPcmData, offset, frame.length);
-                    offset += frame.length;
+    private void chatBySentence(ChatSession session, String finalText) {
+        // 设置LLM生成消息的时间戳作为Assistant消息的创建时间戳，也用于约定保存音频文件的路径。一定要在LLM前设置时间戳。
+        final Long assistantTimeMillis =  System.currentTimeMillis();
+        session.setAssistantTimeMillis(assistantTimeMillis);
+        // 初始化当前对话的文本响应
+        dialogueResponses.put(assistantTimeMillis, new StringBuilder());
+        // 使用句子切分处理响应
+        chatService.chatStreamBySentence(session, finalText, true,
+                (sentence, isFirst, isLast) -> {
+                    handleSentence(
+                            session,
+                            sentence,
+                            isFirst,
+                            isLast);
+                });
+    }
+
+    /**
+     * 用当前的中间识别结果发起推测请求，回复的句子在确认前只缓存不播放
+     */
+    private void startSpeculation(ChatSession session) {
+        String sessionId = session.getSessionId();
+        String partial = partialTexts.get(sessionId);
+        if (!StringUtils.hasText(partial)) {
+            return;
+        }
+        SpeculativeTurn current = speculations.get(sessionId);
+        if (current != null) {
+            if (current.matches(partial)) {
+                return;
+            }
+            cancelSpeculation(session, speculationCancels);
+        }
+
+        // LLM生成消息的时间戳，推测命中时才写入session作为Assistant消息的创建时间戳，避免影响正在进行的对话和首帧统计
+        Long assistantTimeMillis = System.currentTimeMillis();
+        SpeculativeTurn turn = new SpeculativeTurn(partial, assistantTimeMillis);
+        speculations.put(sessionId, turn);
+        // 被取消（包括模型在确认前调用工具）时撤销请求过程中加入的用户消息
+        turn.getConfirmation().thenAccept(confirmed -> {
+            if (!confirmed) {
+                rollbackConversation(session, turn);
+            }
+        });
+        logger.debug("推测请求 - SessionId: {}, 文本: {}", sessionId, partial);
+
+        Thread.startVirtualThread(() -> {
+            try {
+                chatService.chatStreamBySentence(session, partial, true, turn::accept, assistantTimeMillis,
+                        turn.getConfirmation());
+                // 请求发出前已被取消时，撤销请求过程中加入的用户消息
+                if (!turn.getConfirmation().getNow(true)) {
+                    rollbackConversation(session, turn);
                 }
+            } catch (Exception e) {
+                logger.error("推测请求失败: {}", e.getMessage(), e);
+                speculations.remove(sessionId, turn);
+                turn.cancel();
+            }
+        });
+    }
+
+    /**
+     * 推测命中，缓存的回复句子交给正常的TTS和播放流程
+     */
+    private void confirmSpeculation(ChatSession session, SpeculativeTurn turn, String finalText) {
+        String sessionId = session.getSessionId();
+        long savedNanos = System.nanoTime() - turn.getStartNanos();
+        llmStartTimes.put(sessionId, turn.getAssistantTimeMillis());
+
+        CompletableFuture.runAsync(() -> messageService.sendSttMessage(session, finalText))
+                .thenRun(() -> audioService.sendStart(session))
+                .thenRun(() -> {
+                    session.setAssistantTimeMillis(turn.getAssistantTimeMillis());
+                    dialogueResponses.put(turn.getAssistantTimeMillis(), new StringBuilder());
+                    boolean confirmed = turn.confirm((sentence, isFirst, isLast) ->
+                            handleSentence(session, sentence, isFirst, isLast));
+                    if (confirmed) {
+                        speculationHits.increment();
+                        speculationSaved.record(savedNanos, TimeUnit.NANOSECONDS);
+                        logger.debug("推测命中 - SessionId: {}, 提前: {}ms", sessionId,
+                                TimeUnit.NANOSECONDS.toMillis(savedNanos));
+                    } else {
+                        // 模型在确认前调用了工具，推测已取消，用最终文本重新请求
+                        dialogueResponses.remove(turn.getAssistantTimeMillis());
+                        speculationMisses.increment();
+                        logger.debug("推测请求调用了工具，重新请求 - SessionId: {}", sessionId);
+                        chatBySentence(session, finalText);
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.error("处理对话失败: {}", e.getMessage(), e);
+                    return null;
+                });
+    }
 
-                // 保存为WAV文件
-                Path path = session.getUserAudioPath();
-                AudioUtils.saveAsWav(path,fullPcmData);
-                logger.debug("用户音频已保存: {}", path.toString());
-                //更新消息表路径、时长信息
-                String deviceId = session.getSysDevice().getDeviceId().replace("-", ":");
-                Integer roleId = session.getSysDevice().getRoleId();
-                String fileName = path.getFileName().toString();
-                String createTime = fileName.substring(0, fileName.indexOf("-" + Conversation.MESSAGE_TYPE_USER));
-                sysMessageService.updateMessageByAudioFile(deviceId, roleId,
-                        Conversation.MESSAGE_TYPE_USER, createTime, path.toString());
+    /**
+     * 取消会话进行中的推测请求
+     */
+    private void cancelSpeculation(ChatSession session, Counter result) {
+        SpeculativeTurn turn = speculations.remove(session.getSessionId());
+        if (turn != null) {
+            discardSpeculation(session, turn, result);
+        }
+    }
+
+    private void discardSpeculation(ChatSession session, SpeculativeTurn turn, Counter result) {
+        if (turn.cancel()) {
+            result.increment();
+            logger.debug("推测取消 - SessionId: {}, 文本: {}", session.getSessionId(), turn.getText());
+        }
+    }
+
+    private void rollbackConversation(ChatSession session, SpeculativeTurn turn) {
+        Conversation conversation = session.getConversation();
+        if (conversation != null) {
+            turn.rollback(conversation);
+        }
+    }
+
+    /**
+     * 保存用户音频数据
+     * 直接封装设备上传的Opus帧，不需要解码
+     */
+    private void saveUserAudio(ChatSession session, Long userTimeMillis, Path path, List<byte[]> opusFrames) {
+        try {
+            if (!OggOpusWriter.write(path, opusFrames, AudioUtils.SAMPLE_RATE)) {
+                return;
             }
+            logger.debug("用户音频已保存: {}", path.toString());
+            // 音频路径随消息一起写入
+            messageWriter.attachAudio(session.getSysDevice().getDeviceId(), session.getSysDevice().getRoleId(),
+                    Conversation.MESSAGE_TYPE_USER, userTimeMillis, path.toString());
         } catch (Exception e) {
             logger.error("保存用户音频失败: {}", e.getMessage(), e);
         }
@@ -496,9 +724,8 @@ public class DialogueService{
     private void initChat(String sessionId) {
         llmStartTimes.put(sessionId, System.currentTimeMillis());
         seqCounters.putIfAbsent(sessionId, new AtomicInteger(0));
-        sentenceQueue.putIfAbsent(sessionId, new CopyOnWriteArrayList<>());
+        sentenceQueue.putIfAbsent(sessionId, new SentenceQueue());
         firstSentDone.put(sessionId, new AtomicBoolean(false));
-        locks.putIfAbsent(sessionId, new ReentrantLock());
     }
 
     /**
@@ -539,20 +766,23 @@ public class DialogueService{
         }
 
         SysDevice device = session.getSysDevice();
-        SysRole role = roleService.selectRoleById(device.getRoleId());
+        PipelineContext context = session.getPipelineContext();
+        SysRole role = context.getRole();
         if (device == null || role == null) {
             return;
         }
 
         // 新增加的设备很有可能没有配置TTS，采用默认Edge需要传递null
-        final SysConfig ttsConfig;
-        if (role.getTtsId() != null) {
-            ttsConfig = configService.selectConfigById(role.getTtsId());
-        } else {
-            ttsConfig = null;
-        }
+        final SysConfig ttsConfig = context.getTtsConfig();
         String voiceName = role.getVoiceName();
 
+        // 需要保存对话音频时在首句创建录音，句子播放时写入；录音结束后迟到的句子不再录制，避免覆盖已保存的文件
+        if (isFirst && isSaveAudio(role)) {
+            dialogueRecorders.computeIfAbsent(assistantTimeMillis,
+                    k -> new OggOpusWriter(session.getAssistantAudioPath(), AudioUtils.SAMPLE_RATE));
+        }
+        final OggOpusWriter recorder = dialogueRecorders.get(assistantTimeMillis);
+
         // 处理表情符号
         EmoSentence emoSentence = EmojiUtils.processSentence(text);
 
@@ -565,12 +795,13 @@ public class DialogueService{
             Sentence sentence = new Sentence(seq, text, isFirst, isLast);
             sentence.setModelResponseTime(responseTime / 1000.0);
             sentence.setAssistantTimeMillis(assistantTimeMillis);
-            sentence.setAudio(null);
+            sentence.setRecorder(recorder);
+            sentence.setAudio(TtsResult.empty());
             sentence.setTtsGenerationTime(0);
             sentence.setMoods(emoSentence.getMoods());
 
             // 添加到句子队列
-            CopyOnWriteArrayList<Sentence> queue = sentenceQueue.get(sessionId);
+            SentenceQueue queue = sentenceQueue.get(sessionId);
             if (queue != null) {
                 queue.add(sentence);
             }
@@ -589,17 +820,18 @@ public class DialogueService{
         Sentence sentence = new Sentence(seq, text, isFirst, isLast);
         sentence.setModelResponseTime(responseTime / 1000.0); // 记录模型响应时间
         sentence.setAssistantTimeMillis(assistantTimeMillis); // 设置对话ID
+        sentence.setRecorder(recorder);
 
         logger.info("处理LLM返回的句子: seq={}, text={}, isFirst={}, isLast={}, responseTime={}s", seq, text, isFirst, isLast, responseTime/1000);
 
         // 添加到句子队列
-        CopyOnWriteArrayList<Sentence> queue = sentenceQueue.get(sessionId);
+        SentenceQueue queue = sentenceQueue.get(sessionId);
         if (queue == null) {return;}
         queue.add(sentence);
 
         // 如果句子为空且是结束状态，直接标记为准备好（不需要生成音频）
         if ((text == null || text.isEmpty()) && isLast) {
-            sentence.setAudio(null);
+            sentence.setAudio(TtsResult.empty());
             sentence.setTtsGenerationTime(0); // 设置TTS生成时间为0
 
             // 如果是首句，需要标记首句处理完成
@@ -694,16 +926,35 @@ public class DialogueService{
      * 执行TTS任务（带超时和重试）
      */
     private void executeTtsTask(TtsTask task) {
-        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+        TtsService ttsService = ttsFactory.getTtsService(task.ttsConfig, task.voiceName, task.ttsPitch, task.ttsSpeed);
+        // 重复的短句直接使用缓存的Opus帧，不再调用服务商
+        String cacheKey = ttsCache.createKey(task.ttsConfig, ttsService.getProviderName(), task.voiceName,
+                task.ttsPitch, task.ttsSpeed, task.emoSentence.getTtsSentence());
+        List<byte[]> cachedFrames = ttsCache.get(cacheKey);
+        if (cachedFrames != null) {
+            handleCachedTts(task, cachedFrames);
+            return;
+        }
+        // 支持流式的服务商边合成边播放，重试时走非流式以保证拿到完整音频
+        if (!task.isRetry && ttsService.isSupportStreamTts()) {
+            executeStreamTtsTask(task, ttsService, cacheKey);
+            return;
+        }
+        CompletableFuture<TtsResult> future = CompletableFuture.supplyAsync(() -> {
             try {
                 long ttsStartTime = System.currentTimeMillis();
-                String audioPath = ttsFactory.getTtsService(task.ttsConfig, task.voiceName, task.ttsPitch, task.ttsSpeed)
-                        .textToSpeech(task.emoSentence.getTtsSentence());
+                TtsResult result = ttsService.synthesize(task.emoSentence.getTtsSentence());
+                ttsLatencyTracker.record(TtsLatencyTracker.providerOf(task.ttsConfig),
+                        System.currentTimeMillis() - ttsStartTime);
+                if (cacheKey != null && result.getPcmData() != null) {
+                    // 放入缓存时已编码为Opus，播放时直接使用
+                    result = TtsResult.of(result.getPcmData(), ttsCache.put(cacheKey, result.getPcmData()));
+                }
                 long ttsDuration = System.currentTimeMillis() - ttsStartTime;
 
                 // 记录TTS生成时间
                 task.sentence.setTtsGenerationTime(ttsDuration / 1000.0);
-                return audioPath;
+                return result;
             } catch (Exception e) {
                 throw new CompletionException(e);
             }
@@ -714,10 +965,10 @@ public class DialogueService{
             sessionManager.updateLastActivity(task.getSessionId());
 
             // 设置超时
-            String audioPath = future.get(TTS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            TtsResult result = future.get(TTS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 
             // 成功生成音频
-            handleTtsSuccess(task, audioPath);
+            handleTtsSuccess(task, result);
         } catch (TimeoutException e) {
             // logger.warn("TTS生成超时 - 序号: {}, 重试次数: {}/{}, 内容: \"{}\"",
             //         task.sentence.getSeq(), task.retryCount, MAX_RETRY_COUNT, task.sentence.getText());
@@ -729,10 +980,91 @@ public class DialogueService{
         }
     }
 
+    /**
+     * 执行流式TTS任务
+     * 收到首个PCM数据块后句子即可播放，合成结束前的失败会走正常的重试流程
+     */
+    private void executeStreamTtsTask(TtsTask task, TtsService ttsService, String cacheKey) {
+        Long assistantTimeMillis = task.sentence.getAssistantTimeMillis();
+        // 需要写入缓存时收集播放时编码的Opus帧
+        TtsStream stream = new TtsStream(cacheKey != null);
+        long ttsStartTime = System.currentTimeMillis();
+
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                ttsService.streamTextToSpeech(task.emoSentence.getTtsSentence(), pcm -> {
+                    if (stream.offer(pcm)) {
+                        handleStreamTtsStart(task, stream);
+                    }
+                });
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, Thread::startVirtualThread);
+
+        String failReason = null;
+        try {
+            // 耗时操作需及时更新最后活动时间，避免误判为会话终止
+            sessionManager.updateLastActivity(task.getSessionId());
+            future.get(TTS_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            failReason = "超时";
+        } catch (Exception e) {
+            failReason = e.getMessage();
+        } finally {
+            task.sentence.setTtsGenerationTime((System.currentTimeMillis() - ttsStartTime) / 1000.0);
+            stream.complete();
+        }
+
+        if (failReason == null) {
+            // 播放线程编码完成后直接缓存这些帧，不再重新编码
+            if (cacheKey != null) {
+                stream.getEncodedFrames().thenAccept(frames -> ttsCache.put(cacheKey, frames));
+            }
+            logger.info("句子流式音频生成完成 - 序号: {}, 对话ID: {}, 首包: {}ms, 语音生成: {}秒, 内容: \"{}\"",
+                    task.sentence.getSeq(), assistantTimeMillis, stream.getFirstChunkLatency(),
+                    df.format(task.sentence.getTtsGenerationTime()), task.sentence.getText());
+        } else if (stream.hasData()) {
+            // 已经开始播放，只能截断
+            logger.warn("流式TTS中途失败，音频已截断 - 序号: {}, 原因: {}", task.sentence.getSeq(), failReason);
+        } else {
+            handleTtsFailure(task, failReason);
+        }
+    }
+
+    /**
+     * 流式TTS收到首个数据块
+     */
+    private void handleStreamTtsStart(TtsTask task, TtsStream stream) {
+        task.sentence.setMoods(task.emoSentence.getMoods());
+        sessionManager.updateLastActivity(task.getSessionId());
+        ttsLatencyTracker.record(TtsLatencyTracker.providerOf(task.ttsConfig), stream.getFirstChunkLatency());
+
+        // 如果是首句，以首包时间作为TTS响应时间
+        if (task.isFirst) {
+            int ttsResponseTime = (int) stream.getFirstChunkLatency();
+            task.session.getAttributes().put(ChatSession.ATTR_FIRST_TTS_RESPONSE_TIME, ttsResponseTime);
+            logger.info("TTS首句首包时间 - SessionId: {}, 响应时间: {}ms", task.sessionId, ttsResponseTime);
+        }
+
+        task.sentence.setAudioStream(stream);
+        markSentenceReady(task);
+    }
+
+    /**
+     * TTS缓存命中，直接使用编码好的Opus帧
+     */
+    private void handleCachedTts(TtsTask task, List<byte[]> frames) {
+        task.sentence.setTtsGenerationTime(0);
+        logger.info("句子音频命中缓存 - 序号: {}, 帧数: {}, 内容: \"{}\"",
+                task.sentence.getSeq(), frames.size(), task.sentence.getText());
+        handleTtsSuccess(task, TtsResult.of(null, frames));
+    }
+
     /**
      * 处理TTS成功
      */
-    private void handleTtsSuccess(TtsTask task, String audioPath) {
+    private void handleTtsSuccess(TtsTask task, TtsResult result) {
         // 记录心情
         task.sentence.setMoods(task.emoSentence.getMoods());
 
@@ -755,14 +1087,15 @@ public class DialogueService{
                 task.sentence.getText());
 
         // 标记音频准备就绪
-        task.sentence.setAudio(audioPath);
+        task.sentence.setAudio(result);
 
-        // 如果有对话ID，将音频路径添加到对应的映射中
-        if (task.sentence.getAssistantTimeMillis() != null && audioPath != null) {
-            dialogueAudioPaths.computeIfAbsent(task.sentence.getAssistantTimeMillis(), k -> new ConcurrentHashMap<>())
-                    .put(task.sentence.getSeq(), audioPath);
-        }
+        markSentenceReady(task);
+    }
 
+    /**
+     * 句子音频就绪后标记首句完成并尝试处理队列
+     */
+    private void markSentenceReady(TtsTask task) {
         // 如果是首句，需要标记首句处理完成
         if (task.isFirst) {
             
@@ -820,7 +1153,7 @@ public class DialogueService{
                     task.sentence.getSeq(), task.retryCount, MAX_RETRY_COUNT, reason);
 
             // 即使失败也标记为准备好，以便队列继续处理
-            task.sentence.setAudio(null);
+            task.sentence.setAudio(TtsResult.empty());
             task.sentence.setTtsGenerationTime(0);
 
             // 如果是首句，设置TTS响应时间（失败时设为0）
@@ -850,143 +1183,133 @@ public class DialogueService{
     }
 
     /**
-     * 保存助手的完整响应（文本和合并音频）
+     * 最后一句开始播放时保存用户音频
+     * 用户音频需在当前线程取出，避免下一轮对话开始后被覆盖，文件写入在虚拟线程中异步完成
      */
-    private void saveAssistantResponse(ChatSession session) {
-
-        Long assistantTimeMillis = session.getAssistantTimeMillis();
+    private void saveUserResponseAudio(ChatSession session, Long assistantTimeMillis) {
+        // 没有录音说明角色不需要保存对话音频
+        if (!dialogueRecorders.containsKey(assistantTimeMillis)) {
+            return;
+        }
+        final Long userTimeMillis = session.getUserTimeMillis();
+        if (userTimeMillis == null) {
+            return;
+        }
         try {
-            // 获取该对话的所有音频路径
-            Map<Integer, String> audioPaths = dialogueAudioPaths.get(assistantTimeMillis);
-            if (audioPaths == null || audioPaths.isEmpty()) {
-                logger.warn("对话 {} 没有可用的音频路径", assistantTimeMillis);
+            final Path userPath = session.getUserAudioPath();
+            final List<byte[]> userOpus = vadService.getOpusData(session.getSessionId());
+            if (userOpus == null || userOpus.isEmpty()) {
                 return;
             }
+            Thread.startVirtualThread(() -> saveUserAudio(session, userTimeMillis, userPath, userOpus));
+        } catch (Exception e) {
+            logger.error("保存用户音频失败 - 对话ID: {}, 错误: {}", assistantTimeMillis, e.getMessage(), e);
+        }
+    }
 
-            // 保存ai音频文件前保存用户音频
-            saveUserAudio(session);
-
-            // 按序号排序音频路径
-            List<Integer> sortedSeqs = new ArrayList<>(audioPaths.keySet());
-            sortedSeqs.sort(Integer::compareTo);
-
-            // 准备要合并的音频文件路径
-            List<String> audioFilesToMerge = new ArrayList<>();
-            for (Integer seq : sortedSeqs) {
-                String path = audioPaths.get(seq);
-                if (path != null) {
-                    audioFilesToMerge.add(path);
-                    // 查看下文件是否存在
-                    if(!Files.exists(Paths.get(path))){
-                        logger.error("音频文件不存在: {}", path);
-                    }
+    /**
+     * 结束对话录音
+     * 最后一句播放完、对话被中止或会话关闭时调用，录音中只包含实际播放给用户的音频
+     */
+    private void finishDialogueAudio(ChatSession session, Long assistantTimeMillis) {
+        OggOpusWriter recorder = dialogueRecorders.remove(assistantTimeMillis);
+        if (recorder == null) {
+            return;
+        }
+        // 写入最后一页涉及文件IO，不占用发送线程
+        Thread.startVirtualThread(() -> {
+            try {
+                if (!recorder.close()) {
+                    return;
                 }
+                logger.info("对话 {} 的音频已保存: {}, 时长: {}ms", assistantTimeMillis, recorder.getPath(),
+                        recorder.getDurationMs());
+                // 音频路径随消息一起写入
+                messageWriter.attachAudio(session.getSysDevice().getDeviceId(), session.getSysDevice().getRoleId(),
+                        Conversation.MESSAGE_TYPE_ASSISTANT, assistantTimeMillis, recorder.getPath().toString());
+            } catch (Exception e) {
+                logger.error("保存助手音频失败 - 对话ID: {}, 错误: {}", assistantTimeMillis, e.getMessage(), e);
+                recorder.discard();
             }
-            // DEBUG: dialogueAudioPaths 里的文件已经合并过了，而且片段文件已删除。这里出现了二次合并。
-            // 合并音频文件
-            if (!audioFilesToMerge.isEmpty()) {
-                Path path = session.getAssistantAudioPath();
-                // 这里可能只有一条音频，合并可能会报错，尝试输出所有合并音频的路径
-                logger.info("合并音频文件数量: {}", audioFilesToMerge.size());
-                AudioUtils.mergeAudioFiles(path,audioFilesToMerge);
-                // 保存合并后的音频路径
-                logger.info("对话 {} 的音频已合并: {}", assistantTimeMillis, path);
-                // 音频合并完成，删除源文件后，dialogueAudioPaths也应一并清除。
-                dialogueAudioPaths.remove(assistantTimeMillis);
-                //合并完成，更新消息表路径、时长信息
-                String deviceId = session.getSysDevice().getDeviceId().replace("-", ":");
-                Integer roleId = session.getSysDevice().getRoleId();
-                String fileName = path.getFileName().toString();
-                String createTime = fileName.substring(0, fileName.indexOf("-" + Conversation.MESSAGE_TYPE_ASSISTANT));
-                sysMessageService.updateMessageByAudioFile(deviceId, roleId,
-                        Conversation.MESSAGE_TYPE_ASSISTANT, createTime, path.toString());
-            }
-        } catch (Exception e) {
-            logger.error("保存助手响应失败 - 对话ID: {}, 错误: {}", assistantTimeMillis, e.getMessage(), e);
+        });
+    }
+
+    /**
+     * 角色是否需要保存对话音频，未配置时默认保存
+     */
+    private static boolean isSaveAudio(SysRole role) {
+        return role != null && !"0".equals(role.getSaveAudio());
+    }
+
+    /**
+     * 句子从放入队列到音频就绪的最长等待时间：每次TTS请求的超时、重试次数和重试间隔之和，再留一次请求的余量
+     */
+    private long sentenceReadyTimeoutMs() {
+        long timeout = (MAX_RETRY_COUNT + 2L) * TTS_TIMEOUT_MS;
+        for (int i = 1; i <= MAX_RETRY_COUNT; i++) {
+            timeout += TTS_RETRY_DELAY_MS * i;
         }
+        return timeout;
     }
 
     /**
      * 处理音频队列
-     * 在流式处理完成后或非首句音频生成完成后调用
+     * 句子音频就绪或上一句播放结束时调用，按序号取出队首已就绪的句子播放
      */
     private void processQueue(ChatSession session, String sessionId) {
-        // 获取锁，确保线程安全
-        ReentrantLock lock = locks.get(sessionId);
-        if (lock == null) {
+        // 获取句子队列
+        SentenceQueue queue = sentenceQueue.get(sessionId);
+        if (queue == null) {
             return;
         }
 
-        // 尝试获取锁，避免多线程同时处理
-        if (!lock.tryLock()) {
+        // 检查首句是否已经流式处理完成
+        AtomicBoolean firstDone = firstSentDone.get(sessionId);
+        if (firstDone == null || !firstDone.get()) {
+            // 首句尚未处理完成，等待
             return;
         }
 
-        try {
-            // 获取句子队列
-            CopyOnWriteArrayList<Sentence> queue = sentenceQueue.get(sessionId);
-            if (queue == null || queue.isEmpty()) {
-                return;
-            }
-
-            // 检查首句是否已经流式处理完成
-            AtomicBoolean firstDone = firstSentDone.get(sessionId);
-            if (firstDone == null || !firstDone.get()) {
-                // 首句尚未处理完成，等待
-                return;
-            }
-
-            // 检查当前是否有句子正在播放
-            boolean isCurrentlyPlaying = audioService.isPlaying(sessionId);
-
-            // 如果当前正在播放，不处理下一个句子
-            if (isCurrentlyPlaying) {
-                return;
-            }
-
-            // 找出最小序号
-            int minSeq = queue.stream()
-                    .mapToInt(Sentence::getSeq)
-                    .min()
-                    .orElse(Integer.MAX_VALUE);
-
-            // 找出该序号的句子
-            Sentence nextSentence = queue.stream()
-                    .filter(s -> s.getSeq() == minSeq)
-                    .findFirst()
-                    .orElse(null);
-
-            if (nextSentence != null) {
-                // 检查句子是否准备好或超时
-                if (nextSentence.isReady() || nextSentence.isTimeout()) {
-                    // 如果句子超时但未准备好，标记为准备好但没有音频
-                    if (nextSentence.isTimeout() && !nextSentence.isReady()) {
-                        nextSentence.setAudio(null);
+        // 取出队首已就绪的句子，已有句子在播放时返回null
+        Sentence nextSentence = queue.takeNext();
+        if (nextSentence == null) {
+            // 队首还在合成时等待它就绪，就绪后由markSentenceReady继续处理；
+            // 超过TTS超时和重试的总时间仍未就绪才按失败跳过，慢但有效的句子不会被跳过
+            Sentence waiting = queue.waitingHead();
+            CompletableFuture<Sentence> ready = waiting != null ? waiting.awaitReady(sentenceReadyTimeoutMs()) : null;
+            if (ready != null) {
+                ready.whenComplete((s, error) -> {
+                    if (error != null && !waiting.isReady()) {
+                        logger.warn("句子音频等待超时，跳过 - 序号: {}, 内容: \"{}\"", waiting.getSeq(), waiting.getText());
+                        waiting.setAudio(TtsResult.empty());
+                        processQueue(session, sessionId);
                     }
+                });
+            }
+            return;
+        }
 
-                    // 从队列中移除已处理的句子
-                    queue.remove(nextSentence);
+        // 如果是最后一个句子，保存用户音频，助手音频在播放结束后保存
+        Long assistantTimeMillis = nextSentence.getAssistantTimeMillis();
+        boolean finishAudio = nextSentence.isLast() && assistantTimeMillis != null;
+        if (finishAudio) {
+            saveUserResponseAudio(session, assistantTimeMillis);
+        }
 
-                    // 发送到客户端
-                    audioService.sendAudioMessage(
-                            session,
-                            nextSentence,
-                            false, // 不是开始消息
-                            nextSentence.isLast() // 如果是最后一句，则是结束消息
-                    ).thenRun(() -> {
-                        // 在播放完成后，递归调用处理下一个句子
-                        processQueue(session, sessionId);
-                    });
-                }
-                //logger.info("是否最后一个句子{}, 对话ID: {}",nextSentence.isLast, nextSentence.assistantTimeMillis);
-                // 如果是最后一个句子，合并并存储助手的完整音频
-                if (nextSentence.isLast() && nextSentence.getAssistantTimeMillis() != null) {
-                    saveAssistantResponse(session);
-                }
+        // 发送到客户端
+        audioService.sendAudioMessage(
+                session,
+                nextSentence,
+                false, // 不是开始消息
+                nextSentence.isLast() // 如果是最后一句，则是结束消息
+        ).whenComplete((v, error) -> {
+            if (finishAudio) {
+                finishDialogueAudio(session, assistantTimeMillis);
             }
-        } finally {
-            lock.unlock();
-        }
+            // 在播放完成（或被中止）后处理下一个句子
+            queue.playbackDone(nextSentence);
+            processQueue(session, sessionId);
+        });
     }
 
     /**
@@ -1125,6 +1448,7 @@ public class DialogueService{
             // 关闭音频流
             sessionManager.closeAudioStream(sessionId);
             sessionManager.setStreamingState(sessionId, false);
+            cancelSpeculation(session, speculationCancels);
 
             if (sessionManager.isMusicPlaying(sessionId)) {
                 musicService.stopMusic(sessionId);
@@ -1132,10 +1456,14 @@ public class DialogueService{
                 return;
             }
             // 清空句子队列
-            CopyOnWriteArrayList<Sentence> queue = sentenceQueue.get(sessionId);
+            SentenceQueue queue = sentenceQueue.get(sessionId);
             if (queue != null) {
                 queue.clear();
             }
+            // 后续句子不会再播放，保存已经播放出去的部分
+            if (session.getAssistantTimeMillis() != null) {
+                finishDialogueAudio(session, session.getAssistantTimeMillis());
+            }
 
             // 重置首句处理状态
             AtomicBoolean firstDone = firstSentDone.get(sessionId);
@@ -1174,7 +1502,11 @@ public class DialogueService{
         llmStartTimes.remove(sessionId);
         sentenceQueue.remove(sessionId);
         firstSentDone.remove(sessionId);
-        locks.remove(sessionId);
+        partialTexts.remove(sessionId);
+        SpeculativeTurn turn = speculations.remove(sessionId);
+        if (turn != null) {
+            turn.cancel();
+        }
 
         // 新增：清理并发控制相关资源
         sessionSemaphores.remove(sessionId);
@@ -1193,9 +1525,8 @@ public class DialogueService{
      * @return
      */
     public boolean isDialog(String sessionId) {
-        ReentrantLock dialogLock = locks.get(sessionId);
-        return (dialogLock != null && dialogLock.isLocked())
-                || (sentenceQueue.get(sessionId) != null && !sentenceQueue.get(sessionId).isEmpty());
+        SentenceQueue queue = sentenceQueue.get(sessionId);
+        return queue != null && !queue.isEmpty();
     }
 
     // 添加告别语列表
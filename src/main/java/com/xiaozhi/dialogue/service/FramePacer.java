@@ -0,0 +1,468 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.utils.AudioUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 音频帧发送节拍器
+ * 所有会话的下行Opus音频（TTS、音乐、绘本）都交给同一个时间轮按帧时长发送，
+ * 代替每个会话每帧一次的定时任务。时间轮只由一个平台线程推进，到期的帧交给虚拟线程发送，
+ * 同一会话的下一帧在上一帧发送完成后才重新入轮，保证顺序。
+ * 连接积压超过水位线时轨道停止取帧，恢复可写后继续；长时间不可写的会话丢弃积压的音频帧。
+ */
+@Service
+public class FramePacer {
+    private static final Logger logger = LoggerFactory.getLogger(FramePacer.class);
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(AudioUtils.OPUS_FRAME_DURATION_MS);
+
+    /**
+     * Track.nextFrame() 返回该值表示数据暂未到达，下一个节拍再取
+     */
+    public static final byte[] NOT_READY = new byte[0];
+
+    // 时间轮节拍（毫秒）
+    @Value("${audio.pacer.tick-ms:10}")
+    private long tickMs;
+
+    // 时间轮槽数，取2的幂
+    @Value("${audio.pacer.wheel-size:512}")
+    private int wheelSize;
+
+    // 连接持续不可写超过该时长（毫秒）后丢弃发送队列中积压的音频帧，0表示不丢弃
+    @Value("${audio.pacer.shed-after-ms:1000}")
+    private long shedAfterMs;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SessionManager sessionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每个会话当前的播放轨道，同一时刻只有一个
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+
+    // 新加入或发送完成等待下一帧的轨道，由节拍线程取出放入时间轮
+    private final Queue<Track> incoming = new ConcurrentLinkedQueue<>();
+
+    // 帧发送在虚拟线程中执行，避免慢连接阻塞节拍线程
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("frame-sender-", 0).factory());
+
+    private List<ArrayDeque<Track>> wheel;
+    private int mask;
+    private long tickNanos;
+    private long ticksPerSecond;
+    private long startNanos;
+    private volatile boolean running = true;
+    private Thread tickThread;
+
+    private Timer tickLag;
+    private Timer frameJitter;
+    private Counter backpressurePauses;
+    private Counter shedFrames;
+    private Timer backpressureTime;
+    private MultiGauge outboundBytes;
+
+    /**
+     * 一路待发送的音频
+     * 帧的生产方式由子类决定，节拍器负责定时、发送、暂停和中止。
+     */
+    public abstract static class Track {
+        private ChatSession session;
+        private long nextDueNanos;
+        private int rounds;
+        private int sentFrames;
+        private boolean stalled;
+        private volatile boolean paused;
+        private final AtomicBoolean parked = new AtomicBoolean();
+        private volatile boolean aborted;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        // 因连接不可写开始等待的时间，0表示未在等待
+        private long blockedSinceNanos;
+
+        /**
+         * 取下一帧，在发送线程中调用，同一轨道不会并发调用
+         *
+         * @return 下一帧；NOT_READY表示暂时没有数据；null表示播放结束
+         */
+        protected abstract byte[] nextFrame() throws Exception;
+
+        /**
+         * 一帧发送完成
+         *
+         * @param index 已发送帧的序号，从0开始
+         */
+        protected void onFrameSent(int index) {
+        }
+
+        /**
+         * 播放结束、出错或被中止，只会调用一次；被中止时error为CancellationException
+         */
+        protected void onFinish(Throwable error) {
+        }
+
+        /**
+         * 被外部中止，在onFinish之前调用，用于立即释放资源
+         */
+        protected void onAbort() {
+        }
+
+        public ChatSession getSession() {
+            return session;
+        }
+
+        public int getSentFrames() {
+            return sentFrames;
+        }
+
+        public boolean isAborted() {
+            return aborted;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 16));
+        wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        mask = size - 1;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMs, 1));
+        ticksPerSecond = Math.max(TimeUnit.SECONDS.toNanos(1) / tickNanos, 1);
+        registerMetrics();
+        startNanos = System.nanoTime();
+        tickThread = Thread.ofPlatform().daemon().name("frame-pacer").start(this::tickLoop);
+        logger.info("音频帧节拍器已启动，节拍: {}ms, 槽数: {}", tickMs, size);
+    }
+
+    /**
+     * 开始播放一路音频，会话已有的轨道会被中止
+     *
+     * @param initialDelayMs 首帧延迟，用于和上一句保持帧间隔
+     */
+    public void play(ChatSession session, Track track, long initialDelayMs) {
+        track.session = session;
+        track.nextDueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(initialDelayMs, 0));
+        Track previous = tracks.put(session.getSessionId(), track);
+        if (previous != null && previous != track) {
+            abortTrack(previous);
+        }
+        incoming.offer(track);
+    }
+
+    /**
+     * 中止会话当前的轨道
+     */
+    public void abort(String sessionId) {
+        Track track = tracks.remove(sessionId);
+        if (track != null) {
+            abortTrack(track);
+        }
+    }
+
+    /**
+     * 暂停会话当前的轨道，恢复后从暂停处继续
+     */
+    public void pause(String sessionId) {
+        Track track = tracks.get(sessionId);
+        if (track != null) {
+            track.paused = true;
+        }
+    }
+
+    /**
+     * 恢复暂停的轨道，播放时钟从恢复时刻重新对齐
+     */
+    public void resume(String sessionId) {
+        Track track = tracks.get(sessionId);
+        if (track != null && track.paused) {
+            track.paused = false;
+            // 和发送线程竞争，只有一方把轨道放回时间轮
+            if (track.parked.compareAndSet(true, false)) {
+                track.stalled = true;
+                track.nextDueNanos = System.nanoTime();
+                incoming.offer(track);
+            }
+        }
+    }
+
+    public boolean isActive(String sessionId) {
+        return tracks.containsKey(sessionId);
+    }
+
+    public boolean isPaused(String sessionId) {
+        Track track = tracks.get(sessionId);
+        return track != null && track.paused;
+    }
+
+    /**
+     * 当前播放中的轨道数
+     */
+    public int getActiveTracks() {
+        return tracks.size();
+    }
+
+    private void abortTrack(Track track) {
+        if (track.aborted) {
+            return;
+        }
+        track.aborted = true;
+        try {
+            track.onAbort();
+        } catch (Exception e) {
+            logger.error("中止音频轨道失败", e);
+        }
+        // 发送线程可能同时走到结束，由finished保证onFinish只调用一次
+        if (track.finished.compareAndSet(false, true)) {
+            try {
+                track.onFinish(new CancellationException("音频轨道被中止"));
+            } catch (Exception e) {
+                logger.error("音频轨道结束回调失败", e);
+            }
+        }
+    }
+
+    private void tickLoop() {
+        long tick = 0;
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                if (!running) {
+                    return;
+                }
+            }
+            tick++;
+            tickLag.record(now - deadline, TimeUnit.NANOSECONDS);
+            if (tick % ticksPerSecond == 0) {
+                sender.execute(this::refreshOutboundBytes);
+            }
+            try {
+                // 先把新入轮的轨道放到对应槽位
+                Track track;
+                while ((track = incoming.poll()) != null) {
+                    schedule(track, tick);
+                }
+                // 处理当前槽位
+                ArrayDeque<Track> slot = wheel.get((int) (tick & mask));
+                int count = slot.size();
+                for (int i = 0; i < count; i++) {
+                    track = slot.poll();
+                    if (track.aborted) {
+                        continue;
+                    }
+                    if (track.rounds > 0) {
+                        track.rounds--;
+                        slot.offer(track);
+                        continue;
+                    }
+                    dispatch(track);
+                }
+            } catch (Exception e) {
+                logger.error("音频帧节拍处理失败", e);
+            }
+        }
+    }
+
+    private void schedule(Track track, long tick) {
+        if (track.aborted) {
+            return;
+        }
+        long dueTick = (track.nextDueNanos - startNanos + tickNanos - 1) / tickNanos;
+        if (dueTick <= tick) {
+            dispatch(track);
+            return;
+        }
+        track.rounds = (int) ((dueTick - tick) / wheel.size());
+        wheel.get((int) (dueTick & mask)).offer(track);
+    }
+
+    private void dispatch(Track track) {
+        sender.execute(() -> sendFrame(track));
+    }
+
+    /**
+     * 发送轨道的一帧并计算下一帧的时间，在发送线程中执行
+     */
+    private void sendFrame(Track track) {
+        if (track.aborted) {
+            return;
+        }
+        if (track.paused) {
+            // 暂停期间不在时间轮中占位，恢复时重新入轮
+            track.parked.set(true);
+            if (!track.paused && track.parked.compareAndSet(true, false)) {
+                incoming.offer(track);
+            }
+            return;
+        }
+        ChatSession session = track.session;
+        try {
+            if (!session.isWritable()) {
+                // 连接发不出去时不再取帧，TTS和音乐的编码也随之暂停，下个节拍再检查
+                waitWritable(track);
+                return;
+            }
+            if (track.blockedSinceNanos != 0) {
+                backpressureTime.record(System.nanoTime() - track.blockedSinceNanos, TimeUnit.NANOSECONDS);
+                track.blockedSinceNanos = 0;
+            }
+            byte[] frame = track.nextFrame();
+            if (track.aborted) {
+                return;
+            }
+            if (frame == null) {
+                finish(track, null);
+                return;
+            }
+            long now = System.nanoTime();
+            if (frame == NOT_READY) {
+                // 数据跟不上播放，下个节拍再取
+                track.stalled = true;
+                track.nextDueNanos = now + tickNanos;
+                incoming.offer(track);
+                return;
+            }
+            if (track.sentFrames == 0 || track.stalled) {
+                // 首帧或断流恢复后重新对齐播放时钟，避免补发造成突发
+                track.nextDueNanos = now;
+                track.stalled = false;
+            } else {
+                frameJitter.record(Math.abs(now - track.nextDueNanos), TimeUnit.NANOSECONDS);
+            }
+
+            sessionManager.updateLastActivity(session.getSessionId());
+            messageService.sendBinaryMessage(session, frame);
+            track.onFrameSent(track.sentFrames++);
+
+            track.nextDueNanos += FRAME_NANOS;
+            if (!track.aborted) {
+                incoming.offer(track);
+            }
+        } catch (Exception e) {
+            logger.error("音频帧发送失败 - SessionId: {}", session.getSessionId(), e);
+            finish(track, e);
+        }
+    }
+
+    /**
+     * 连接不可写时轨道停在当前帧，持续过久则丢弃已积压的音频帧
+     */
+    private void waitWritable(Track track) {
+        long now = System.nanoTime();
+        if (track.blockedSinceNanos == 0) {
+            track.blockedSinceNanos = now;
+            backpressurePauses.increment();
+        } else if (shedAfterMs > 0 && now - track.blockedSinceNanos > TimeUnit.MILLISECONDS.toNanos(shedAfterMs)) {
+            int shed = track.session.shedOutboundAudio();
+            if (shed > 0) {
+                shedFrames.increment(shed);
+                logger.warn("连接持续不可写，丢弃积压的音频帧 - SessionId: {}, 帧数: {}",
+                        track.session.getSessionId(), shed);
+            }
+        }
+        // 恢复后重新对齐播放时钟
+        track.stalled = true;
+        track.nextDueNanos = now + tickNanos;
+        if (!track.aborted) {
+            incoming.offer(track);
+        }
+    }
+
+    private void finish(Track track, Throwable error) {
+        if (!track.finished.compareAndSet(false, true)) {
+            return;
+        }
+        tracks.remove(track.session.getSessionId(), track);
+        try {
+            track.onFinish(error);
+        } catch (Exception e) {
+            logger.error("音频轨道结束回调失败", e);
+        }
+    }
+
+    private void registerMetrics() {
+        tickLag = Timer.builder("xiaozhi.pacer.tick.lag")
+                .description("节拍线程实际唤醒时间与计划时间的偏差")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        frameJitter = Timer.builder("xiaozhi.pacer.frame.jitter")
+                .description("音频帧实际发送时间与计划时间的偏差")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.pacer.tracks", tracks, Map::size)
+                .description("正在播放的音频轨道数")
+                .register(meterRegistry);
+        backpressurePauses = Counter.builder("xiaozhi.pacer.backpressure.pauses")
+                .description("因连接不可写暂停发送音频的次数")
+                .register(meterRegistry);
+        shedFrames = Counter.builder("xiaozhi.pacer.backpressure.shed")
+                .description("连接持续不可写时丢弃的积压音频帧数")
+                .register(meterRegistry);
+        backpressureTime = Timer.builder("xiaozhi.pacer.backpressure.paused")
+                .description("因连接不可写暂停发送音频的时长")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        outboundBytes = MultiGauge.builder("xiaozhi.session.outbound.bytes")
+                .baseUnit("bytes")
+                .description("每个会话下行发送队列中积压的字节数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 刷新每个会话的下行积压字节数，只上报有积压的会话
+     */
+    private void refreshOutboundBytes() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        for (ChatSession session : sessionManager.getAllSessions()) {
+            long bytes = session.getOutboundBytes();
+            if (bytes > 0) {
+                rows.add(MultiGauge.Row.of(Tags.of("session", session.getSessionId()), bytes));
+            }
+        }
+        outboundBytes.register(rows, true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (tickThread != null) {
+            LockSupport.unpark(tickThread);
+        }
+        sender.shutdownNow();
+    }
+}
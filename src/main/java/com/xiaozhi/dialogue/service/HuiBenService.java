@@ -11,10 +11,11 @@ import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -39,6 +40,10 @@ public class HuiBenService {
             .writeTimeout(30, TimeUnit.SECONDS)
             .build();
 
+    // 每个会话预先解码编码的最大帧数，60ms一帧，默认约3秒
+    @Value("${audio.media.buffer-frames:50}")
+    private int bufferFrames;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -51,10 +56,9 @@ public class HuiBenService {
     @Autowired
     private AudioService audioService;
 
-    // 使用虚拟线程执行器处理定时任务
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
-            Runtime.getRuntime().availableProcessors(),
-            Thread.ofVirtual().name("huiBen-scheduler-", 0).factory());
+    // 音频帧统一由节拍器按帧时长发送
+    @Autowired
+    private FramePacer framePacer;
 
     // 存储每个会话的当前文本信息
     private final Map<String, List<TextLine>> sessionTexts = new ConcurrentHashMap<>();
@@ -62,11 +66,6 @@ public class HuiBenService {
     // 存储每个会话的当前播放时间
     private final Map<String, AtomicLong> playTime = new ConcurrentHashMap<>();
 
-    // 存储每个会话的音频文件路径，用于播放完成后删除
-    private final Map<String, String> sessionAudioFiles = new ConcurrentHashMap<>();
-
-    // 存储每个会话的调度任务
-    private final Map<String, ScheduledFuture<?>> scheduledTasks = new ConcurrentHashMap<>();
 
     /**
      * 文本行数据结构 - 使用JDK 16+ Record类型
@@ -93,8 +92,8 @@ public class HuiBenService {
                 // 重置播放时间
                 playTime.computeIfAbsent(sessionId, k -> new AtomicLong()).set(0);
 
-                // 清理之前的音频文件（如果有）
-                cleanupAudioFile(sessionId);
+                // 清理之前的文本
+                sessionTexts.remove(sessionId);
 
                 // 1. 获取绘本信息
                 Map<String, String> huiBenInfo = getHuiBenInfo(bookId);
@@ -102,23 +101,11 @@ public class HuiBenService {
                     throw new RuntimeException("无法找到绘本: " + bookId);
                 }
 
-                // 2. 下载音频文件到本地临时目录，使用随机文件名避免冲突
-                String audioUrl = huiBenInfo.get("audioUrl");
-                String randomName = "huiBen_" + sessionId + "_" + UUID.randomUUID() + ".mp3";
-                String audioPath = downloadFile(audioUrl, randomName);
-
-                if (audioPath == null) {
-                    throw new RuntimeException("下载音频文件失败");
-                }
-
-                // 保存音频文件路径，用于播放完成后删除
-                sessionAudioFiles.put(sessionId, audioPath);
-
                 // 发送绘本开始消息
                 audioService.sendStart(session);
 
-                // 发送音频和同步文本
-                sendAudio(session, audioPath);
+                // 2. 边下载边播放音频，同步文本
+                sendAudio(session, huiBenInfo.get("audioUrl"));
 
             } catch (Exception e) {
 
@@ -133,123 +120,55 @@ public class HuiBenService {
         });
     }
 
-    /**
-     * 清理之前的音频文件
-     */
-    private void cleanupAudioFile(String sessionId) {
-        String audioPath = sessionAudioFiles.remove(sessionId);
-        if (audioPath != null) {
-            try {
-                Files.deleteIfExists(Path.of(audioPath));
-            } catch (Exception e) {
-                logger.warn("删除音频文件失败: {}", audioPath, e);
-            }
-        }
-        // 清理会话的文本数据
-        sessionTexts.remove(sessionId);
-    }
-
     /**
      * 发送音频和同步文本
+     * 音频不落盘，下载、解码、编码和发送流水线进行，首帧在缓冲到少量数据后即开始播放
      */
-    private void sendAudio(ChatSession session, String audioPath) {
+    private void sendAudio(ChatSession session, String audioUrl) {
         String sessionId = session.getSessionId();
 
-        try {
-            // 读取音频文件
-            Path audioFilePath = Path.of(audioPath);
-            if (!Files.exists(audioFilePath)) {
-                logger.warn("音频文件不存在: {}", audioPath);
-                return;
-            }
+        // 获取文本
+        List<TextLine> texts = sessionTexts.getOrDefault(sessionId, Collections.emptyList());
+        AtomicLong currPlayTime = playTime.computeIfAbsent(sessionId, k -> new AtomicLong(0));
 
-            // 将音频文件转换为PCM格式
-            byte[] audioData = AudioUtils.readAsPcm(audioPath);
-            if (audioData == null || audioData.length == 0) {
-                logger.warn("音频数据为空");
-                return;
-            }
-
-            // 将PCM转换为Opus帧
-            List<byte[]> frames = opusProcessor.pcmToOpus(sessionId, audioData, false);
-            if (frames == null || frames.isEmpty()) {
-                logger.warn("Opus帧转换失败或为空");
-                return;
-            }
+        // 预处理文本时间点，将毫秒时间转换为帧索引
+        Map<Integer, String> textFrameMap = new HashMap<>();
+        for (TextLine line : texts) {
+            // 计算文本对应的帧索引
+            int frameIndex = (int) (line.timeMs() / OPUS_FRAME_INTERVAL_MS);
+            textFrameMap.put(frameIndex, line.text());
+        }
 
-            // 获取文本
-            List<TextLine> texts = sessionTexts.getOrDefault(sessionId, Collections.emptyList());
-            AtomicLong currPlayTime = playTime.computeIfAbsent(sessionId, k -> new AtomicLong(0));
-
-            // 预处理文本时间点，将毫秒时间转换为帧索引
-            Map<Integer, String> textFrameMap = new HashMap<>();
-            for (TextLine line : texts) {
-                // 计算文本对应的帧索引
-                int frameIndex = (int) (line.timeMs() / OPUS_FRAME_INTERVAL_MS);
-                if (frameIndex < frames.size()) {
-                    textFrameMap.put(frameIndex, line.text());
+        // 创建帧发送任务，由节拍器按帧时长调用
+        StreamingAudioTrack track = new StreamingAudioTrack(opusProcessor, sessionId,
+                () -> openStream(audioUrl), bufferFrames) {
+            @Override
+            protected void beforeFrame(int index) {
+                // 更新当前播放时间
+                currPlayTime.set(index * OPUS_FRAME_INTERVAL_MS);
+
+                // 先检查是否有对应这一帧的文本需要发送
+                String textContent = textFrameMap.get(index);
+                if (textContent != null) {
+                    audioService.sendSentenceStart(session, textContent);
                 }
             }
 
-            // 创建帧发送任务，使用原子引用替代数组
-            AtomicLong frameIndexRef = new AtomicLong(0);
-            Runnable frameTask = () -> {
-                try {
-                    if (scheduledTasks.get(sessionId) == null) {
-                        logger.error("{}任务已经终止", sessionId);
-
-                        return;
-                    }
-                    int currentIndex = (int) frameIndexRef.get();
-                    if (currentIndex >= frames.size()) {
-                        // 所有帧已发送，取消任务
-                        audioService.cancelScheduledTask(sessionId);
-                        return;
-                    }
-
-                    // 更新活跃时间
-                    sessionManager.updateLastActivity(sessionId);
-
-                    // 更新当前播放时间
-                    currPlayTime.set(currentIndex * OPUS_FRAME_INTERVAL_MS);
-
-                    // 先检查是否有对应这一帧的文本需要发送
-                    String textContent = textFrameMap.get(currentIndex);
-                    if (textContent != null) {
-                        audioService.sendSentenceStart(session, textContent);
+            @Override
+            protected void onFinish(Throwable error) {
+                super.onFinish(error);
+                if (error != null) {
+                    logger.error("处理音频时发生错误 - SessionId: {}", sessionId, error);
+                    try {
+                        audioService.sendStop(session);
+                    } catch (Exception ex) {
+                        logger.error("发送停止消息失败", ex);
                     }
-
-                    // 发送当前帧
-                    byte[] frame = frames.get(currentIndex);
-                    audioService.sendOpusFrame(session, frame);
-
-                    // 增加帧索引
-                    frameIndexRef.incrementAndGet();
-
-                } catch (Exception e) {
-                    // 发生错误，取消调度任务
-                    logger.error("发送音频帧时发生错误", e);
-                    audioService.cancelScheduledTask(sessionId);
                 }
-            };
-
-            // 启动定时任务，每隔OPUS_FRAME_INTERVAL_MS毫秒执行一次
-            ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(
-                    frameTask,
-                    0,
-                    OPUS_FRAME_INTERVAL_MS,
-                    TimeUnit.MILLISECONDS);
-
-            // 存储任务引用，以便稍后取消
-            scheduledTasks.put(sessionId, task);
-        } catch (Exception e) {
-            logger.error("处理音频时发生错误 - SessionId: {}", sessionId, e);
-            try {
-                audioService.sendStop(session);
-            } catch (Exception ex) {
-                logger.error("发送停止消息失败", ex);
             }
-        }
+        };
+
+        framePacer.play(session, track.start(), 0);
     }
 
     /**
@@ -306,38 +225,23 @@ public class HuiBenService {
     }
 
     /**
-     * 下载文件到临时目录
+     * 打开音频下载流，由播放轨道负责关闭
      */
-    private String downloadFile(String fileUrl, String fileName) {
-        try {
-            // 确保音频目录存在
-            Path audioDir = Path.of(AudioUtils.AUDIO_PATH);
-            Files.createDirectories(audioDir);
-
-            // 将文件保存到音频目录
-            Path outputPath = audioDir.resolve(fileName);
-
-            // 使用OkHttp3下载文件
-            Request request = new Request.Builder()
-                    .url(fileUrl)
-                    .get()
-                    .build();
-
-            try (Response response = okHttpClient.newCall(request).execute()) {
-                if (!response.isSuccessful() || response.body() == null) {
-                    logger.error("下载文件失败，响应码: {}", response.code());
-                    return null;
-                }
-
-                // 将响应体写入文件
-                Files.write(outputPath, response.body().bytes());
-
-                return outputPath.toAbsolutePath().toString();
-            }
-        } catch (Exception e) {
-            logger.error("下载文件时发生错误", e);
-            return null;
+    private InputStream openStream(String fileUrl) throws IOException {
+        if (fileUrl == null) {
+            throw new IOException("绘本音频地址为空");
+        }
+        Request request = new Request.Builder()
+                .url(fileUrl)
+                .get()
+                .build();
+
+        Response response = okHttpClient.newCall(request).execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            response.close();
+            throw new IOException("下载文件失败，响应码: " + response.code());
         }
+        return response.body().byteStream();
     }
 
     /**
@@ -348,13 +252,11 @@ public class HuiBenService {
     public void stopHuiBen(String sessionId) {
         Thread.startVirtualThread(() -> {
             try {
-                ScheduledFuture<?> task = scheduledTasks.remove(sessionId);
-                if (task != null) {
-                    task.cancel(true); // 取消任务
-                }
+                // 中止帧发送
+                framePacer.abort(sessionId);
 
-                // 清理音频文件
-                cleanupAudioFile(sessionId);
+                // 清理文本
+                sessionTexts.remove(sessionId);
 
                 // 更新绘本播放状态
                 sessionManager.setMusicPlaying(sessionId, false);
@@ -0,0 +1,120 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.PipelineContext;
+import com.xiaozhi.communication.common.SessionManager;
+import com.xiaozhi.dao.ConfigMapper;
+import com.xiaozhi.dao.RoleMapper;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysDevice;
+import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.event.PipelineContextRefreshEvent;
+import com.xiaozhi.service.SysConfigService;
+import com.xiaozhi.service.SysRoleService;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 会话管线上下文服务
+ * 设备绑定时查询一次角色、STT/TTS配置并生成不可变的PipelineContext挂到会话上，
+ * 角色或配置被修改后收到事件再整体替换，音频帧处理过程中不再访问缓存。
+ */
+@Service
+public class PipelineContextService {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineContextService.class);
+
+    @Resource
+    private SysRoleService roleService;
+
+    @Resource
+    private SysConfigService configService;
+
+    @Resource
+    private RoleMapper roleMapper;
+
+    @Resource
+    private ConfigMapper configMapper;
+
+    @Resource
+    private SessionManager sessionManager;
+
+    /**
+     * 事务提交后再重建，没有事务时立即执行，保证设备绑定后第一帧音频就能拿到上下文
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApplicationEvent(PipelineContextRefreshEvent event) {
+        ChatSession session = event.getSession();
+        if (session != null) {
+            refresh(session, false);
+            return;
+        }
+        SysRole role = event.getRole();
+        if (role != null && role.getRoleId() != null) {
+            for (ChatSession chatSession : sessionManager.getAllSessions()) {
+                SysDevice device = chatSession.getSysDevice();
+                if (device != null && role.getRoleId().equals(device.getRoleId())) {
+                    refresh(chatSession, true);
+                }
+            }
+            return;
+        }
+        SysConfig config = event.getConfig();
+        if (config != null && config.getConfigId() != null) {
+            for (ChatSession chatSession : sessionManager.getAllSessions()) {
+                if (chatSession.getPipelineContext().usesConfig(config.getConfigId())) {
+                    refresh(chatSession, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 重建会话的管线上下文
+     *
+     * @param session     会话
+     * @param bypassCache 角色或配置刚被修改时直接查库，避免读到尚未失效的缓存
+     */
+    public void refresh(ChatSession session, boolean bypassCache) {
+        try {
+            session.setPipelineContext(build(session.getSysDevice(), bypassCache));
+        } catch (Exception e) {
+            logger.error("构建会话管线上下文失败 - SessionId: {}", session.getSessionId(), e);
+        }
+    }
+
+    /**
+     * 为设备构建管线上下文，用于没有ChatSession的连接
+     */
+    public PipelineContext build(SysDevice device) {
+        try {
+            return build(device, false);
+        } catch (Exception e) {
+            logger.error("构建设备管线上下文失败 - DeviceId: {}", device != null ? device.getDeviceId() : null, e);
+            return PipelineContext.UNBOUND;
+        }
+    }
+
+    private PipelineContext build(SysDevice device, boolean bypassCache) {
+        if (device == null || device.getRoleId() == null) {
+            return PipelineContext.UNBOUND;
+        }
+        SysRole role = bypassCache ? roleMapper.selectRoleById(device.getRoleId())
+                : roleService.selectRoleById(device.getRoleId());
+        if (role == null) {
+            return PipelineContext.UNBOUND;
+        }
+        SysConfig sttConfig = selectConfig(role.getSttId(), bypassCache);
+        SysConfig ttsConfig = selectConfig(role.getTtsId(), bypassCache);
+        return new PipelineContext(role, sttConfig, ttsConfig);
+    }
+
+    private SysConfig selectConfig(Integer configId, boolean bypassCache) {
+        if (configId == null) {
+            return null;
+        }
+        return bypassCache ? configMapper.selectConfigById(configId) : configService.selectConfigById(configId);
+    }
+}
@@ -0,0 +1,123 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.dialogue.service.DialogueService.Sentence;
+
+import java.util.Arrays;
+
+/**
+ * 会话的句子重排缓冲区
+ * 句子按序号放入环形数组，TTS完成顺序可以乱序，播放严格按序号进行；
+ * 取下一句只看队首一个位置，不需要扫描整个队列。同一时刻只有一句在播放。
+ */
+final class SentenceQueue {
+
+    private Sentence[] slots = new Sentence[16];
+    // 队首对应的序号，-1表示队列已清空，等待下一句确定起始序号
+    private int headSeq = -1;
+    private int head = 0;
+    private int size = 0;
+    // 当前正在播放的句子
+    private Sentence playing;
+
+    /**
+     * 放入一个句子，序号不能小于队首序号
+     */
+    synchronized void add(Sentence sentence) {
+        int seq = sentence.getSeq();
+        if (headSeq < 0) {
+            headSeq = seq;
+        }
+        int offset = seq - headSeq;
+        if (offset < 0) {
+            // 清空前的旧句子，直接丢弃
+            return;
+        }
+        while (offset >= slots.length) {
+            grow();
+        }
+        int index = (head + offset) & (slots.length - 1);
+        if (slots[index] == null) {
+            size++;
+        }
+        slots[index] = sentence;
+    }
+
+    /**
+     * 队首句子已就绪且当前没有句子在播放时取出，并标记为正在播放
+     * 合成失败的句子会被标记为空音频的就绪状态，同样按顺序取出
+     *
+     * @return 可以播放的句子，没有时返回null
+     */
+    synchronized Sentence takeNext() {
+        Sentence next = head();
+        if (next == null || !next.isReady()) {
+            return null;
+        }
+        slots[head] = null;
+        head = (head + 1) & (slots.length - 1);
+        headSeq++;
+        size--;
+        playing = next;
+        return next;
+    }
+
+    /**
+     * 没有句子在播放、队首句子尚未就绪时返回队首，调用方等待它就绪
+     */
+    synchronized Sentence waitingHead() {
+        Sentence next = head();
+        return next != null && !next.isReady() ? next : null;
+    }
+
+    /**
+     * 句子播放结束，队列被清空后才结束的旧句子不影响新一轮播放
+     */
+    synchronized void playbackDone(Sentence sentence) {
+        if (playing == sentence) {
+            playing = null;
+        }
+    }
+
+    /**
+     * 清空队列，序号在下一句放入时重新确定
+     */
+    synchronized void clear() {
+        Arrays.fill(slots, null);
+        head = 0;
+        size = 0;
+        headSeq = -1;
+        playing = null;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized boolean isPlaying() {
+        return playing != null;
+    }
+
+    /**
+     * 没有句子在播放时返回队首句子
+     * 句子按序号递增放入，队首为空而后面有句子说明该序号被跳过（如未生成句子就返回），直接越过
+     */
+    private Sentence head() {
+        if (playing != null || size == 0) {
+            return null;
+        }
+        while (slots[head] == null) {
+            head = (head + 1) & (slots.length - 1);
+            headSeq++;
+        }
+        return slots[head];
+    }
+
+    private void grow() {
+        Sentence[] grown = new Sentence[slots.length << 1];
+        for (int i = 0; i < slots.length; i++) {
+            grown[i] = slots[(head + i) & (slots.length - 1)];
+        }
+        slots = grown;
+        head = 0;
+    }
+}
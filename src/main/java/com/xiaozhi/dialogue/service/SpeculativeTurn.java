@@ -0,0 +1,108 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.dialogue.llm.ChatService.TriConsumer;
+import com.xiaozhi.dialogue.llm.memory.Conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次推测请求
+ * 静音开始时用中间识别结果提前请求模型，回复的句子先缓存；
+ * 识别结束且最终文本与推测文本一致时确认，缓存的句子按顺序交给正常流程，之后的句子直接转发；
+ * 用户继续说话、最终文本不一致或模型在确认前调用工具时取消，句子全部丢弃，消息不会入库，工具不会执行。
+ */
+final class SpeculativeTurn {
+
+    private record PendingSentence(String text, boolean isFirst, boolean isLast) {
+    }
+
+    private final String text;
+    private final long startNanos = System.nanoTime();
+    private final Long assistantTimeMillis;
+    private final CompletableFuture<Boolean> confirmation = new CompletableFuture<>();
+    private final List<PendingSentence> pending = new ArrayList<>();
+    private TriConsumer<String, Boolean, Boolean> target;
+    private boolean rolledBack;
+
+    SpeculativeTurn(String text, Long assistantTimeMillis) {
+        this.text = text;
+        this.assistantTimeMillis = assistantTimeMillis;
+    }
+
+    /**
+     * 模型回复的句子，确认前缓存，确认后直接转发，取消后丢弃
+     */
+    synchronized void accept(String sentence, Boolean isFirst, Boolean isLast) {
+        if (target != null) {
+            target.accept(sentence, isFirst, isLast);
+        } else if (!confirmation.isDone()) {
+            pending.add(new PendingSentence(sentence, isFirst, isLast));
+        }
+    }
+
+    /**
+     * 确认推测结果，按顺序交出已缓存的句子
+     *
+     * @return 推测已被取消时返回false
+     */
+    synchronized boolean confirm(TriConsumer<String, Boolean, Boolean> handler) {
+        if (confirmation.isDone()) {
+            return false;
+        }
+        target = handler;
+        for (PendingSentence sentence : pending) {
+            handler.accept(sentence.text(), sentence.isFirst(), sentence.isLast());
+        }
+        pending.clear();
+        confirmation.complete(true);
+        return true;
+    }
+
+    /**
+     * 取消推测
+     *
+     * @return 推测尚未确认或取消时返回true
+     */
+    synchronized boolean cancel() {
+        pending.clear();
+        return confirmation.complete(false);
+    }
+
+    /**
+     * 撤销推测请求加入对话的用户消息及其后的消息，只撤销一次
+     */
+    synchronized void rollback(Conversation conversation) {
+        if (!rolledBack) {
+            rolledBack = conversation.rollback(text);
+        }
+    }
+
+    /**
+     * 最终识别文本是否与推测文本一致，忽略空白和标点
+     */
+    boolean matches(String finalText) {
+        return finalText != null && normalize(text).equals(normalize(finalText));
+    }
+
+    String getText() {
+        return text;
+    }
+
+    Long getAssistantTimeMillis() {
+        return assistantTimeMillis;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    CompletableFuture<Boolean> getConfirmation() {
+        return confirmation;
+    }
+
+    private static String normalize(String value) {
+        return value.replaceAll("[\\p{P}\\s]", "");
+    }
+}
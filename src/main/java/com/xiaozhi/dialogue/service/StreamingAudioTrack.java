@@ -0,0 +1,163 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.OpusProcessor;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 边下载边解码边编码的音频轨道，用于音乐和绘本播放
+ * 生产线程从输入流读取压缩音频，进程内用FFmpeg解码重采样为16kHz单声道PCM，增量编码为Opus后放入有界队列；
+ * 队列满时生产线程阻塞，下载和解码随之暂停，因此每个会话占用的内存与音频时长无关。
+ */
+public class StreamingAudioTrack extends FramePacer.Track {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingAudioTrack.class);
+
+    /**
+     * 打开音频输入流，流由轨道负责关闭
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws Exception;
+    }
+
+    private final OpusProcessor opusProcessor;
+    private final Source source;
+    // 编码使用独立的会话键，不影响TTS编码器和残留样本
+    private final String encoderId;
+    private final BlockingQueue<byte[]> frames;
+
+    private volatile boolean producerDone = false;
+    private volatile Throwable producerError;
+    private volatile boolean stopped = false;
+    private Thread producer;
+    private int frameIndex = 0;
+
+    /**
+     * @param bufferFrames 预先编码的最大帧数，决定每个会话的缓冲上限
+     */
+    public StreamingAudioTrack(OpusProcessor opusProcessor, String sessionId, Source source, int bufferFrames) {
+        this.opusProcessor = opusProcessor;
+        this.source = source;
+        this.encoderId = sessionId + "-media";
+        this.frames = new ArrayBlockingQueue<>(Math.max(bufferFrames, 1));
+    }
+
+    /**
+     * 启动生产线程，应在交给节拍器之前调用
+     */
+    public StreamingAudioTrack start() {
+        producer = Thread.ofVirtual().name("media-decoder-" + encoderId).start(this::produce);
+        return this;
+    }
+
+    /**
+     * 即将发送第index帧，子类可以在此同步歌词或文本
+     */
+    protected void beforeFrame(int index) {
+    }
+
+    @Override
+    protected byte[] nextFrame() throws Exception {
+        byte[] frame = frames.poll();
+        if (frame == null) {
+            if (!producerDone) {
+                // 解码跟不上或尚未开始，下个节拍再取
+                return FramePacer.NOT_READY;
+            }
+            frame = frames.poll();
+            if (frame == null) {
+                if (producerError != null && frameIndex == 0) {
+                    throw new IllegalStateException("音频解码失败: " + producerError.getMessage(), producerError);
+                }
+                return null;
+            }
+        }
+        beforeFrame(frameIndex++);
+        return frame;
+    }
+
+    @Override
+    protected void onFinish(Throwable error) {
+        stop();
+    }
+
+    @Override
+    protected void onAbort() {
+        stop();
+    }
+
+    private void stop() {
+        stopped = true;
+        if (producer != null) {
+            producer.interrupt();
+        }
+        frames.clear();
+    }
+
+    private void produce() {
+        try (InputStream in = source.open();
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(in, 0)) {
+            grabber.setSampleRate(AudioUtils.SAMPLE_RATE);
+            grabber.setAudioChannels(AudioUtils.CHANNELS);
+            grabber.setSampleFormat(AudioUtils.SAMPLE_FORMAT);
+            grabber.start();
+
+            byte[] pcm = new byte[0];
+            Frame frame;
+            while (!stopped && (frame = grabber.grabSamples()) != null) {
+                if (frame.samples == null || frame.samples.length == 0) {
+                    continue;
+                }
+                ShortBuffer samples = (ShortBuffer) frame.samples[0];
+                int count = samples.remaining();
+                if (pcm.length < count * 2) {
+                    pcm = new byte[count * 2];
+                }
+                for (int i = 0; i < count; i++) {
+                    short sample = samples.get(samples.position() + i);
+                    pcm[i * 2] = (byte) (sample & 0xFF);
+                    pcm[i * 2 + 1] = (byte) ((sample >> 8) & 0xFF);
+                }
+                byte[] chunk = pcm.length == count * 2 ? pcm : Arrays.copyOf(pcm, count * 2);
+                for (byte[] opus : opusProcessor.pcmToOpus(encoderId, chunk, true)) {
+                    offer(opus);
+                }
+            }
+            if (!stopped) {
+                for (byte[] opus : opusProcessor.flushLeftover(encoderId)) {
+                    offer(opus);
+                }
+            }
+            grabber.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!stopped) {
+                logger.error("音频流解码失败 - {}", encoderId, e);
+                producerError = e;
+            }
+        } finally {
+            opusProcessor.cleanup(encoderId);
+            producerDone = true;
+        }
+    }
+
+    /**
+     * 放入一帧，队列满时等待播放消费
+     */
+    private void offer(byte[] opus) throws InterruptedException {
+        while (!stopped && !frames.offer(opus, 100, TimeUnit.MILLISECONDS)) {
+            // 等待播放消费
+        }
+    }
+}
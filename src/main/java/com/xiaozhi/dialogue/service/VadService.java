@@ -1,14 +1,16 @@
 package com.xiaozhi.dialogue.service;
 
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.communication.common.PipelineContext;
 import com.xiaozhi.communication.common.SessionManager;
-import com.xiaozhi.dialogue.vad.VadModel.InferenceResult;
+import com.xiaozhi.dialogue.vad.impl.SileroInferenceSession;
 import com.xiaozhi.dialogue.vad.impl.SileroVadModel;
-import com.xiaozhi.entity.SysDevice;
-import com.xiaozhi.entity.SysRole;
-import com.xiaozhi.service.SysRoleService;
 import com.xiaozhi.utils.AudioUtils;
 import com.xiaozhi.utils.AudioEnhancer;
+import com.xiaozhi.utils.FrameBuffer;
 import com.xiaozhi.utils.OpusProcessor;
+import com.xiaozhi.utils.PcmFramePool;
+import com.xiaozhi.utils.PcmRingBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,14 @@ public class VadService {
     @Value("${vad.tail.keep.ms:300}")
     private int tailKeepMs;
 
+    // 说话中静音持续该时长视为停顿，发出SPEECH_PAUSE用于推测识别（需小于静音超时才有意义）
+    @Value("${vad.pause.ms:240}")
+    private int pauseMs;
+
+    // 交给识别的PCM帧缓冲数量，60ms一帧时约3.8秒；识别连接建立前帧会暂存在音频流中，需覆盖这段时间
+    @Value("${vad.stt.frame-pool.size:64}")
+    private int sttFramePoolSize;
+
     // 音频增强配置
     @Value("${vad.audio.enhancement.enabled:true}")
     private boolean audioEnhancementEnabled;
@@ -57,6 +67,13 @@ public class VadService {
     
     // VAD模型的样本大小 (16kHz, 512 samples)
     private static final int VAD_SAMPLE_SIZE = AudioUtils.BUFFER_SIZE;
+
+    // 单个Opus包最多解码出的样本数
+    private static final int MAX_DECODE_SAMPLES = AudioUtils.FRAME_SIZE * 6;
+
+    // 无语音结果不携带数据，所有帧共用一个实例
+    private static final VadResult NO_SPEECH_RESULT = new VadResult(VadStatus.NO_SPEECH, null);
+    private static final VadResult ERROR_RESULT = new VadResult(VadStatus.ERROR, null);
     
     @Autowired
     private OpusProcessor opusProcessor;
@@ -64,15 +81,13 @@ public class VadService {
     @Autowired
     private SileroVadModel vadModel;
     
-    @Autowired
-    private SysRoleService roleService;
-    
     @Autowired
     private SessionManager sessionManager;
 
     @PreDestroy
     public void cleanup() {
         logger.info("VAD服务资源已释放");
+        states.values().forEach(VadState::close);
         states.clear();
         locks.clear();
         audioEnhancers.clear();
@@ -98,34 +113,48 @@ public class VadService {
         // 记录静音期间添加的帧数，用于在SPEECH_END时移除静音帧
         private int silenceFrameCount = 0;  // 当前静音期间添加的帧数
 
+        // 已发出SPEECH_PAUSE，等待语音恢复或结束
+        private boolean paused = false;
+
         // 音频分析
         private float avgEnergy = 0;
-        private final List<Float> probs = new ArrayList<>();
         
-        // 原始VAD概率列表
-        private final List<Float> originalProbs = new ArrayList<>();
+        // 最近一次原始VAD概率
+        private float lastOriginalProb = 0.0f;
         
         // 帧计数器（用于每10帧输出一次）
         private int frameCounter = 0;
 
-        // 每会话 Silero 隐状态 [2][1][128]
-        private float[][][] sileroState = new float[2][1][128];
+        // 每会话 Silero 推理上下文，复用张量并保存隐状态 [2][1][128]
+        private final SileroInferenceSession inference = vadModel.createInferenceSession();
 
         // 预缓冲
-        private final LinkedList<byte[]> preBuffer = new LinkedList<>();
-        private int preBufferSize = 0;
-        private final int maxPreBufferSize;
+        private final PcmRingBuffer preBuffer;
+
+        // 音频数据，按帧连续存放，句子之间复用容量
+        private final FrameBuffer pcmData = new FrameBuffer(32 * 1000 * 10, 200);
+        private final FrameBuffer opusData = new FrameBuffer(200 * 200, 200);
+        // 未说话时只保留预缓冲时长的Opus帧，语音开始时作为句子开头
+        private final int opusPreBufferFrames;
+        // 最近一句话的Opus帧，语音结束时复制出来，下一句话不会覆盖
+        private List<byte[]> utteranceOpus = new ArrayList<>();
 
-        // 音频数据
-        private final List<byte[]> pcmData = new ArrayList<>();
-        private final List<byte[]> opusData = new ArrayList<>();
+        // 每帧处理复用的缓冲区：解码结果、分析样本、输出PCM
+        private final short[] decodeBuffer = new short[MAX_DECODE_SAMPLES];
+        private final byte[] pcmBuffer = new byte[MAX_DECODE_SAMPLES * 2];
+        private float[] samples = new float[AudioUtils.FRAME_SIZE];
+
+        // 交给识别的帧和返回结果，按会话复用
+        private final PcmFramePool sttFrames = new PcmFramePool(sttFramePoolSize);
+        private final VadResult result = new VadResult(null, null);
 
         // 短帧累积
         private final ByteArrayOutputStream pcmAccumulator = new ByteArrayOutputStream();
         private long lastAccumTime = 0;
 
         public VadState() {
-            this.maxPreBufferSize = preBufferMs * 32; // 16kHz, 16bit, mono = 32 bytes/ms
+            this.preBuffer = new PcmRingBuffer(preBufferMs * 32); // 16kHz, 16bit, mono = 32 bytes/ms
+            this.opusPreBufferFrames = Math.max(1, (preBufferMs + AudioUtils.OPUS_FRAME_DURATION_MS - 1) / AudioUtils.OPUS_FRAME_DURATION_MS);
             this.lastAccumTime = System.currentTimeMillis();
         }
 
@@ -135,6 +164,7 @@ public class VadService {
 
         public void setSpeaking(boolean speaking) {
             this.speaking = speaking;
+            this.paused = false;
             if (speaking) {
                 speechTime = System.currentTimeMillis();
                 silenceTime = 0;
@@ -209,34 +239,16 @@ public class VadService {
             return avgEnergy;
         }
 
-        public void addProb(float prob) {
-            probs.add(prob);
-            if (probs.size() > 10) {
-                probs.remove(0);
-            }
-        }
-        
         // 添加原始VAD概率
         public void addOriginalProb(float prob) {
-            originalProbs.add(prob);
-            if (originalProbs.size() > 10) {
-                originalProbs.remove(0);
-            }
+            lastOriginalProb = prob;
             
             // 增加帧计数器
             frameCounter++;
         }
         
         public float getLastOriginalProb() {
-            return originalProbs.isEmpty() ? 0.0f : originalProbs.get(originalProbs.size() - 1);
-        }
-
-        public float getLastProb() {
-            return probs.isEmpty() ? 0.0f : probs.get(probs.size() - 1);
-        }
-
-        public List<Float> getProbs() {
-            return probs;
+            return lastOriginalProb;
         }
         
         public int getFrameCounter() {
@@ -244,36 +256,25 @@ public class VadService {
         }
 
         // 预缓冲区管理
-        public void addToPreBuffer(byte[] data) {
+        public void addToPreBuffer(byte[] data, int length) {
             if (speaking) {
                 return;
             }
-
-            preBuffer.add(data.clone());
-            preBufferSize += data.length;
-
-            while (preBufferSize > maxPreBufferSize && !preBuffer.isEmpty()) {
-                byte[] removed = preBuffer.removeFirst();
-                preBufferSize -= removed.length;
-            }
+            preBuffer.write(data, 0, length);
         }
 
         public byte[] drainPreBuffer() {
-            if (preBuffer.isEmpty()) {
-                return new byte[0];
-            }
-
-            byte[] result = new byte[preBufferSize];
-            int offset = 0;
+            return preBuffer.drain();
+        }
 
-            for (byte[] chunk : preBuffer) {
-                System.arraycopy(chunk, 0, result, offset, chunk.length);
-                offset += chunk.length;
+        /**
+         * 获取长度正好为sampleCount的分析缓冲区，帧长不变时复用
+         */
+        public float[] getSamples(int sampleCount) {
+            if (samples.length != sampleCount) {
+                samples = new float[sampleCount];
             }
-
-            preBuffer.clear();
-            preBufferSize = 0;
-            return result;
+            return samples;
         }
 
         // 累积缓冲区管理
@@ -303,24 +304,34 @@ public class VadService {
         }
 
         // 音频数据管理
-        public void addPcm(byte[] pcm) {
-            if (pcm != null && pcm.length > 0) {
-                pcmData.add(pcm.clone());
-            }
+        public void addPcm(byte[] pcm, int length) {
+            pcmData.add(pcm, 0, length);
         }
 
-        public void addOpus(byte[] opus) {
-            if (opus != null && opus.length > 0) {
-                opusData.add(opus.clone());
+        public void addOpus(byte[] opus, int offset, int length) {
+            if (opus != null && length > 0) {
+                opusData.add(opus, offset, length);
+                if (!speaking) {
+                    // 静音期间丢弃预缓冲之前的帧，语音开始时缓冲区里正好是预缓冲帧和当前帧
+                    opusData.retainLast(opusPreBufferFrames);
+                }
             }
         }
 
         public List<byte[]> getPcmData() {
-            return new ArrayList<>(pcmData);
+            return pcmData.toFrameList();
         }
 
         public List<byte[]> getOpusData() {
-            return new ArrayList<>(opusData);
+            return utteranceOpus;
+        }
+
+        /**
+         * 语音结束时复制出这句话的Opus帧，并清空缓冲区准备下一句
+         */
+        public void completeUtterance() {
+            utteranceOpus = opusData.toFrameList();
+            opusData.clear();
         }
 
         public void reset() {
@@ -332,18 +343,22 @@ public class VadService {
             consecutiveSilenceFrames = 0;
             consecutiveSpeechFrames = 0;
             silenceFrameCount = 0;  // 重置静音帧计数
+            paused = false;
             avgEnergy = 0;
-            probs.clear();
-            originalProbs.clear(); // 重置原始概率列表
+            lastOriginalProb = 0.0f; // 重置原始概率
             frameCounter = 0;      // 重置帧计数器
-            sileroState = new float[2][1][128];
+            inference.resetState();
             preBuffer.clear();
-            preBufferSize = 0;
             pcmData.clear();
             opusData.clear();
+            utteranceOpus = new ArrayList<>();
             pcmAccumulator.reset();
             lastAccumTime = System.currentTimeMillis();
         }
+
+        public void close() {
+            inference.close();
+        }
     }
 
     /**
@@ -392,6 +407,25 @@ public class VadService {
      * 处理音频数据
      */
     public VadResult processAudio(String sessionId, byte[] opusData) {
+        return processAudio(sessionId, opusData, 0, opusData.length);
+    }
+
+    /**
+     * 处理数组中指定范围的音频数据，调用方可以复用接收缓冲区，数据在返回前已被复制
+     */
+    public VadResult processAudio(String sessionId, byte[] opusData, int offset, int length) {
+        // VAD参数在设备绑定时已解析到管线上下文中，未绑定时使用默认值
+        ChatSession session = sessionManager.getSession(sessionId);
+        PipelineContext context = session != null ? session.getPipelineContext() : PipelineContext.UNBOUND;
+        return processAudio(sessionId, context, opusData, offset, length);
+    }
+
+    /**
+     * 使用调用方持有的管线上下文处理音频，不再按会话查找
+     * 返回的结果对象按会话复用，只在下一次处理该会话的音频之前有效；
+     * 其中的PCM数组来自会话的帧缓冲，交给识别后循环vad.stt.frame-pool.size帧才会被覆盖
+     */
+    public VadResult processAudio(String sessionId, PipelineContext context, byte[] opusData, int offset, int length) {
 
         if (!isSessionInitialized(sessionId)) {
             return null;
@@ -399,21 +433,10 @@ public class VadService {
 
         Object lock = getLock(sessionId);
 
-        // 获取设备配置
-        SysDevice device = sessionManager.getDeviceConfig(sessionId);
-        // 添加空值检查，使用默认值
-        float speechThreshold = 0.4f;
-        float silenceThreshold = 0.3f;
-        float energyThreshold = 0.001f;
-        int silenceTimeoutMs = 800;
-
-        if (device != null && device.getRoleId() != null) {
-            SysRole role = roleService.selectRoleById(device.getRoleId());
-            speechThreshold = Optional.ofNullable(role.getVadSpeechTh()).orElse(speechThreshold);
-            silenceThreshold = Optional.ofNullable(role.getVadSilenceTh()).orElse(silenceThreshold);
-            energyThreshold = Optional.ofNullable(role.getVadEnergyTh()).orElse(energyThreshold);
-            silenceTimeoutMs = Optional.ofNullable(role.getVadSilenceMs()).orElse(silenceTimeoutMs);
-        }
+        float speechThreshold = context.getSpeechThreshold();
+        float silenceThreshold = context.getSilenceThreshold();
+        float energyThreshold = context.getEnergyThreshold();
+        int silenceTimeoutMs = context.getSilenceTimeoutMs();
 
         synchronized (lock) {
             try {
@@ -421,29 +444,35 @@ public class VadService {
                 VadState state = states.computeIfAbsent(sessionId, k -> new VadState());
 
                 // 保存原始Opus数据
-                state.addOpus(opusData);
+                state.addOpus(opusData, offset, length);
 
-                // 解码Opus数据
-                byte[] pcmData;
+                // 解码Opus数据到会话复用的缓冲区
+                int sampleCount;
                 try {
-                    pcmData = opusProcessor.opusToPcm(sessionId, opusData);
-                    if (pcmData == null || pcmData.length == 0) {
-                        return new VadResult(VadStatus.NO_SPEECH, null);
+                    sampleCount = opusProcessor.opusToPcm(sessionId, opusData, offset, length, state.decodeBuffer);
+                    if (sampleCount <= 0) {
+                        return NO_SPEECH_RESULT;
                     }
                 } catch (Exception e) {
                     logger.error("Opus解码失败: {}", e.getMessage());
-                    return new VadResult(VadStatus.ERROR, null);
+                    return ERROR_RESULT;
                 }
+                int rawPcmLength = sampleCount * 2;
 
                 // 分析音频
-                float[] samples = bytesToFloats(pcmData);
+                float[] samples = state.getSamples(sampleCount);
+                shortsToFloats(state.decodeBuffer, samples, sampleCount);
                 // 应用智能音频增强（降噪+人声增强+音量归一化）
-                byte[] enhancedPcmData = pcmData; // 默认使用原始数据
+                byte[] enhancedPcmData = state.pcmBuffer;
+                int pcmLength = rawPcmLength;
                 if (audioEnhancementEnabled) {
                     AudioEnhancer enhancer = getAudioEnhancer(sessionId);
-                    samples = enhancer.process(samples);
+                    enhancer.processInPlace(samples);
                     // 将增强后的信号转换回PCM数据
-                    enhancedPcmData = floatsToBytes(samples);
+                    floatsToBytes(samples, enhancedPcmData);
+                } else {
+                    // 默认使用原始数据
+                    shortsToBytes(state.decodeBuffer, sampleCount, enhancedPcmData);
                 }
 
                 float energy = calcEnergy(samples);
@@ -458,21 +487,22 @@ public class VadService {
                 state.addOriginalProb(speechProb);
 
                 // 添加到预缓冲区
-                state.addToPreBuffer(enhancedPcmData);
+                state.addToPreBuffer(enhancedPcmData, pcmLength);
 
-                // 处理短帧数据
-                if (enhancedPcmData.length < MIN_PCM_LENGTH && !state.isSpeaking()) {
-                    state.accumulate(enhancedPcmData);
+                // 处理短帧数据（设备按60ms发送时不会进入，这里允许分配）
+                if (pcmLength < MIN_PCM_LENGTH && !state.isSpeaking()) {
+                    state.accumulate(Arrays.copyOf(enhancedPcmData, pcmLength));
 
                     // 检查是否需要继续累积
                     if (state.getAccumSize() < MIN_PCM_LENGTH && !state.isAccumTimedOut()) {
-                        return new VadResult(VadStatus.NO_SPEECH, null);
+                        return NO_SPEECH_RESULT;
                     }
 
                     // 处理累积的数据
                     enhancedPcmData = state.drainAccumulator();
-                    if (enhancedPcmData.length == 0) {
-                        return new VadResult(VadStatus.NO_SPEECH, null);
+                    pcmLength = enhancedPcmData.length;
+                    if (pcmLength == 0) {
+                        return NO_SPEECH_RESULT;
                     }
 
                     // 重新分析累积后的音频
@@ -492,7 +522,7 @@ public class VadService {
                 }
 
                 // 计算当前帧的音频时长（16kHz, 16bit, mono = 32 bytes/ms）
-                int frameDurationMs = pcmData.length / 32;
+                int frameDurationMs = rawPcmLength / 32;
                 
                 // 判断语音状态
                 // 连接初期使用更宽松的阈值
@@ -560,14 +590,13 @@ public class VadService {
                     if (preBufferData.length > 0) {
                         // 预缓冲数据已经包含当前帧，直接使用
                         result = preBufferData;
-                        state.addPcm(result);
                     } else {
                         // 没有预缓冲数据，使用当前帧
-                        result = enhancedPcmData;
-                        state.addPcm(enhancedPcmData);
+                        result = Arrays.copyOf(enhancedPcmData, pcmLength);
                     }
+                    state.addPcm(result, result.length);
 
-                    return new VadResult(VadStatus.SPEECH_START, result);
+                    return state.result.set(VadStatus.SPEECH_START, result);
                 } else if (state.isSpeaking() && isSilence) {
                     // 检查静音时长
                     int silenceDuration = state.getSilenceDuration();
@@ -594,13 +623,9 @@ public class VadService {
                             
                             if (framesToRemove > 0) {
                                 // 移除PCM数据中的静音帧
-                                for (int i = 0; i < framesToRemove && !state.pcmData.isEmpty(); i++) {
-                                    state.pcmData.remove(state.pcmData.size() - 1);
-                                }
+                                state.pcmData.removeLast(framesToRemove);
                                 // 移除Opus数据中的静音帧
-                                for (int i = 0; i < framesToRemove && !state.opusData.isEmpty(); i++) {
-                                    state.opusData.remove(state.opusData.size() - 1);
-                                }
+                                state.opusData.removeLast(framesToRemove);
                                 logger.debug("语音结束: {}, 静音: {}ms, 移除{}ms静音({}帧), 保留{}ms尾音", 
                                         sessionId, silenceDuration, silenceToRemoveMs, framesToRemove, tailKeepMs);
                             } else {
@@ -611,6 +636,8 @@ public class VadService {
                         }
                         
                         state.resetSilenceFrameCount();  // 重置静音帧计数
+                        // 保存这句话的Opus帧，供对话结束时写入用户音频文件
+                        state.completeUtterance();
                         
                         // 重置音频增强器状态（为下一句话准备）
                         AudioEnhancer enhancer = audioEnhancers.get(sessionId);
@@ -620,27 +647,40 @@ public class VadService {
                         
                         // 重置VAD模型状态（为下一句话准备）
                         // 清空sileroState，让下一句话从干净状态开始
-                        state.sileroState = new float[2][1][128];
+                        state.inference.resetState();
                         
-                        return new VadResult(VadStatus.SPEECH_END, enhancedPcmData);
+                        // 返回的数据会交给识别线程，需要复制出会话缓冲区
+                        return state.result.set(VadStatus.SPEECH_END, state.sttFrames.copyOf(enhancedPcmData, pcmLength));
                     } else {
                         // 静音未超时，继续收集（但这是静音帧）
-                        state.addPcm(enhancedPcmData);
+                        state.addPcm(enhancedPcmData, pcmLength);
                         state.incrementSilenceFrameCount();  // 记录这是一个静音帧
-                        return new VadResult(VadStatus.SPEECH_CONTINUE, enhancedPcmData);
+                        VadStatus status = VadStatus.SPEECH_CONTINUE;
+                        if (!state.paused && silenceDuration >= pauseMs) {
+                            // 静音达到停顿时长，通知可以推测识别结果
+                            state.paused = true;
+                            status = VadStatus.SPEECH_PAUSE;
+                        }
+                        return state.result.set(status, state.sttFrames.copyOf(enhancedPcmData, pcmLength));
                     }
                 } else if (state.isSpeaking()) {
                     // 语音继续（非静音）
-                    state.addPcm(enhancedPcmData);
+                    state.addPcm(enhancedPcmData, pcmLength);
                     state.resetSilenceFrameCount();  // 重置静音帧计数，因为又开始说话了
-                    return new VadResult(VadStatus.SPEECH_CONTINUE, enhancedPcmData);
+                    VadStatus status = VadStatus.SPEECH_CONTINUE;
+                    if (state.paused && state.getSilenceDuration() == 0) {
+                        // 停顿后连续多帧语音，静音计时已清零，说明用户还在说话
+                        state.paused = false;
+                        status = VadStatus.SPEECH_RESUME;
+                    }
+                    return state.result.set(status, state.sttFrames.copyOf(enhancedPcmData, pcmLength));
                 } else {
                     // 无语音
-                    return new VadResult(VadStatus.NO_SPEECH, null);
+                    return NO_SPEECH_RESULT;
                 }
             } catch (Exception e) {
                 logger.error("处理音频失败: {}, 错误: {}", sessionId, e.getMessage(), e);
-                return new VadResult(VadStatus.ERROR, null);
+                return ERROR_RESULT;
             }
         }
     }
@@ -655,30 +695,15 @@ public class VadService {
         }
 
         try {
-            // 处理样本大小
-            if (samples.length == VAD_SAMPLE_SIZE) {
-                InferenceResult r = vadModel.infer(samples, state.sileroState);
-                state.sileroState = r.state;
-                return r.probability;
-            }
-
-            // 样本不足，需要填充
-            if (samples.length < VAD_SAMPLE_SIZE) {
-                float[] padded = new float[VAD_SAMPLE_SIZE];
-                System.arraycopy(samples, 0, padded, 0, samples.length);
-                InferenceResult r = vadModel.infer(padded, state.sileroState);
-                state.sileroState = r.state;
-                return r.probability;
+            // 样本不足或正好一个窗口，不足部分由推理上下文补0
+            if (samples.length <= VAD_SAMPLE_SIZE) {
+                return vadModel.infer(state.inference, samples, 0, samples.length);
             }
 
             // 样本过长，分段处理
             float maxProb = 0.0f;
             for (int offset = 0; offset <= samples.length - VAD_SAMPLE_SIZE; offset += VAD_SAMPLE_SIZE / 2) {
-                float[] chunk = new float[VAD_SAMPLE_SIZE];
-                System.arraycopy(samples, offset, chunk, 0, VAD_SAMPLE_SIZE);
-                InferenceResult r = vadModel.infer(chunk, state.sileroState);
-                state.sileroState = r.state;
-                float prob = r.probability;
+                float prob = vadModel.infer(state.inference, samples, offset, VAD_SAMPLE_SIZE);
                 maxProb = Math.max(maxProb, prob);
             }
             return maxProb;
@@ -688,6 +713,38 @@ public class VadService {
         }
     }
 
+    /**
+     * 解码后的样本转为归一化浮点数，写入已有数组
+     */
+    private static void shortsToFloats(short[] pcm, float[] samples, int sampleCount) {
+        for (int i = 0; i < sampleCount; i++) {
+            samples[i] = pcm[i] / 32768.0f; // 归一化到[-1,1]
+        }
+    }
+
+    /**
+     * 解码后的样本转为小端序PCM字节，写入已有数组
+     */
+    private static void shortsToBytes(short[] pcm, int sampleCount, byte[] out) {
+        for (int i = 0; i < sampleCount; i++) {
+            out[i * 2] = (byte) (pcm[i] & 0xFF);
+            out[i * 2 + 1] = (byte) ((pcm[i] >> 8) & 0xFF);
+        }
+    }
+
+    /**
+     * 浮点数组转PCM字节，写入已有数组
+     */
+    private static void floatsToBytes(float[] samples, byte[] out) {
+        for (int i = 0; i < samples.length; i++) {
+            // 确保样本在[-1,1]范围内，然后转换为16位PCM
+            float clampedSample = Math.max(-1.0f, Math.min(1.0f, samples[i]));
+            short pcmSample = (short) (clampedSample * 32767.0f);
+            out[i * 2] = (byte) (pcmSample & 0xFF);
+            out[i * 2 + 1] = (byte) ((pcmSample >> 8) & 0xFF);
+        }
+    }
+
     /**
      * 字节数组转浮点数组
      */
@@ -742,6 +799,7 @@ public class VadService {
             VadState state = states.get(sessionId);
             if (state != null) {
                 state.reset();
+                state.close();
             }
             states.remove(sessionId);
             locks.remove(sessionId);
@@ -791,7 +849,7 @@ public class VadService {
     }
 
     /**
-     * 获取Opus数据
+     * 获取最近一句话的Opus数据（含语音开始前的预缓冲帧），语音结束时生成
      */
     public List<byte[]> getOpusData(String sessionId) {
         Object lock = getLock(sessionId);
@@ -819,6 +877,8 @@ public class VadService {
         NO_SPEECH, // 无语音
         SPEECH_START, // 语音开始
         SPEECH_CONTINUE, // 语音继续
+        SPEECH_PAUSE, // 语音停顿，静音开始但未超时
+        SPEECH_RESUME, // 停顿后语音恢复
         SPEECH_END, // 语音结束
         ERROR // 处理错误
     }
@@ -827,14 +887,20 @@ public class VadService {
      * VAD结果类
      */
     public static class VadResult {
-        private final VadStatus status;
-        private final byte[] data;
+        private VadStatus status;
+        private byte[] data;
 
         public VadResult(VadStatus status, byte[] data) {
             this.status = status;
             this.data = data;
         }
 
+        private VadResult set(VadStatus status, byte[] data) {
+            this.status = status;
+            this.data = data;
+            return this;
+        }
+
         public VadStatus getStatus() {
             return status;
         }
@@ -844,7 +910,8 @@ public class VadService {
         }
 
         public boolean isSpeechActive() {
-            return status == VadStatus.SPEECH_START || status == VadStatus.SPEECH_CONTINUE;
+            return status == VadStatus.SPEECH_START || status == VadStatus.SPEECH_CONTINUE
+                    || status == VadStatus.SPEECH_PAUSE || status == VadStatus.SPEECH_RESUME;
         }
 
         public boolean isSpeechEnd() {
@@ -2,6 +2,8 @@ package com.xiaozhi.dialogue.stt;
 
 import reactor.core.publisher.Sinks;
 
+import java.util.function.Consumer;
+
 /**
  * STT服务接口
  */
@@ -28,6 +30,19 @@ public interface SttService {
    */
   String streamRecognition(Sinks.Many<byte[]> audioSink);
 
+  /**
+   * 流式处理音频数据，识别过程中回调当前的中间结果
+   * 中间结果为截至目前的完整文本（已确定部分加上未稳定部分），格式与最终结果一致；
+   * 不支持中间结果的服务商不回调。
+   *
+   * @param audioSink       音频数据流
+   * @param partialListener 中间结果回调
+   * @return 识别的文本结果
+   */
+  default String streamRecognition(Sinks.Many<byte[]> audioSink, Consumer<String> partialListener) {
+    return streamRecognition(audioSink);
+  }
+
   /**
    * 检查服务是否支持流式处理
    * 
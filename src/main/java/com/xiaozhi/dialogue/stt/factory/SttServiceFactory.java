@@ -7,9 +7,11 @@ import com.xiaozhi.entity.SysConfig;
 import jakarta.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -31,6 +33,18 @@ public class SttServiceFactory {
     // 备选默认提供商（当Vosk初始化失败时使用）
     private String fallbackProvider = null;
 
+    // Vosk识别器池大小，即同时进行本地识别的最大会话数，每个识别器占用一份原生解码内存
+    @Value("${stt.vosk.pool-size:4}")
+    private int voskPoolSize;
+
+    // 识别器全部占用时的等待时间
+    @Value("${stt.vosk.acquire-timeout-ms:3000}")
+    private long voskAcquireTimeoutMs;
+
+    // 是否把Vosk识别的音频保存为WAV，仅用于调试
+    @Value("${stt.vosk.debug-wav:false}")
+    private boolean voskDebugWav;
+
     /**
      * 应用启动时自动初始化Vosk服务
      */
@@ -54,7 +68,7 @@ public class SttServiceFactory {
         }
 
         try {
-            var voskService = new VoskSttService();
+            var voskService = new VoskSttService(voskPoolSize, voskAcquireTimeoutMs, voskDebugWav);
             voskService.initialize();
             
             // 检查模型是否真正加载成功
@@ -72,6 +86,13 @@ public class SttServiceFactory {
         return null;
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (serviceCache.get(DEFAULT_PROVIDER) instanceof VoskSttService voskService) {
+            voskService.destroy();
+        }
+    }
+
     /**
      * 获取默认STT服务
      */
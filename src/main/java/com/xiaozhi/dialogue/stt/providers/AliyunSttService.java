@@ -31,6 +31,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
@@ -65,9 +66,14 @@ public class AliyunSttService implements SttService {
 
     @Override
     public String streamRecognition(Sinks.Many<byte[]> audioSink) {
+        return streamRecognition(audioSink, null);
+    }
+
+    @Override
+    public String streamRecognition(Sinks.Many<byte[]> audioSink, Consumer<String> partialListener) {
         try {
             if (model.toLowerCase().contains("gummy")) {
-                return streamRecognitionGummy(audioSink);
+                return streamRecognitionGummy(audioSink, partialListener);
             } else if (model.toLowerCase().contains("qwen")) {
                 return streamRecognitionQwen(audioSink);
             } else {
@@ -79,7 +85,7 @@ public class AliyunSttService implements SttService {
                     actualModel = "paraformer-realtime-v2";
                     logger.info("未识别的模型类型: {}，使用默认模型: {}", model, actualModel);
                 }
-                return streamRecognitionParaformer(audioSink, actualModel);
+                return streamRecognitionParaformer(audioSink, actualModel, partialListener);
             }
         } catch (Exception e) {
             logger.error("使用{}模型语音识别失败：", model, e);
@@ -90,7 +96,10 @@ public class AliyunSttService implements SttService {
     /**
      * Paraformer 模型的流式识别
      */
-    private String streamRecognitionParaformer(Sinks.Many<byte[]> audioSink, String modelName) {
+    private String streamRecognitionParaformer(Sinks.Many<byte[]> audioSink, String modelName,
+                                               Consumer<String> partialListener) {
+        // 已确定的句子，用于拼接中间结果
+        StringBuilder confirmed = new StringBuilder();
         var recognizer = new Recognition();
 
         // 创建识别参数
@@ -116,6 +125,13 @@ public class AliyunSttService implements SttService {
                                     if (result.isSentenceEnd()) {
                                         logger.info("语音识别结果({}): {}", modelName, result.getSentence().getText());
                                         sink.next(result.getSentence().getText());
+                                        confirmed.append(result.getSentence().getText());
+                                        if (partialListener != null) {
+                                            partialListener.accept(confirmed.toString());
+                                        }
+                                    } else if (partialListener != null && result.getSentence() != null) {
+                                        // 中间结果
+                                        partialListener.accept(confirmed + result.getSentence().getText());
                                     }
                                 },
                                 Throwable::printStackTrace,
@@ -136,7 +152,7 @@ public class AliyunSttService implements SttService {
     /**
      * Gummy 模型的流式识别（支持实时翻译）
      */
-    private String streamRecognitionGummy(Sinks.Many<byte[]> audioSink) {
+    private String streamRecognitionGummy(Sinks.Many<byte[]> audioSink, Consumer<String> partialListener) {
         StringBuilder result = new StringBuilder();
         CountDownLatch latch = new CountDownLatch(1);
         AtomicBoolean hasError = new AtomicBoolean(false);
@@ -165,6 +181,15 @@ public class AliyunSttService implements SttService {
                                     logger.info("语音识别结果({}): {}", model, text);
                                     synchronized (result) {
                                         result.append(text);
+                                        if (partialListener != null) {
+                                            partialListener.accept(result.toString());
+                                        }
+                                    }
+                                } else if (partialListener != null) {
+                                    // 中间结果
+                                    String text = recognizerResult.getTranscriptionResult().getText();
+                                    synchronized (result) {
+                                        partialListener.accept(result + text);
                                     }
                                 }
                             }
@@ -38,6 +38,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class TencentSttService implements SttService {
@@ -135,6 +136,11 @@ public class TencentSttService implements SttService {
 
     @Override
     public String streamRecognition(Sinks.Many<byte[]> audioSink) {
+        return streamRecognition(audioSink, null);
+    }
+
+    @Override
+    public String streamRecognition(Sinks.Many<byte[]> audioSink, Consumer<String> partialListener) {
         // 检查配置是否已设置
         if (secretId == null || secretKey == null || appId == null) {
             logger.error("腾讯云语音识别配置未设置，无法进行识别");
@@ -195,6 +201,9 @@ public class TencentSttService implements SttService {
                                 textBuilder.setLength(0);
                                 textBuilder.append(text);
                             }
+                            if (partialListener != null) {
+                                partialListener.accept(text);
+                            }
                         }
                     }
                 }
@@ -211,6 +220,9 @@ public class TencentSttService implements SttService {
                                 textBuilder.append(text);
                             }
                             finalResult.set(text);
+                            if (partialListener != null) {
+                                partialListener.accept(text);
+                            }
                         }
                     }
                 }
@@ -3,6 +3,7 @@ package com.xiaozhi.dialogue.stt.providers;
 import com.xiaozhi.dialogue.stt.SttService;
 import com.xiaozhi.utils.AudioUtils;
 import jakarta.annotation.PostConstruct;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,31 +13,51 @@ import org.vosk.Model;
 import org.vosk.Recognizer;
 import reactor.core.publisher.Sinks;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Vosk STT服务实现
- * 使用JDK 21虚拟线程实现异步处理
+ * 识别器在模型加载时按池大小预先创建，每句话从池中借出、识别后重置归还，
+ * 避免每句话创建和销毁原生识别器，同时限制原生内存上限。
  */
 public class VoskSttService implements SttService {
 
     private static final Logger logger = LoggerFactory.getLogger(VoskSttService.class);
     private static final String PROVIDER_NAME = "vosk";
-    private static final int QUEUE_TIMEOUT_MS = 5000; // 队列等待超时时间
+    private static final long MAX_STREAM_DURATION_MS = 90000; // 单次流式识别最长时间
 
     // Vosk模型相关对象
     private Model model;
     private String voskModelPath;
     private boolean modelLoaded = false;
 
+    // 预先创建的识别器
+    private final int poolSize;
+    private final long acquireTimeoutMs;
+    private final boolean saveDebugWav;
+    private BlockingQueue<Recognizer> recognizers;
+
+    public VoskSttService() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), 3000, false);
+    }
+
+    /**
+     * @param poolSize         识别器数量，即同时进行识别的最大会话数
+     * @param acquireTimeoutMs 识别器全部占用时的等待时间
+     * @param saveDebugWav     是否把非流式识别的音频保存为WAV便于调试
+     */
+    public VoskSttService(int poolSize, long acquireTimeoutMs, boolean saveDebugWav) {
+        this.poolSize = Math.max(poolSize, 1);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.saveDebugWav = saveDebugWav;
+    }
+
     /**
      * 初始化Vosk模型
      *
@@ -63,8 +84,14 @@ public class VoskSttService implements SttService {
             // 加载模型，路径为配置的模型目录
             voskModelPath = System.getProperty("user.dir") + File.separator + Paths.get("models", "vosk-model");
             model = new Model(voskModelPath);
+
+            // 预热识别器池
+            recognizers = new ArrayBlockingQueue<>(poolSize);
+            for (int i = 0; i < poolSize; i++) {
+                recognizers.offer(new Recognizer(model, AudioUtils.SAMPLE_RATE));
+            }
             modelLoaded = true;
-            logger.info("Vosk 模型加载成功！路径: {}", voskModelPath);
+            logger.info("Vosk 模型加载成功！路径: {}，识别器数量: {}", voskModelPath, poolSize);
         } catch (Exception e) {
             modelLoaded = false;
             logger.warn("Vosk 模型加载失败！将使用其他STT服务: {}", e.getMessage());
@@ -86,6 +113,13 @@ public class VoskSttService implements SttService {
         return PROVIDER_NAME;
     }
 
+    /**
+     * 当前空闲的识别器数量
+     */
+    public int getAvailableRecognizers() {
+        return recognizers == null ? 0 : recognizers.size();
+    }
+
     @Override
     public String recognition(byte[] audioData) {
         if (!isModelLoaded()) {
@@ -98,32 +132,37 @@ public class VoskSttService implements SttService {
             return null;
         }
 
-        // 将原始音频数据转换为WAV格式并保存
-        String fileName = AudioUtils.saveAsWav(audioData);
-
-        try (Recognizer recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE)) {
-            ByteArrayInputStream audioStream = new ByteArrayInputStream(audioData);
-
-            byte[] buffer = new byte[4096];
-            int bytesRead;
+        if (saveDebugWav) {
+            // 将原始音频数据转换为WAV格式并保存
+            AudioUtils.saveAsWav(audioData);
+        }
 
-            while ((bytesRead = audioStream.read(buffer)) != -1) {
-                if (recognizer.acceptWaveForm(buffer, bytesRead)) {
-                    // 如果识别到完整的结果
-                    String result = recognizer.getResult();
-                    JSONObject jsonResult = new JSONObject(result);
-                    return jsonResult.getString("text").replaceAll("\\s+", "");
+        Recognizer recognizer = acquire();
+        if (recognizer == null) {
+            return null;
+        }
+        try {
+            StringBuilder text = new StringBuilder();
+            int chunkSize = 4096;
+            byte[] buffer = new byte[chunkSize];
+            for (int offset = 0; offset < audioData.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, audioData.length - offset);
+                System.arraycopy(audioData, offset, buffer, 0, length);
+                if (recognizer.acceptWaveForm(buffer, length)) {
+                    // 识别到完整的一段
+                    text.append(extractText(recognizer.getResult()));
                 }
             }
 
-            // 返回最终的识别结果
-            String finalResult = recognizer.getFinalResult();
-            JSONObject jsonFinal = new JSONObject(finalResult);
-            return jsonFinal.getString("text").replaceAll("\\s+", "");
+            // 追加最终的识别结果
+            text.append(extractText(recognizer.getFinalResult()));
+            return text.toString();
 
         } catch (Exception e) {
             logger.error("处理音频时发生错误！", e);
             return null;
+        } finally {
+            release(recognizer);
         }
     }
 
@@ -134,92 +173,122 @@ public class VoskSttService implements SttService {
 
     @Override
     public String streamRecognition(Sinks.Many<byte[]> audioSink) {
+        return streamRecognition(audioSink, null);
+    }
+
+    @Override
+    public String streamRecognition(Sinks.Many<byte[]> audioSink, Consumer<String> partialListener) {
         if (!isModelLoaded()) {
             logger.error("Vosk模型未加载，无法进行流式识别！");
             return null;
         }
 
-        // 使用阻塞队列存储音频数据
-        BlockingQueue<byte[]> audioQueue = new LinkedBlockingQueue<>();
-        AtomicBoolean isCompleted = new AtomicBoolean(false);
-        List<String> recognizedText = new ArrayList<>();
-        StringBuilder finalResult = new StringBuilder();
+        Recognizer recognizer = acquire();
+        if (recognizer == null) {
+            return null;
+        }
 
-        // 订阅Sink并将数据放入队列
-        audioSink.asFlux().subscribe(
-                data -> audioQueue.offer(data),
-                error -> {
-                    logger.error("音频流处理错误", error);
-                    isCompleted.set(true);
-                },
-                () -> isCompleted.set(true)
-        );
-
-        // 使用虚拟线程处理音频识别
+        StringBuilder finalResult = new StringBuilder();
         try {
-            Thread virtualThread = Thread.startVirtualThread(() -> {
-                try (Recognizer recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE)) {
-                    while (!isCompleted.get() || !audioQueue.isEmpty()) {
-                        try {
-                            byte[] audioChunk = audioQueue.poll(100, TimeUnit.MILLISECONDS);
-                            if (audioChunk != null) {
-                                boolean hasResult = recognizer.acceptWaveForm(audioChunk, audioChunk.length);
-                                if (hasResult) {
-                                    // 提取部分识别结果中的文本
-                                    String result = recognizer.getResult();
-                                    JSONObject jsonResult = new JSONObject(result);
-                                    if (jsonResult.has("text") && !jsonResult.getString("text").isEmpty()) {
-                                        String text = jsonResult.getString("text").replaceAll("\\s+", "");
-                                        recognizedText.add(text);
-                                        logger.debug("Vosk识别中间结果: {}", text);
-                                    }
-                                }
-                            }
-
-                            // 如果已完成且队列为空，获取最终结果
-                            if (isCompleted.get() && audioQueue.isEmpty()) {
-                                String finalText = recognizer.getFinalResult();
-                                JSONObject jsonFinal = new JSONObject(finalText);
-                                if (jsonFinal.has("text")) {
-                                    String text = jsonFinal.getString("text").replaceAll("\\s+", "");
-                                    if (!text.isEmpty()) {
-                                        recognizedText.add(text);
-                                        logger.debug("Vosk识别最终结果: {}", text);
-                                    }
-                                }
-                                break;
+            // 在调用线程中阻塞迭代音频流，数据到达即送入识别器，没有轮询间隔
+            Iterable<byte[]> chunks = audioSink.asFlux()
+                    .timeout(Duration.ofMillis(MAX_STREAM_DURATION_MS))
+                    .toIterable();
+            try {
+                for (byte[] audioChunk : chunks) {
+                    if (recognizer.acceptWaveForm(audioChunk, audioChunk.length)) {
+                        // 提取部分识别结果中的文本
+                        String text = extractText(recognizer.getResult());
+                        if (!text.isEmpty()) {
+                            finalResult.append(text);
+                            logger.debug("Vosk识别中间结果: {}", text);
+                            if (partialListener != null) {
+                                partialListener.accept(finalResult.toString());
                             }
-                        } catch (InterruptedException e) {
-                            logger.warn("音频数据队列等待被中断", e);
-                            Thread.currentThread().interrupt(); // 重新设置中断标志
-                            break;
+                        }
+                    } else if (partialListener != null) {
+                        // 未形成完整片段，回调未稳定的部分
+                        String partial = new JSONObject(recognizer.getPartialResult()).optString("partial")
+                                .replaceAll("\\s+", "");
+                        if (!partial.isEmpty()) {
+                            partialListener.accept(finalResult + partial);
                         }
                     }
-
-                    // 合并所有识别结果
-                    for (String text : recognizedText) {
-                        finalResult.append(text);
-                    }
-
-                } catch (Exception e) {
-                    logger.error("Vosk流式识别过程中发生错误", e);
-                }
-            });
-            
-            // 等待虚拟线程完成，最多等待90秒
-            try {
-                virtualThread.join(90000); // 90秒超时
-                if (virtualThread.isAlive()) {
-                    virtualThread.interrupt(); // 中断线程
                 }
-            } catch (InterruptedException e) {
-                logger.warn("等待Vosk识别完成时被中断", e);
-                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // 超时或音频流出错时，返回已经识别的内容
+                logger.warn("音频流处理错误: {}", e.getMessage());
+            }
+
+            // 音频流结束，获取最终结果
+            String text = extractText(recognizer.getFinalResult());
+            if (!text.isEmpty()) {
+                finalResult.append(text);
+                logger.debug("Vosk识别最终结果: {}", text);
             }
         } catch (Exception e) {
-            logger.error("启动虚拟线程失败", e);
+            logger.error("Vosk流式识别过程中发生错误", e);
+        } finally {
+            release(recognizer);
         }
 
         return finalResult.toString();
     }
+
+    /**
+     * 从池中借出识别器，等待超时返回null
+     */
+    private Recognizer acquire() {
+        try {
+            Recognizer recognizer = recognizers.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            if (recognizer == null) {
+                logger.warn("Vosk识别器已全部占用（{}个），本次识别放弃", poolSize);
+            }
+            return recognizer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 重置识别器状态后归还，重置失败时换一个新的
+     */
+    private void release(Recognizer recognizer) {
+        try {
+            recognizer.reset();
+        } catch (Exception e) {
+            logger.warn("重置Vosk识别器失败，重新创建: {}", e.getMessage());
+            recognizer.close();
+            try {
+                recognizer = new Recognizer(model, AudioUtils.SAMPLE_RATE);
+            } catch (Exception ex) {
+                logger.error("创建Vosk识别器失败", ex);
+                return;
+            }
+        }
+        if (!recognizers.offer(recognizer)) {
+            recognizer.close();
+        }
+    }
+
+    private static String extractText(String json) throws JSONException {
+        JSONObject result = new JSONObject(json);
+        return result.has("text") ? result.getString("text").replaceAll("\\s+", "") : "";
+    }
+
+    /**
+     * 释放识别器和模型
+     */
+    public void destroy() {
+        if (recognizers != null) {
+            Recognizer recognizer;
+            while ((recognizer = recognizers.poll()) != null) {
+                recognizer.close();
+            }
+        }
+        if (model != null) {
+            model.close();
+        }
+    }
 }
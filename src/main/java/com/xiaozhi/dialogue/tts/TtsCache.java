@@ -0,0 +1,436 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.utils.OpusProcessor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * TTS结果缓存，保存编码好的Opus帧，重复的短句（问候语、告别语、唤醒回复、工具确认等）不再调用服务商合成和重新编码。
+ * 键由服务商、配置、音色、音调、语速和归一化后的文本组成。
+ * 内存层为按字节数限制的LRU；磁盘层可选，每个键一个文件，读取时使用内存映射，重启后仍然有效。
+ * 磁盘层同样按字节数限制，读取时刷新文件修改时间，超出容量时按修改时间淘汰最久未使用的文件。
+ */
+@Component
+public class TtsCache {
+    private static final Logger logger = LoggerFactory.getLogger(TtsCache.class);
+
+    private static final int FILE_MAGIC = 0x4F505543; // "OPUC"
+
+    @Value("${tts.cache.enabled:true}")
+    private boolean enabled;
+
+    // 只缓存不超过该长度的句子，长句重复概率很低
+    @Value("${tts.cache.max-text-length:32}")
+    private int maxTextLength;
+
+    // 内存层容量（字节）
+    @Value("${tts.cache.memory.max-bytes:33554432}")
+    private long memoryMaxBytes;
+
+    @Value("${tts.cache.disk.enabled:false}")
+    private boolean diskEnabled;
+
+    @Value("${tts.cache.disk.path:audio/tts-cache}")
+    private String diskPath;
+
+    // 磁盘层容量（字节）
+    @Value("${tts.cache.disk.max-bytes:268435456}")
+    private long diskMaxBytes;
+
+    @Autowired
+    private OpusProcessor opusProcessor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 访问顺序的LinkedHashMap，按总字节数淘汰最久未使用的条目
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes = 0;
+
+    // 磁盘层占用的估计值，写入时累加，淘汰时按实际文件重新统计
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Object diskEvictLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private record Entry(List<byte[]> frames, long bytes) {
+    }
+
+    private record CacheFile(Path path, long size, FileTime lastModified) {
+    }
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("xiaozhi.tts.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("TTS缓存查询次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("xiaozhi.tts.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("TTS缓存查询次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("xiaozhi.tts.cache.disk.hits", diskHits, LongAdder::sum)
+                .description("TTS缓存磁盘层命中次数")
+                .register(meterRegistry);
+        FunctionCounter.builder("xiaozhi.tts.cache.bytes.saved", bytesSaved, LongAdder::sum)
+                .description("命中缓存直接发送的Opus字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.tts.cache.hit.ratio", this, TtsCache::getHitRatio)
+                .description("TTS缓存命中率")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.tts.cache.memory.bytes", this, TtsCache::getMemoryBytes)
+                .description("TTS缓存内存层占用字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        if (diskEnabled) {
+            diskBytes.set(diskUsage());
+            Gauge.builder("xiaozhi.tts.cache.disk.bytes", diskBytes, AtomicLong::get)
+                    .description("TTS缓存磁盘层占用字节数")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 生成缓存键，文本过长或缓存关闭时返回null
+     */
+    public String createKey(SysConfig config, String provider, String voiceName, Float pitch, Float speed, String text) {
+        if (!enabled || text == null) {
+            return null;
+        }
+        String normalized = normalize(text);
+        if (normalized.isEmpty() || normalized.length() > maxTextLength) {
+            return null;
+        }
+        Integer configId = config != null && config.getConfigId() != null ? config.getConfigId() : -1;
+        return provider + ":" + configId + ":" + voiceName + ":" + pitch + ":" + speed + ":" + normalized;
+    }
+
+    /**
+     * 查询缓存，未命中返回null
+     */
+    public List<byte[]> get(String key) {
+        if (key == null) {
+            return null;
+        }
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry == null && diskEnabled) {
+            List<byte[]> frames = readDisk(key);
+            if (frames != null) {
+                diskHits.increment();
+                entry = putMemory(key, frames);
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        bytesSaved.add(entry.bytes());
+        return entry.frames();
+    }
+
+    /**
+     * 将合成得到的PCM编码为Opus帧并放入缓存
+     *
+     * @return 编码好的Opus帧，可直接用于播放；key为null或编码失败时返回null
+     */
+    public List<byte[]> put(String key, byte[] pcm) {
+        if (key == null || pcm == null || pcm.length == 0) {
+            return null;
+        }
+        // 使用独立的编码器，不影响会话编码器的状态
+        String sid = "tts-cache-" + UUID.randomUUID();
+        List<byte[]> frames;
+        try {
+            frames = opusProcessor.pcmToOpus(sid, pcm, false);
+        } finally {
+            opusProcessor.cleanup(sid);
+        }
+        if (frames == null || frames.isEmpty()) {
+            return null;
+        }
+        return put(key, frames);
+    }
+
+    /**
+     * 放入已经编码好的Opus帧，用于流式合成时播放线程已完成编码的场景，避免重复编码
+     *
+     * @return 放入缓存的帧；key为null或没有帧时返回null
+     */
+    public List<byte[]> put(String key, List<byte[]> frames) {
+        if (key == null || frames == null || frames.isEmpty()) {
+            return null;
+        }
+        List<byte[]> copy = List.copyOf(frames);
+        putMemory(key, copy);
+        if (diskEnabled) {
+            Thread.startVirtualThread(() -> writeDisk(key, copy));
+        }
+        return copy;
+    }
+
+    /**
+     * 配置修改后清除该配置的缓存
+     */
+    public void removeCache(SysConfig config) {
+        if (config == null || config.getConfigId() == null) {
+            return;
+        }
+        String marker = ":" + config.getConfigId() + ":";
+        synchronized (memory) {
+            Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                String key = e.getKey();
+                int first = key.indexOf(':');
+                if (first >= 0 && key.startsWith(marker, first)) {
+                    memoryBytes -= e.getValue().bytes();
+                    it.remove();
+                }
+            }
+        }
+        if (diskEnabled) {
+            try (var dirs = Files.newDirectoryStream(Path.of(diskPath), "*-" + config.getConfigId())) {
+                for (Path dir : dirs) {
+                    FileSystemUtils.deleteRecursively(dir);
+                }
+            } catch (IOException e) {
+                logger.warn("清理TTS磁盘缓存失败 - ConfigId: {}", config.getConfigId(), e);
+            }
+        }
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    private Entry putMemory(String key, List<byte[]> frames) {
+        long bytes = 0;
+        for (byte[] frame : frames) {
+            bytes += frame.length;
+        }
+        Entry entry = new Entry(frames, bytes);
+        if (bytes > memoryMaxBytes) {
+            return entry;
+        }
+        synchronized (memory) {
+            Entry old = memory.put(key, entry);
+            if (old != null) {
+                memoryBytes -= old.bytes();
+            }
+            memoryBytes += bytes;
+            Iterator<Entry> it = memory.values().iterator();
+            while (memoryBytes > memoryMaxBytes && it.hasNext()) {
+                memoryBytes -= it.next().bytes();
+                it.remove();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 文本归一化：全半角统一、首尾空白去除、连续空白合并
+     */
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).strip().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 磁盘文件路径，按服务商和配置分目录，配置修改时整目录删除
+     */
+    private Path diskFile(String key) {
+        int first = key.indexOf(':');
+        int second = key.indexOf(':', first + 1);
+        String dir = key.substring(0, first) + "-" + key.substring(first + 1, second);
+        return Path.of(diskPath, dir, sha256(key) + ".opus");
+    }
+
+    /**
+     * 文件格式：魔数、帧数，随后每帧为长度加数据，整数均为大端序
+     */
+    private void writeDisk(String key, List<byte[]> frames) {
+        Path file = diskFile(key);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = Files.newOutputStream(tmp);
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(FILE_MAGIC);
+                data.writeInt(frames.size());
+                for (byte[] frame : frames) {
+                    data.writeShort(frame.length);
+                    data.write(frame);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(Files.size(file)) > diskMaxBytes) {
+                evictDisk();
+            }
+        } catch (IOException e) {
+            logger.warn("写入TTS磁盘缓存失败: {}", file, e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private List<byte[]> readDisk(String key) {
+        Path file = diskFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 修改时间作为最近使用时间，淘汰时保留常用的文件
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.remaining() < 8 || buffer.getInt() != FILE_MAGIC) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            int count = buffer.getInt();
+            List<byte[]> frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] frame = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(frame);
+                frames.add(frame);
+            }
+            return List.copyOf(frames);
+        } catch (Exception e) {
+            logger.warn("读取TTS磁盘缓存失败: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按修改时间从旧到新删除缓存文件，直到总大小不超过容量
+     * 同时重新统计实际占用，纠正覆盖写入和按配置删除目录带来的偏差
+     */
+    private void evictDisk() {
+        synchronized (diskEvictLock) {
+            List<CacheFile> files = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(Path.of(diskPath))) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    if (!path.getFileName().toString().endsWith(".opus")) {
+                        continue;
+                    }
+                    try {
+                        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                        if (attrs.isRegularFile()) {
+                            files.add(new CacheFile(path, attrs.size(), attrs.lastModifiedTime()));
+                        }
+                    } catch (IOException ignored) {
+                        // 文件已被其他线程删除
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.warn("统计TTS磁盘缓存失败: {}", diskPath, e);
+                return;
+            }
+            long total = 0;
+            for (CacheFile file : files) {
+                total += file.size();
+            }
+            files.sort(Comparator.comparing(CacheFile::lastModified));
+            int evicted = 0;
+            for (CacheFile file : files) {
+                if (total <= diskMaxBytes) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(file.path());
+                    total -= file.size();
+                    evicted++;
+                } catch (IOException e) {
+                    logger.warn("删除TTS磁盘缓存失败: {}", file.path(), e);
+                }
+            }
+            diskBytes.set(total);
+            if (evicted > 0) {
+                logger.info("TTS磁盘缓存超出容量，已淘汰{}个文件，当前占用{}字节", evicted, total);
+            }
+        }
+    }
+
+    /**
+     * 磁盘层当前占用的字节数
+     */
+    private long diskUsage() {
+        Path root = Path.of(diskPath);
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".opus"))
+                    .mapToLong(path -> path.toFile().length())
+                    .sum();
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("统计TTS磁盘缓存失败: {}", diskPath, e);
+            return 0;
+        }
+    }
+
+    private static String sha256(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
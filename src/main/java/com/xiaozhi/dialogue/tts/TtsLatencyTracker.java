@@ -0,0 +1,155 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.entity.SysConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTS延迟统计
+ * 按服务商记录运行时测得的首包延迟（流式为首个数据块，非流式为整句合成时间），用指数滑动平均估计下一次请求的延迟。
+ * 首句切分据此计算模型输出首句的最晚时间：服务商越慢，留给模型的等待时间越短，首句越早送出。
+ * 同时按角色和服务商记录从请求模型到发出首帧音频的时间（TTFA）。
+ */
+@Component
+public class TtsLatencyTracker {
+
+    // 未配置TTS时使用默认Edge
+    public static final String DEFAULT_PROVIDER = "edge";
+
+    // 滑动平均中新样本的权重
+    private static final double ALPHA = 0.2;
+
+    @Value("${tts.first-chunk.enabled:true}")
+    private boolean firstChunkEnabled;
+
+    // 期望的首帧音频时间（毫秒），从请求模型开始计算
+    @Value("${tts.first-chunk.target-ttfa-ms:1500}")
+    private long targetTtfaMs;
+
+    // 从请求模型开始，至少等待这么久才提前切分首句
+    @Value("${tts.first-chunk.min-wait-ms:300}")
+    private long minWaitMs;
+
+    // 首句超过该字符数仍没有断句时提前切分
+    @Value("${tts.first-chunk.max-chars:20}")
+    private int maxChars;
+
+    // 服务商还没有样本时假定的延迟（毫秒）
+    @Value("${tts.latency.default-ms:800}")
+    private long defaultLatencyMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+    private final Map<String, Timer> ttfaTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> splitCounters = new ConcurrentHashMap<>();
+
+    private static final class Estimate {
+        final Timer timer;
+        volatile double ewmaMs = -1;
+
+        Estimate(Timer timer) {
+            this.timer = timer;
+        }
+
+        synchronized void update(long latencyMs) {
+            ewmaMs = ewmaMs < 0 ? latencyMs : ewmaMs + ALPHA * (latencyMs - ewmaMs);
+        }
+    }
+
+    /**
+     * TTS配置对应的服务商名称
+     */
+    public static String providerOf(SysConfig ttsConfig) {
+        return ttsConfig != null && ttsConfig.getProvider() != null ? ttsConfig.getProvider() : DEFAULT_PROVIDER;
+    }
+
+    /**
+     * 记录一次TTS请求的首包延迟，缓存命中不应记录
+     */
+    public void record(String provider, long latencyMs) {
+        if (latencyMs < 0) {
+            return;
+        }
+        Estimate estimate = estimates.computeIfAbsent(provider, this::register);
+        estimate.timer.record(latencyMs, TimeUnit.MILLISECONDS);
+        estimate.update(latencyMs);
+    }
+
+    /**
+     * 服务商的预计延迟（毫秒）
+     */
+    public long expectedLatencyMs(String provider) {
+        Estimate estimate = estimates.get(provider);
+        return estimate != null && estimate.ewmaMs >= 0 ? Math.round(estimate.ewmaMs) : defaultLatencyMs;
+    }
+
+    /**
+     * 首句最晚送出的时间，超过后在安全位置提前切分
+     *
+     * @param requestTimeMillis 请求模型的时间
+     * @return 时间戳（毫秒），不启用时为Long.MAX_VALUE
+     */
+    public long firstChunkDeadline(String provider, long requestTimeMillis) {
+        if (!firstChunkEnabled) {
+            return Long.MAX_VALUE;
+        }
+        long waitMs = Math.max(minWaitMs, targetTtfaMs - expectedLatencyMs(provider));
+        return requestTimeMillis + waitMs;
+    }
+
+    /**
+     * 首句提前切分的字符数阈值，不启用时为Integer.MAX_VALUE
+     */
+    public int firstChunkMaxChars() {
+        return firstChunkEnabled ? maxChars : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 记录一次首句提前切分
+     */
+    public void recordFirstChunkSplit(String provider) {
+        splitCounters.computeIfAbsent(provider, p -> Counter.builder("xiaozhi.tts.first.chunk.split")
+                .tag("provider", p)
+                .description("首句在断句标点前被提前切分的次数")
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 记录从请求模型到发出首帧音频的时间
+     */
+    public void recordTimeToFirstAudio(Integer roleId, String provider, long millis) {
+        String role = roleId != null ? roleId.toString() : "none";
+        ttfaTimers.computeIfAbsent(role + '|' + provider, k -> Timer.builder("xiaozhi.dialogue.ttfa")
+                .tag("role", role)
+                .tag("provider", provider)
+                .description("从请求模型到发出首帧音频的时间")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private Estimate register(String provider) {
+        Timer timer = Timer.builder("xiaozhi.tts.latency")
+                .tag("provider", provider)
+                .description("TTS首包延迟，流式为首个数据块，非流式为整句合成时间")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.tts.latency.expected", this, t -> t.expectedLatencyMs(provider))
+                .tag("provider", provider)
+                .baseUnit("milliseconds")
+                .description("首句切分使用的预计TTS延迟")
+                .register(meterRegistry);
+        return new Estimate(timer);
+    }
+}
@@ -0,0 +1,64 @@
+package com.xiaozhi.dialogue.tts;
+
+import java.util.List;
+
+/**
+ * TTS合成结果，在内存中携带音频数据直接交给播放链路，避免写盘再读盘。
+ * PCM 统一为 16kHz、单声道、16位小端序；如果已经有编码好的 Opus 帧，播放时优先使用。
+ */
+public final class TtsResult {
+
+    private static final TtsResult EMPTY = new TtsResult(null, null);
+
+    private final byte[] pcmData;
+    private final List<byte[]> opusFrames;
+
+    private TtsResult(byte[] pcmData, List<byte[]> opusFrames) {
+        this.pcmData = pcmData;
+        this.opusFrames = opusFrames;
+    }
+
+    public static TtsResult ofPcm(byte[] pcmData) {
+        return pcmData == null || pcmData.length == 0 ? EMPTY : new TtsResult(pcmData, null);
+    }
+
+    public static TtsResult ofOpus(List<byte[]> opusFrames) {
+        return opusFrames == null || opusFrames.isEmpty() ? EMPTY : new TtsResult(null, opusFrames);
+    }
+
+    /**
+     * 同时携带PCM和已编码的Opus帧，播放使用Opus帧，PCM用于保存对话音频
+     */
+    public static TtsResult of(byte[] pcmData, List<byte[]> opusFrames) {
+        if (opusFrames == null || opusFrames.isEmpty()) {
+            return ofPcm(pcmData);
+        }
+        return new TtsResult(pcmData, opusFrames);
+    }
+
+    public static TtsResult empty() {
+        return EMPTY;
+    }
+
+    /**
+     * PCM数据，可能为null
+     */
+    public byte[] getPcmData() {
+        return pcmData;
+    }
+
+    /**
+     * 已编码的Opus帧，可能为null
+     */
+    public List<byte[]> getOpusFrames() {
+        return opusFrames;
+    }
+
+    public boolean hasOpusFrames() {
+        return opusFrames != null && !opusFrames.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return (pcmData == null || pcmData.length == 0) && !hasOpusFrames();
+    }
+}
@@ -1,5 +1,9 @@
 package com.xiaozhi.dialogue.tts;
 
+import com.xiaozhi.utils.AudioUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -44,6 +48,30 @@ public interface TtsService {
    */
   String textToSpeech(String text) throws Exception;
 
+  /**
+   * 将文本转换为内存中的PCM音频，不落盘直接用于播放
+   * 默认实现兼容只支持文件输出的服务商：合成文件后读取PCM并立即删除临时文件。
+   * 能直接拿到音频字节的服务商应覆盖此方法。
+   * 
+   * @param text 要转换为语音的文本
+   * @return 合成结果，失败时为空结果
+   */
+  default TtsResult synthesize(String text) throws Exception {
+    String audioPath = textToSpeech(text);
+    if (audioPath == null || audioPath.isBlank()) {
+      return TtsResult.empty();
+    }
+    Path path = Path.of(audioPath);
+    try {
+      if (!Files.exists(path)) {
+        return TtsResult.empty();
+      }
+      return TtsResult.ofPcm(AudioUtils.readAsPcm(audioPath));
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
   /**
    * 流式将文本转换为语音
    * 
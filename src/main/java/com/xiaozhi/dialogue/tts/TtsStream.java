@@ -0,0 +1,115 @@
+package com.xiaozhi.dialogue.tts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式TTS的音频通道，服务商回调线程写入PCM数据块，播放线程边取边编码发送。
+ * PCM 统一为 16kHz、单声道、16位小端序。
+ */
+public final class TtsStream {
+
+    private final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    // 需要写入缓存时收集播放线程编码好的Opus帧，只在播放线程中访问
+    private final List<byte[]> opusFrames;
+    private final CompletableFuture<List<byte[]>> encoded = new CompletableFuture<>();
+
+    private final long createTime = System.currentTimeMillis();
+    private volatile long firstChunkTime = 0;
+    private volatile boolean finished = false;
+
+    public TtsStream(boolean keepOpus) {
+        this.opusFrames = keepOpus ? new ArrayList<>() : null;
+    }
+
+    /**
+     * 写入一个PCM数据块
+     *
+     * @return 是否为第一个数据块；流结束后写入的数据会被丢弃
+     */
+    public synchronized boolean offer(byte[] pcm) {
+        if (finished || pcm == null || pcm.length == 0) {
+            return false;
+        }
+        chunks.offer(pcm);
+        if (firstChunkTime == 0) {
+            firstChunkTime = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 标记合成结束，之后不再接收数据
+     */
+    public synchronized void complete() {
+        finished = true;
+        completed.countDown();
+    }
+
+    /**
+     * 非阻塞获取下一个PCM数据块，没有数据时返回null
+     */
+    public byte[] poll() {
+        return chunks.poll();
+    }
+
+    /**
+     * 合成已结束且数据已全部取出
+     */
+    public boolean isDrained() {
+        return finished && chunks.isEmpty();
+    }
+
+    public boolean isCompleted() {
+        return finished;
+    }
+
+    public boolean hasData() {
+        return firstChunkTime > 0;
+    }
+
+    /**
+     * 等待合成结束
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return completed.await(timeout, unit);
+    }
+
+    /**
+     * 从创建到收到第一个数据块的耗时（毫秒），尚未收到时为-1
+     */
+    public long getFirstChunkLatency() {
+        return firstChunkTime > 0 ? firstChunkTime - createTime : -1;
+    }
+
+    /**
+     * 播放线程记录一帧编码后的Opus数据
+     */
+    public void addOpusFrame(byte[] frame) {
+        if (opusFrames != null) {
+            opusFrames.add(frame);
+        }
+    }
+
+    /**
+     * 播放线程编码完全部数据后调用；播放被打断时不调用，不完整的音频不会交给缓存
+     */
+    public void completeEncoding() {
+        if (opusFrames != null && !opusFrames.isEmpty()) {
+            encoded.complete(List.copyOf(opusFrames));
+        }
+    }
+
+    /**
+     * 完整的Opus帧，全部编码完成后完成；未收集或播放被打断时不会完成
+     */
+    public CompletableFuture<List<byte[]>> getEncodedFrames() {
+        return encoded;
+    }
+}
@@ -18,7 +18,7 @@ public class TtsServiceFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(TtsServiceFactory.class);
 
-    // 缓存已初始化的服务：键为"provider:configId:voiceName"格式，确保音色变化时创建新实例
+    // 缓存已初始化的服务：键为"provider:configId:voiceName:pitch:speed"格式，确保音色变化时创建新实例
     private final Map<String, TtsService> serviceCache = new ConcurrentHashMap<>();
 
     // 语音生成文件保存地址
@@ -103,7 +103,7 @@ public class TtsServiceFactory {
         // 遍历缓存的所有键，找到匹配的键并移除
         serviceCache.keySet().removeIf(key -> {
             String[] parts = key.split(":");
-            if (parts.length != 3) {
+            if (parts.length < 2) {
                 return false;
             }
             String keyProvider = parts[0];
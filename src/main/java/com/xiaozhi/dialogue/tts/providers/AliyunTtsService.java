@@ -6,7 +6,10 @@ import com.alibaba.dashscope.aigc.multimodalconversation.MultiModalConversationP
 import com.alibaba.dashscope.aigc.multimodalconversation.MultiModalConversationResult;
 import com.alibaba.dashscope.audio.tts.SpeechSynthesisAudioFormat;
 import com.alibaba.dashscope.audio.tts.SpeechSynthesisParam;
+import com.alibaba.dashscope.audio.tts.SpeechSynthesisResult;
 import com.alibaba.dashscope.audio.tts.SpeechSynthesizer;
+import com.alibaba.dashscope.common.ResultCallback;
+import com.xiaozhi.dialogue.tts.TtsResult;
 import com.xiaozhi.dialogue.tts.TtsService;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.utils.AudioUtils;
@@ -22,11 +25,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class AliyunTtsService implements TtsService {
     private static final Logger logger = LoggerFactory.getLogger(AliyunTtsService.class);
@@ -81,6 +87,93 @@ public class AliyunTtsService implements TtsService {
         }
     }
 
+    @Override
+    public TtsResult synthesize(String text) throws Exception {
+        // qwen-tts 只返回音频URL，仍走文件方式
+        if (!voiceName.contains("sambert") && getVoiceByName(voiceName) != null) {
+            return TtsService.super.synthesize(text);
+        }
+        try {
+            ByteBuffer audio = voiceName.contains("sambert") ? callSambert(text) : callCosyvoice(text);
+            if (audio == null) {
+                return TtsResult.empty();
+            }
+            return TtsResult.ofPcm(AudioUtils.wavBytesToPcm(audio.array()));
+        } catch (Exception e) {
+            logger.error("语音合成aliyun -使用{}模型语音合成失败：", voiceName, e);
+            throw new Exception("语音合成失败");
+        }
+    }
+
+    /**
+     * 仅cosyvoice模型支持流式输出PCM
+     */
+    @Override
+    public boolean isSupportStreamTts() {
+        return !voiceName.contains("sambert") && getVoiceByName(voiceName) == null;
+    }
+
+    @Override
+    public void streamTextToSpeech(String text, Consumer<byte[]> audioDataConsumer) throws Exception {
+        if (!isSupportStreamTts()) {
+            TtsService.super.streamTextToSpeech(text, audioDataConsumer);
+            return;
+        }
+        com.alibaba.dashscope.audio.ttsv2.SpeechSynthesisParam param =
+        com.alibaba.dashscope.audio.ttsv2.SpeechSynthesisParam.builder()
+                        .apiKey(apiKey)
+                        .model("cosyvoice-v2")
+                        .voice(voiceName)
+                        .speechRate(speed)
+                        .pitchRate(pitch)
+                        .format(com.alibaba.dashscope.audio.ttsv2.SpeechSynthesisAudioFormat.PCM_16000HZ_MONO_16BIT)
+                        .build();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        ResultCallback<SpeechSynthesisResult> callback = new ResultCallback<>() {
+            @Override
+            public void onEvent(SpeechSynthesisResult result) {
+                ByteBuffer frame = result.getAudioFrame();
+                if (frame != null && frame.hasRemaining()) {
+                    byte[] pcm = new byte[frame.remaining()];
+                    frame.get(pcm);
+                    audioDataConsumer.accept(pcm);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error.set(e);
+                latch.countDown();
+            }
+        };
+
+        // 带回调时call为异步调用，音频帧通过onEvent陆续返回
+        com.alibaba.dashscope.audio.ttsv2.SpeechSynthesizer synthesizer =
+            new com.alibaba.dashscope.audio.ttsv2.SpeechSynthesizer(param, callback);
+        try {
+            synthesizer.call(text);
+            if (!latch.await(TTS_TIMEOUT_SECONDS * 2, TimeUnit.SECONDS)) {
+                throw new TimeoutException("流式语音合成超时");
+            }
+        } catch (Exception e) {
+            logger.error("流式语音合成aliyun - 使用{}模型语音合成失败：", voiceName, e);
+            throw e;
+        } finally {
+            synthesizer.getDuplexApi().close(1000, "bye");
+        }
+        if (error.get() != null) {
+            logger.error("流式语音合成aliyun - 使用{}模型语音合成失败：", voiceName, error.get());
+            throw error.get();
+        }
+    }
+
     private String ttsQwen(String text) {
         int attempts = 0;
         while (attempts < MAX_RETRY_ATTEMPTS) {
@@ -206,8 +299,34 @@ public class AliyunTtsService implements TtsService {
         }
     }
 
-    // cosyvoice默认并发只有3个，所以需要增加一个重试机制
     private String ttsCosyvoice(String text) {
+        return saveAudio(callCosyvoice(text));
+    }
+
+    public String ttsSambert(String text) {
+        return saveAudio(callSambert(text));
+    }
+
+    /**
+     * 将WAV音频写入文件，仅用于需要文件路径的调用方
+     */
+    private String saveAudio(ByteBuffer audio) {
+        if (audio == null) {
+            return StrUtil.EMPTY;
+        }
+        String outPath = outputPath + getAudioFileName();
+        File file = new File(outPath);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(audio.array());
+        } catch (IOException e) {
+            logger.error("语音合成aliyun - 使用{}模型保存音频失败：", voiceName, e);
+            return StrUtil.EMPTY;
+        }
+        return outPath;
+    }
+
+    // cosyvoice默认并发只有3个，所以需要增加一个重试机制
+    private ByteBuffer callCosyvoice(String text) {
         int attempts = 0;
         while (attempts < MAX_RETRY_ATTEMPTS) {
             try {
@@ -238,7 +357,7 @@ public class AliyunTtsService implements TtsService {
                     attempts++;
                     if (attempts >= MAX_RETRY_ATTEMPTS) {
                         logger.error("语音合成aliyun - 使用{}模型多次超时，放弃重试", voiceName);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                     // 等待一段时间后重试
                     TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
@@ -255,19 +374,11 @@ public class AliyunTtsService implements TtsService {
                         continue;
                     } else {
                         logger.error("语音合成aliyun - 使用{}模型多次返回null，放弃重试", voiceName);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                 }
                 
-                String outPath = outputPath + getAudioFileName();
-                File file = new File(outPath);
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    fos.write(audio.array());
-                } catch (IOException e) {
-                    logger.error("语音合成aliyun -使用{}模型语音合成失败：", voiceName, e);
-                    return StrUtil.EMPTY;
-                }
-                return outPath;
+                return audio;
             } catch (Exception e) {
                 attempts++;
                 if (attempts < MAX_RETRY_ATTEMPTS) {
@@ -278,18 +389,18 @@ public class AliyunTtsService implements TtsService {
                     } catch (InterruptedException ie) {
                         Thread.currentThread().interrupt();
                         logger.error("重试等待被中断", ie);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                 } else {
                     logger.error("语音合成aliyun -使用{}模型语音合成失败，已达到最大重试次数：", voiceName, e);
-                    return StrUtil.EMPTY;
+                    return null;
                 }
             }
         }
-        return StrUtil.EMPTY;
+        return null;
     }
 
-    public String ttsSambert(String text) {
+    private ByteBuffer callSambert(String text) {
         int attempts = 0;
         while (attempts < MAX_RETRY_ATTEMPTS) {
             try {
@@ -319,7 +430,7 @@ public class AliyunTtsService implements TtsService {
                     attempts++;
                     if (attempts >= MAX_RETRY_ATTEMPTS) {
                         logger.error("语音合成aliyun - 使用{}模型多次超时，放弃重试，文本：{}", voiceName, text);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                     // 等待一段时间后重试
                     TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
@@ -336,19 +447,11 @@ public class AliyunTtsService implements TtsService {
                         continue;
                     } else {
                         logger.error("语音合成aliyun - 使用{}模型多次返回null，放弃重试", voiceName);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                 }
                 
-                String outPath = outputPath + getAudioFileName();
-                File file = new File(outPath);
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    fos.write(audio.array());
-                } catch (IOException e) {
-                    logger.error("语音合成aliyun - 使用{}模型失败：", voiceName, e);
-                    return StrUtil.EMPTY;
-                }
-                return outPath;
+                return audio;
             } catch (Exception e) {
                 attempts++;
                 if (attempts < MAX_RETRY_ATTEMPTS) {
@@ -359,15 +462,15 @@ public class AliyunTtsService implements TtsService {
                     } catch (InterruptedException ie) {
                         Thread.currentThread().interrupt();
                         logger.error("重试等待被中断", ie);
-                        return StrUtil.EMPTY;
+                        return null;
                     }
                 } else {
                     logger.error("语音合成aliyun - 使用{}模型失败，已达到最大重试次数：", voiceName, e);
-                    return StrUtil.EMPTY;
+                    return null;
                 }
             }
         }
-        return StrUtil.EMPTY;
+        return null;
     }
 
 }
\ No newline at end of file
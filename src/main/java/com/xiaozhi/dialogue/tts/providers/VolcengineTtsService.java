@@ -2,6 +2,7 @@ package com.xiaozhi.dialogue.tts.providers;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.xiaozhi.dialogue.tts.TtsResult;
 import com.xiaozhi.dialogue.tts.TtsService;
 import com.xiaozhi.entity.SysConfig;
 import com.xiaozhi.utils.AudioUtils;
@@ -66,23 +67,45 @@ public class VolcengineTtsService implements TtsService {
             String audioFilePath = outputPath + audioFileName;
 
             // 发送POST请求
-            boolean success = sendRequest(text, audioFilePath);
-
-            if (success) {
-                return audioFilePath;
-            } else {
+            byte[] audioData = sendRequest(text, "wav");
+            if (audioData == null) {
                 throw new Exception("语音合成失败");
             }
+
+            // 保存音频文件
+            File audioFile = new File(audioFilePath);
+            try (FileOutputStream fout = new FileOutputStream(audioFile)) {
+                fout.write(audioData);
+            }
+            return audioFilePath;
         } catch (Exception e) {
             logger.error("语音合成时发生错误！", e);
             throw e;
         }
     }
 
+    @Override
+    public TtsResult synthesize(String text) throws Exception {
+        if (text == null || text.isEmpty()) {
+            logger.warn("文本内容为空！");
+            return TtsResult.empty();
+        }
+
+        // 直接请求PCM编码，省去WAV文件的写入和解析
+        byte[] pcmData = sendRequest(text, "pcm");
+        if (pcmData == null) {
+            throw new Exception("语音合成失败");
+        }
+        return TtsResult.ofPcm(pcmData);
+    }
+
     /**
      * 发送POST请求到火山引擎API，获取语音合成结果
+     *
+     * @param encoding 音频编码，wav 或 pcm
+     * @return 音频数据，失败返回null
      */
-    private boolean sendRequest(String text, String audioFilePath) throws Exception {
+    private byte[] sendRequest(String text, String encoding) throws Exception {
         try {
             // 构建请求参数
             JsonObject requestJson = new JsonObject();
@@ -102,7 +125,7 @@ public class VolcengineTtsService implements TtsService {
             // audio部分
             JsonObject audio = new JsonObject();
             audio.addProperty("voice_type", voiceName);
-            audio.addProperty("encoding", "wav");
+            audio.addProperty("encoding", encoding);
             audio.addProperty("speed_ratio", speed);
             audio.addProperty("volume_ratio", 1.0);
             audio.addProperty("pitch_ratio", pitch);
@@ -136,7 +159,7 @@ public class VolcengineTtsService implements TtsService {
                 if (!response.isSuccessful()) {
                     String errorBody = response.body() != null ? response.body().string() : "无响应体";
                     logger.error("TTS请求失败: {} {}, 错误信息: {}, 原始内容: {}", response.code(), response.message(), errorBody, text);
-                    return false;
+                    return null;
                 }
 
                 // 解析响应
@@ -149,28 +172,20 @@ public class VolcengineTtsService implements TtsService {
                         logger.error("TTS请求返回错误: code={}, message={}",
                                 jsonResponse.get("code").getAsInt(),
                                 jsonResponse.get("message").getAsString());
-                        return false;
+                        return null;
                     }
 
                     // 获取音频数据
                     if (jsonResponse.has("data")) {
                         String base64Audio = jsonResponse.get("data").getAsString();
-                        byte[] audioData = Base64.getDecoder().decode(base64Audio);
-
-                        // 保存音频文件
-                        File audioFile = new File(audioFilePath);
-                        try (FileOutputStream fout = new FileOutputStream(audioFile)) {
-                            fout.write(audioData);
-                        }
-
-                        return true;
+                        return Base64.getDecoder().decode(base64Audio);
                     } else {
                         logger.error("TTS响应中未找到音频数据: {}", responseBody);
-                        return false;
+                        return null;
                     }
                 } else {
                     logger.error("TTS响应体为空");
-                    return false;
+                    return null;
                 }
             }
         } catch (Exception e) {
@@ -0,0 +1,120 @@
+package com.xiaozhi.dialogue.vad.impl;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Silero VAD 的每会话推理上下文
+ * 输入、隐状态、输出都放在预分配的直接内存中，张量创建一次后反复使用，推理时不再分配数组和张量。
+ * 隐状态使用两块缓冲区交替作为输入和输出，避免每次推理后拷贝状态。
+ * 同一会话不能并发推理，由调用方（VadService的会话锁）保证。
+ */
+public class SileroInferenceSession implements AutoCloseable {
+
+    static final int STATE_SIZE = 2 * 128;
+
+    // 批量推理状态：空闲、排队中、调度线程推理中
+    static final int IDLE = 0;
+    static final int QUEUED = 1;
+    static final int RUNNING = 2;
+
+    final int windowSize;
+    final FloatBuffer input;
+    final FloatBuffer[] states = new FloatBuffer[2];
+    final FloatBuffer output;
+
+    private final OnnxTensor inputTensor;
+    private final OnnxTensor[] stateTensors = new OnnxTensor[2];
+    private final OnnxTensor outputTensor;
+
+    // 按当前状态缓冲区下标预先构建的输入和输出映射
+    final List<Map<String, OnnxTensor>> inputs;
+    final List<Map<String, OnnxTensor>> outputs;
+
+    // 当前作为输入的状态缓冲区下标
+    int current = 0;
+
+    // 批量推理时由调度线程回写
+    volatile float probability;
+    volatile boolean done;
+    volatile Thread waiter;
+    final AtomicInteger batchState = new AtomicInteger(IDLE);
+
+    SileroInferenceSession(OrtEnvironment env, OnnxTensor srTensor, int windowSize,
+            String probOutputName, String stateOutputName) throws OrtException {
+        this.windowSize = windowSize;
+        this.input = allocate(windowSize);
+        this.states[0] = allocate(STATE_SIZE);
+        this.states[1] = allocate(STATE_SIZE);
+        this.output = allocate(1);
+
+        this.inputTensor = OnnxTensor.createTensor(env, input, new long[] { 1, windowSize });
+        this.stateTensors[0] = OnnxTensor.createTensor(env, states[0], new long[] { 2, 1, 128 });
+        this.stateTensors[1] = OnnxTensor.createTensor(env, states[1], new long[] { 2, 1, 128 });
+        this.outputTensor = OnnxTensor.createTensor(env, output, new long[] { 1, 1 });
+
+        this.inputs = List.of(
+                Map.of("input", inputTensor, "sr", srTensor, "state", stateTensors[0]),
+                Map.of("input", inputTensor, "sr", srTensor, "state", stateTensors[1]));
+        this.outputs = List.of(
+                Map.of(probOutputName, outputTensor, stateOutputName, stateTensors[1]),
+                Map.of(probOutputName, outputTensor, stateOutputName, stateTensors[0]));
+    }
+
+    static FloatBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * 写入一个窗口的样本，不足窗口大小的部分补0
+     */
+    void writeInput(float[] samples, int offset, int length) {
+        int n = Math.min(length, windowSize);
+        input.put(0, samples, offset, n);
+        for (int i = n; i < windowSize; i++) {
+            input.put(i, 0f);
+        }
+    }
+
+    /**
+     * 推理完成后切换状态缓冲区
+     */
+    void swapState() {
+        current = 1 - current;
+    }
+
+    /**
+     * 当前隐状态
+     */
+    FloatBuffer currentState() {
+        return states[current];
+    }
+
+    /**
+     * 清空隐状态，下一句话从零状态开始
+     */
+    public void resetState() {
+        for (FloatBuffer state : states) {
+            for (int i = 0; i < STATE_SIZE; i++) {
+                state.put(i, 0f);
+            }
+        }
+        current = 0;
+    }
+
+    @Override
+    public void close() {
+        inputTensor.close();
+        stateTensors[0].close();
+        stateTensors[1].close();
+        outputTensor.close();
+    }
+}
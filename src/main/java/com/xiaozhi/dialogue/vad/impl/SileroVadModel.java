@@ -5,8 +5,12 @@ import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 import ai.onnxruntime.OrtLoggingLevel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -15,11 +19,23 @@ import com.xiaozhi.utils.AudioUtils;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Silero VAD模型实现
+ * 每个会话通过 {@link #createInferenceSession()} 获得复用的推理上下文；
+ * 开启批量推理后，多个会话同一时刻的窗口会合并为一次 ONNX 调用（隐状态形状为 [2][batch][128]，天然支持批量）。
  */
 @Component
 public class SileroVadModel implements VadModel {
@@ -28,8 +44,38 @@ public class SileroVadModel implements VadModel {
     @Value("${vad.model.path:models/silero_vad.onnx}")
     private String modelPath;
 
+    // 是否合并多个会话的窗口批量推理，并发会话较多时可提高吞吐
+    @Value("${vad.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    // 单次批量推理的最大窗口数
+    @Value("${vad.batch.max-size:16}")
+    private int batchMaxSize;
+
+    // 凑批的最长等待时间（微秒）
+    @Value("${vad.batch.wait-us:2000}")
+    private long batchWaitMicros;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private OrtEnvironment env;
     private OrtSession session;
+    private OnnxTensor srTensor;
+    private String probOutputName;
+    private String stateOutputName;
+
+    // 批量推理队列及调度线程
+    private final LinkedBlockingQueue<SileroInferenceSession> batchQueue = new LinkedBlockingQueue<>();
+    private BatchBuffers[] batchBuffers;
+    private Thread batchThread;
+    private volatile boolean running;
+
+    // 吞吐统计：推理窗口数、推理耗时（纳秒）、ONNX调用次数
+    private final LongAdder inferredFrames = new LongAdder();
+    private final LongAdder inferenceNanos = new LongAdder();
+    private final LongAdder inferenceRuns = new LongAdder();
+
     private float[][][] state;
     private float[][] context;
     private final int windowSize = AudioUtils.BUFFER_SIZE; // 16kHz的窗口大小
@@ -49,9 +95,28 @@ public class SileroVadModel implements VadModel {
             // 创建会话
             session = env.createSession(modelPath, opts);
 
+            // 输出顺序：语音概率、新的隐状态
+            List<String> outputNames = new ArrayList<>(session.getOutputNames());
+            probOutputName = outputNames.get(0);
+            stateOutputName = outputNames.get(1);
+
+            // 采样率是常量，所有推理共用一个张量
+            LongBuffer sr = ByteBuffer.allocateDirect(Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            sr.put(0, AudioUtils.SAMPLE_RATE);
+            srTensor = OnnxTensor.createTensor(env, sr, new long[] { 1 });
+
             // 初始化状态
             reset();
 
+            registerMetrics();
+
+            if (batchEnabled) {
+                batchBuffers = new BatchBuffers[batchMaxSize + 1];
+                running = true;
+                batchThread = Thread.ofPlatform().daemon().name("vad-batch").start(this::batchLoop);
+                logger.info("Silero VAD批量推理已开启，最大批量: {}, 等待: {}us", batchMaxSize, batchWaitMicros);
+            }
+
             logger.info("Silero VAD模型初始化成功");
         } catch (UnsatisfiedLinkError e) {
             logger.error("ONNX Runtime native libraries加载失败，请安装Visual C++ Redistributable: {}", e.getMessage());
@@ -149,6 +214,234 @@ public class SileroVadModel implements VadModel {
         }
     }
 
+    /**
+     * 为会话创建复用的推理上下文，会话结束时需要关闭
+     */
+    public SileroInferenceSession createInferenceSession() {
+        try {
+            return new SileroInferenceSession(env, srTensor, windowSize, probOutputName, stateOutputName);
+        } catch (OrtException e) {
+            throw new RuntimeException("创建VAD推理上下文失败", e);
+        }
+    }
+
+    /**
+     * 使用会话上下文推理一个窗口，隐状态保存在上下文中
+     *
+     * @param ctx     会话推理上下文
+     * @param samples 样本数组
+     * @param offset  窗口起始位置
+     * @param length  有效样本数，不足窗口大小时补0
+     * @return 语音概率
+     */
+    public float infer(SileroInferenceSession ctx, float[] samples, int offset, int length) {
+        ctx.writeInput(samples, offset, length);
+        if (batchEnabled && running) {
+            return inferBatched(ctx);
+        }
+        return inferSingle(ctx);
+    }
+
+    private float inferSingle(SileroInferenceSession ctx) {
+        try {
+            long start = System.nanoTime();
+            runSingle(ctx);
+            record(1, System.nanoTime() - start);
+            return ctx.output.get(0);
+        } catch (OrtException e) {
+            logger.error("VAD模型推理失败", e);
+            return 0.0f;
+        }
+    }
+
+    private void runSingle(SileroInferenceSession ctx) throws OrtException {
+        int current = ctx.current;
+        // 输出写入预分配的张量，Result不持有这些张量，直接关闭不会释放
+        session.run(ctx.inputs.get(current), ctx.outputs.get(current)).close();
+        ctx.swapState();
+    }
+
+    /**
+     * 提交到批量队列并等待调度线程回写结果
+     * 超时时如果调度线程还没有取走，撤回后改为单独推理；已经在推理中则等待完成，避免两边同时改写会话的张量和隐状态
+     */
+    private float inferBatched(SileroInferenceSession ctx) {
+        ctx.done = false;
+        ctx.waiter = Thread.currentThread();
+        ctx.batchState.set(SileroInferenceSession.QUEUED);
+        batchQueue.offer(ctx);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!ctx.done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                if (ctx.batchState.compareAndSet(SileroInferenceSession.QUEUED, SileroInferenceSession.IDLE)) {
+                    batchQueue.remove(ctx);
+                    logger.warn("VAD批量推理排队超时，改为单独推理");
+                    return inferSingle(ctx);
+                }
+                while (!ctx.done) {
+                    LockSupport.park(ctx);
+                }
+                break;
+            }
+            LockSupport.parkNanos(ctx, remaining);
+        }
+        return ctx.probability;
+    }
+
+    /**
+     * 调度线程取走排队中的上下文，已被调用方撤回的返回false
+     */
+    private static boolean claim(SileroInferenceSession ctx) {
+        return ctx.batchState.compareAndSet(SileroInferenceSession.QUEUED, SileroInferenceSession.RUNNING);
+    }
+
+    private void batchLoop() {
+        SileroInferenceSession[] batch = new SileroInferenceSession[batchMaxSize];
+        long waitNanos = TimeUnit.MICROSECONDS.toNanos(batchWaitMicros);
+        while (running) {
+            try {
+                SileroInferenceSession first = batchQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || !claim(first)) {
+                    continue;
+                }
+                batch[0] = first;
+                int size = 1;
+                long deadline = System.nanoTime() + waitNanos;
+                while (size < batchMaxSize) {
+                    SileroInferenceSession next = batchQueue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0
+                                || (next = batchQueue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    if (claim(next)) {
+                        batch[size++] = next;
+                    }
+                }
+                runBatch(batch, size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("VAD批量推理调度异常", e);
+            }
+        }
+    }
+
+    private void runBatch(SileroInferenceSession[] batch, int size) {
+        long start = System.nanoTime();
+        try {
+            if (size == 1) {
+                runSingle(batch[0]);
+                batch[0].probability = batch[0].output.get(0);
+            } else {
+                BatchBuffers buffers = getBatchBuffers(size);
+                // 拼接输入 [batch][window] 和隐状态 [2][batch][128]
+                for (int i = 0; i < size; i++) {
+                    SileroInferenceSession ctx = batch[i];
+                    buffers.input.put(i * windowSize, ctx.input, 0, windowSize);
+                    FloatBuffer state = ctx.currentState();
+                    buffers.state.put(i * 128, state, 0, 128);
+                    buffers.state.put((size + i) * 128, state, 128, 128);
+                }
+                session.run(buffers.inputs, buffers.outputs).close();
+                // 拆分结果，新状态写入各会话的备用状态缓冲区
+                for (int i = 0; i < size; i++) {
+                    SileroInferenceSession ctx = batch[i];
+                    FloatBuffer next = ctx.states[1 - ctx.current];
+                    next.put(0, buffers.stateOut, i * 128, 128);
+                    next.put(128, buffers.stateOut, (size + i) * 128, 128);
+                    ctx.swapState();
+                    ctx.probability = buffers.output.get(i);
+                }
+            }
+            record(size, System.nanoTime() - start);
+        } catch (OrtException e) {
+            logger.error("VAD批量推理失败，批量: {}", size, e);
+            for (int i = 0; i < size; i++) {
+                batch[i].probability = 0.0f;
+            }
+        } finally {
+            for (int i = 0; i < size; i++) {
+                SileroInferenceSession ctx = batch[i];
+                batch[i] = null;
+                ctx.batchState.set(SileroInferenceSession.IDLE);
+                ctx.done = true;
+                LockSupport.unpark(ctx.waiter);
+            }
+        }
+    }
+
+    /**
+     * 每种批量大小的张量只创建一次，仅在调度线程中使用
+     */
+    private BatchBuffers getBatchBuffers(int size) throws OrtException {
+        BatchBuffers buffers = batchBuffers[size];
+        if (buffers == null) {
+            buffers = new BatchBuffers(size);
+            batchBuffers[size] = buffers;
+        }
+        return buffers;
+    }
+
+    private void record(int frames, long nanos) {
+        inferredFrames.add(frames);
+        inferenceNanos.add(nanos);
+        inferenceRuns.increment();
+    }
+
+    /**
+     * 推理吞吐：ONNX只使用一个线程，按推理耗时折算为每核每秒处理的窗口数
+     */
+    public double getFramesPerSecondPerCore() {
+        long nanos = inferenceNanos.sum();
+        return nanos == 0 ? 0 : inferredFrames.sum() * 1_000_000_000.0 / nanos;
+    }
+
+    private void registerMetrics() {
+        FunctionCounter.builder("xiaozhi.vad.frames", inferredFrames, LongAdder::sum)
+                .description("VAD推理窗口数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.vad.throughput", this, SileroVadModel::getFramesPerSecondPerCore)
+                .description("VAD推理吞吐（窗口/秒/核）")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.vad.batch.size", this, m -> {
+                    long runs = m.inferenceRuns.sum();
+                    return runs == 0 ? 0 : (double) m.inferredFrames.sum() / runs;
+                })
+                .description("VAD平均每次推理的窗口数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 批量推理使用的张量
+     */
+    private class BatchBuffers {
+        final FloatBuffer input;
+        final FloatBuffer state;
+        final FloatBuffer output;
+        final FloatBuffer stateOut;
+        final Map<String, OnnxTensor> inputs;
+        final Map<String, OnnxTensor> outputs;
+
+        BatchBuffers(int size) throws OrtException {
+            input = SileroInferenceSession.allocate(size * windowSize);
+            state = SileroInferenceSession.allocate(size * SileroInferenceSession.STATE_SIZE);
+            output = SileroInferenceSession.allocate(size);
+            stateOut = SileroInferenceSession.allocate(size * SileroInferenceSession.STATE_SIZE);
+            inputs = Map.of(
+                    "input", OnnxTensor.createTensor(env, input, new long[] { size, windowSize }),
+                    "sr", srTensor,
+                    "state", OnnxTensor.createTensor(env, state, new long[] { 2, size, 128 }));
+            outputs = Map.of(
+                    probOutputName, OnnxTensor.createTensor(env, output, new long[] { size, 1 }),
+                    stateOutputName, OnnxTensor.createTensor(env, stateOut, new long[] { 2, size, 128 }));
+        }
+    }
+
     @Override
     public void reset() {
         state = new float[2][1][128];
@@ -158,7 +451,14 @@ public class SileroVadModel implements VadModel {
     @PreDestroy
     @Override
     public void close() {
+        running = false;
+        if (batchThread != null) {
+            batchThread.interrupt();
+        }
         try {
+            if (srTensor != null) {
+                srTensor.close();
+            }
             if (session != null) {
                 session.close();
             }
@@ -2,10 +2,12 @@ package com.xiaozhi.entity;
 
 import com.xiaozhi.utils.AudioUtils;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.Accessors;
+import org.springframework.util.StringUtils;
 
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
@@ -84,9 +86,13 @@ public class SysMessage extends Base<SysMessage> {
     private String roleName;
     @Schema(description = "设备名称")
     private String deviceName;
+    @JsonIgnore
+    @Schema(description = "游标分页：上一页最后一条消息的ID")
+    private Integer cursorId;
 
     public String getAudioPath() {
-        if (this.createTime == null) {
+        // 音频写入后记录的实际路径，早期的WAV音频没有记录路径，按创建时间推算
+        if (StringUtils.hasText(audioPath) || this.createTime == null) {
             // 分页会先进行一次处理，但是获取的为count(0)，没有实际字段会报错，这里直接返回
             return audioPath;
         }
@@ -0,0 +1,60 @@
+package com.xiaozhi.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+
+/**
+ * 模型能力实体类
+ * 按(endpoint, model)记录探测结果，同一模型的所有配置和会话共享，字段为空表示未能探测
+ *
+ * @author Joey
+ *
+ */
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(callSuper = true)
+@Schema(description = "模型能力")
+public class SysModelCapability extends Base<SysModelCapability> {
+
+    /**
+     * API地址
+     */
+    @Schema(description = "API地址")
+    private String endpoint;
+
+    /**
+     * 模型名称
+     */
+    @Schema(description = "模型名称")
+    private String model;
+
+    /**
+     * 是否支持Function Call
+     */
+    @Schema(description = "是否支持Function Call")
+    private Boolean functionCall;
+
+    /**
+     * 流式输出时是否支持返回usage（stream_options.include_usage）
+     */
+    @Schema(description = "流式输出时是否支持返回usage")
+    private Boolean streamUsage;
+
+    /**
+     * 上下文长度（token）
+     */
+    @Schema(description = "上下文长度（token）")
+    private Integer contextLength;
+
+    /**
+     * 探测时间
+     */
+    @JsonFormat(timezone = "GMT+8", pattern = "yyyy-MM-dd HH:mm:ss")
+    @Schema(description = "探测时间")
+    private Date probeTime;
+}
@@ -0,0 +1,32 @@
+package com.xiaozhi.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * 数据保留策略实体类
+ * 未配置的用户使用全局默认值
+ *
+ * @author Joey
+ *
+ */
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(callSuper = true)
+@Schema(description = "数据保留策略")
+public class SysRetentionPolicy extends Base<SysRetentionPolicy> {
+
+    /**
+     * 消息保留天数，超过后移入按月归档表，0表示永久保留
+     */
+    @Schema(description = "消息保留天数，超过后移入按月归档表，0表示永久保留")
+    private Integer messageDays;
+
+    /**
+     * 音频保留天数，超过后删除音频文件，0表示永久保留
+     */
+    @Schema(description = "音频保留天数，超过后删除音频文件，0表示永久保留")
+    private Integer audioDays;
+}
@@ -127,6 +127,18 @@ public class SysRole extends Base<SysRole> {
     @Schema(description = "语音活动检测-静音毫秒数")
     private Integer vadSilenceMs;
 
+    /**
+     * 是否保存对话音频(1保存 0不保存)
+     */
+    @Schema(description = "是否保存对话音频(1保存 0不保存)")
+    private String saveAudio;
+
+    /**
+     * 是否开启推测识别(1开启 0关闭)
+     */
+    @Schema(description = "是否开启推测识别(1开启 0关闭)")
+    private String speculativeStt;
+
     /**
      * 模型提供商
      */
@@ -0,0 +1,29 @@
+package com.xiaozhi.event;
+
+import com.xiaozhi.communication.common.ChatSession;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysRole;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 会话管线上下文需要重建的事件
+ * 来源为ChatSession时表示设备绑定或设备信息变更，为SysRole或SysConfig时表示角色或配置被修改
+ */
+public class PipelineContextRefreshEvent extends ApplicationEvent {
+
+    public PipelineContextRefreshEvent(Object source) {
+        super(source);
+    }
+
+    public ChatSession getSession() {
+        return getSource() instanceof ChatSession session ? session : null;
+    }
+
+    public SysRole getRole() {
+        return getSource() instanceof SysRole role ? role : null;
+    }
+
+    public SysConfig getConfig() {
+        return getSource() instanceof SysConfig config ? config : null;
+    }
+}
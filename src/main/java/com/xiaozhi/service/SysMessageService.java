@@ -30,21 +30,19 @@ public interface SysMessageService {
   List<SysMessage> query(SysMessage message, PageFilter pageFilter);
 
   /**
-   * 删除记忆
-   * 
+   * 游标分页查询聊天记录
+   * 从message.cursorId之后（更早）的消息开始取limit条，不统计总数也不使用OFFSET，翻页耗时与页码无关
    * @param message
+   * @param limit
    * @return
    */
-  int delete(SysMessage message);
+  List<SysMessage> queryByCursor(SysMessage message, int limit);
 
   /**
-   * 更新消息的音频数据信息
-   * @param deviceId
-   * @param roleId
-   * @param sender
-   * @param createTime
-   * @param audioPath
+   * 删除记忆
+   * 
+   * @param message
+   * @return
    */
-  void updateMessageByAudioFile(String deviceId, Integer roleId, String sender, String createTime,
-                                String audioPath);
+  int delete(SysMessage message);
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.xiaozhi.service;
+
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysModelCapability;
+
+import java.util.List;
+
+/**
+ * 模型能力
+ * 按(endpoint, model)探测并缓存Function Call、stream usage和上下文长度，所有会话共享，重启后从数据库恢复
+ *
+ * @author Joey
+ *
+ */
+public interface SysModelCapabilityService {
+
+  /**
+   * 获取模型能力
+   * 未探测过时同步探测，同一模型并发调用只探测一次；已过期时返回旧结果并在后台重新探测
+   *
+   * @param config
+   * @return
+   */
+  SysModelCapability get(SysConfig config);
+
+  /**
+   * 只读取已缓存的模型能力，不触发探测
+   *
+   * @param endpoint
+   * @param model
+   * @return 未探测过时返回null
+   */
+  SysModelCapability peek(String endpoint, String model);
+
+  /**
+   * 立即重新探测并保存
+   *
+   * @param config
+   * @return
+   */
+  SysModelCapability refresh(SysConfig config);
+
+  /**
+   * 查询全部已缓存的模型能力
+   *
+   * @return
+   */
+  List<SysModelCapability> query();
+}
@@ -0,0 +1,27 @@
+package com.xiaozhi.service;
+
+import java.util.Map;
+
+/**
+ * 数据保留
+ * 按用户策略把过期消息移入按月归档表、删除过期音频文件
+ *
+ * @author Joey
+ *
+ */
+public interface SysRetentionService {
+
+  /**
+   * 立即执行一次清理，已有清理在执行时返回false
+   *
+   * @return
+   */
+  boolean runNow();
+
+  /**
+   * 清理状态：是否在执行、上次执行时间和结果、累计处理数量
+   *
+   * @return
+   */
+  Map<String, Object> status();
+}
@@ -0,0 +1,49 @@
+package com.xiaozhi.service;
+
+import com.xiaozhi.entity.SysMessage;
+
+import java.util.List;
+
+/**
+ * 统计汇总
+ * 设备消息数、用户设备数/在线数/消息数、角色设备数在写入时增量维护，定期与明细表核对
+ *
+ * @author Joey
+ *
+ */
+public interface SysStatsService {
+
+  /**
+   * 记录新写入的消息
+   *
+   * @param messages
+   */
+  void recordMessages(List<SysMessage> messages);
+
+  /**
+   * 设备新增、删除或状态变化后更新用户的设备数和在线数
+   *
+   * @param userId 为空时更新全部用户
+   */
+  void refreshUserDevices(Integer userId);
+
+  /**
+   * 设备新增、删除或切换角色后更新角色的设备数
+   *
+   * @param roleId 为空时更新全部角色
+   */
+  void refreshRoleDevices(Integer roleId);
+
+  /**
+   * 删除消息后重新统计设备的有效消息数
+   *
+   * @param deviceId 指定设备，为空时按userId统计
+   * @param userId 指定用户的全部设备
+   */
+  void refreshDeviceMessages(String deviceId, Integer userId);
+
+  /**
+   * 与明细表核对最近的汇总数据
+   */
+  void reconcile();
+}
@@ -3,15 +3,20 @@ package com.xiaozhi.service.impl;
 import com.github.pagehelper.PageHelper;
 import com.xiaozhi.common.web.PageFilter;
 import com.xiaozhi.dao.ConfigMapper;
+import com.xiaozhi.dialogue.llm.factory.ChatModelFactory;
 import com.xiaozhi.dialogue.stt.factory.SttServiceFactory;
 import com.xiaozhi.dialogue.token.factory.TokenServiceFactory;
+import com.xiaozhi.dialogue.tts.TtsCache;
 import com.xiaozhi.dialogue.tts.factory.TtsServiceFactory;
 import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.event.PipelineContextRefreshEvent;
 import com.xiaozhi.service.SysConfigService;
 import jakarta.annotation.Resource;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,6 +39,9 @@ public class SysConfigServiceImpl extends BaseServiceImpl implements SysConfigSe
     @Resource
     private ConfigMapper configMapper;
 
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
     @Resource
     private TokenServiceFactory tokenService;
 
@@ -43,6 +51,14 @@ public class SysConfigServiceImpl extends BaseServiceImpl implements SysConfigSe
     @Resource
     private TtsServiceFactory ttsServiceFactory;
 
+    @Resource
+    private TtsCache ttsCache;
+
+    // ChatModelFactory依赖本服务，延迟注入避免循环依赖
+    @Resource
+    @Lazy
+    private ChatModelFactory chatModelFactory;
+
     /**
      * 添加配置
      * 
@@ -80,6 +96,10 @@ public class SysConfigServiceImpl extends BaseServiceImpl implements SysConfigSe
         if (rows > 0) {
             sttServiceFactory.removeCache(config);
             ttsServiceFactory.removeCache(config);
+            chatModelFactory.removeCache(config);
+            ttsCache.removeCache(config);
+            // 事务提交后刷新引用该配置的会话
+            eventPublisher.publishEvent(new PipelineContextRefreshEvent(config));
             List<SysConfig> configs = configMapper.query(config);
             // 这里可能为 null，
             if (configs.size() > 0) {
@@ -11,8 +11,10 @@ import com.xiaozhi.dao.RoleMapper;
 import com.xiaozhi.entity.SysDevice;
 import com.xiaozhi.entity.SysMessage;
 import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.event.PipelineContextRefreshEvent;
 import com.xiaozhi.service.SysConfigService;
 import com.xiaozhi.service.SysDeviceService;
+import com.xiaozhi.service.SysStatsService;
 import jakarta.annotation.Resource;
 import org.apache.ibatis.javassist.NotFoundException;
 import org.slf4j.Logger;
@@ -54,6 +56,9 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
     @Resource
     private SysConfigService configService;
 
+    @Resource
+    private SysStatsService statsService;
+
     @Resource
     private ApplicationContext applicationContext;
 
@@ -96,7 +101,12 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
         }
 
         device.setRoleId(selectedRole.getRoleId());
-        return deviceMapper.add(device);
+        int rows = deviceMapper.add(device);
+        statsService.refreshUserDevices(device.getUserId());
+        if (device.getRoleId() != null) {
+            statsService.refreshRoleDevices(device.getRoleId());
+        }
+        return rows;
 
     }
 
@@ -110,6 +120,7 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
     @Transactional
     @CacheEvict(value = CACHE_NAME, key = "#device.deviceId.replace(\":\", \"-\")")
     public int delete(SysDevice device) {
+        SysDevice existing = deviceMapper.selectDeviceById(device.getDeviceId());
         int row = deviceMapper.delete(device);
         if (row > 0) {
             SysMessage message = new SysMessage();
@@ -117,6 +128,10 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
             message.setDeviceId(device.getDeviceId());
             // 清空设备聊天记录
             messageMapper.delete(message);
+            statsService.refreshUserDevices(device.getUserId());
+            if (existing != null && existing.getRoleId() != null) {
+                statsService.refreshRoleDevices(existing.getRoleId());
+            }
         }
         return row;
     }
@@ -181,10 +196,28 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
     @Override
     @CacheEvict(value = CACHE_NAME, key = "#device.deviceId.replace(\":\", \"-\")")
     public int update(SysDevice device) {
+        // 切换角色时需要同时更新原角色的设备数
+        Integer previousRoleId = null;
+        if (device.getDeviceId() != null && device.getRoleId() != null) {
+            SysDevice previous = deviceMapper.selectDeviceById(device.getDeviceId());
+            previousRoleId = previous != null ? previous.getRoleId() : null;
+        }
         int rows = deviceMapper.update(device);
         // 更新设备信息后清空记忆缓存并重新注册设备信息
         if(device.getDeviceId() != null){
             device = deviceMapper.selectDeviceById(device.getDeviceId());
+            if (device != null) {
+                statsService.refreshUserDevices(device.getUserId());
+                if (previousRoleId != null && !previousRoleId.equals(device.getRoleId())) {
+                    statsService.refreshRoleDevices(previousRoleId);
+                    if (device.getRoleId() != null) {
+                        statsService.refreshRoleDevices(device.getRoleId());
+                    }
+                }
+            }
+        } else if (rows > 0) {
+            // 批量更新（如启动时全部置为离线）
+            statsService.refreshUserDevices(null);
         }
         ChatSession session = null;
         if (device != null) {
@@ -194,6 +227,8 @@ public class SysDeviceServiceImpl extends BaseServiceImpl implements SysDeviceSe
         }
         if (session != null) {
             session.setSysDevice(device);
+            // 设备可能切换了角色，重建管线上下文
+            applicationContext.publishEvent(new PipelineContextRefreshEvent(session));
         }
         return rows;
     }
@@ -3,9 +3,10 @@ package com.xiaozhi.service.impl;
 import com.github.pagehelper.PageHelper;
 import com.xiaozhi.common.web.PageFilter;
 import com.xiaozhi.dao.MessageMapper;
+import com.xiaozhi.dialogue.llm.memory.HistoryCache;
 import com.xiaozhi.entity.SysMessage;
 import com.xiaozhi.service.SysMessageService;
-import com.xiaozhi.utils.DateUtils;
+import com.xiaozhi.service.SysStatsService;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +26,12 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
     @Resource
     private MessageMapper messageMapper;
 
+    @Resource
+    private SysStatsService statsService;
+
+    @Resource
+    private HistoryCache historyCache;
+
     /**
      * 新增聊天记录
      *
@@ -34,7 +41,11 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
     @Override
     @Transactional
     public int add(SysMessage message) {
-        return messageMapper.add(message);
+        int rows = messageMapper.add(message);
+        if (rows > 0) {
+            statsService.recordMessages(List.of(message));
+        }
+        return rows;
     }
 
     /**
@@ -51,6 +62,20 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
         return messageMapper.query(message);
     }
 
+    /**
+     * 游标分页查询聊天记录
+     *
+     * @param message
+     * @param limit
+     * @return
+     */
+    @Override
+    public List<SysMessage> queryByCursor(SysMessage message, int limit) {
+        // 始终取第一页且不统计总数，只生成LIMIT，翻页由cursorId条件完成
+        PageHelper.startPage(1, limit, false);
+        return messageMapper.query(message);
+    }
+
     /**
      * 删除记忆
      * 
@@ -60,21 +85,13 @@ public class SysMessageServiceImpl extends BaseServiceImpl implements SysMessage
     @Override
     @Transactional
     public int delete(SysMessage message) {
-        return messageMapper.delete(message);
-    }
-
-    @Override
-    public void updateMessageByAudioFile(String deviceId, Integer roleId, String sender,
-                                         String createTime, String audioPath) {
-        SysMessage sysMessage = new SysMessage();
-        // 设置消息的where条件
-        sysMessage.setDeviceId(deviceId);
-        sysMessage.setRoleId(roleId);
-        sysMessage.setSender(sender);
-        sysMessage.setCreateTime(DateUtils.toDate(createTime.replace("T", " "), "yyyy-MM-dd HHmmss"));
-        // 设置音频路径和TTS时长
-        sysMessage.setAudioPath(audioPath);
-        messageMapper.updateMessageByAudioFile(sysMessage);
+        int rows = messageMapper.delete(message);
+        if (rows > 0) {
+            statsService.refreshDeviceMessages(message.getDeviceId(), message.getUserId());
+            // 已删除的消息不能再出现在缓存的对话历史中
+            historyCache.invalidate(message.getDeviceId());
+        }
+        return rows;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.dao.ModelCapabilityMapper;
+import com.xiaozhi.dialogue.llm.providers.OpenAiLlmService;
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.entity.SysModelCapability;
+import com.xiaozhi.service.SysModelCapabilityService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型能力
+ * 探测结果按(endpoint, model)缓存在内存并持久化到sys_model_capability，设备连接时直接读取，
+ * 不再每次连接都向大模型发一次请求。大量设备同时重连时，同一模型只有一个探测请求在执行，其余调用等待同一结果。
+ * 探测失败的结果只在内存中保留较短时间，到期后重试，不会写入数据库。
+ *
+ * @author Joey
+ *
+ */
+@Service
+public class SysModelCapabilityServiceImpl extends BaseServiceImpl implements SysModelCapabilityService {
+    private static final Logger logger = LoggerFactory.getLogger(SysModelCapabilityServiceImpl.class);
+
+    @Resource
+    private ModelCapabilityMapper capabilityMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    // 探测结果有效期（小时），过期后在后台重新探测
+    @Value("${llm.capability.ttl-hours:168}")
+    private long ttlHours;
+
+    // 探测失败后的重试间隔（分钟）
+    @Value("${llm.capability.retry-minutes:5}")
+    private long retryMinutes;
+
+    private final Map<String, SysModelCapability> capabilities = new ConcurrentHashMap<>();
+    // 正在执行的探测，同一模型只探测一次
+    private final Map<String, CompletableFuture<SysModelCapability>> probing = new ConcurrentHashMap<>();
+
+    private Timer probeTimer;
+    private Counter probeFailedCounter;
+
+    @PostConstruct
+    public void init() {
+        probeTimer = Timer.builder("xiaozhi.llm.capability.probe")
+                .description("模型能力探测耗时")
+                .register(meterRegistry);
+        probeFailedCounter = Counter.builder("xiaozhi.llm.capability.probe.failed")
+                .description("模型能力探测失败次数")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.llm.capability.entries", capabilities, Map::size)
+                .description("已缓存的模型能力数")
+                .register(meterRegistry);
+        try {
+            for (SysModelCapability capability : capabilityMapper.query()) {
+                capabilities.put(key(capability.getEndpoint(), capability.getModel()), capability);
+            }
+            logger.info("已加载模型能力: {}个", capabilities.size());
+        } catch (Exception e) {
+            // 表不存在时不影响启动，探测结果只保存在内存中
+            logger.warn("加载模型能力失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public SysModelCapability get(SysConfig config) {
+        String key = key(config.getApiUrl(), config.getConfigName());
+        SysModelCapability capability = capabilities.get(key);
+        if (capability == null) {
+            return probe(key, config).join();
+        }
+        if (expired(capability)) {
+            probe(key, config);
+        }
+        return capability;
+    }
+
+    @Override
+    public SysModelCapability peek(String endpoint, String model) {
+        return capabilities.get(key(endpoint, model));
+    }
+
+    @Override
+    public SysModelCapability refresh(SysConfig config) {
+        return probe(key(config.getApiUrl(), config.getConfigName()), config).join();
+    }
+
+    @Override
+    public List<SysModelCapability> query() {
+        return new ArrayList<>(capabilities.values());
+    }
+
+    /**
+     * 在虚拟线程中探测，已有探测在执行时返回同一个结果
+     */
+    private CompletableFuture<SysModelCapability> probe(String key, SysConfig config) {
+        CompletableFuture<SysModelCapability> created = new CompletableFuture<>();
+        CompletableFuture<SysModelCapability> existing = probing.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        Thread.ofVirtual().name("llm-capability-probe").start(() -> {
+            try {
+                created.complete(doProbe(key, config));
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                probing.remove(key, created);
+            }
+        });
+        return created;
+    }
+
+    private SysModelCapability doProbe(String key, SysConfig config) {
+        long start = System.nanoTime();
+        OpenAiLlmService service = new OpenAiLlmService(config.getApiUrl(), config.getApiKey(), config.getConfigName());
+        SysModelCapability capability = new SysModelCapability()
+                .setEndpoint(normalize(config.getApiUrl()))
+                .setModel(config.getConfigName())
+                .setFunctionCall(service.probeFunctionCall())
+                .setStreamUsage(service.probeStreamUsage())
+                .setContextLength(service.probeContextLength())
+                .setProbeTime(new Date());
+        probeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (capability.getFunctionCall() == null || capability.getStreamUsage() == null) {
+            probeFailedCounter.increment();
+            SysModelCapability previous = capabilities.get(key);
+            if (previous != null && !failed(previous)) {
+                // 保留上次成功的结果，只推迟下次探测
+                previous.setProbeTime(new Date(System.currentTimeMillis()
+                        - TimeUnit.HOURS.toMillis(ttlHours) + TimeUnit.MINUTES.toMillis(retryMinutes)));
+                return previous;
+            }
+            capabilities.put(key, capability);
+            logger.warn("模型能力探测失败，{}分钟后重试 - endpoint: {}, model: {}",
+                    retryMinutes, capability.getEndpoint(), capability.getModel());
+            return capability;
+        }
+        capabilities.put(key, capability);
+        try {
+            capabilityMapper.upsert(capability);
+        } catch (Exception e) {
+            logger.warn("保存模型能力失败: {}", e.getMessage());
+        }
+        logger.info("模型能力探测完成 - model: {}, functionCall: {}, streamUsage: {}, contextLength: {}, 耗时: {}ms",
+                capability.getModel(), capability.getFunctionCall(), capability.getStreamUsage(),
+                capability.getContextLength(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return capability;
+    }
+
+    private boolean expired(SysModelCapability capability) {
+        Date probeTime = capability.getProbeTime();
+        if (probeTime == null) {
+            return true;
+        }
+        long ttl = failed(capability) ? TimeUnit.MINUTES.toMillis(retryMinutes) : TimeUnit.HOURS.toMillis(ttlHours);
+        return System.currentTimeMillis() - probeTime.getTime() > ttl;
+    }
+
+    private static boolean failed(SysModelCapability capability) {
+        return capability.getFunctionCall() == null || capability.getStreamUsage() == null;
+    }
+
+    private static String key(String endpoint, String model) {
+        return normalize(endpoint) + "|" + model;
+    }
+
+    private static String normalize(String endpoint) {
+        if (endpoint == null) {
+            return "";
+        }
+        String trimmed = endpoint.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,332 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.dao.RetentionMapper;
+import com.xiaozhi.dialogue.llm.memory.HistoryCache;
+import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.entity.SysRetentionPolicy;
+import com.xiaozhi.service.SysRetentionService;
+import com.xiaozhi.service.SysStatsService;
+import com.xiaozhi.utils.AudioUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 数据保留
+ * 后台按用户策略分批清理：过期消息和已删除消息复制到按月份命名的归档表sys_message_archive_yyyyMM后从消息表删除，
+ * 过期音频文件直接删除。每批之间暂停一段时间，避免与对话争抢数据库和磁盘IO。
+ * 消息表只保留近期有效数据，历史对话加载和管理台查询的索引可以常驻内存。
+ *
+ * @author Joey
+ *
+ */
+@Service
+public class SysRetentionServiceImpl extends BaseServiceImpl implements SysRetentionService {
+    private static final Logger logger = LoggerFactory.getLogger(SysRetentionServiceImpl.class);
+
+    @Resource
+    private RetentionMapper retentionMapper;
+
+    @Resource
+    private SysStatsService statsService;
+
+    @Resource
+    private HistoryCache historyCache;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    // 默认不启用定时清理，避免升级后自动归档历史消息；启用后按用户策略和下面的默认天数执行
+    @Value("${retention.enabled:false}")
+    private boolean enabled;
+
+    // 执行间隔（小时）
+    @Value("${retention.interval-hours:24}")
+    private long intervalHours;
+
+    // 启动后首次执行的延迟（分钟）
+    @Value("${retention.initial-delay-minutes:10}")
+    private long initialDelayMinutes;
+
+    // 默认消息保留天数，0表示永久保留；已删除的消息总是会被归档
+    @Value("${retention.message.days:0}")
+    private int defaultMessageDays;
+
+    // 默认音频保留天数，0表示永久保留
+    @Value("${retention.audio.days:0}")
+    private int defaultAudioDays;
+
+    // 每批处理的消息数或文件数
+    @Value("${retention.batch-size:500}")
+    private int batchSize;
+
+    // 每批之间的暂停时间（毫秒）
+    @Value("${retention.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> Thread.ofPlatform().daemon().name("retention").unstarted(r));
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Set<String> archiveTables = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped = false;
+
+    private TransactionTemplate transactionTemplate;
+    private Timer runTimer;
+    private Counter archivedCounter;
+    private Counter audioDeletedCounter;
+    private Counter audioBytesCounter;
+
+    // 上次执行的结果
+    private volatile Date lastStart;
+    private volatile Date lastFinish;
+    private volatile long lastArchived;
+    private volatile long lastAudioDeleted;
+    private volatile long lastAudioBytes;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        runTimer = Timer.builder("xiaozhi.retention.run")
+                .description("数据保留清理耗时")
+                .register(meterRegistry);
+        archivedCounter = Counter.builder("xiaozhi.retention.messages.archived")
+                .description("移入归档表的消息数")
+                .register(meterRegistry);
+        audioDeletedCounter = Counter.builder("xiaozhi.retention.audio.deleted")
+                .description("删除的音频文件数")
+                .register(meterRegistry);
+        audioBytesCounter = Counter.builder("xiaozhi.retention.audio.bytes")
+                .baseUnit("bytes")
+                .description("删除的音频文件大小")
+                .register(meterRegistry);
+        Gauge.builder("xiaozhi.retention.running", running, r -> r.get() ? 1 : 0)
+                .description("数据保留清理是否正在执行")
+                .register(meterRegistry);
+
+        if (enabled && intervalHours > 0) {
+            scheduler.scheduleWithFixedDelay(this::runNow, initialDelayMinutes, TimeUnit.HOURS.toMinutes(intervalHours),
+                    TimeUnit.MINUTES);
+            logger.info("数据保留清理已启动，间隔: {}小时，默认消息保留: {}天，默认音频保留: {}天",
+                    intervalHours, defaultMessageDays, defaultAudioDays);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stopped = true;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean runNow() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        lastStart = new Date();
+        lastError = null;
+        long archived = 0;
+        long[] audio = new long[2];
+        try {
+            for (SysRetentionPolicy policy : retentionMapper.queryPolicies()) {
+                if (stopped) {
+                    break;
+                }
+                Integer userId = policy.getUserId();
+                int messageDays = policy.getMessageDays() != null ? policy.getMessageDays() : defaultMessageDays;
+                long userArchived = archiveMessages(userId, messageDays > 0 ? daysAgo(messageDays) : null);
+                if (userArchived > 0) {
+                    // 设备的有效消息数只统计消息表
+                    statsService.refreshDeviceMessages(null, userId);
+                }
+                archived += userArchived;
+
+                int audioDays = policy.getAudioDays() != null ? policy.getAudioDays() : defaultAudioDays;
+                if (audioDays > 0) {
+                    long cutoff = daysAgo(audioDays).getTime();
+                    for (String deviceId : retentionMapper.selectDeviceIds(userId)) {
+                        deleteAudio(Paths.get(AudioUtils.AUDIO_PATH, deviceId.replace(":", "-")), cutoff, true, audio);
+                    }
+                }
+            }
+            // 设备删除后遗留的已删除消息
+            archived += archiveMessages(null, null);
+            // 音频目录下不属于设备的临时文件按默认策略清理
+            if (defaultAudioDays > 0) {
+                deleteAudio(Paths.get(AudioUtils.AUDIO_PATH), daysAgo(defaultAudioDays).getTime(), false, audio);
+            }
+            logger.info("数据保留清理完成，归档消息: {}条，删除音频: {}个（{}KB），耗时: {}ms",
+                    archived, audio[0], audio[1] / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("数据保留清理失败: {}", e.getMessage(), e);
+        } finally {
+            lastArchived = archived;
+            lastAudioDeleted = audio[0];
+            lastAudioBytes = audio[1];
+            lastFinish = new Date();
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running.get());
+        status.put("defaultMessageDays", defaultMessageDays);
+        status.put("defaultAudioDays", defaultAudioDays);
+        status.put("lastStart", lastStart);
+        status.put("lastFinish", lastFinish);
+        status.put("lastArchived", lastArchived);
+        status.put("lastAudioDeleted", lastAudioDeleted);
+        status.put("lastAudioBytes", lastAudioBytes);
+        status.put("lastError", lastError);
+        status.put("totalArchived", (long) archivedCounter.count());
+        status.put("totalAudioDeleted", (long) audioDeletedCounter.count());
+        status.put("archiveTables", new ArrayList<>(archiveTables));
+        return status;
+    }
+
+    /**
+     * 分批归档用户的过期消息，userId为空时归档设备已删除的消息
+     */
+    private long archiveMessages(Integer userId, Date before) throws InterruptedException {
+        long total = 0;
+        int afterId = 0;
+        while (!stopped) {
+            List<SysMessage> batch = userId != null
+                    ? retentionMapper.selectExpired(userId, before, afterId, batchSize)
+                    : retentionMapper.selectOrphaned(afterId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.getLast().getMessageId();
+            total += archiveBatch(batch);
+            if (batch.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(batchPauseMs);
+        }
+        return total;
+    }
+
+    /**
+     * 按消息月份复制到对应归档表后删除，复制和删除在同一事务中
+     */
+    private int archiveBatch(List<SysMessage> batch) {
+        SimpleDateFormat month = new SimpleDateFormat("yyyyMM");
+        Map<String, List<Integer>> bySuffix = new LinkedHashMap<>();
+        List<Integer> messageIds = new ArrayList<>(batch.size());
+        Set<String> deviceIds = new HashSet<>();
+        for (SysMessage message : batch) {
+            String suffix = month.format(message.getCreateTime() != null ? message.getCreateTime() : new Date());
+            bySuffix.computeIfAbsent(suffix, k -> new ArrayList<>()).add(message.getMessageId());
+            messageIds.add(message.getMessageId());
+            if (message.getDeviceId() != null) {
+                deviceIds.add(message.getDeviceId());
+            }
+        }
+        // 建表会隐式提交事务，需要在事务外完成
+        for (String suffix : bySuffix.keySet()) {
+            if (archiveTables.add(suffix)) {
+                try {
+                    retentionMapper.createArchiveTable(suffix);
+                } catch (RuntimeException e) {
+                    archiveTables.remove(suffix);
+                    throw e;
+                }
+            }
+        }
+        Integer deleted = transactionTemplate.execute(status -> {
+            bySuffix.forEach(retentionMapper::copyToArchive);
+            return retentionMapper.deleteMessages(messageIds);
+        });
+        int rows = deleted != null ? deleted : 0;
+        // 历史缓存中可能还有已归档的消息，设备重连时需要重新从消息表加载
+        deviceIds.forEach(historyCache::invalidate);
+        archivedCounter.increment(rows);
+        return rows;
+    }
+
+    /**
+     * 分批删除目录下早于cutoff的音频文件
+     *
+     * @param recursive 是否包含子目录
+     * @param audio     累计删除的文件数和字节数
+     */
+    private void deleteAudio(Path dir, long cutoff, boolean recursive, long[] audio) throws InterruptedException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> expired;
+        try (Stream<Path> files = recursive ? Files.walk(dir) : Files.list(dir)) {
+            expired = files.filter(Files::isRegularFile)
+                    .filter(file -> file.toFile().lastModified() < cutoff)
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("读取音频目录失败: {}, {}", dir, e.getMessage());
+            return;
+        }
+        int inBatch = 0;
+        for (Path file : expired) {
+            if (stopped) {
+                return;
+            }
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    audio[0]++;
+                    audio[1] += size;
+                    audioDeletedCounter.increment();
+                    audioBytesCounter.increment(size);
+                }
+            } catch (IOException e) {
+                logger.warn("删除音频文件失败: {}, {}", file, e.getMessage());
+            }
+            if (++inBatch >= batchSize) {
+                inBatch = 0;
+                Thread.sleep(batchPauseMs);
+            }
+        }
+    }
+
+    private static Date daysAgo(int days) {
+        return new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+}
@@ -4,12 +4,14 @@ import com.github.pagehelper.PageHelper;
 import com.xiaozhi.common.web.PageFilter;
 import com.xiaozhi.dao.RoleMapper;
 import com.xiaozhi.entity.SysRole;
+import com.xiaozhi.event.PipelineContextRefreshEvent;
 import com.xiaozhi.service.SysRoleService;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,6 +34,9 @@ public class SysRoleServiceImpl extends BaseServiceImpl implements SysRoleServic
     @Autowired(required = false)
     private CacheManager cacheManager;
 
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 添加角色
      *
@@ -93,6 +98,11 @@ public class SysRoleServiceImpl extends BaseServiceImpl implements SysRoleServic
             }
         }
 
+        if (result > 0 && role.getRoleId() != null) {
+            // 事务提交后刷新使用该角色的会话
+            eventPublisher.publishEvent(new PipelineContextRefreshEvent(role));
+        }
+
         return result;
     }
 
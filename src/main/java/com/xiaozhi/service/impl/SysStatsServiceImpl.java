@@ -0,0 +1,158 @@
+package com.xiaozhi.service.impl;
+
+import com.xiaozhi.dao.StatsMapper;
+import com.xiaozhi.entity.SysMessage;
+import com.xiaozhi.service.SysStatsService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计汇总
+ * 管理台的设备、用户、角色列表直接读取汇总表，查询耗时只与返回行数有关，与消息总量无关。
+ * 消息计数随批量写入增量累加，设备计数在设备变化时按用户/角色重算；
+ * 后台定期重算最近有写入的设备和用户，修正并发或异常导致的偏差。
+ *
+ * @author Joey
+ *
+ */
+@Service
+public class SysStatsServiceImpl extends BaseServiceImpl implements SysStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(SysStatsServiceImpl.class);
+
+    @Resource
+    private StatsMapper statsMapper;
+
+    // 核对间隔（分钟），0表示不核对
+    @Value("${stats.reconcile.interval-minutes:60}")
+    private long reconcileIntervalMinutes;
+
+    // 每次核对最近几天的数据，应大于核对间隔
+    @Value("${stats.reconcile.days:2}")
+    private int reconcileDays;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> Thread.ofPlatform().daemon().name("stats-reconcile").unstarted(r));
+
+    @PostConstruct
+    public void init() {
+        // 汇总表为空说明刚升级，先根据明细表全量生成
+        scheduler.schedule(this::rebuildIfEmpty, 5, TimeUnit.SECONDS);
+        if (reconcileIntervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::reconcile, reconcileIntervalMinutes, reconcileIntervalMinutes,
+                    TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void recordMessages(List<SysMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        // 同一批消息按设备和日期合并，每组只执行一次累加
+        Map<String, Integer> deviceCounts = new HashMap<>();
+        Map<String, Map<LocalDate, Integer>> dailyCounts = new HashMap<>();
+        for (SysMessage message : messages) {
+            deviceCounts.merge(message.getDeviceId(), 1, Integer::sum);
+            Date createTime = message.getCreateTime() != null ? message.getCreateTime() : new Date();
+            LocalDate day = createTime.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            dailyCounts.computeIfAbsent(message.getDeviceId(), k -> new HashMap<>()).merge(day, 1, Integer::sum);
+        }
+        try {
+            deviceCounts.forEach((deviceId, count) -> {
+                statsMapper.incrementDeviceMessages(deviceId, count);
+                statsMapper.incrementUserMessages(deviceId, count);
+            });
+            dailyCounts.forEach((deviceId, days) -> days.forEach((day, count) ->
+                    statsMapper.incrementUserDailyMessages(deviceId,
+                            Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant()), count)));
+        } catch (Exception e) {
+            // 汇总失败不影响消息本身，等待定期核对修正
+            logger.warn("更新消息统计失败，将在下次核对时修正: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void refreshUserDevices(Integer userId) {
+        try {
+            statsMapper.refreshUserDevices(userId);
+        } catch (Exception e) {
+            logger.warn("更新用户设备统计失败 - userId: {}, {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void refreshRoleDevices(Integer roleId) {
+        try {
+            statsMapper.refreshRoleDevices(roleId);
+        } catch (Exception e) {
+            logger.warn("更新角色设备统计失败 - roleId: {}, {}", roleId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void refreshDeviceMessages(String deviceId, Integer userId) {
+        if ((deviceId == null || deviceId.isEmpty()) && userId == null) {
+            return;
+        }
+        try {
+            statsMapper.refreshDeviceMessages(deviceId, userId);
+        } catch (Exception e) {
+            logger.warn("更新设备消息统计失败 - deviceId: {}, {}", deviceId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        try {
+            Date since = Date.from(LocalDate.now().minusDays(Math.max(reconcileDays - 1, 0))
+                    .atStartOfDay(ZoneId.systemDefault()).toInstant());
+            // 设备数只与设备表有关，全量重算代价很小
+            statsMapper.refreshUserDevices(null);
+            statsMapper.refreshRoleDevices(null);
+            // 消息数只核对最近有写入的设备和用户，更早的日期已经不会变化
+            statsMapper.refreshUserDailyMessages(since);
+            statsMapper.refreshActiveDeviceMessages(since);
+            statsMapper.refreshUserMessages();
+            logger.info("统计汇总核对完成，耗时 {}ms", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("统计汇总核对失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void rebuildIfEmpty() {
+        try {
+            if (statsMapper.countUserStats() > 0) {
+                return;
+            }
+            logger.info("统计汇总表为空，根据明细数据全量生成");
+            statsMapper.refreshUserDevices(null);
+            statsMapper.refreshRoleDevices(null);
+            statsMapper.refreshDeviceMessages(null, null);
+            statsMapper.refreshUserDailyMessages(null);
+            statsMapper.refreshUserMessages();
+        } catch (Exception e) {
+            logger.error("生成统计汇总失败: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.xiaozhi.entity.SysRole;
 import com.xiaozhi.entity.SysTemplate;
 import com.xiaozhi.entity.SysUser;
 import com.xiaozhi.security.AuthenticationService;
+import com.xiaozhi.service.SysStatsService;
 import com.xiaozhi.service.SysUserService;
 import com.xiaozhi.utils.DateUtils;
 import com.xiaozhi.utils.EmailUtils;
@@ -57,6 +58,9 @@ public class SysUserServiceImpl extends BaseServiceImpl implements SysUserServic
     @Resource
     private DeviceMapper deviceMapper;
 
+    @Resource
+    private SysStatsService statsService;
+
     @Resource
     private AuthenticationService authenticationService;
 
@@ -186,6 +190,10 @@ public class SysUserServiceImpl extends BaseServiceImpl implements SysUserServic
             virtualDevice.setState(SysDevice.DEVICE_STATE_OFFLINE);
             virtualDevice.setRoleId(defaultRoleId);
             deviceMapper.add(virtualDevice);
+            statsService.refreshUserDevices(userId);
+            if (defaultRoleId != null) {
+                statsService.refreshRoleDevices(defaultRoleId);
+            }
         }
         return rows;
     }
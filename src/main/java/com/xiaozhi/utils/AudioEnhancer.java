@@ -66,6 +66,11 @@ public class AudioEnhancer {
     // 人声检测
     private float voiceEnergyRatio;     // 人声频段能量占比
     private boolean voiceDetected;
+
+    // 复用的处理缓冲区，帧长不变时不再分配
+    private final AudioEvent audioEvent;
+    private final AudioEvent voiceEvent;
+    private float[] voiceBuffer = new float[0];
     
     /**
      * 默认构造函数 - 零配置，自动优化
@@ -105,6 +110,9 @@ public class AudioEnhancer {
         
         Arrays.fill(noiseSpectrum, 0.0f);
         Arrays.fill(smoothedSpectrum, 0.0f);
+
+        this.audioEvent = createAudioEvent();
+        this.voiceEvent = createAudioEvent();
         
         logger.info("AudioEnhancer已初始化 - TarsosDSP专业模式");
     }
@@ -119,49 +127,54 @@ public class AudioEnhancer {
         if (samples == null || samples.length == 0) {
             return samples;
         }
-        
-        // 创建AudioEvent用于TarsosDSP处理
         float[] processed = samples.clone();
+        processInPlace(processed);
+        return processed;
+    }
+
+    /**
+     * 原地处理音频数据，复用内部缓冲区，帧长不变时不分配内存
+     * 滤波器会处理整个数组，所以数组长度必须等于有效样本数
+     * 
+     * @param samples 音频样本（float数组，范围 -1.0 到 1.0），处理结果直接写回
+     */
+    public void processInPlace(float[] samples) {
+        if (samples == null || samples.length == 0) {
+            return;
+        }
         
         // 步骤1: 温和的高通滤波（去除低频噪声）
-        processed = applyFilterChain(processed);
+        applyFilterChain(samples);
         
         // 步骤2: 人声频段检测（仅用于分析，不修改音频）
-        analyzeVoiceBand(processed);
+        analyzeVoiceBand(samples);
         
         // 步骤3: 自适应增益控制（核心功能）
-        processed = applyAdaptiveGain(processed);
+        applyAdaptiveGain(samples);
         
         // 步骤4: 温和的动态范围压缩
-        processed = applyCompression(processed);
+        applyCompression(samples);
         
         // 步骤5: 峰值限制器
-        processed = applyLimiter(processed);
+        applyLimiter(samples);
         
         // 注意：暂时禁用FFT降噪和预加重，因为它们可能破坏VAD识别
         // 如果需要更强的降噪，可以单独配置开关
-        
-        return processed;
     }
     
     /**
      * 步骤1: 应用滤波器链
      * 高通滤波器 -> 低通滤波器，构建理想的语音通道
      */
-    private float[] applyFilterChain(float[] samples) {
-        float[] filtered = samples.clone();
-        
-        // 创建AudioEvent并设置缓冲区
-        AudioEvent audioEvent = createAudioEvent(filtered);
-        audioEvent.setFloatBuffer(filtered);
+    private void applyFilterChain(float[] samples) {
+        // 复用AudioEvent，滤波器直接修改缓冲区
+        audioEvent.setFloatBuffer(samples);
         
         // 应用高通滤波器（去除低频噪声）
         highPassFilter.process(audioEvent);
         
         // 应用低通滤波器（去除高频噪声）
         lowPassFilter.process(audioEvent);
-        
-        return audioEvent.getFloatBuffer();
     }
     
     /**
@@ -291,12 +304,14 @@ public class AudioEnhancer {
         float totalEnergy = calculateRms(samples);
         
         // 分析人声频段能量
-        float[] voiceBand = samples.clone();
-        AudioEvent voiceEvent = createAudioEvent(voiceBand);
-        voiceEvent.setFloatBuffer(voiceBand);
+        if (voiceBuffer.length != samples.length) {
+            voiceBuffer = new float[samples.length];
+        }
+        System.arraycopy(samples, 0, voiceBuffer, 0, samples.length);
+        voiceEvent.setFloatBuffer(voiceBuffer);
         voiceBandPass.process(voiceEvent);
         
-        float voiceEnergy = calculateRms(voiceEvent.getFloatBuffer());
+        float voiceEnergy = calculateRms(voiceBuffer);
         
         // 计算人声能量占比（限制在0-1之间）
         // 注意：滤波器可能放大信号，所以需要限制最大值
@@ -322,7 +337,7 @@ public class AudioEnhancer {
      * 步骤3: 固定增益控制（立即满增益）
      * 从第一帧就使用最大增益，不需要渐进
      */
-    private float[] applyAdaptiveGain(float[] samples) {
+    private void applyAdaptiveGain(float[] samples) {
         // 固定使用最大增益10倍
         float gain = 10.0f;
         
@@ -330,20 +345,15 @@ public class AudioEnhancer {
         previousGain = gain;
         
         // 应用增益
-        float[] amplified = new float[samples.length];
         for (int i = 0; i < samples.length; i++) {
-            amplified[i] = samples[i] * gain;
+            samples[i] *= gain;
         }
-        
-        return amplified;
     }
     
     /**
      * 步骤4: 动态范围压缩（温和版本）
      */
-    private float[] applyCompression(float[] samples) {
-        float[] compressed = samples.clone();
-        
+    private void applyCompression(float[] compressed) {
         // 更温和的压缩器参数（避免破坏VAD识别）
         float threshold = 0.7f;      // 提高阈值（给增益更多空间）
         float ratio = 2.5f;          // 降低压缩比 2.5:1（更温和）
@@ -373,15 +383,12 @@ public class AudioEnhancer {
                 compressed[i] *= makeupGain;
             }
         }
-        
-        return compressed;
     }
     
     /**
      * 步骤6: 峰值限制器（砖墙限幅器）
      */
-    private float[] applyLimiter(float[] samples) {
-        float[] limited = samples.clone();
+    private void applyLimiter(float[] limited) {
         float limit = 0.95f;
         
         // 先行峰值检测
@@ -392,14 +399,12 @@ public class AudioEnhancer {
                 limited[i] = -limit;
             }
         }
-        
-        return limited;
     }
     
     /**
      * 创建AudioEvent用于TarsosDSP处理
      */
-    private AudioEvent createAudioEvent(float[] buffer) {
+    private AudioEvent createAudioEvent() {
         // 创建TarsosDSP的AudioFormat
         be.tarsos.dsp.io.TarsosDSPAudioFormat format = 
             new be.tarsos.dsp.io.TarsosDSPAudioFormat(
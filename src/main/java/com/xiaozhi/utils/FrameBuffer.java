@@ -0,0 +1,107 @@
+package com.xiaozhi.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按帧追加的连续字节缓冲区，记录每帧的边界
+ * 清空时保留已分配的容量，下一句话复用，稳定运行后追加帧不再分配内存。
+ * 非线程安全，由调用方加锁。
+ */
+public class FrameBuffer {
+
+    private byte[] data;
+    // 每帧的结束位置
+    private int[] frameEnds;
+    private int frameCount = 0;
+
+    public FrameBuffer(int initialBytes, int initialFrames) {
+        this.data = new byte[Math.max(16, initialBytes)];
+        this.frameEnds = new int[Math.max(4, initialFrames)];
+    }
+
+    /**
+     * 追加一帧
+     */
+    public void add(byte[] frame, int offset, int length) {
+        if (frame == null || length <= 0) {
+            return;
+        }
+        int size = size();
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+        }
+        if (frameCount == frameEnds.length) {
+            frameEnds = Arrays.copyOf(frameEnds, frameEnds.length * 2);
+        }
+        System.arraycopy(frame, offset, data, size, length);
+        frameEnds[frameCount++] = size + length;
+    }
+
+    /**
+     * 移除末尾的若干帧
+     */
+    public void removeLast(int frames) {
+        frameCount = Math.max(0, frameCount - frames);
+    }
+
+    /**
+     * 只保留末尾的若干帧，数据移到缓冲区开头
+     */
+    public void retainLast(int frames) {
+        if (frames >= frameCount) {
+            return;
+        }
+        if (frames <= 0) {
+            clear();
+            return;
+        }
+        int first = frameCount - frames;
+        int start = frameEnds[first - 1];
+        System.arraycopy(data, start, data, 0, size() - start);
+        for (int i = 0; i < frames; i++) {
+            frameEnds[i] = frameEnds[first + i] - start;
+        }
+        frameCount = frames;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    public boolean isEmpty() {
+        return frameCount == 0;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int size() {
+        return frameCount == 0 ? 0 : frameEnds[frameCount - 1];
+    }
+
+    /**
+     * 复制出全部帧
+     */
+    public List<byte[]> toFrameList() {
+        List<byte[]> frames = new ArrayList<>(frameCount);
+        int start = 0;
+        for (int i = 0; i < frameCount; i++) {
+            frames.add(Arrays.copyOfRange(data, start, frameEnds[i]));
+            start = frameEnds[i];
+        }
+        return frames;
+    }
+
+    /**
+     * 复制出全部数据
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(data, size());
+    }
+
+    public void clear() {
+        frameCount = 0;
+    }
+}
@@ -0,0 +1,284 @@
+package com.xiaozhi.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ogg/Opus文件写入（RFC 7845）
+ * 直接封装已编码的Opus包，不做解码和重新编码，文件大小约为同时长16kHz WAV的十分之一。
+ * 播放线程只做内存拷贝：封装好的页先缓存在内存中，超过阈值或关闭时才写入文件，
+ * 文件在第一次写入时才创建，没有写入任何音频包时不会产生文件。
+ *
+ * @author Joey
+ */
+public class OggOpusWriter {
+    private static final Logger logger = LoggerFactory.getLogger(OggOpusWriter.class);
+
+    // Ogg页的granule position以48kHz样本数计
+    private static final int GRANULE_RATE = 48000;
+    // 每页最多缓存约1秒音频，seek时最多回退1秒
+    private static final int PAGE_GRANULES = GRANULE_RATE;
+    // 每页最多255个lacing段
+    private static final int MAX_SEGMENTS = 255;
+    // 内存中缓存的页数据超过该大小才写入文件
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int r = i << 24;
+            for (int j = 0; j < 8; j++) {
+                r = (r & 0x80000000) != 0 ? (r << 1) ^ 0x04C11DB7 : r << 1;
+            }
+            CRC_TABLE[i] = r;
+        }
+    }
+
+    private final Path path;
+    private final int inputSampleRate;
+    private final int serial = ThreadLocalRandom.current().nextInt();
+
+    // 当前页的lacing段和包数据
+    private final byte[] segments = new byte[MAX_SEGMENTS];
+    private int segmentCount = 0;
+    private final ByteArrayOutputStream pageBody = new ByteArrayOutputStream(4096);
+    private long pageStartGranule = 0;
+
+    // 已封装待写入文件的页
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(FLUSH_BYTES);
+    private OutputStream out;
+    private int pageSeq = 0;
+    private long granule = 0;
+    private long packets = 0;
+    private boolean closed = false;
+
+    /**
+     * @param path            文件路径，第一次写入时创建
+     * @param inputSampleRate 原始音频采样率，仅作为元数据写入OpusHead
+     */
+    public OggOpusWriter(Path path, int inputSampleRate) {
+        this.path = path;
+        this.inputSampleRate = inputSampleRate;
+    }
+
+    /**
+     * 把一组Opus包写成完整的Ogg/Opus文件
+     *
+     * @return 是否生成了文件
+     */
+    public static boolean write(Path path, List<byte[]> opusFrames, int inputSampleRate) throws IOException {
+        OggOpusWriter writer = new OggOpusWriter(path, inputSampleRate);
+        for (byte[] frame : opusFrames) {
+            writer.write(frame);
+        }
+        return writer.close();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 已写入的音频包数
+     */
+    public synchronized long getPackets() {
+        return packets;
+    }
+
+    /**
+     * 已写入音频的时长（毫秒）
+     */
+    public synchronized long getDurationMs() {
+        return granule * 1000 / GRANULE_RATE;
+    }
+
+    /**
+     * 追加一个Opus包，关闭后或空包直接忽略
+     */
+    public synchronized void write(byte[] packet) throws IOException {
+        if (closed || packet == null || packet.length == 0) {
+            return;
+        }
+        if (packets == 0) {
+            writeHeaders();
+        }
+        int lacing = packet.length / 255 + 1;
+        if (segmentCount + lacing > MAX_SEGMENTS || granule - pageStartGranule >= PAGE_GRANULES) {
+            flushPage(false);
+        }
+        for (int i = 0; i < lacing - 1; i++) {
+            segments[segmentCount++] = (byte) 255;
+        }
+        segments[segmentCount++] = (byte) (packet.length % 255);
+        pageBody.write(packet);
+        granule += packetSamples(packet);
+        packets++;
+        if (pending.size() >= FLUSH_BYTES) {
+            flushPending();
+        }
+    }
+
+    /**
+     * 写入最后一页并关闭文件
+     *
+     * @return 是否生成了文件
+     */
+    public synchronized boolean close() throws IOException {
+        if (closed) {
+            return packets > 0;
+        }
+        closed = true;
+        if (packets == 0) {
+            return false;
+        }
+        try {
+            flushPage(true);
+            flushPending();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 放弃写入，删除已创建的文件
+     */
+    public synchronized void discard() {
+        closed = true;
+        // 之后调用close()返回false
+        packets = 0;
+        pending.reset();
+        try {
+            if (out != null) {
+                out.close();
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除未完成的音频文件失败: {}, {}", path, e.getMessage());
+        }
+    }
+
+    private void writeHeaders() throws IOException {
+        // OpusHead：版本1、单声道、帧来自已有编码流不裁剪起始样本、增益0、映射族0
+        byte[] head = new byte[19];
+        System.arraycopy("OpusHead".getBytes(StandardCharsets.US_ASCII), 0, head, 0, 8);
+        head[8] = 1;
+        head[9] = 1;
+        writeLe(head, 12, inputSampleRate, 4);
+        writePage(head, 0, 0x02);
+
+        byte[] vendor = "xiaozhi-esp32-server".getBytes(StandardCharsets.UTF_8);
+        byte[] tags = new byte[8 + 4 + vendor.length + 4];
+        System.arraycopy("OpusTags".getBytes(StandardCharsets.US_ASCII), 0, tags, 0, 8);
+        writeLe(tags, 8, vendor.length, 4);
+        System.arraycopy(vendor, 0, tags, 12, vendor.length);
+        writePage(tags, 0, 0x00);
+    }
+
+    private void flushPage(boolean last) {
+        if (segmentCount == 0) {
+            return;
+        }
+        byte[] lacing = new byte[segmentCount];
+        System.arraycopy(segments, 0, lacing, 0, segmentCount);
+        writePage(lacing, pageBody.toByteArray(), granule, last ? 0x04 : 0x00);
+        segmentCount = 0;
+        pageBody.reset();
+        pageStartGranule = granule;
+    }
+
+    /**
+     * 单个包组成一页，用于头部
+     */
+    private void writePage(byte[] packet, long granulePosition, int headerType) {
+        byte[] lacing = new byte[packet.length / 255 + 1];
+        for (int i = 0; i < lacing.length - 1; i++) {
+            lacing[i] = (byte) 255;
+        }
+        lacing[lacing.length - 1] = (byte) (packet.length % 255);
+        writePage(lacing, packet, granulePosition, headerType);
+    }
+
+    private void writePage(byte[] lacing, byte[] body, long granulePosition, int headerType) {
+        byte[] page = new byte[27 + lacing.length + body.length];
+        page[0] = 'O';
+        page[1] = 'g';
+        page[2] = 'g';
+        page[3] = 'S';
+        page[4] = 0;
+        page[5] = (byte) headerType;
+        writeLe(page, 6, granulePosition, 8);
+        writeLe(page, 14, serial, 4);
+        writeLe(page, 18, pageSeq++, 4);
+        page[26] = (byte) lacing.length;
+        System.arraycopy(lacing, 0, page, 27, lacing.length);
+        System.arraycopy(body, 0, page, 27 + lacing.length, body.length);
+        writeLe(page, 22, crc(page), 4);
+        pending.write(page, 0, page.length);
+    }
+
+    private void flushPending() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        if (out == null) {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            out = Files.newOutputStream(path);
+        }
+        pending.writeTo(out);
+        pending.reset();
+    }
+
+    /**
+     * 根据TOC字节计算Opus包包含的48kHz样本数（RFC 6716 3.1）
+     */
+    static int packetSamples(byte[] packet) {
+        int toc = packet[0] & 0xFF;
+        int config = toc >> 3;
+        int frameSamples;
+        if (config < 12) {
+            // SILK：10/20/40/60ms
+            frameSamples = new int[]{480, 960, 1920, 2880}[config & 3];
+        } else if (config < 16) {
+            // Hybrid：10/20ms
+            frameSamples = (config & 1) == 0 ? 480 : 960;
+        } else {
+            // CELT：2.5/5/10/20ms
+            frameSamples = 120 << (config & 3);
+        }
+        int frameCount = switch (toc & 3) {
+            case 0 -> 1;
+            case 1, 2 -> 2;
+            default -> packet.length > 1 ? packet[1] & 0x3F : 0;
+        };
+        return frameSamples * frameCount;
+    }
+
+    private static int crc(byte[] data) {
+        int crc = 0;
+        for (byte b : data) {
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ b) & 0xFF];
+        }
+        return crc;
+    }
+
+    private static void writeLe(byte[] buf, int offset, long value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            buf[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
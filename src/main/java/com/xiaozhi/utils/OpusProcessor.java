@@ -133,6 +133,34 @@ public class OpusProcessor {
         }
     }
 
+    /**
+     * Opus解码到调用方提供的缓冲区，不分配内存
+     *
+     * @param pcm 输出缓冲区，长度至少为一个包的最大样本数
+     * @return 解码出的样本数
+     */
+    public int opusToPcm(String sid, byte[] data, short[] pcm) throws OpusException {
+        return data == null ? 0 : opusToPcm(sid, data, 0, data.length, pcm);
+    }
+
+    /**
+     * 解码数组中指定范围的Opus包到调用方提供的缓冲区，输入可以是复用的接收缓冲区
+     */
+    public int opusToPcm(String sid, byte[] data, int offset, int length, short[] pcm) throws OpusException {
+        if (data == null || length == 0) {
+            return 0;
+        }
+
+        try {
+            OpusDecoder decoder = getDecoder(sid);
+            return decoder.decode(data, offset, length, pcm, 0, pcm.length, false);
+        } catch (OpusException e) {
+            logger.warn("解码失败: {}", e.getMessage());
+            resetDecoder(sid);
+            throw e;
+        }
+    }
+
     /**
      * 平滑连接多个PCM片段
      */
@@ -549,6 +577,7 @@ public class OpusProcessor {
         leftoverStates.remove(sid); // 清理残留数据状态
 
         // 清理编码器
+        encoders.remove(sid);
         List<String> toRemove = new ArrayList<>();
         for (String key : encoders.keySet()) {
             if (key.startsWith(sid + "_")) {
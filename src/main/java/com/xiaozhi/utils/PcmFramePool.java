@@ -0,0 +1,34 @@
+package com.xiaozhi.utils;
+
+/**
+ * 固定数量的PCM帧数组循环复用，用于把每帧音频交给识别线程而不为每帧分配新数组
+ * 交出去的数组在循环一圈后会被覆盖，消费方需要在此之前处理完；帧长变化时才重新分配该位置的数组。
+ * 非线程安全，由调用方加锁。
+ */
+public class PcmFramePool {
+
+    private final byte[][] frames;
+    private int next = 0;
+
+    public PcmFramePool(int size) {
+        this.frames = new byte[Math.max(1, size)][];
+    }
+
+    /**
+     * 复制数据到下一个缓冲数组并返回，数组长度正好为length
+     */
+    public byte[] copyOf(byte[] data, int length) {
+        byte[] frame = frames[next];
+        if (frame == null || frame.length != length) {
+            frame = new byte[length];
+            frames[next] = frame;
+        }
+        System.arraycopy(data, 0, frame, 0, length);
+        next = (next + 1) % frames.length;
+        return frame;
+    }
+
+    public int size() {
+        return frames.length;
+    }
+}
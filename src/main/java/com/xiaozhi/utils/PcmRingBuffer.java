@@ -0,0 +1,69 @@
+package com.xiaozhi.utils;
+
+/**
+ * 固定容量的PCM环形缓冲区，写满后覆盖最旧的数据
+ * 用于语音开始前的预缓冲，写入时不分配内存；容量和写入长度都应为偶数，保证按16位样本对齐。
+ * 非线程安全，由调用方加锁。
+ */
+public class PcmRingBuffer {
+
+    private final byte[] buffer;
+    private int start = 0;
+    private int size = 0;
+
+    public PcmRingBuffer(int capacity) {
+        this.buffer = new byte[Math.max(2, capacity & ~1)];
+    }
+
+    /**
+     * 写入数据，超出容量时丢弃最旧的数据
+     */
+    public void write(byte[] data, int offset, int length) {
+        int capacity = buffer.length;
+        if (length >= capacity) {
+            // 只保留最新的一段
+            System.arraycopy(data, offset + length - capacity, buffer, 0, capacity);
+            start = 0;
+            size = capacity;
+            return;
+        }
+        int end = (start + size) % capacity;
+        int first = Math.min(length, capacity - end);
+        System.arraycopy(data, offset, buffer, end, first);
+        if (first < length) {
+            System.arraycopy(data, offset + first, buffer, 0, length - first);
+        }
+        size += length;
+        if (size > capacity) {
+            start = (start + size - capacity) % capacity;
+            size = capacity;
+        }
+    }
+
+    /**
+     * 取出全部数据并清空
+     */
+    public byte[] drain() {
+        byte[] result = new byte[size];
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, result, 0, first);
+        if (first < size) {
+            System.arraycopy(buffer, 0, result, first, size - first);
+        }
+        clear();
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.xiaozhi.dialogue.llm;
+
+import java.util.List;
+
+/**
+ * 按大模型流式输出的粒度切好的回复样本，每个元素是一次onToken收到的内容
+ */
+final class RecordedStreams {
+
+    static final List<List<String>> CHINESE = List.of(
+            List.of("你好", "！", "今天", "北京", "的天气", "晴朗", "，", "最高", "气温", "二十", "六度", "，",
+                    "最低", "气温", "十五度", "。", "空气", "质量", "良好", "，", "适合", "出门", "散步", "哦", "～"),
+            List.of("好的", "，", "我", "已经", "帮你", "把", "客厅", "的灯", "打开", "了", "。", "还有", "什么",
+                    "需要", "我", "帮忙", "的吗", "？"),
+            List.of("这个", "问题", "可以", "分成", "三步", "：", "\n", "第一", "，", "先", "确认", "设备", "已经",
+                    "联网", "；", "\n", "第二", "，", "在", "管理", "后台", "绑定", "设备", "；", "\n", "第三", "，",
+                    "重启", "设备", "就", "可以", "了", "。"),
+            List.of("哈哈", "，", "你", "真", "会", "开玩笑", "😄", "我", "也", "很", "喜欢", "和你", "聊天",
+                    "(＾▽＾)", "下次", "再", "聊", "吧", "！"),
+            List.of("《", "静夜思", "》", "是", "李白", "的", "名作", "：", "“", "床前", "明月光", "，", "疑是",
+                    "地上霜", "。", "举头", "望明月", "，", "低头", "思故乡", "。", "”"));
+
+    /**
+     * 含英文标点的回复，新旧实现在这些位置有意不同（网址、小数、缩写不再断开）
+     */
+    static final List<List<String>> MIXED = List.of(
+            List.of("圆周率", "约", "等于", "3", ".", "14", "159", "，", "可以", "用", "Math", ".", "PI", "表示", "。"),
+            List.of("Sure", "!", " The", " meeting", " with", " Dr", ".", " Smith", " is", " at", " 3", ":",
+                    "30", " pm", ".", " See", " https", "://", "example", ".", "com", " for", " details", "."));
+
+    private RecordedStreams() {
+    }
+}
@@ -0,0 +1,95 @@
+package com.xiaozhi.dialogue.llm;
+
+import com.xiaozhi.utils.EmojiUtils;
+
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 引入SentenceSegmenter之前TokenStreamResponseListener的逐字符正则断句逻辑，原样保留作为对照基准
+ * 仅用于等价性测试和基准测试
+ */
+final class RegexSentenceSplitter {
+
+    private static final Pattern SENTENCE_END_PATTERN = Pattern.compile("[。！？!?]");
+    private static final Pattern PAUSE_PATTERN = Pattern.compile("[，、；,;]");
+    private static final Pattern SPECIAL_PATTERN = Pattern.compile("[：:\"]");
+    private static final Pattern NEWLINE_PATTERN = Pattern.compile("[\n\r]");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+\\.\\d+");
+
+    private final int minLength;
+    private final StringBuilder currentSentence = new StringBuilder();
+    private final StringBuilder contextBuffer = new StringBuilder();
+
+    RegexSentenceSplitter(int minLength) {
+        this.minLength = minLength;
+    }
+
+    void append(String token, Consumer<String> sink) {
+        for (int i = 0; i < token.length();) {
+            int codePoint = token.codePointAt(i);
+            String charStr = new String(Character.toChars(codePoint));
+
+            contextBuffer.append(charStr);
+            if (contextBuffer.length() > 20) {
+                contextBuffer.delete(0, contextBuffer.length() - 20);
+            }
+            currentSentence.append(charStr);
+
+            boolean shouldSendSentence = false;
+            boolean isEndMark = SENTENCE_END_PATTERN.matcher(charStr).find();
+            boolean isPauseMark = PAUSE_PATTERN.matcher(charStr).find();
+            boolean isSpecialMark = SPECIAL_PATTERN.matcher(charStr).find();
+            boolean isNewline = NEWLINE_PATTERN.matcher(charStr).find();
+            boolean isEmoji = EmojiUtils.isEmoji(codePoint);
+
+            boolean containsKaomoji = false;
+            if (currentSentence.length() >= 3) {
+                containsKaomoji = EmojiUtils.containsKaomoji(currentSentence.toString());
+            }
+
+            if (isEndMark && charStr.equals(".")) {
+                String context = contextBuffer.toString();
+                Matcher numberMatcher = NUMBER_PATTERN.matcher(context);
+                if (numberMatcher.find() && numberMatcher.end() >= context.length() - 3) {
+                    isEndMark = false;
+                }
+            }
+
+            if (isEndMark) {
+                shouldSendSentence = true;
+            } else if (isNewline) {
+                shouldSendSentence = true;
+            } else if ((isPauseMark || isSpecialMark || isEmoji || containsKaomoji)
+                    && currentSentence.length() >= minLength) {
+                shouldSendSentence = true;
+            }
+
+            if (shouldSendSentence && currentSentence.length() >= minLength) {
+                String sentence = EmojiUtils.filterKaomoji(currentSentence.toString().trim());
+                if (containsSubstantialContent(sentence)) {
+                    sink.accept(sentence);
+                    currentSentence.setLength(0);
+                }
+            }
+
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    String flush() {
+        String rest = currentSentence.toString().trim();
+        currentSentence.setLength(0);
+        contextBuffer.setLength(0);
+        return rest;
+    }
+
+    private boolean containsSubstantialContent(String text) {
+        if (text == null || text.trim().length() < minLength) {
+            return false;
+        }
+        String stripped = text.replaceAll("[\\p{P}\\s]", "");
+        return stripped.length() >= 2;
+    }
+}
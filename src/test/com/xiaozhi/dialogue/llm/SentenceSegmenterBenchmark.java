@@ -0,0 +1,60 @@
+package com.xiaozhi.dialogue.llm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式断句基准：用RecordedStreams中的回复样本对比SentenceSegmenter与原正则断句
+ * 运行：mvn test-compile 后以测试classpath执行 org.openjdk.jmh.Main SentenceSegmenterBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SentenceSegmenterBenchmark {
+
+    private static final int MIN_LENGTH = 5;
+
+    private final List<List<String>> streams = new ArrayList<>();
+
+    public SentenceSegmenterBenchmark() {
+        streams.addAll(RecordedStreams.CHINESE);
+        streams.addAll(RecordedStreams.MIXED);
+    }
+
+    @Benchmark
+    public void segmenter(Blackhole blackhole) {
+        for (List<String> tokens : streams) {
+            SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+            for (String token : tokens) {
+                segmenter.append(token, blackhole::consume);
+            }
+            blackhole.consume(segmenter.flush());
+        }
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (List<String> tokens : streams) {
+            RegexSentenceSplitter splitter = new RegexSentenceSplitter(MIN_LENGTH);
+            for (String token : tokens) {
+                splitter.append(token, blackhole::consume);
+            }
+            blackhole.consume(splitter.flush());
+        }
+    }
+}
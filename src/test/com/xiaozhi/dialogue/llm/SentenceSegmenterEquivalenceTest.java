@@ -0,0 +1,74 @@
+package com.xiaozhi.dialogue.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SentenceSegmenter与原正则断句逻辑（RegexSentenceSplitter）的等价性
+ * 英文标点 .,;:!? 的处理是有意修改的（网址、小数、缩写不再断开），随机流中不包含这些字符，单独用样本说明差异
+ */
+class SentenceSegmenterEquivalenceTest {
+
+    private static final int MIN_LENGTH = 5;
+
+    // 中文标点、换行、引号、emoji和颜文字常用字符
+    private static final int[] ALPHABET = "你好世界天气今日abcDo=-_*\\¯()（）<>＜＞。！？，、； \n\"：😀☀12\\o/"
+            .codePoints().toArray();
+
+    private static List<String> segmenter(List<String> tokens) {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        tokens.forEach(token -> segmenter.append(token, sentences::add));
+        sentences.add(segmenter.flush());
+        return sentences;
+    }
+
+    private static List<String> regex(List<String> tokens) {
+        RegexSentenceSplitter splitter = new RegexSentenceSplitter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        tokens.forEach(token -> splitter.append(token, sentences::add));
+        sentences.add(splitter.flush());
+        return sentences;
+    }
+
+    @Test
+    void recordedChineseStreamsMatchRegexSplitter() {
+        for (List<String> tokens : RecordedStreams.CHINESE) {
+            assertEquals(regex(tokens), segmenter(tokens), String.join("", tokens));
+        }
+    }
+
+    @Test
+    void randomStreamsMatchRegexSplitter() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 20000; iteration++) {
+            List<String> tokens = new ArrayList<>();
+            int tokenCount = random.nextInt(12);
+            for (int i = 0; i < tokenCount; i++) {
+                StringBuilder token = new StringBuilder();
+                int length = 1 + random.nextInt(5);
+                for (int j = 0; j < length; j++) {
+                    token.appendCodePoint(ALPHABET[random.nextInt(ALPHABET.length)]);
+                }
+                tokens.add(token.toString());
+            }
+            assertEquals(regex(tokens), segmenter(tokens), tokens.toString());
+        }
+    }
+
+    @Test
+    void asciiPunctuationIntentionallyDiffers() {
+        List<String> tokens = RecordedStreams.MIXED.get(1);
+        List<String> sentences = segmenter(tokens);
+        assertNotEquals(regex(tokens), sentences);
+        assertTrue(sentences.stream().anyMatch(s -> s.contains("Dr. Smith") && s.contains("3:30")), sentences.toString());
+        assertTrue(sentences.stream().anyMatch(s -> s.contains("https://example.com")), sentences.toString());
+    }
+}
@@ -0,0 +1,202 @@
+package com.xiaozhi.dialogue.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SentenceSegmenterTest {
+
+    private static final int MIN_LENGTH = 5;
+
+    /**
+     * 逐字符喂入，模拟流式token，最后把flush的剩余内容也加入结果
+     */
+    private static List<String> segment(String text) {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        text.codePoints().forEach(c -> segmenter.append(new String(Character.toChars(c)), sentences::add));
+        String rest = segmenter.flush();
+        if (!rest.isEmpty()) {
+            sentences.add(rest);
+        }
+        return sentences;
+    }
+
+    @Test
+    void splitsOnChinesePunctuation() {
+        assertEquals(List.of("你好，今天天气很好。", "我们出去玩吧！", "好不好？"),
+                segment("你好，今天天气很好。我们出去玩吧！好不好？"));
+    }
+
+    @Test
+    void shortPauseIsMergedIntoNextSentence() {
+        // "好的，"不足最小长度，和后面的内容合成一句
+        assertEquals(List.of("好的，我知道了。"), segment("好的，我知道了。"));
+    }
+
+    @Test
+    void splitsOnAsciiPunctuationFollowedBySpace() {
+        assertEquals(List.of("Hello world!", "How are you?", "This is fine."),
+                segment("Hello world! How are you? This is fine."));
+    }
+
+    @Test
+    void asciiPunctuationBeforeChineseSplits() {
+        assertEquals(List.of("今天天气很好!", "我们出去玩吧。"), segment("今天天气很好!我们出去玩吧。"));
+    }
+
+    @Test
+    void decimalsAndVersionsAreNotSplit() {
+        assertEquals(List.of("圆周率约等于3.14，", "请升级到版本1.2.3之后再试。"),
+                segment("圆周率约等于3.14，请升级到版本1.2.3之后再试。"));
+    }
+
+    @Test
+    void urlsAndDomainsAreNotSplit() {
+        assertEquals(List.of("详情请访问https://www.example.com/docs/index.html 或者发邮件到help@example.com。"),
+                segment("详情请访问https://www.example.com/docs/index.html 或者发邮件到help@example.com。"));
+    }
+
+    @Test
+    void domainAtSentenceEndSplits() {
+        assertEquals(List.of("Visit example.com.", "Then sign in."), segment("Visit example.com. Then sign in."));
+    }
+
+    @Test
+    void timesAndThousandsAreNotSplit() {
+        assertEquals(List.of("会议在10:30开始，", "大约有1,000人参加。"), segment("会议在10:30开始，大约有1,000人参加。"));
+    }
+
+    @Test
+    void abbreviationsAreNotSplit() {
+        assertEquals(List.of("Ask Mr. Smith about it,", "e.g. tomorrow at noon."),
+                segment("Ask Mr. Smith about it, e.g. tomorrow at noon."));
+        assertEquals(List.of("He moved to the U.S. last year."), segment("He moved to the U.S. last year."));
+    }
+
+    @Test
+    void kaomojiIsRemovedAndEndsSentence() {
+        List<String> sentences = segment("今天真开心(^_^)我们走吧。");
+        assertEquals(List.of("今天真开心", "我们走吧。"), sentences);
+    }
+
+    @Test
+    void parenthesesWithLongTextAreNotKaomoji() {
+        assertEquals(List.of("这是一个例子（这里是比较长的补充说明内容）。"), segment("这是一个例子（这里是比较长的补充说明内容）。"));
+    }
+
+    @Test
+    void newlineEndsSentence() {
+        assertEquals(List.of("第一行的内容", "第二行的内容"), segment("第一行的内容\n第二行的内容"));
+    }
+
+    @Test
+    void splitPrefixCutsAfterSentenceFinalParticle() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("今天天气真好啊", sentences::add);
+        assertTrue(sentences.isEmpty());
+
+        assertTrue(segmenter.splitPrefix(sentences::add));
+        assertEquals(List.of("今天天气真好啊"), sentences);
+        assertEquals(0, segmenter.length());
+    }
+
+    @Test
+    void splitPrefixKeepsRestInBuffer() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("我已经帮你打开了灯光现在很亮", sentences::add);
+
+        // 切在最后一个语气词之后
+        assertTrue(segmenter.splitPrefix(sentences::add));
+        assertEquals(List.of("我已经帮你打开了"), sentences);
+        assertEquals(6, segmenter.length());
+        segmenter.append("。", sentences::add);
+        assertEquals(List.of("我已经帮你打开了", "灯光现在很亮。"), sentences);
+    }
+
+    @Test
+    void splitPrefixDoesNotCutAfterStructuralParticles() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        // 的、地、得、着、过之后是修饰的中心语，切开会把一个短语拆到两段合成
+        segmenter.append("那是一朵美丽的花她慢慢地走着看过", sentences::add);
+
+        assertFalse(segmenter.splitPrefix(sentences::add));
+        assertTrue(sentences.isEmpty());
+    }
+
+    @Test
+    void splitPrefixPrefersFinalParticleOverEarlierModifier() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("那我们就出发吧去看美丽的花", sentences::add);
+
+        assertTrue(segmenter.splitPrefix(sentences::add));
+        assertEquals(List.of("那我们就出发吧"), sentences);
+        assertEquals(6, segmenter.length());
+    }
+
+    @Test
+    void splitPrefixCutsAtWhitespace() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("The answer to your question is", sentences::add);
+
+        assertTrue(segmenter.splitPrefix(sentences::add));
+        assertEquals(List.of("The answer to your question"), sentences);
+        assertEquals(2, segmenter.length());
+    }
+
+    @Test
+    void splitPrefixSkipsClosedParentheses() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        // 括号内超过十个字符，不是颜文字
+        segmenter.append("看看这个吧例子（这里面的字数超过了十个字符）", sentences::add);
+        assertTrue(sentences.isEmpty());
+
+        assertTrue(segmenter.splitPrefix(sentences::add));
+        assertEquals(List.of("看看这个吧"), sentences);
+    }
+
+    @Test
+    void splitPrefixDoesNothingWithoutSafePosition() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("天气晴朗温度适宜", sentences::add);
+
+        assertFalse(segmenter.splitPrefix(sentences::add));
+        assertTrue(sentences.isEmpty());
+        assertEquals(8, segmenter.length());
+    }
+
+    @Test
+    void splitPrefixWaitsForOpenBracketAndPendingPunctuation() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        List<String> sentences = new ArrayList<>();
+        segmenter.append("我觉得这个问题的答案是(", sentences::add);
+        assertFalse(segmenter.splitPrefix(sentences::add));
+
+        segmenter = new SentenceSegmenter(MIN_LENGTH);
+        segmenter.append("我觉得这个问题的答案是3.", sentences::add);
+        assertFalse(segmenter.splitPrefix(sentences::add));
+        assertTrue(sentences.isEmpty());
+    }
+
+    @Test
+    void flushReturnsTrimmedRestAndResets() {
+        SentenceSegmenter segmenter = new SentenceSegmenter(MIN_LENGTH);
+        segmenter.append("  再见 ", s -> {
+        });
+        assertEquals("再见", segmenter.flush());
+        assertEquals(0, segmenter.length());
+        assertEquals("", segmenter.flush());
+    }
+}
@@ -0,0 +1,135 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.dialogue.service.DialogueService.Sentence;
+import com.xiaozhi.dialogue.tts.TtsResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SentenceQueueTest {
+
+    private static Sentence sentence(int seq) {
+        return new Sentence(seq, "句子" + seq, seq == 1, false);
+    }
+
+    private static Sentence ready(int seq) {
+        Sentence sentence = sentence(seq);
+        sentence.setAudio(TtsResult.empty());
+        return sentence;
+    }
+
+    @Test
+    void playsInSequenceOrderWhenAudioIsReadyOutOfOrder() {
+        SentenceQueue queue = new SentenceQueue();
+        Sentence first = sentence(1);
+        Sentence second = sentence(2);
+        queue.add(first);
+        queue.add(second);
+
+        // 第二句先合成完成，仍要等第一句
+        second.setAudio(TtsResult.empty());
+        assertNull(queue.takeNext());
+        assertSame(first, queue.waitingHead());
+
+        first.setAudio(TtsResult.empty());
+        assertSame(first, queue.takeNext());
+        // 第一句播放中，不取下一句
+        assertNull(queue.takeNext());
+        assertNull(queue.waitingHead());
+
+        queue.playbackDone(first);
+        assertSame(second, queue.takeNext());
+        queue.playbackDone(second);
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.isPlaying());
+    }
+
+    @Test
+    void skipsMissingSequenceNumbers() {
+        SentenceQueue queue = new SentenceQueue();
+        Sentence first = ready(1);
+        Sentence third = ready(3);
+        queue.add(first);
+        queue.add(third);
+
+        assertSame(first, queue.takeNext());
+        queue.playbackDone(first);
+        assertSame(third, queue.takeNext());
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        SentenceQueue queue = new SentenceQueue();
+        Sentence[] sentences = new Sentence[40];
+        // 倒序放入，后面的序号先到达
+        for (int i = sentences.length; i >= 1; i--) {
+            sentences[i - 1] = ready(i);
+        }
+        queue.add(sentences[0]);
+        for (int i = sentences.length - 1; i >= 1; i--) {
+            queue.add(sentences[i]);
+        }
+        for (Sentence expected : sentences) {
+            Sentence next = queue.takeNext();
+            assertSame(expected, next);
+            queue.playbackDone(next);
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void ignoresSentencesOlderThanTheHead() {
+        SentenceQueue queue = new SentenceQueue();
+        queue.add(ready(5));
+        queue.add(ready(4));
+
+        Sentence next = queue.takeNext();
+        queue.playbackDone(next);
+        assertNull(queue.takeNext());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void clearResetsStartingSequence() {
+        SentenceQueue queue = new SentenceQueue();
+        queue.add(ready(7));
+        Sentence playing = queue.takeNext();
+        queue.clear();
+
+        Sentence next = ready(1);
+        queue.add(next);
+        // 清空前开始播放的句子结束不影响新一轮
+        queue.playbackDone(playing);
+        assertSame(next, queue.takeNext());
+    }
+
+    @Test
+    void awaitReadyCompletesWhenAudioArrives() throws Exception {
+        Sentence sentence = sentence(1);
+        CompletableFuture<Sentence> ready = sentence.awaitReady(5000);
+        // 同一句只等待一次
+        assertNull(sentence.awaitReady(5000));
+
+        sentence.setAudio(TtsResult.empty());
+        assertSame(sentence, ready.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void awaitReadyTimesOutWithoutMarkingTheSentence() {
+        Sentence sentence = sentence(1);
+        CompletableFuture<Sentence> ready = sentence.awaitReady(10);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> ready.get(1, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof TimeoutException);
+        assertFalse(sentence.isReady());
+    }
+}
@@ -0,0 +1,141 @@
+package com.xiaozhi.dialogue.service;
+
+import com.xiaozhi.communication.common.PipelineContext;
+import com.xiaozhi.dialogue.service.VadService.VadResult;
+import com.xiaozhi.dialogue.service.VadService.VadStatus;
+import com.xiaozhi.dialogue.vad.impl.SileroInferenceSession;
+import com.xiaozhi.dialogue.vad.impl.SileroVadModel;
+import com.xiaozhi.utils.AudioUtils;
+import com.xiaozhi.utils.OpusProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 说话过程中每帧processAudio的堆分配量
+ * 模型推理固定返回语音概率，只加载模型用于创建推理上下文；concentus解码器内部每帧会分配，
+ * 这里用固定的PCM代替解码，测的是VadService自身的分配
+ */
+class VadServiceAllocationTest {
+
+    private static final String SESSION_ID = "vad-allocation-test";
+    private static final int WARMUP_FRAMES = 1000;
+    private static final int MEASURED_FRAMES = 500;
+    // 改动前每帧复制一份1920字节的PCM并新建结果对象
+    private static final long MAX_BYTES_PER_FRAME = 256;
+
+    private VadService vadService;
+    private SileroVadModel vadModel;
+    private OpusProcessor opusProcessor;
+    private final byte[] opusFrame = new byte[120];
+
+    /**
+     * 不做真实推理，始终判定为语音
+     */
+    private static class AlwaysSpeechModel extends SileroVadModel {
+        @Override
+        public float infer(SileroInferenceSession ctx, float[] samples, int offset, int length) {
+            return 0.95f;
+        }
+    }
+
+    /**
+     * 每个包都解码为同一帧60ms的响亮方波
+     */
+    private static class FixedPcmOpusProcessor extends OpusProcessor {
+        private final short[] frame = new short[AudioUtils.FRAME_SIZE];
+
+        FixedPcmOpusProcessor() {
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = (short) ((i / 20) % 2 == 0 ? 12000 : -12000);
+            }
+        }
+
+        @Override
+        public int opusToPcm(String sid, byte[] data, int offset, int length, short[] pcm) {
+            System.arraycopy(frame, 0, pcm, 0, frame.length);
+            return frame.length;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        vadModel = new AlwaysSpeechModel();
+        ReflectionTestUtils.setField(vadModel, "modelPath", "models/silero_vad.onnx");
+        ReflectionTestUtils.setField(vadModel, "meterRegistry", new SimpleMeterRegistry());
+        vadModel.initialize();
+
+        opusProcessor = new FixedPcmOpusProcessor();
+        vadService = new VadService();
+        ReflectionTestUtils.setField(vadService, "opusProcessor", opusProcessor);
+        ReflectionTestUtils.setField(vadService, "vadModel", vadModel);
+        ReflectionTestUtils.setField(vadService, "preBufferMs", 500);
+        ReflectionTestUtils.setField(vadService, "tailKeepMs", 300);
+        ReflectionTestUtils.setField(vadService, "pauseMs", 240);
+        ReflectionTestUtils.setField(vadService, "sttFramePoolSize", 64);
+        ReflectionTestUtils.setField(vadService, "audioEnhancementEnabled", true);
+        vadService.initSession(SESSION_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vadService.cleanup();
+        opusProcessor.cleanup(SESSION_ID);
+        vadModel.close();
+    }
+
+    private VadResult process() {
+        return vadService.processAudio(SESSION_ID, PipelineContext.UNBOUND, opusFrame, 0, opusFrame.length);
+    }
+
+    @Test
+    void speechFramesReuseResultAndBuffers() {
+        VadResult start = process();
+        assertEquals(VadStatus.SPEECH_START, start.getStatus());
+
+        VadResult first = process();
+        byte[] firstData = first.getProcessedData();
+        VadResult second = process();
+        assertSame(first, second);
+        assertEquals(VadStatus.SPEECH_CONTINUE, second.getStatus());
+        // 一圈之内交给识别的帧互不覆盖
+        assertNotSame(firstData, second.getProcessedData());
+        assertEquals(AudioUtils.FRAME_SIZE * 2, second.getProcessedData().length);
+    }
+
+    @Test
+    void speechFramesAllocateLittlePerFrame() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        // 先说一段长句让句子缓冲区扩容到位，重新初始化会话后容量保留
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            process();
+        }
+        vadService.initSession(SESSION_ID);
+        // 语音开始时取出预缓冲，每句一次
+        assertEquals(VadStatus.SPEECH_START, process().getStatus());
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        int active = 0;
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            if (process().isSpeechActive()) {
+                active++;
+            }
+        }
+        long perFrame = (threadBean.getThreadAllocatedBytes(threadId) - before) / MEASURED_FRAMES;
+
+        assertEquals(MEASURED_FRAMES, active);
+        assertTrue(perFrame <= MAX_BYTES_PER_FRAME, "每帧分配" + perFrame + "字节");
+    }
+}
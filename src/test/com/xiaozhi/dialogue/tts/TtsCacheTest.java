@@ -0,0 +1,178 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.entity.SysConfig;
+import com.xiaozhi.utils.OpusProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TtsCacheTest {
+
+    private TtsCache cache;
+    private PassThroughOpusProcessor opusProcessor;
+
+    /**
+     * 不做真实编码，整段PCM作为一帧，便于按字节数验证淘汰
+     */
+    private static class PassThroughOpusProcessor extends OpusProcessor {
+        final AtomicInteger encodeCount = new AtomicInteger();
+
+        @Override
+        public List<byte[]> pcmToOpus(String sid, byte[] pcm, boolean isStream) {
+            encodeCount.incrementAndGet();
+            return List.of(pcm.clone());
+        }
+
+        @Override
+        public void cleanup(String sid) {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        cache = new TtsCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxTextLength", 32);
+        ReflectionTestUtils.setField(cache, "memoryMaxBytes", 100L);
+        ReflectionTestUtils.setField(cache, "diskEnabled", false);
+        opusProcessor = new PassThroughOpusProcessor();
+        ReflectionTestUtils.setField(cache, "opusProcessor", opusProcessor);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+    }
+
+    private static SysConfig config(int configId) {
+        SysConfig config = new SysConfig();
+        config.setConfigId(configId);
+        return config;
+    }
+
+    private String key(int configId, String text) {
+        return cache.createKey(config(configId), "edge", "voice", 1.0f, 1.0f, text);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryByBytes() {
+        String a = key(1, "你好");
+        String b = key(1, "再见");
+        String c = key(1, "好的");
+        cache.put(a, new byte[40]);
+        cache.put(b, new byte[40]);
+        // 访问a后b成为最久未使用
+        assertNotNull(cache.get(a));
+
+        cache.put(c, new byte[40]);
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertEquals(80, cache.getMemoryBytes());
+    }
+
+    @Test
+    void replacingEntryUpdatesBytes() {
+        String a = key(1, "你好");
+        cache.put(a, new byte[40]);
+        cache.put(a, new byte[10]);
+        assertEquals(10, cache.getMemoryBytes());
+        assertEquals(10, cache.get(a).get(0).length);
+    }
+
+    @Test
+    void entryLargerThanCapacityIsReturnedButNotCached() {
+        String a = key(1, "你好");
+        String large = key(1, "很长的一句话");
+        cache.put(a, new byte[40]);
+
+        List<byte[]> frames = cache.put(large, new byte[200]);
+        assertNotNull(frames);
+        assertNull(cache.get(large));
+        // 不会为了放不下的条目淘汰已有条目
+        assertNotNull(cache.get(a));
+        assertEquals(40, cache.getMemoryBytes());
+    }
+
+    @Test
+    void removeCacheDropsOnlyThatConfig() {
+        String first = key(1, "你好");
+        String second = key(2, "你好");
+        cache.put(first, new byte[30]);
+        cache.put(second, new byte[30]);
+
+        cache.removeCache(config(1));
+        assertNull(cache.get(first));
+        assertNotNull(cache.get(second));
+        assertEquals(30, cache.getMemoryBytes());
+    }
+
+    @Test
+    void keyNormalizesTextAndSkipsLongText() {
+        assertEquals(key(1, "你好 世界"), key(1, "  你好\t\n世界 "));
+        // 全角字符按NFKC归一化
+        assertEquals(key(1, "OK!"), key(1, "ＯＫ！"));
+        assertNotNull(key(1, "长".repeat(32)));
+        assertNull(key(1, "长".repeat(33)));
+        assertNull(key(1, "   "));
+    }
+
+    @Test
+    void hitRatioCountsHitsAndMisses() {
+        String a = key(1, "你好");
+        cache.put(a, new byte[10]);
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(key(1, "再见")));
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    @Test
+    void putEncodedFramesSkipsEncoding() {
+        String a = key(1, "你好");
+        List<byte[]> frames = List.of(new byte[10], new byte[20]);
+        assertEquals(2, cache.put(a, frames).size());
+        assertEquals(0, opusProcessor.encodeCount.get());
+        assertEquals(30, cache.getMemoryBytes());
+        assertEquals(20, cache.get(a).get(1).length);
+    }
+
+    @Test
+    void diskEvictsLeastRecentlyUsedFilesByBytes() throws Exception {
+        Path dir = Files.createTempDirectory("tts-cache");
+        try {
+            ReflectionTestUtils.setField(cache, "diskEnabled", true);
+            ReflectionTestUtils.setField(cache, "diskPath", dir.toString());
+            // 每个文件为8字节文件头加2字节长度加40字节数据
+            ReflectionTestUtils.setField(cache, "diskMaxBytes", 110L);
+            String a = key(1, "你好");
+            String b = key(1, "再见");
+            String c = key(1, "好的");
+            ReflectionTestUtils.invokeMethod(cache, "writeDisk", a, List.of(new byte[40]));
+            ReflectionTestUtils.invokeMethod(cache, "writeDisk", b, List.of(new byte[40]));
+            Path fileA = ReflectionTestUtils.invokeMethod(cache, "diskFile", a);
+            Path fileB = ReflectionTestUtils.invokeMethod(cache, "diskFile", b);
+            Files.setLastModifiedTime(fileA, FileTime.fromMillis(1_000));
+            Files.setLastModifiedTime(fileB, FileTime.fromMillis(2_000));
+            // 读取a刷新修改时间，b成为最久未使用
+            assertNotNull(ReflectionTestUtils.invokeMethod(cache, "readDisk", a));
+
+            ReflectionTestUtils.invokeMethod(cache, "writeDisk", c, List.of(new byte[40]));
+            assertTrue(Files.exists(fileA));
+            assertFalse(Files.exists(fileB));
+            assertTrue(Files.exists((Path) ReflectionTestUtils.invokeMethod(cache, "diskFile", c)));
+        } finally {
+            FileSystemUtils.deleteRecursively(dir);
+        }
+    }
+}
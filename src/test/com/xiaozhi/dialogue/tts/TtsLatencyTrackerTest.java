@@ -0,0 +1,102 @@
+package com.xiaozhi.dialogue.tts;
+
+import com.xiaozhi.entity.SysConfig;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class TtsLatencyTrackerTest {
+
+    private static final long REQUEST_TIME = 1_000_000L;
+
+    private SimpleMeterRegistry registry;
+    private TtsLatencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        tracker = new TtsLatencyTracker();
+        ReflectionTestUtils.setField(tracker, "firstChunkEnabled", true);
+        ReflectionTestUtils.setField(tracker, "targetTtfaMs", 1500L);
+        ReflectionTestUtils.setField(tracker, "minWaitMs", 300L);
+        ReflectionTestUtils.setField(tracker, "maxChars", 20);
+        ReflectionTestUtils.setField(tracker, "defaultLatencyMs", 800L);
+        ReflectionTestUtils.setField(tracker, "meterRegistry", registry);
+    }
+
+    @Test
+    void providerWithoutSamplesUsesDefaultLatency() {
+        assertEquals(800, tracker.expectedLatencyMs("edge"));
+        // 1500 - 800
+        assertEquals(REQUEST_TIME + 700, tracker.firstChunkDeadline("edge", REQUEST_TIME));
+    }
+
+    @Test
+    void deadlineShrinksAsProviderGetsSlower() {
+        tracker.record("aliyun", 1000);
+        assertEquals(REQUEST_TIME + 500, tracker.firstChunkDeadline("aliyun", REQUEST_TIME));
+        // 其他服务商不受影响
+        assertEquals(REQUEST_TIME + 700, tracker.firstChunkDeadline("edge", REQUEST_TIME));
+    }
+
+    @Test
+    void deadlineNeverFallsBelowMinimumWait() {
+        tracker.record("slow", 3000);
+        assertEquals(REQUEST_TIME + 300, tracker.firstChunkDeadline("slow", REQUEST_TIME));
+    }
+
+    @Test
+    void expectedLatencyIsExponentialMovingAverage() {
+        tracker.record("edge", 1000);
+        assertEquals(1000, tracker.expectedLatencyMs("edge"));
+        // 1000 + 0.2 * (2000 - 1000)
+        tracker.record("edge", 2000);
+        assertEquals(1200, tracker.expectedLatencyMs("edge"));
+        // 1200 + 0.2 * (200 - 1200)
+        tracker.record("edge", 200);
+        assertEquals(1000, tracker.expectedLatencyMs("edge"));
+    }
+
+    @Test
+    void negativeLatencyIsIgnored() {
+        tracker.record("edge", -1);
+        assertEquals(800, tracker.expectedLatencyMs("edge"));
+    }
+
+    @Test
+    void disabledFirstChunkNeverSplits() {
+        ReflectionTestUtils.setField(tracker, "firstChunkEnabled", false);
+        assertEquals(Long.MAX_VALUE, tracker.firstChunkDeadline("edge", REQUEST_TIME));
+        assertEquals(Integer.MAX_VALUE, tracker.firstChunkMaxChars());
+    }
+
+    @Test
+    void firstChunkMaxCharsUsesConfiguredValue() {
+        assertEquals(20, tracker.firstChunkMaxChars());
+    }
+
+    @Test
+    void providerOfFallsBackToDefault() {
+        assertEquals(TtsLatencyTracker.DEFAULT_PROVIDER, TtsLatencyTracker.providerOf(null));
+        assertEquals(TtsLatencyTracker.DEFAULT_PROVIDER, TtsLatencyTracker.providerOf(new SysConfig()));
+        assertEquals("aliyun", TtsLatencyTracker.providerOf(new SysConfig().setProvider("aliyun")));
+    }
+
+    @Test
+    void recordsLatencyAndSplitMetrics() {
+        tracker.record("edge", 500);
+        tracker.record("edge", 700);
+        tracker.recordFirstChunkSplit("edge");
+
+        Timer timer = registry.find("xiaozhi.tts.latency").tag("provider", "edge").timer();
+        assertNotNull(timer);
+        assertEquals(2, timer.count());
+        assertEquals(540.0, registry.get("xiaozhi.tts.latency.expected").tag("provider", "edge").gauge().value());
+        assertEquals(1.0, registry.get("xiaozhi.tts.first.chunk.split").tag("provider", "edge").counter().count());
+    }
+}
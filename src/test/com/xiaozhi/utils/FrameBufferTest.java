@@ -0,0 +1,115 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameBufferTest {
+
+    private static byte[] frame(int length, int seed) {
+        byte[] frame = new byte[length];
+        for (int i = 0; i < length; i++) {
+            frame[i] = (byte) (seed * 31 + i);
+        }
+        return frame;
+    }
+
+    @Test
+    void keepsFrameBoundariesWhenGrowing() {
+        // 初始容量很小，追加过程中数据和帧边界数组都要扩容
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        byte[][] frames = new byte[50][];
+        int total = 0;
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(1 + i * 7 % 40, i);
+            buffer.add(frames[i], 0, frames[i].length);
+            total += frames[i].length;
+        }
+
+        assertEquals(frames.length, buffer.frameCount());
+        assertEquals(total, buffer.size());
+        List<byte[]> copied = buffer.toFrameList();
+        for (int i = 0; i < frames.length; i++) {
+            assertArrayEquals(frames[i], copied.get(i));
+        }
+    }
+
+    @Test
+    void addsOnlyTheGivenRange() {
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        byte[] source = {1, 2, 3, 4, 5, 6};
+        buffer.add(source, 2, 3);
+
+        assertArrayEquals(new byte[]{3, 4, 5}, buffer.toByteArray());
+    }
+
+    @Test
+    void ignoresEmptyFrames() {
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        buffer.add(null, 0, 10);
+        buffer.add(new byte[4], 0, 0);
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void removeLastDropsTrailingFrames() {
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        buffer.add(frame(3, 1), 0, 3);
+        buffer.add(frame(5, 2), 0, 5);
+        buffer.add(frame(7, 3), 0, 7);
+
+        buffer.removeLast(2);
+        assertEquals(1, buffer.frameCount());
+        assertEquals(3, buffer.size());
+        assertArrayEquals(frame(3, 1), buffer.toByteArray());
+
+        // 超过帧数时清空
+        buffer.removeLast(5);
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void retainLastKeepsTrailingFrames() {
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        buffer.add(frame(3, 1), 0, 3);
+        buffer.add(frame(5, 2), 0, 5);
+        buffer.add(frame(7, 3), 0, 7);
+
+        buffer.retainLast(2);
+        List<byte[]> frames = buffer.toFrameList();
+        assertEquals(2, frames.size());
+        assertArrayEquals(frame(5, 2), frames.get(0));
+        assertArrayEquals(frame(7, 3), frames.get(1));
+        assertEquals(12, buffer.size());
+
+        // 保留后继续追加
+        buffer.add(frame(2, 4), 0, 2);
+        assertEquals(3, buffer.frameCount());
+        assertArrayEquals(frame(2, 4), buffer.toFrameList().get(2));
+
+        // 超过帧数时不变，0时清空
+        buffer.retainLast(10);
+        assertEquals(3, buffer.frameCount());
+        buffer.retainLast(0);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void clearReusesCapacity() {
+        FrameBuffer buffer = new FrameBuffer(16, 4);
+        buffer.add(frame(100, 1), 0, 100);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+
+        buffer.add(frame(10, 2), 0, 10);
+        assertEquals(1, buffer.frameCount());
+        assertArrayEquals(frame(10, 2), buffer.toFrameList().get(0));
+    }
+}
@@ -0,0 +1,243 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OggOpusWriterTest {
+
+    // SILK 60ms，单帧
+    private static final byte TOC_SILK_60MS = (byte) (3 << 3);
+    // CELT 2.5ms，单帧
+    private static final byte TOC_CELT_2_5MS = (byte) (16 << 3);
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("ogg-opus-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private record Page(int headerType, long granule, int serial, int seq, int[] segments, byte[] body) {
+    }
+
+    private static byte[] packet(byte toc, int length) {
+        byte[] packet = new byte[length];
+        Arrays.fill(packet, (byte) 0x5A);
+        packet[0] = toc;
+        return packet;
+    }
+
+    private static List<Page> parse(Path path) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        List<Page> pages = new ArrayList<>();
+        int pos = 0;
+        while (pos < data.length) {
+            assertEquals("OggS", new String(data, pos, 4, StandardCharsets.US_ASCII));
+            assertEquals(0, data[pos + 4]);
+            int segmentCount = data[pos + 26] & 0xFF;
+            int[] segments = new int[segmentCount];
+            int bodyLength = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = data[pos + 27 + i] & 0xFF;
+                bodyLength += segments[i];
+            }
+            int pageLength = 27 + segmentCount + bodyLength;
+            byte[] page = Arrays.copyOfRange(data, pos, pos + pageLength);
+            int crc = (int) readLe(page, 22, 4);
+            Arrays.fill(page, 22, 26, (byte) 0);
+            assertEquals(crc, crc(page), "CRC不匹配");
+            pages.add(new Page(data[pos + 5], readLe(data, pos + 6, 8), (int) readLe(data, pos + 14, 4),
+                    (int) readLe(data, pos + 18, 4), segments,
+                    Arrays.copyOfRange(data, pos + 27 + segmentCount, pos + pageLength)));
+            pos += pageLength;
+        }
+        return pages;
+    }
+
+    private static long readLe(byte[] data, int offset, int bytes) {
+        long value = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    // Ogg CRC-32：多项式0x04C11DB7，初值0，不反转
+    private static int crc(byte[] data) {
+        int crc = 0;
+        for (byte b : data) {
+            crc ^= (b & 0xFF) << 24;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+            }
+        }
+        return crc;
+    }
+
+    @Test
+    void writesHeadersAndSingleAudioPage() throws IOException {
+        Path path = dir.resolve("audio.opus");
+        List<byte[]> frames = List.of(packet(TOC_SILK_60MS, 100), packet(TOC_SILK_60MS, 80), packet(TOC_SILK_60MS, 120));
+        assertTrue(OggOpusWriter.write(path, frames, 16000));
+
+        List<Page> pages = parse(path);
+        assertEquals(3, pages.size());
+
+        Page head = pages.get(0);
+        assertEquals(0x02, head.headerType());
+        assertEquals(0, head.granule());
+        assertEquals("OpusHead", new String(head.body(), 0, 8, StandardCharsets.US_ASCII));
+        assertEquals(1, head.body()[8]);
+        assertEquals(1, head.body()[9]);
+        assertEquals(16000, readLe(head.body(), 12, 4));
+
+        Page tags = pages.get(1);
+        assertEquals(0x00, tags.headerType());
+        assertEquals("OpusTags", new String(tags.body(), 0, 8, StandardCharsets.US_ASCII));
+
+        Page audio = pages.get(2);
+        assertEquals(0x04, audio.headerType());
+        assertEquals(3 * 2880, audio.granule());
+        assertArrayEquals(new int[]{100, 80, 120}, audio.segments());
+        assertArrayEquals(frames.get(1), Arrays.copyOfRange(audio.body(), 100, 180));
+
+        for (int i = 0; i < pages.size(); i++) {
+            assertEquals(i, pages.get(i).seq());
+            assertEquals(head.serial(), pages.get(i).serial());
+        }
+    }
+
+    @Test
+    void largePacketsUseMultipleLacingSegments() throws IOException {
+        Path path = dir.resolve("audio.opus");
+        assertTrue(OggOpusWriter.write(path, List.of(packet(TOC_SILK_60MS, 600), packet(TOC_SILK_60MS, 510)), 16000));
+
+        Page audio = parse(path).get(2);
+        // 长度正好是255的倍数时以0结尾
+        assertArrayEquals(new int[]{255, 255, 90, 255, 255, 0}, audio.segments());
+        assertEquals(1110, audio.body().length);
+    }
+
+    @Test
+    void startsNewPageAboutEverySecond() throws IOException {
+        Path path = dir.resolve("audio.opus");
+        List<byte[]> frames = Collections.nCopies(40, packet(TOC_SILK_60MS, 50));
+        assertTrue(OggOpusWriter.write(path, frames, 16000));
+
+        List<Page> pages = parse(path);
+        assertEquals(5, pages.size());
+        // 17个60ms包超过1秒后换页
+        assertEquals(17, pages.get(2).segments().length);
+        assertEquals(17 * 2880, pages.get(2).granule());
+        assertEquals(0x00, pages.get(2).headerType());
+        assertEquals(17, pages.get(3).segments().length);
+        assertEquals(34 * 2880, pages.get(3).granule());
+        assertEquals(6, pages.get(4).segments().length);
+        assertEquals(40 * 2880, pages.get(4).granule());
+        assertEquals(0x04, pages.get(4).headerType());
+    }
+
+    @Test
+    void startsNewPageWhenLacingSegmentsRunOut() throws IOException {
+        Path path = dir.resolve("audio.opus");
+        assertTrue(OggOpusWriter.write(path, Collections.nCopies(300, packet(TOC_CELT_2_5MS, 10)), 16000));
+
+        List<Page> pages = parse(path);
+        assertEquals(4, pages.size());
+        assertEquals(255, pages.get(2).segments().length);
+        assertEquals(255 * 120, pages.get(2).granule());
+        assertEquals(45, pages.get(3).segments().length);
+        assertEquals(300 * 120, pages.get(3).granule());
+    }
+
+    @Test
+    void noFileWithoutPackets() throws IOException {
+        Path path = dir.resolve("empty.opus");
+        assertFalse(OggOpusWriter.write(path, List.of(), 16000));
+        assertFalse(Files.exists(path));
+
+        // 空包被忽略
+        OggOpusWriter writer = new OggOpusWriter(path, 16000);
+        writer.write(new byte[0]);
+        writer.write(null);
+        assertFalse(writer.close());
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void writesNothingAfterClose() throws IOException {
+        Path path = dir.resolve("audio.opus");
+        OggOpusWriter writer = new OggOpusWriter(path, 16000);
+        writer.write(packet(TOC_SILK_60MS, 100));
+        assertTrue(writer.close());
+        long size = Files.size(path);
+
+        writer.write(packet(TOC_SILK_60MS, 100));
+        assertTrue(writer.close());
+        assertEquals(size, Files.size(path));
+        assertEquals(1, writer.getPackets());
+        assertEquals(60, writer.getDurationMs());
+    }
+
+    @Test
+    void discardDeletesPartiallyWrittenFile() throws IOException {
+        Path path = dir.resolve("sub").resolve("audio.opus");
+        OggOpusWriter writer = new OggOpusWriter(path, 16000);
+        // 超过内存缓存阈值后文件才会创建
+        for (int i = 0; i < 100; i++) {
+            writer.write(packet(TOC_SILK_60MS, 1000));
+        }
+        assertTrue(Files.exists(path));
+
+        writer.discard();
+        assertFalse(Files.exists(path));
+        assertFalse(writer.close());
+    }
+
+    @Test
+    void packetSamplesFollowsTocByte() {
+        // SILK 10/20/40/60ms
+        assertEquals(480, OggOpusWriter.packetSamples(new byte[]{(byte) (0 << 3)}));
+        assertEquals(960, OggOpusWriter.packetSamples(new byte[]{(byte) (1 << 3)}));
+        assertEquals(1920, OggOpusWriter.packetSamples(new byte[]{(byte) (2 << 3)}));
+        assertEquals(2880, OggOpusWriter.packetSamples(new byte[]{(byte) (3 << 3)}));
+        // Hybrid 10/20ms
+        assertEquals(480, OggOpusWriter.packetSamples(new byte[]{(byte) (12 << 3)}));
+        assertEquals(960, OggOpusWriter.packetSamples(new byte[]{(byte) (13 << 3)}));
+        // CELT 2.5/20ms
+        assertEquals(120, OggOpusWriter.packetSamples(new byte[]{(byte) (16 << 3)}));
+        assertEquals(960, OggOpusWriter.packetSamples(new byte[]{(byte) (31 << 3)}));
+        // 每包两帧
+        assertEquals(1920, OggOpusWriter.packetSamples(new byte[]{(byte) ((1 << 3) | 1)}));
+        assertEquals(1920, OggOpusWriter.packetSamples(new byte[]{(byte) ((1 << 3) | 2)}));
+        // 任意帧数，第二个字节给出帧数
+        assertEquals(3 * 960, OggOpusWriter.packetSamples(new byte[]{(byte) ((31 << 3) | 3), 3}));
+        assertEquals(0, OggOpusWriter.packetSamples(new byte[]{(byte) ((31 << 3) | 3)}));
+    }
+}
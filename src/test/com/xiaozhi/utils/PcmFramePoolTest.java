@@ -0,0 +1,49 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PcmFramePoolTest {
+
+    @Test
+    void copiesExactLength() {
+        PcmFramePool pool = new PcmFramePool(2);
+        byte[] source = { 1, 2, 3, 4, 5, 6 };
+
+        byte[] frame = pool.copyOf(source, 4);
+        assertArrayEquals(Arrays.copyOf(source, 4), frame);
+    }
+
+    @Test
+    void reusesArraysAfterOneRound() {
+        PcmFramePool pool = new PcmFramePool(3);
+        byte[] source = new byte[8];
+
+        byte[] first = pool.copyOf(source, 8);
+        byte[] second = pool.copyOf(source, 8);
+        byte[] third = pool.copyOf(source, 8);
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        // 一圈之内的帧互不覆盖，之后从头复用
+        assertSame(first, pool.copyOf(source, 8));
+        assertSame(second, pool.copyOf(source, 8));
+    }
+
+    @Test
+    void reallocatesWhenFrameLengthChanges() {
+        PcmFramePool pool = new PcmFramePool(1);
+        byte[] source = { 1, 2, 3, 4 };
+
+        byte[] first = pool.copyOf(source, 4);
+        byte[] shorter = pool.copyOf(source, 2);
+        assertNotSame(first, shorter);
+        assertEquals(2, shorter.length);
+        assertSame(shorter, pool.copyOf(source, 2));
+    }
+}
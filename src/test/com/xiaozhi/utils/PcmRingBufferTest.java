@@ -0,0 +1,93 @@
+package com.xiaozhi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PcmRingBufferTest {
+
+    private static byte[] sequence(int from, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (from + i);
+        }
+        return data;
+    }
+
+    @Test
+    void keepsDataBelowCapacity() {
+        PcmRingBuffer buffer = new PcmRingBuffer(16);
+        buffer.write(sequence(0, 6), 0, 6);
+        buffer.write(sequence(6, 4), 0, 4);
+
+        assertEquals(10, buffer.size());
+        assertArrayEquals(sequence(0, 10), buffer.drain());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void overwritesOldestDataAcrossTheWrap() {
+        PcmRingBuffer buffer = new PcmRingBuffer(16);
+        buffer.write(sequence(0, 12), 0, 12);
+        // 写入跨越数组末尾，最旧的6个字节被覆盖
+        buffer.write(sequence(12, 10), 0, 10);
+
+        assertEquals(16, buffer.size());
+        assertArrayEquals(sequence(6, 16), buffer.drain());
+    }
+
+    @Test
+    void keepsOnlyTheNewestCapacityBytesOfALargeWrite() {
+        PcmRingBuffer buffer = new PcmRingBuffer(16);
+        buffer.write(sequence(0, 10), 0, 10);
+        byte[] large = sequence(100, 40);
+        buffer.write(large, 0, large.length);
+
+        assertArrayEquals(Arrays.copyOfRange(large, 24, 40), buffer.drain());
+    }
+
+    @Test
+    void writesFromOffset() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(sequence(0, 10), 4, 4);
+
+        assertArrayEquals(sequence(4, 4), buffer.drain());
+    }
+
+    @Test
+    void roundsCapacityDownToWholeSamples() {
+        PcmRingBuffer buffer = new PcmRingBuffer(7);
+        buffer.write(sequence(0, 10), 0, 10);
+
+        assertArrayEquals(sequence(4, 6), buffer.drain());
+    }
+
+    @Test
+    void matchesNaiveBufferForRandomWrites() {
+        Random random = new Random(42);
+        int capacity = 320;
+        PcmRingBuffer buffer = new PcmRingBuffer(capacity);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int next = 0;
+        for (int i = 0; i < 2000; i++) {
+            int length = random.nextInt(capacity / 2) * 2;
+            byte[] data = sequence(next, length);
+            next += length;
+            buffer.write(data, 0, length);
+            written.write(data, 0, length);
+
+            if (random.nextInt(10) == 0) {
+                byte[] all = written.toByteArray();
+                byte[] expected = Arrays.copyOfRange(all, Math.max(0, all.length - capacity), all.length);
+                assertArrayEquals(expected, buffer.drain(), "第" + i + "次写入后");
+                written.reset();
+            }
+        }
+    }
+}